@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherManager;
+import org.vngx.jsch.constants.ConnectionProtocol;
+import org.vngx.jsch.hash.HashManager;
+import org.vngx.jsch.hash.MAC;
+
+/**
+ * Benchmarks the throughput of the {@code SessionIO} packet framing with an
+ * authenticated cipher against a cipher combined with a separate MAC, in both
+ * the standard MAC-then-encrypt and encrypt-then-MAC modes.  Each GCM mode is
+ * listed with the CTR mode of the same key size combined with hmac-sha2-256
+ * (named "hmac-sha256" in this library) so they can be compared directly.
+ * Each transport mode is specified as the cipher name optionally followed by
+ * a '/' and the MAC name; authenticated ciphers are specified without a MAC.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AEADBenchmark {
+
+	@Param({ Cipher.CIPHER_AES128_GCM,
+			Cipher.CIPHER_AES128_CTR + "/" + MAC.HMAC_SHA_256,
+			Cipher.CIPHER_AES128_CTR + "/" + MAC.HMAC_SHA_256_ETM,
+			Cipher.CIPHER_AES128_CTR + "/" + MAC.HMAC_SHA1,
+			Cipher.CIPHER_AES256_GCM,
+			Cipher.CIPHER_AES256_CTR + "/" + MAC.HMAC_SHA_256,
+			Cipher.CIPHER_AES256_CTR + "/" + MAC.HMAC_SHA_256_ETM,
+			Cipher.CIPHER_AES256_CTR + "/" + MAC.HMAC_SHA_512_ETM,
+			Cipher.CIPHER_CHACHA20_POLY1305,
+			Cipher.CIPHER_AES128_CBC + "/" + MAC.HMAC_SHA1_ETM })
+	String mode;
+
+	@Param({ "1024", "32768" })
+	int size;
+
+	private SessionIO _writer;
+	private SessionIO _loopWriter;
+	private SessionIO _loopReader;
+	private byte[] _payload;
+	private Packet _packet;
+	private Buffer _readBuffer;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		Session session = JSch.getInstance().createSession("bench", "localhost");
+		SessionIOBenchmark.LoopbackStream loopback = new SessionIOBenchmark.LoopbackStream();
+		_writer = SessionIO.createIO(session, loopback.in, SessionIOBenchmark.NullOutputStream.INSTANCE);
+		_loopWriter = SessionIO.createIO(session, loopback.in, loopback.out);
+		_loopReader = SessionIO.createIO(session, loopback.in, loopback.out);
+
+		Random random = new Random(42);
+		byte[] key = new byte[64], iv = new byte[64], macKey = new byte[64];
+		random.nextBytes(key);
+		random.nextBytes(iv);
+		random.nextBytes(macKey);
+		_writer.setWriteAlgorithms(createCipher(Cipher.ENCRYPT_MODE, key, iv), createMAC(macKey));
+		_loopWriter.setWriteAlgorithms(createCipher(Cipher.ENCRYPT_MODE, key, iv), createMAC(macKey));
+		_loopReader.setReadAlgorithms(createCipher(Cipher.DECRYPT_MODE, key, iv), createMAC(macKey));
+
+		_payload = new byte[size];
+		random.nextBytes(_payload);
+		_packet = new Packet(new Buffer(size + 1024));
+		_readBuffer = new Buffer(size + 1024);
+	}
+
+	@Benchmark
+	public Packet write() throws Exception {
+		fillPacket();
+		_writer.write(_packet);
+		_writer.flush();
+		return _packet;
+	}
+
+	@Benchmark
+	public Buffer writeAndRead() throws Exception {
+		fillPacket();
+		_loopWriter.write(_packet);
+		_loopWriter.flush();
+		return _loopReader.read(_readBuffer);
+	}
+
+	private void fillPacket() {
+		_packet.reset();
+		_packet.buffer.putByte(ConnectionProtocol.SSH_MSG_CHANNEL_DATA);
+		_packet.buffer.putInt(0);
+		_packet.buffer.putString(_payload);
+	}
+
+	private Cipher createCipher(int cipherMode, byte[] key, byte[] iv) throws Exception {
+		int index = mode.indexOf('/');
+		Cipher cipher = CipherManager.getManager().createCipher(index < 0 ? mode : mode.substring(0, index));
+		cipher.init(cipherMode, key, iv);
+		return cipher;
+	}
+
+	private MAC createMAC(byte[] macKey) throws Exception {
+		int index = mode.indexOf('/');
+		if( index < 0 ) {
+			return null;	// Authenticated cipher
+		}
+		MAC mac = HashManager.getManager().createMAC(mode.substring(index + 1));
+		mac.init(macKey);
+		return mac;
+	}
+
+}
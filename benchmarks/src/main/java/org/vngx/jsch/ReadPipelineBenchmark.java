@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.vngx.jsch;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.algorithm.Compression;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherManager;
+import org.vngx.jsch.config.SessionConfig;
+import org.vngx.jsch.constants.ConnectionProtocol;
+import org.vngx.jsch.hash.HashManager;
+import org.vngx.jsch.hash.MAC;
+import org.vngx.jsch.kex.KexProposal;
+
+/**
+ * Benchmarks reading inbound packets with {@code SessionIO.read()} from a
+ * loopback socket with the read pipeline disabled (depth 0) and enabled.  A
+ * sender thread keeps the socket full of packets encoded with the same
+ * algorithms, standing in for the server.  With the pipeline enabled, the
+ * keystream and read pipeline threads decrypt ahead while the benchmark
+ * thread verifies the MACs, so the result depends on the number of cores
+ * available to the three threads.  Lives in the {@code org.vngx.jsch} package
+ * to access the package-private transport layer; the pipeline is started as a
+ * key exchange agreeing on no compression would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadPipelineBenchmark {
+
+	@Param({ "0", "8" })
+	int readPipelineDepth;
+
+	@Param({ Cipher.CIPHER_AES128_CTR, Cipher.CIPHER_AES256_CTR })
+	String cipherName;
+
+	@Param({ MAC.HMAC_SHA1, MAC.HMAC_SHA_256_ETM })
+	String macName;
+
+	@Param({ "1024", "32768" })
+	int size;
+
+	private ServerSocket _serverSocket;
+	private Socket _clientSocket;
+	private Socket _serverSide;
+	private Thread _sender;
+	private volatile boolean _closed;
+	private SessionIO _reader;
+	private Buffer _readBuffer;
+
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Random random = new Random(42);
+		final byte[] key = new byte[64], iv = new byte[64], macKey = new byte[64];
+		random.nextBytes(key);
+		random.nextBytes(iv);
+		random.nextBytes(macKey);
+		final byte[] payload = new byte[size];
+		random.nextBytes(payload);
+
+		_serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		_clientSocket = new Socket("127.0.0.1", _serverSocket.getLocalPort());
+		_serverSide = _serverSocket.accept();
+
+		SessionConfig config = new SessionConfig();
+		config.setProperty(SessionConfig.READ_PIPELINE_DEPTH, readPipelineDepth);
+		Session session = JSch.getInstance().createSession("bench", "localhost", 22, config);
+		_reader = SessionIO.createIO(session, _clientSocket.getInputStream(), _clientSocket.getOutputStream());
+		_reader.setReadAlgorithms(createCipher(Cipher.DECRYPT_MODE, key, iv), createMAC(macKey));
+		if( readPipelineDepth > 0 ) {
+			startReadPipeline(_reader);
+		}
+		_readBuffer = new Buffer(size + 1024);
+
+		final SessionIO writer = SessionIO.createIO(session, _serverSide.getInputStream(), _serverSide.getOutputStream());
+		writer.setWriteAlgorithms(createCipher(Cipher.ENCRYPT_MODE, key, iv), createMAC(macKey));
+		_sender = new Thread(new Runnable() {
+			public void run() {
+				Packet packet = new Packet(new Buffer(size + 1024));
+				try {
+					while( !_closed ) {
+						packet.reset();
+						packet.buffer.putByte(ConnectionProtocol.SSH_MSG_CHANNEL_DATA);
+						packet.buffer.putInt(0);
+						packet.buffer.putString(payload);
+						writer.write(packet);
+						writer.flush();
+					}
+				} catch(Exception e) {
+					// Socket closed by tear down
+				}
+			}
+		}, "Benchmark sender");
+		_sender.setDaemon(true);
+		_sender.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		_closed = true;
+		_reader.close();
+		_clientSocket.close();
+		_serverSide.close();
+		_serverSocket.close();
+		_sender.join();
+	}
+
+	@Benchmark
+	public Buffer read() throws Exception {
+		return _reader.read(_readBuffer);
+	}
+
+	private Cipher createCipher(int mode, byte[] key, byte[] iv) throws Exception {
+		Cipher cipher = CipherManager.getManager().createCipher(cipherName);
+		cipher.init(mode, key, iv);
+		return cipher;
+	}
+
+	private MAC createMAC(byte[] macKey) throws Exception {
+		MAC mac = HashManager.getManager().createMAC(macName);
+		mac.init(macKey);
+		return mac;
+	}
+
+	/**
+	 * Starts the read pipeline of the specified transport as a key exchange
+	 * agreeing on no compression would.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void startReadPipeline(SessionIO io) throws Exception {
+		Constructor<KexProposal> constructor = KexProposal.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		KexProposal proposal = constructor.newInstance();
+		Field agreed = KexProposal.class.getDeclaredField("_agreed");
+		agreed.setAccessible(true);
+		((Map<KexProposal.Proposal,String>) agreed.get(proposal)).put(KexProposal.Proposal.COMP_ALGS_STOC, Compression.COMPRESSION_NONE);
+		Method start = SessionIO.class.getDeclaredMethod("startReadPipeline", KexProposal.class);
+		start.setAccessible(true);
+		start.invoke(io, proposal);
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherManager;
+import org.vngx.jsch.constants.ConnectionProtocol;
+import org.vngx.jsch.hash.HashManager;
+import org.vngx.jsch.hash.MAC;
+
+/**
+ * Benchmarks encoding SSH packets with {@code SessionIO.write()} and the round
+ * trip of encoding and decoding packets with {@code SessionIO.read()} for every
+ * pair of supported cipher and MAC, including the encrypt-then-MAC modes.  The
+ * authenticated ciphers, which are used without a MAC, are measured by
+ * {@link AEADBenchmark}.  Select pairs with the JMH {@code -p} option, e.g.
+ * {@code -p cipherName=aes128-ctr -p macName=hmac-sha1}.  Lives in the
+ * {@code org.vngx.jsch} package to access the package-private transport layer;
+ * the negotiated algorithms are installed directly rather than running a key
+ * exchange.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionIOBenchmark {
+
+	@Param({ Cipher.CIPHER_AES128_CTR, Cipher.CIPHER_AES192_CTR, Cipher.CIPHER_AES256_CTR,
+			Cipher.CIPHER_AES128_CBC, Cipher.CIPHER_AES192_CBC, Cipher.CIPHER_AES256_CBC,
+			Cipher.CIPHER_3DES_CTR, Cipher.CIPHER_3DES_CBC, Cipher.CIPHER_BLOWFISH_CBC,
+			Cipher.CIPHER_ARCFOUR, Cipher.CIPHER_ARCFOUR128, Cipher.CIPHER_ARCFOUR256 })
+	String cipherName;
+
+	@Param({ MAC.HMAC_SHA1, MAC.HMAC_SHA1_96, MAC.HMAC_SHA_256, MAC.HMAC_MD5, MAC.HMAC_MD5_96,
+			MAC.HMAC_SHA1_ETM, MAC.HMAC_SHA_256_ETM, MAC.HMAC_SHA_512_ETM })
+	String macName;
+
+	@Param({ "64", "1024", "32768" })
+	int size;
+
+	private SessionIO _writer;
+	private SessionIO _loopWriter;
+	private SessionIO _loopReader;
+	private byte[] _payload;
+	private Packet _packet;
+	private Buffer _readBuffer;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		Session session = JSch.getInstance().createSession("bench", "localhost");
+		LoopbackStream loopback = new LoopbackStream();
+		_writer = SessionIO.createIO(session, loopback.in, NullOutputStream.INSTANCE);
+		_loopWriter = SessionIO.createIO(session, loopback.in, loopback.out);
+		_loopReader = SessionIO.createIO(session, loopback.in, loopback.out);
+
+		Random random = new Random(42);
+		byte[] key = new byte[64], iv = new byte[64], macKey = new byte[64];
+		random.nextBytes(key);
+		random.nextBytes(iv);
+		random.nextBytes(macKey);
+		initWrite(_writer, key, iv, macKey);
+		initWrite(_loopWriter, key, iv, macKey);
+		initRead(_loopReader, key, iv, macKey);
+
+		_payload = new byte[size];
+		random.nextBytes(_payload);
+		_packet = new Packet(new Buffer(size + 1024));
+		_readBuffer = new Buffer(size + 1024);
+	}
+
+	@Benchmark
+	public Packet write() throws Exception {
+		fillPacket();
+		_writer.write(_packet);
+		_writer.flush();
+		return _packet;
+	}
+
+	@Benchmark
+	public Buffer writeAndRead() throws Exception {
+		fillPacket();
+		_loopWriter.write(_packet);
+		_loopWriter.flush();
+		return _loopReader.read(_readBuffer);
+	}
+
+	private void fillPacket() {
+		_packet.reset();
+		_packet.buffer.putByte(ConnectionProtocol.SSH_MSG_CHANNEL_DATA);
+		_packet.buffer.putInt(0);
+		_packet.buffer.putString(_payload);
+	}
+
+	private void initWrite(SessionIO io, byte[] key, byte[] iv, byte[] macKey) throws Exception {
+		Cipher cipher = CipherManager.getManager().createCipher(cipherName);
+		cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+		MAC mac = HashManager.getManager().createMAC(macName);
+		mac.init(macKey);
+		io.setWriteAlgorithms(cipher, mac);
+	}
+
+	private void initRead(SessionIO io, byte[] key, byte[] iv, byte[] macKey) throws Exception {
+		Cipher cipher = CipherManager.getManager().createCipher(cipherName);
+		cipher.init(Cipher.DECRYPT_MODE, key, iv);
+		MAC mac = HashManager.getManager().createMAC(macName);
+		mac.init(macKey);
+		io.setReadAlgorithms(cipher, mac);
+	}
+
+	/**
+	 * In-memory stream where data written to the output stream is read back
+	 * from the input stream by the same thread.
+	 */
+	static final class LoopbackStream {
+
+		private byte[] _data = new byte[64 * 1024];
+		private int _readIndex = 0;
+		private int _writeIndex = 0;
+
+		final InputStream in = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				return _readIndex < _writeIndex ? _data[_readIndex++] & 0xff : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if( _readIndex == _writeIndex ) {
+					return -1;
+				}
+				len = Math.min(len, _writeIndex - _readIndex);
+				System.arraycopy(_data, _readIndex, b, off, len);
+				if( (_readIndex += len) == _writeIndex ) {
+					_readIndex = _writeIndex = 0;
+				}
+				return len;
+			}
+		};
+
+		final OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if( _writeIndex + len > _data.length ) {
+					_data = Util.copyOf(_data, Math.max(_data.length * 2, _writeIndex + len));
+				}
+				System.arraycopy(b, off, _data, _writeIndex, len);
+				_writeIndex += len;
+			}
+		};
+
+	}
+
+	/**
+	 * Output stream which discards all data written to it.
+	 */
+	static final class NullOutputStream extends OutputStream {
+
+		static final NullOutputStream INSTANCE = new NullOutputStream();
+
+		@Override
+		public void write(int b) { }
+
+		@Override
+		public void write(byte[] b, int off, int len) { }
+
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.vngx.jsch;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.config.SessionConfig;
+
+/**
+ * End-to-end SFTP get and put throughput against the in-process
+ * {@code LoopbackServer} used by the tests, over a loopback socket.  Each
+ * operation transfers one file of the configured size; divide the size by the
+ * average time to get the throughput.  The server skips the key exchange so
+ * packets are sent in the clear without a MAC: this measures the SFTP, channel
+ * and transport framing, while the cost of each cipher and MAC is measured by
+ * {@link SessionIOBenchmark} and {@link AEADBenchmark}.  The server discards
+ * uploaded data so put measures the client rather than the test server.  Lives
+ * in the {@code org.vngx.jsch} package to use the package-private test server
+ * from the library's test jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SftpBenchmark {
+
+	/** Path of file downloaded by get benchmark. */
+	private static final String DOWNLOAD_FILE = "/download.dat";
+	/** Path of file uploaded by put benchmark. */
+	private static final String UPLOAD_FILE = "/upload.dat";
+
+	@Param({ "1048576", "8388608" })
+	int fileSize;
+
+	@Param({ "false", "true" })
+	boolean nioTransport;
+
+	private LoopbackServer _server;
+	private Session _session;
+	private ChannelSftp _sftp;
+	private byte[] _data;
+
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_data = new byte[fileSize];
+		new Random(42).nextBytes(_data);
+		_server = new LoopbackServer();
+		_server._files.put(DOWNLOAD_FILE, _data);
+		_server._discardWrites = true;	// Server would copy the file on each write
+
+		SessionConfig config = new SessionConfig();
+		config.setProperty(SessionConfig.NIO_TRANSPORT, nioTransport);
+		_session = _server.connect(config);
+		_sftp = (ChannelSftp) _session.openChannel(ChannelType.SFTP);
+		_sftp.connect();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if( _session != null ) {
+			_session.disconnect();
+		}
+		if( _server != null ) {
+			_server.close();
+		}
+	}
+
+	@Benchmark
+	public void get() throws Exception {
+		_server._requests.clear();	// Server records every request
+		_sftp.get(DOWNLOAD_FILE, SessionIOBenchmark.NullOutputStream.INSTANCE);
+	}
+
+	@Benchmark
+	public void put() throws Exception {
+		_server._requests.clear();	// Server records every request
+		_sftp.put(new ByteArrayInputStream(_data), UPLOAD_FILE);
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.Buffer;
+import org.vngx.jsch.Packet;
+
+/**
+ * Benchmarks putting and getting strings and multiple precision integers to
+ * and from a {@code Buffer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferBenchmark {
+
+	@Param({ "16", "256", "4096" })
+	int size;
+
+	private final Buffer _buffer = new Buffer(Packet.MAX_SIZE);
+	private byte[] _string;
+	private byte[] _mpint;
+
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		_string = new byte[size];
+		random.nextBytes(_string);
+		_mpint = new byte[Math.min(size, 1024)];	// mpints limited to 8KB
+		random.nextBytes(_mpint);
+	}
+
+	@Benchmark
+	public byte[] putGetString() {
+		_buffer.reset();
+		_buffer.putString(_string);
+		return _buffer.getString();
+	}
+
+	@Benchmark
+	public Buffer putSkipString() {
+		_buffer.reset();
+		_buffer.putString(_string);
+		return _buffer.skipString();
+	}
+
+	@Benchmark
+	public byte[] putGetMPInt() {
+		_buffer.reset();
+		_buffer.putMPInt(_mpint);
+		return _buffer.getMPInt();
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.cipher.AEADCipher;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherManager;
+
+/**
+ * Benchmarks in place encryption of packet sized buffers with each of the
+ * {@code Cipher} implementations.  The authenticated ciphers encrypt the
+ * buffer as a whole packet and append the authentication tag, so their
+ * results include the cost of a MAC; compare them with a cipher here plus a
+ * MAC from {@link MACBenchmark}, or at the packet level with
+ * {@code AEADBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherBenchmark {
+
+	@Param({ Cipher.CIPHER_AES128_CTR, Cipher.CIPHER_AES192_CTR, Cipher.CIPHER_AES256_CTR,
+			Cipher.CIPHER_AES128_CBC, Cipher.CIPHER_AES192_CBC, Cipher.CIPHER_AES256_CBC,
+			Cipher.CIPHER_3DES_CBC, Cipher.CIPHER_3DES_CTR, Cipher.CIPHER_BLOWFISH_CBC,
+			Cipher.CIPHER_ARCFOUR, Cipher.CIPHER_ARCFOUR128, Cipher.CIPHER_ARCFOUR256,
+			Cipher.CIPHER_AES128_GCM, Cipher.CIPHER_AES256_GCM, Cipher.CIPHER_CHACHA20_POLY1305 })
+	String cipherName;
+
+	@Param({ "64", "1024", "32768" })
+	int size;
+
+	private Cipher _cipher;
+	private AEADCipher _aead;
+	private byte[] _data;
+	private int _sequence = 0;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		Random random = new Random(42);
+		byte[] key = new byte[64], iv = new byte[64];
+		random.nextBytes(key);
+		random.nextBytes(iv);
+		_cipher = CipherManager.getManager().createCipher(cipherName);
+		_cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+		if( _cipher instanceof AEADCipher ) {
+			_aead = (AEADCipher) _cipher;
+		}
+		_data = new byte[_aead != null ? size + _aead.getTagSize() : size];	// Room for tag
+		random.nextBytes(_data);
+	}
+
+	@Benchmark
+	public byte[] update() throws Exception {
+		if( _aead != null ) {
+			_aead.encrypt(_sequence++, _data, 0, size);
+		} else {
+			_cipher.update(_data, 0, _data.length, _data, 0);
+		}
+		return _data;
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.algorithm.Compression;
+import org.vngx.jsch.algorithm.CompressionImpl;
+
+/**
+ * Benchmarks {@code CompressionImpl} compressing packet payloads and the round
+ * trip of compressing and uncompressing them.  Since the zlib streams of an SSH
+ * session are continuous, the inflater must see every packet produced by the
+ * deflater in order, so uncompression is measured together with compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+	/** Offset of payload in packet (packet length and padding length). */
+	private static final int OFFSET = 5;
+
+	@Param({ "1024", "32768" })
+	int size;
+
+	@Param({ "1", "6", "9" })
+	int level;
+
+	private Compression _compressOnly;
+	private Compression _deflater;
+	private Compression _inflater;
+	private byte[] _payload;
+	private byte[] _packet;
+	private final int[] _length = new int[1];
+
+
+	@Setup
+	public void setUp() {
+		_compressOnly = new CompressionImpl();
+		_compressOnly.init(Compression.COMPRESS_MODE, level);
+		_deflater = new CompressionImpl();
+		_deflater.init(Compression.COMPRESS_MODE, level);
+		_inflater = new CompressionImpl();
+		_inflater.init(Compression.DECOMPRESS_MODE, level);
+
+		// Semi-compressible payload: text with random runs mixed in
+		Random random = new Random(42);
+		byte[] text = "The quick brown fox jumps over the lazy dog. drwxr-xr-x 2 user group 4096 ".getBytes();
+		_payload = new byte[size];
+		for( int i = 0; i < size; i++ ) {
+			_payload[i] = (i / 64) % 4 == 3 ? (byte) random.nextInt() : text[i % text.length];
+		}
+		_packet = new byte[OFFSET + size * 2 + 1024];
+	}
+
+	@Benchmark
+	public int compress() {
+		System.arraycopy(_payload, 0, _packet, OFFSET, size);
+		return _compressOnly.compress(_packet, OFFSET, OFFSET + size);
+	}
+
+	@Benchmark
+	public byte[] compressAndUncompress() {
+		System.arraycopy(_payload, 0, _packet, OFFSET, size);
+		_length[0] = _deflater.compress(_packet, OFFSET, OFFSET + size) - OFFSET;
+		return _inflater.uncompress(_packet, OFFSET, _length);
+	}
+
+}
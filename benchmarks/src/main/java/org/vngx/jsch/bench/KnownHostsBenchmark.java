@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.Buffer;
+import org.vngx.jsch.Util;
+import org.vngx.jsch.util.HostKeyRepository.Check;
+import org.vngx.jsch.util.KnownHosts;
+
+/**
+ * Benchmarks {@code KnownHosts.check()} against large known hosts files with
+ * plain or hashed host names.  The host being checked is the last entry in the
+ * file to measure the worst case scan of the repository.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KnownHostsBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	int hosts;
+
+	@Param({ "false", "true" })
+	boolean hashed;
+
+	private KnownHosts _knownHosts;
+	private byte[] _key;
+	private String _host;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		Random random = new Random(42);
+		Mac hmac = Mac.getInstance("HmacSHA1");
+		StringBuilder file = new StringBuilder(hosts * 450);
+		for( int i = 0; i < hosts; i++ ) {
+			_host = "host-" + i + ".example.com";
+			_key = createRSAKey(random);
+			byte[] encodedKey = Util.toBase64(_key, 0, _key.length);
+			if( hashed ) {
+				byte[] salt = new byte[20];
+				random.nextBytes(salt);
+				hmac.init(new SecretKeySpec(salt, "HmacSHA1"));
+				byte[] hash = hmac.doFinal(Util.str2byte(_host));
+				file.append("|1|").append(Util.byte2str(Util.toBase64(salt, 0, salt.length)))
+					.append('|').append(Util.byte2str(Util.toBase64(hash, 0, hash.length)));
+			} else {
+				file.append(_host);
+			}
+			file.append(" ssh-rsa ").append(Util.byte2str(encodedKey)).append('\n');
+		}
+		_knownHosts = new KnownHosts();
+		_knownHosts.loadKnownHosts(new ByteArrayInputStream(Util.str2byte(file.toString())));
+	}
+
+	@Benchmark
+	public Check check() {
+		return _knownHosts.check(_host, _key);
+	}
+
+	private static byte[] createRSAKey(Random random) {
+		byte[] modulus = new byte[256];
+		random.nextBytes(modulus);
+		modulus[0] &= 0x7f;
+		Buffer buffer = new Buffer(512);
+		buffer.putString(Util.str2byte("ssh-rsa"));
+		buffer.putMPInt(new byte[] { 1, 0, 1 });
+		buffer.putMPInt(modulus);
+		return Util.copyOf(buffer.getArray(), buffer.getLength());
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vngx.jsch.hash.MAC;
+import org.vngx.jsch.hash.MACImpl;
+import org.vngx.jsch.hash.MACImplAlternate;
+
+/**
+ * Benchmarks generating the MAC of packet sized buffers (including the packet
+ * sequence number) with both the {@code MACImpl} and {@code MACImplAlternate}
+ * implementations of each algorithm.  The encrypt-then-MAC algorithms only
+ * have a {@code MACImpl} implementation; for {@code MACImplAlternate} they are
+ * measured with the alternate implementation of the same HMAC where one
+ * exists (hmac-sha2-512 has none and uses {@code MACImpl}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MACBenchmark {
+
+	@Param({ "MACImpl", "MACImplAlternate" })
+	String implementation;
+
+	@Param({ MAC.HMAC_MD5, MAC.HMAC_MD5_96, MAC.HMAC_SHA1, MAC.HMAC_SHA1_96, MAC.HMAC_SHA_256,
+			MAC.HMAC_SHA1_ETM, MAC.HMAC_SHA_256_ETM, MAC.HMAC_SHA_512_ETM })
+	String macName;
+
+	@Param({ "64", "1024", "32768" })
+	int size;
+
+	private MAC _mac;
+	private byte[] _data;
+	private byte[] _digest;
+	private int _sequence = 0;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		Random random = new Random(42);
+		_mac = createMAC(implementation, macName);
+		byte[] key = new byte[64];
+		random.nextBytes(key);
+		_mac.init(key);
+		_data = new byte[size];
+		random.nextBytes(_data);
+		_digest = new byte[_mac.getBlockSize()];
+	}
+
+	@Benchmark
+	public byte[] mac() throws Exception {
+		_mac.update(_sequence++);
+		_mac.update(_data, 0, _data.length);
+		_mac.doFinal(_digest, 0);
+		return _digest;
+	}
+
+	private static MAC createMAC(String implementation, String macName) throws Exception {
+		boolean alternate = "MACImplAlternate".equals(implementation);
+		if( MAC.HMAC_MD5.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_MD5() : new MACImpl.HMAC_MD5();
+		} else if( MAC.HMAC_MD5_96.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_MD5_96() : new MACImpl.HMAC_MD5_96();
+		} else if( MAC.HMAC_SHA1.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_SHA1() : new MACImpl.HMAC_SHA1();
+		} else if( MAC.HMAC_SHA1_96.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_SHA1_96() : new MACImpl.HMAC_SHA1_96();
+		} else if( MAC.HMAC_SHA_256.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_SHA_256() : new MACImpl.HMAC_SHA_256();
+		} else if( MAC.HMAC_SHA1_ETM.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_SHA1() : new MACImpl.HMAC_SHA1_ETM();
+		} else if( MAC.HMAC_SHA_256_ETM.equals(macName) ) {
+			return alternate ? new MACImplAlternate.HMAC_SHA_256() : new MACImpl.HMAC_SHA_256_ETM();
+		} else if( MAC.HMAC_SHA_512_ETM.equals(macName) ) {
+			return new MACImpl.HMAC_SHA_512_ETM();	// No alternate implementation
+		}
+		throw new IllegalArgumentException("Unknown MAC: " + macName);
+	}
+
+}
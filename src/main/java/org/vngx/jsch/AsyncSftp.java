@@ -0,0 +1,1208 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+import static org.vngx.jsch.constants.ConnectionProtocol.SSH_MSG_CHANNEL_DATA;
+import static org.vngx.jsch.constants.SftpProtocol.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.vngx.jsch.ChannelSftp.LsEntry;
+import org.vngx.jsch.exception.SftpException;
+import org.vngx.jsch.util.Logger.Level;
+import org.vngx.jsch.util.Metrics;
+
+/**
+ * <p>Asynchronous client for an SFTP channel which allows any number of
+ * threads to share a single channel with many requests outstanding.  Each
+ * operation sends its request(s) immediately and returns an
+ * {@link SftpFuture} for the result instead of waiting for the server's
+ * reply.  Requests are tagged with IDs from a range of their own, so they
+ * never collide with the IDs of the channel's synchronous requests, and the
+ * replies are matched to their requests by a dedicated reader thread.</p>
+ *
+ * <p>The asynchronous client is retrieved from a connected channel with
+ * {@link ChannelSftp#async()}.  Once retrieved, the reader thread owns the
+ * channel's input and the synchronous methods of the channel can no longer be
+ * used.  Relative paths are resolved against the channel's current remote
+ * directory at the time the client was created; paths are not globbed.</p>
+ *
+ * <p>Multi-request operations ({@link #ls(String)}, {@link #get(String, OutputStream)}
+ * and {@link #put(InputStream, String)}) continue from the reader thread as
+ * replies are received.  Transfers run on a thread of their own once the file
+ * is opened, which reads from or writes to the stream passed to the transfer,
+ * so a slow stream does not hold up the replies to other requests.  Transfers
+ * keep up to the channel's bulk requests outstanding at once.</p>
+ *
+ * @see org.vngx.jsch.ChannelSftp
+ * @see org.vngx.jsch.SftpFuture
+ */
+public final class AsyncSftp {
+
+	/** Maximum length in bytes of a reply read from the server. */
+	private static final int MAX_MSG_LENGTH = 256 * 1024;
+	/** Overhead in bytes of a write request excluding the handle and data. */
+	private static final int WRITE_OVERHEAD = 5 + 13 + 21 + 32 + 20;
+	/** Bit set in all request IDs to keep them apart from synchronous IDs. */
+	private static final int ID_RANGE = 0x80000000;
+
+	/** SFTP channel the client sends requests on. */
+	private final ChannelSftp _channel;
+	/** Session of the SFTP channel. */
+	private final Session _session;
+	/** Input stream of SFTP channel read by the reader thread. */
+	private final InputStream _in;
+	/** Version of the SFTP server. */
+	private final int _serverVersion;
+	/** Filename encoding to use when converting paths. */
+	private final String _fileEncoding;
+	/** Remote directory relative paths are resolved against. */
+	private final String _cwd;
+	/** Maximum number of requests outstanding per transfer. */
+	private final int _bulkRequests;
+	/** Generates request IDs within the client's range. */
+	private final AtomicInteger _seq = new AtomicInteger();
+	/** Outstanding requests by request ID. */
+	private final ConcurrentMap<Integer,PendingRequest> _pending = new ConcurrentHashMap<Integer,PendingRequest>();
+	/** Lock held while writing a request so requests are not interleaved. */
+	private final ReentrantLock _writeLock = new ReentrantLock();
+	/** Buffer for writing requests (guarded by write lock). */
+	private final Buffer _buffer;
+	/** Packet for writing requests (guarded by write lock). */
+	private final Packet _packet;
+	/** Cause the reader stopped, failing any new requests (null while running). */
+	private volatile SftpException _closed;
+
+
+	/**
+	 * Creates a new instance of <code>AsyncSftp</code> for the specified
+	 * connected channel and starts the reader thread.  Instances should only
+	 * be created by {@link ChannelSftp#async()}.
+	 *
+	 * @param channel to send requests on
+	 * @param in stream of channel to read replies from
+	 * @param serverVersion of SFTP server
+	 * @param fileEncoding for converting paths
+	 * @param cwd remote directory to resolve relative paths against
+	 * @param bulkRequests maximum requests outstanding per transfer
+	 */
+	AsyncSftp(ChannelSftp channel, InputStream in, int serverVersion, String fileEncoding, String cwd, int bulkRequests) {
+		_channel = channel;
+		_session = channel.getSession();
+		_in = in;
+		_serverVersion = serverVersion;
+		_fileEncoding = fileEncoding;
+		_cwd = cwd;
+		_bulkRequests = bulkRequests;
+		_buffer = new Buffer(channel._remoteMaxPacketSize);
+		_packet = new Packet(_buffer);
+		_session.newThread(new Runnable() {
+			@Override public void run() {
+				readReplies();
+			}
+		}, "SFTP reader " + _session.getHost()).start();
+	}
+
+	/**
+	 * Retrieves the attributes of the file at the specified path, following
+	 * symbolic links.
+	 *
+	 * @param path of file
+	 * @return future for file attributes
+	 */
+	public SftpFuture<SftpATTRS> stat(String path) {
+		AttrsReply reply = new AttrsReply();
+		sendPath(SSH_FXP_STAT, reply, path);
+		return reply.__future;
+	}
+
+	/**
+	 * Retrieves the attributes of the file at the specified path without
+	 * following symbolic links.
+	 *
+	 * @param path of file
+	 * @return future for file attributes
+	 */
+	public SftpFuture<SftpATTRS> lstat(String path) {
+		AttrsReply reply = new AttrsReply();
+		sendPath(SSH_FXP_LSTAT, reply, path);
+		return reply.__future;
+	}
+
+	/**
+	 * Sets the attributes of the file at the specified path.
+	 *
+	 * @param path of file
+	 * @param attrs to set
+	 * @return future completed once the attributes are set
+	 */
+	public SftpFuture<Void> setStat(String path, SftpATTRS attrs) {
+		if( attrs == null ) {
+			throw new IllegalArgumentException("SftpATTRS cannot be null");
+		}
+		StatusReply reply = new StatusReply();
+		sendPathAttrs(SSH_FXP_SETSTAT, reply, path, attrs);
+		return reply.__future;
+	}
+
+	/**
+	 * Removes the file at the specified path.
+	 *
+	 * @param path of file
+	 * @return future completed once the file is removed
+	 */
+	public SftpFuture<Void> rm(String path) {
+		StatusReply reply = new StatusReply();
+		sendPath(SSH_FXP_REMOVE, reply, path);
+		return reply.__future;
+	}
+
+	/**
+	 * Creates the directory at the specified path.
+	 *
+	 * @param path of directory
+	 * @return future completed once the directory is created
+	 */
+	public SftpFuture<Void> mkdir(String path) {
+		StatusReply reply = new StatusReply();
+		sendPathAttrs(SSH_FXP_MKDIR, reply, path, null);
+		return reply.__future;
+	}
+
+	/**
+	 * Removes the empty directory at the specified path.
+	 *
+	 * @param path of directory
+	 * @return future completed once the directory is removed
+	 */
+	public SftpFuture<Void> rmdir(String path) {
+		StatusReply reply = new StatusReply();
+		sendPath(SSH_FXP_RMDIR, reply, path);
+		return reply.__future;
+	}
+
+	/**
+	 * Renames the file at the old path to the new path.
+	 *
+	 * @param oldpath of file
+	 * @param newpath of file
+	 * @return future completed once the file is renamed
+	 */
+	public SftpFuture<Void> rename(String oldpath, String newpath) {
+		if( _serverVersion < 2 ) {
+			return failed(new SftpException(SSH_FX_OP_UNSUPPORTED, "The remote SFTP server is too old to support rename operation"));
+		}
+		StatusReply reply = new StatusReply();
+		sendPaths(SSH_FXP_RENAME, reply, path(oldpath), path(newpath));
+		return reply.__future;
+	}
+
+	/**
+	 * Creates a symbolic link at the new path pointing to the old path.
+	 *
+	 * @param oldpath target of link
+	 * @param newpath of link
+	 * @return future completed once the link is created
+	 */
+	public SftpFuture<Void> symlink(String oldpath, String newpath) {
+		if( _serverVersion < 3 ) {
+			return failed(new SftpException(SSH_FX_OP_UNSUPPORTED, "The remote SFTP server is too old to support symlink operation"));
+		}
+		StatusReply reply = new StatusReply();
+		sendPaths(SSH_FXP_SYMLINK, reply, path(oldpath), path(newpath));
+		return reply.__future;
+	}
+
+	/**
+	 * Retrieves the target of the symbolic link at the specified path.
+	 *
+	 * @param path of link
+	 * @return future for target of link
+	 */
+	public SftpFuture<String> readlink(String path) {
+		if( _serverVersion < 3 ) {
+			return failed(new SftpException(SSH_FX_OP_UNSUPPORTED, "The remote SFTP server is too old to support readlink operation"));
+		}
+		NameReply reply = new NameReply();
+		sendPath(SSH_FXP_READLINK, reply, path);
+		return reply.__future;
+	}
+
+	/**
+	 * Retrieves the canonical absolute path for the specified path.
+	 *
+	 * @param path to resolve
+	 * @return future for absolute path
+	 */
+	public SftpFuture<String> realpath(String path) {
+		NameReply reply = new NameReply();
+		sendPath(SSH_FXP_REALPATH, reply, path);
+		return reply.__future;
+	}
+
+	/**
+	 * Lists the entries of the directory at the specified path.
+	 *
+	 * @param path of directory
+	 * @return future for entries of directory
+	 */
+	public SftpFuture<List<LsEntry>> ls(String path) {
+		final SftpFuture<List<LsEntry>> result = new SftpFuture<List<LsEntry>>();
+		HandleReply open = new HandleReply();
+		sendPath(SSH_FXP_OPENDIR, open, path);
+		open.__future.addListener(new SftpFuture.Listener<byte[]>() {
+			@Override public void completed(SftpFuture<byte[]> future) {
+				if( future.isSuccess() ) {
+					readDir(future.getNow(), new ArrayList<LsEntry>(), result);
+				} else {
+					result.fail(future.getFailure());
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Reads the next entries of the open directory, continuing until the end
+	 * of the directory is reached and the directory is closed.
+	 *
+	 * @param handle of open directory
+	 * @param entries read from directory
+	 * @param result to complete with entries
+	 */
+	private void readDir(final byte[] handle, final List<LsEntry> entries, final SftpFuture<List<LsEntry>> result) {
+		ReadDirReply reply = new ReadDirReply(entries);
+		sendHandle(SSH_FXP_READDIR, reply, handle);
+		reply.__future.addListener(new SftpFuture.Listener<Boolean>() {
+			@Override public void completed(SftpFuture<Boolean> future) {
+				if( !future.isSuccess() ) {
+					close(handle);
+					result.fail(future.getFailure());
+				} else if( future.getNow() ) {
+					readDir(handle, entries, result);
+				} else {
+					close(handle).addListener(new SftpFuture.Listener<Void>() {
+						@Override public void completed(SftpFuture<Void> future) {
+							result.complete(entries);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	/**
+	 * Downloads the file at the specified path to the output stream.  The
+	 * output stream is written to (but not closed) by the download's thread.
+	 *
+	 * @param src path of remote file
+	 * @param dst stream to write file data to
+	 * @return future for number of bytes downloaded
+	 */
+	public SftpFuture<Long> get(String src, final OutputStream dst) {
+		if( dst == null ) {
+			throw new IllegalArgumentException("OutputStream cannot be null");
+		}
+		final SftpFuture<Long> result = new SftpFuture<Long>();
+		HandleReply open = new HandleReply();
+		sendOpen(open, path(src), SSH_FXF_READ);
+		open.__future.addListener(new SftpFuture.Listener<byte[]>() {
+			@Override public void completed(SftpFuture<byte[]> future) {
+				if( future.isSuccess() ) {
+					new Download(future.getNow(), dst, result).start();
+				} else {
+					result.fail(future.getFailure());
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Uploads the data from the input stream to the file at the specified
+	 * path, replacing any existing file.  The input stream is read from (but
+	 * not closed) by the upload's thread after the file is opened.
+	 *
+	 * @param src stream to read file data from
+	 * @param dst path of remote file
+	 * @return future for number of bytes uploaded
+	 */
+	public SftpFuture<Long> put(final InputStream src, String dst) {
+		if( src == null ) {
+			throw new IllegalArgumentException("InputStream cannot be null");
+		}
+		final SftpFuture<Long> result = new SftpFuture<Long>();
+		HandleReply open = new HandleReply();
+		sendOpen(open, path(dst), SSH_FXF_WRITE | SSH_FXF_CREAT | SSH_FXF_TRUNC);
+		open.__future.addListener(new SftpFuture.Listener<byte[]>() {
+			@Override public void completed(SftpFuture<byte[]> future) {
+				if( future.isSuccess() ) {
+					new Upload(future.getNow(), src, result).start();
+				} else {
+					result.fail(future.getFailure());
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the number of requests which have been sent and are waiting for
+	 * a reply from the server.
+	 *
+	 * @return number of outstanding requests
+	 */
+	public int getPendingRequests() {
+		return _pending.size();
+	}
+
+	/**
+	 * Returns true if the client is still able to send requests.
+	 *
+	 * @return true if client is open
+	 */
+	public boolean isOpen() {
+		return _closed == null;
+	}
+
+	/**
+	 * Closes the client by disconnecting the SFTP channel.  Any outstanding
+	 * operations fail once the reader thread stops.
+	 */
+	public void close() {
+		_channel.disconnect();
+	}
+
+	/**
+	 * Closes the open file or directory handle.
+	 *
+	 * @param handle to close
+	 * @return future completed once the handle is closed
+	 */
+	private SftpFuture<Void> close(byte[] handle) {
+		StatusReply reply = new StatusReply();
+		sendHandle(SSH_FXP_CLOSE, reply, handle);
+		return reply.__future;
+	}
+
+	/**
+	 * Reads replies from the channel and passes each to the handler of its
+	 * request until the channel is closed.  Any requests still outstanding
+	 * when the channel is closed are failed.
+	 */
+	private void readReplies() {
+		final Buffer header = new Buffer(9);
+		Buffer buffer = new Buffer(_buffer.buffer.length);
+		try {
+			while( true ) {
+				header.reset();
+				fill(header.buffer, 0, 9);
+				final int length = header.getInt() - 5;
+				final byte type = (byte) header.getByte();
+				final int id = header.getInt();
+				if( length < 0 || length > MAX_MSG_LENGTH ) {
+					throw new IOException("Received message is too long: " + length);
+				}
+				if( buffer.buffer.length < length ) {
+					buffer = new Buffer(length);
+				}
+				buffer.reset();
+				fill(buffer.buffer, 0, length);
+				buffer.skip(length);
+
+				PendingRequest request = _pending.remove(id);
+				if( request == null ) {
+					continue;	// Discard reply to unknown request
+				}
+				if( request.__sentTime != 0 ) {
+					_session.getMetrics().time(Metrics.Timer.SFTP_REQUEST,
+							ChannelSftp.REQUEST_NAMES[request.__type], System.nanoTime() - request.__sentTime);
+				}
+				try {
+					request.__handler.reply(type, buffer);
+				} catch(SftpException e) {
+					request.__handler.failed(e);
+				} catch(Exception e) {
+					request.__handler.failed(new SftpException(SSH_FX_FAILURE, "Failed to handle SFTP reply", e));
+				}
+			}
+		} catch(Exception e) {
+			_closed = new SftpException(SSH_FX_CONNECTION_LOST, "SFTP channel is closed", e);
+			JSch.getLogger().log(Level.DEBUG, "SFTP reader stopped: " + e);
+		}
+		for( Integer id : _pending.keySet() ) {
+			PendingRequest request = _pending.remove(id);
+			if( request != null ) {
+				request.__handler.failed(_closed);
+			}
+		}
+	}
+
+	/**
+	 * Fills the specified array from the channel's input stream.
+	 *
+	 * @param buf to fill
+	 * @param offset in array
+	 * @param length to fill
+	 * @throws IOException if the stream is closed
+	 */
+	private void fill(byte[] buf, int offset, int length) throws IOException {
+		for( int read; length > 0; offset += read, length -= read ) {
+			if( (read = _in.read(buf, offset, length)) <= 0 ) {
+				throw new IOException("SFTP InputStream is closed");
+			}
+		}
+	}
+
+	/**
+	 * Returns the remote path in bytes for the specified path, resolving
+	 * relative paths against the remote directory.
+	 *
+	 * @param path to convert
+	 * @return absolute path in bytes
+	 */
+	private byte[] path(String path) {
+		if( path == null || path.length() == 0 ) {
+			throw new IllegalArgumentException("Path cannot be null/empty");
+		} else if( path.charAt(0) != '/' ) {
+			path = _cwd + (_cwd.charAt(_cwd.length() - 1) == '/' ? path : '/' + path);
+		}
+		return Util.str2byte(path, _fileEncoding);
+	}
+
+	/**
+	 * Returns a future already failed with the specified failure.
+	 *
+	 * @param failure of operation
+	 * @return failed future
+	 */
+	private static <T> SftpFuture<T> failed(SftpException failure) {
+		SftpFuture<T> future = new SftpFuture<T>();
+		future.fail(failure);
+		return future;
+	}
+
+	/**
+	 * Starts writing a request to the packet by registering the handler for
+	 * the request and putting the header.  Must be called while holding the
+	 * write lock.
+	 *
+	 * @param type of request
+	 * @param length of request data following the request ID
+	 * @param handler for reply
+	 * @return request ID
+	 * @throws SftpException if the client is closed
+	 */
+	private int putHead(byte type, int length, ReplyHandler handler) throws SftpException {
+		if( _closed != null ) {
+			throw _closed;
+		}
+		final int id = _seq.getAndIncrement() | ID_RANGE;
+		_pending.put(id, new PendingRequest(handler, type, _session.getMetrics().isEnabled() ? System.nanoTime() : 0));
+		if( _closed != null && _pending.remove(id) != null ) {
+			throw _closed;	// Reader stopped before request was registered
+		}
+		// byte      SSH_MSG_CHANNEL_DATA
+		// uint32    recipient channel
+		// uint32    channel data length
+		// uint32    sftp data length
+		// byte      SFTP request code
+		// uint32    request ID
+		_packet.reset();
+		_buffer.putByte(SSH_MSG_CHANNEL_DATA);
+		_buffer.putInt(_channel.getRecipient());
+		_buffer.putInt(length + 9);
+		_buffer.putInt(length + 5);
+		_buffer.putByte(type);
+		_buffer.putInt(id);
+		return id;
+	}
+
+	/**
+	 * Writes the request in the packet to the channel.  If the request cannot
+	 * be written, the request's handler is failed.  Must be called while
+	 * holding the write lock.
+	 *
+	 * @param id of request
+	 * @param length of request data following the request ID
+	 */
+	private void writeRequest(int id, int length) {
+		try {
+			_session.write(_packet, _channel, length + 9);
+		} catch(Exception e) {
+			PendingRequest request = _pending.remove(id);
+			if( request != null ) {
+				request.__handler.failed(new SftpException(SSH_FX_FAILURE, "Failed to send SFTP request", e));
+			}
+		}
+	}
+
+	/**
+	 * Sends a request containing a single path.
+	 *
+	 * @param type of request
+	 * @param handler for reply
+	 * @param path of request
+	 */
+	private void sendPath(byte type, ReplyHandler handler, String path) {
+		final byte[] bpath;
+		try {
+			bpath = path(path);
+		} catch(IllegalArgumentException e) {
+			handler.failed(new SftpException(SSH_FX_FAILURE, e.getMessage()));
+			return;
+		}
+		sendHandle(type, handler, bpath);
+	}
+
+	/**
+	 * Sends a request containing a single string (path or handle).
+	 *
+	 * @param type of request
+	 * @param handler for reply
+	 * @param value string of request
+	 */
+	private void sendHandle(byte type, ReplyHandler handler, byte[] value) {
+		_writeLock.lock();
+		try {
+			int id = putHead(type, 4 + value.length, handler);
+			_buffer.putString(value);
+			writeRequest(id, 4 + value.length);
+		} catch(SftpException e) {
+			handler.failed(e);
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a request containing two paths.
+	 *
+	 * @param type of request
+	 * @param handler for reply
+	 * @param path1 first path
+	 * @param path2 second path
+	 */
+	private void sendPaths(byte type, ReplyHandler handler, byte[] path1, byte[] path2) {
+		_writeLock.lock();
+		try {
+			int id = putHead(type, 8 + path1.length + path2.length, handler);
+			_buffer.putString(path1);
+			_buffer.putString(path2);
+			writeRequest(id, 8 + path1.length + path2.length);
+		} catch(SftpException e) {
+			handler.failed(e);
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a request containing a path and attributes.
+	 *
+	 * @param type of request
+	 * @param handler for reply
+	 * @param path of request
+	 * @param attrs of request (null for no attributes)
+	 */
+	private void sendPathAttrs(byte type, ReplyHandler handler, String path, SftpATTRS attrs) {
+		final byte[] bpath;
+		try {
+			bpath = path(path);
+		} catch(IllegalArgumentException e) {
+			handler.failed(new SftpException(SSH_FX_FAILURE, e.getMessage()));
+			return;
+		}
+		final int length = 4 + bpath.length + (attrs != null ? attrs.length() : 4);
+		_writeLock.lock();
+		try {
+			int id = putHead(type, length, handler);
+			_buffer.putString(bpath);
+			if( attrs != null ) {
+				attrs.dump(_buffer);
+			} else {
+				_buffer.putInt(0);	// No attribute flags
+			}
+			writeRequest(id, length);
+		} catch(SftpException e) {
+			handler.failed(e);
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a request to open a file.
+	 *
+	 * @param handler for reply
+	 * @param path of file
+	 * @param pflags open flags
+	 */
+	private void sendOpen(ReplyHandler handler, byte[] path, int pflags) {
+		_writeLock.lock();
+		try {
+			int id = putHead(SSH_FXP_OPEN, 12 + path.length, handler);
+			_buffer.putString(path);
+			_buffer.putInt(pflags);
+			_buffer.putInt(0);	// No attribute flags
+			writeRequest(id, 12 + path.length);
+		} catch(SftpException e) {
+			handler.failed(e);
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a request to read from an open file.
+	 *
+	 * @param handler for reply
+	 * @param handle of open file
+	 * @param offset in file
+	 * @param length to read
+	 */
+	private void sendRead(ReplyHandler handler, byte[] handle, long offset, int length) {
+		_writeLock.lock();
+		try {
+			int id = putHead(SSH_FXP_READ, 16 + handle.length, handler);
+			_buffer.putString(handle);
+			_buffer.putLong(offset);
+			_buffer.putInt(length);
+			writeRequest(id, 16 + handle.length);
+		} catch(SftpException e) {
+			handler.failed(e);
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a request to write to an open file.
+	 *
+	 * @param handler for reply
+	 * @param handle of open file
+	 * @param offset in file
+	 * @param data to write
+	 * @param length of data
+	 */
+	private void sendWrite(ReplyHandler handler, byte[] handle, long offset, byte[] data, int length) {
+		_writeLock.lock();
+		try {
+			int id = putHead(SSH_FXP_WRITE, 16 + handle.length + length, handler);
+			_buffer.putString(handle);
+			_buffer.putLong(offset);
+			_buffer.putString(data, 0, length);
+			writeRequest(id, 16 + handle.length + length);
+		} catch(SftpException e) {
+			handler.failed(e);
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the exception for the error status in the reply.
+	 *
+	 * @param buffer containing status reply message
+	 * @param status code
+	 * @return exception for status
+	 */
+	private SftpException statusError(Buffer buffer, int status) {
+		if( _serverVersion >= 3 && buffer.getLength() >= 4 ) {
+			return new SftpException(status, "SFTP status error: " + Util.byte2str(buffer.getString(), "UTF-8"));
+		}
+		return new SftpException(status, "SFTP status error: unknown");
+	}
+
+	/**
+	 * Handler for the reply to a request.  Handlers are called by the reader
+	 * thread.
+	 */
+	private interface ReplyHandler {
+
+		/**
+		 * Handles the reply to the request.
+		 *
+		 * @param type of reply
+		 * @param buffer containing reply data after the request ID (only
+		 *			valid until the method returns)
+		 * @throws Exception if the reply is an error or invalid
+		 */
+		void reply(byte type, Buffer buffer) throws Exception;
+
+		/**
+		 * Handles the failure of the request.
+		 *
+		 * @param failure of request
+		 */
+		void failed(SftpException failure);
+
+	}
+
+	/**
+	 * Request waiting for a reply from the server.
+	 */
+	private static final class PendingRequest {
+		/** Handler for reply. */
+		final ReplyHandler __handler;
+		/** Type of request. */
+		final byte __type;
+		/** Time in nanoseconds request was sent (0 if not timed). */
+		final long __sentTime;
+
+		PendingRequest(ReplyHandler handler, byte type, long sentTime) {
+			__handler = handler;
+			__type = type;
+			__sentTime = sentTime;
+		}
+	}
+
+	/**
+	 * Handler which completes a future with the result of a single reply of
+	 * the expected type, or fails the future if the server returns an error
+	 * status.
+	 *
+	 * @param <T> type of result
+	 */
+	private abstract class FutureReply<T> implements ReplyHandler {
+		/** Future for result. */
+		final SftpFuture<T> __future = new SftpFuture<T>();
+		/** Expected reply type. */
+		final byte __expected;
+
+		FutureReply(byte expected) {
+			__expected = expected;
+		}
+
+		@Override
+		public void reply(byte type, Buffer buffer) throws Exception {
+			if( type == SSH_FXP_STATUS ) {
+				int status = buffer.getInt();
+				if( __expected != SSH_FXP_STATUS || status != SSH_FX_OK ) {
+					throw statusError(buffer, status);
+				}
+			} else if( type != __expected ) {
+				throw new SftpException(SSH_FX_FAILURE, "Invalid FXP response: " + type);
+			}
+			__future.complete(result(buffer));
+		}
+
+		/**
+		 * Returns the result from the reply.
+		 *
+		 * @param buffer containing reply data
+		 * @return result
+		 * @throws Exception if reply is invalid
+		 */
+		abstract T result(Buffer buffer) throws Exception;
+
+		@Override
+		public void failed(SftpException failure) {
+			__future.fail(failure);
+		}
+	}
+
+	/** Handler for requests replying with an OK status. */
+	private final class StatusReply extends FutureReply<Void> {
+		StatusReply() { super(SSH_FXP_STATUS); }
+		@Override Void result(Buffer buffer) { return null; }
+	}
+
+	/** Handler for requests replying with file attributes. */
+	private final class AttrsReply extends FutureReply<SftpATTRS> {
+		AttrsReply() { super(SSH_FXP_ATTRS); }
+		@Override SftpATTRS result(Buffer buffer) { return SftpATTRS.getATTR(buffer); }
+	}
+
+	/** Handler for requests replying with a handle. */
+	private final class HandleReply extends FutureReply<byte[]> {
+		HandleReply() { super(SSH_FXP_HANDLE); }
+		@Override byte[] result(Buffer buffer) { return buffer.getString(); }
+	}
+
+	/** Handler for requests replying with a single name. */
+	private final class NameReply extends FutureReply<String> {
+		NameReply() { super(SSH_FXP_NAME); }
+		@Override String result(Buffer buffer) throws SftpException {
+			if( buffer.getInt() < 1 ) {
+				throw new SftpException(SSH_FX_FAILURE, "Invalid FXP name response: no names");
+			}
+			return Util.byte2str(buffer.getString(), _fileEncoding);
+		}
+	}
+
+	/**
+	 * Handler for directory read requests which adds the names to the list of
+	 * entries.  The result is true if entries were read or false if the end
+	 * of the directory was reached.
+	 */
+	private final class ReadDirReply extends FutureReply<Boolean> {
+		/** Entries read from directory. */
+		final List<LsEntry> __entries;
+
+		ReadDirReply(List<LsEntry> entries) {
+			super(SSH_FXP_NAME);
+			__entries = entries;
+		}
+
+		@Override
+		public void reply(byte type, Buffer buffer) throws Exception {
+			if( type == SSH_FXP_STATUS && buffer.getInt() == SSH_FX_EOF ) {
+				__future.complete(Boolean.FALSE);
+				return;
+			}
+			buffer.rewind();
+			super.reply(type, buffer);
+		}
+
+		@Override
+		Boolean result(Buffer buffer) {
+			for( int count = buffer.getInt(); count > 0; count-- ) {
+				String filename = Util.byte2str(buffer.getString(), _fileEncoding);
+				byte[] longname = _serverVersion <= 3 ? buffer.getString() : null;
+				SftpATTRS attrs = SftpATTRS.getATTR(buffer);
+				__entries.add(_channel.new LsEntry(filename, longname, attrs));
+			}
+			return Boolean.TRUE;
+		}
+	}
+
+	/**
+	 * Pipelined download of an open file, run on its own thread so a slow
+	 * output stream does not hold up the replies to other requests.  Read
+	 * requests are kept outstanding for the next chunks of the file and the
+	 * data is written to the output stream in file order.  The reader thread
+	 * only copies the data of each reply while holding the lock of the
+	 * download.
+	 */
+	private final class Download implements Runnable {
+		/** Handle of open file. */
+		final byte[] __handle;
+		/** Stream to write file data to. */
+		final OutputStream __out;
+		/** Future for number of bytes downloaded. */
+		final SftpFuture<Long> __result;
+		/** Length of data requested by each read request. */
+		final int __requestLength;
+		/** Outstanding reads in file order (guarded by download). */
+		final LinkedList<Read> __reads = new LinkedList<Read>();
+		/** Number of bytes written to output stream. */
+		long __written = 0;
+		/** True if the end of file was reached (guarded by download). */
+		boolean __eof = false;
+		/** Failure of a read request (guarded by download). */
+		SftpException __failure;
+
+		Download(byte[] handle, OutputStream out, SftpFuture<Long> result) {
+			__handle = handle;
+			__out = out;
+			__result = result;
+			__requestLength = _serverVersion == 0 ? 1024 : _buffer.buffer.length - 13;
+		}
+
+		/** Starts the thread running the download. */
+		void start() {
+			_session.newThread(this, "SFTP download " + _session.getHost()).start();
+		}
+
+		@Override
+		public void run() {
+			long nextOffset = 0;
+			try {
+				while( true ) {
+					while( !isEof() && outstanding() < _bulkRequests ) {
+						send(new Read(nextOffset, __requestLength), false);
+						nextOffset += __requestLength;
+					}
+					Read read = awaitHead();
+					if( read.__eof ) {
+						break;
+					}
+					__out.write(read.__data, 0, read.__received);
+					__written += read.__received;
+					if( read.__received < read.__length ) {
+						// Short read, request the rest of the chunk before later chunks
+						send(new Read(read.__offset + read.__received, read.__length - read.__received), true);
+					}
+				}
+			} catch(SftpException e) {
+				fail(e);
+				return;
+			} catch(Exception e) {
+				fail(new SftpException(SSH_FX_FAILURE, "Failed to write download data", e));
+				return;
+			}
+			close(__handle).addListener(new SftpFuture.Listener<Void>() {
+				@Override public void completed(SftpFuture<Void> future) {
+					__result.complete(__written);
+				}
+			});
+		}
+
+		synchronized boolean isEof() {
+			return __eof;
+		}
+
+		synchronized int outstanding() {
+			return __reads.size();
+		}
+
+		/**
+		 * Sends the read request, adding it to the outstanding reads.
+		 *
+		 * @param read request to send
+		 * @param first true to add read before the other outstanding reads
+		 */
+		void send(Read read, boolean first) {
+			synchronized( this ) {
+				if( first ) {
+					__reads.addFirst(read);
+				} else {
+					__reads.addLast(read);
+				}
+			}
+			sendRead(read, __handle, read.__offset, read.__length);
+		}
+
+		/**
+		 * Waits for the reply to the read at the head of the file order and
+		 * removes it from the outstanding reads.
+		 *
+		 * @return read at head of file order
+		 * @throws SftpException if any read request failed
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		synchronized Read awaitHead() throws SftpException, InterruptedException {
+			while( __failure == null && !__reads.getFirst().__replied ) {
+				wait();
+			}
+			if( __failure != null ) {
+				throw __failure;
+			}
+			return __reads.removeFirst();
+		}
+
+		/** Fails the download and closes the file. */
+		void fail(SftpException failure) {
+			close(__handle);
+			__result.fail(failure);
+		}
+
+		/** Read request for a chunk of the file. */
+		final class Read implements ReplyHandler {
+			/** Offset of chunk in file. */
+			final long __offset;
+			/** Length of chunk requested. */
+			final int __length;
+			/** Copy of data received. */
+			byte[] __data;
+			/** Length of data received. */
+			int __received;
+			/** True once the reply has been received. */
+			boolean __replied;
+			/** True if reply was end of file. */
+			boolean __eof;
+
+			Read(long offset, int length) {
+				__offset = offset;
+				__length = length;
+			}
+
+			@Override
+			public void reply(byte type, Buffer buffer) throws Exception {
+				byte[] data = null;
+				if( type == SSH_FXP_STATUS ) {
+					int status = buffer.getInt();
+					if( status != SSH_FX_EOF ) {
+						throw statusError(buffer, status);
+					}
+				} else if( type == SSH_FXP_DATA ) {
+					int length = buffer.getInt();
+					if( length < 0 || length > __length || length > buffer.getLength() ) {
+						throw new SftpException(SSH_FX_FAILURE, "Invalid FXP data length: " + length);
+					}
+					data = new byte[length];
+					buffer.getBytes(data, 0, length);
+				} else {
+					throw new SftpException(SSH_FX_FAILURE, "Invalid FXP response: " + type);
+				}
+				synchronized( Download.this ) {
+					if( data != null ) {
+						__data = data;
+						__received = data.length;
+					} else {
+						__eof = true;
+						Download.this.__eof = true;
+					}
+					__replied = true;
+					Download.this.notifyAll();
+				}
+			}
+
+			@Override
+			public void failed(SftpException failure) {
+				synchronized( Download.this ) {
+					if( __failure == null ) {
+						__failure = failure;
+					}
+					Download.this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pipelined upload to an open file, run on its own thread so a slow input
+	 * stream does not hold up the replies to other requests.  Write requests
+	 * are kept outstanding for the next chunks read from the input stream
+	 * until the end of the stream is reached and all writes are acknowledged.
+	 * The reader thread only counts the acknowledged writes while holding the
+	 * lock of the upload.
+	 */
+	private final class Upload implements ReplyHandler, Runnable {
+		/** Handle of open file. */
+		final byte[] __handle;
+		/** Stream to read file data from. */
+		final InputStream __in;
+		/** Future for number of bytes uploaded. */
+		final SftpFuture<Long> __result;
+		/** Offset in file of the next chunk. */
+		long __offset = 0;
+		/** Number of write requests waiting for a reply (guarded by upload). */
+		int __outstanding = 0;
+		/** Failure of a write request (guarded by upload). */
+		SftpException __failure;
+
+		Upload(byte[] handle, InputStream in, SftpFuture<Long> result) {
+			__handle = handle;
+			__in = in;
+			__result = result;
+		}
+
+		/** Starts the thread running the upload. */
+		void start() {
+			_session.newThread(this, "SFTP upload " + _session.getHost()).start();
+		}
+
+		@Override
+		public void run() {
+			byte[] chunk = new byte[Math.max(1024, _buffer.buffer.length - WRITE_OVERHEAD - __handle.length)];
+			try {
+				boolean eof = false;
+				while( !eof ) {
+					int length = 0;
+					for( int read; length < chunk.length; length += read ) {
+						if( (read = __in.read(chunk, length, chunk.length - length)) < 0 ) {
+							eof = true;
+							break;
+						}
+					}
+					if( length > 0 ) {
+						await(_bulkRequests - 1);
+						synchronized( this ) {
+							__outstanding++;
+						}
+						sendWrite(this, __handle, __offset, chunk, length);
+						__offset += length;
+					}
+				}
+				await(0);
+			} catch(SftpException e) {
+				fail(e);
+				return;
+			} catch(Exception e) {
+				fail(new SftpException(SSH_FX_FAILURE, "Failed to read upload data", e));
+				return;
+			}
+			close(__handle).addListener(new SftpFuture.Listener<Void>() {
+				@Override public void completed(SftpFuture<Void> future) {
+					if( future.isSuccess() ) {
+						__result.complete(__offset);
+					} else {
+						__result.fail(future.getFailure());
+					}
+				}
+			});
+		}
+
+		/**
+		 * Waits until no more than the specified number of write requests are
+		 * outstanding.
+		 *
+		 * @param max outstanding write requests
+		 * @throws SftpException if any write request failed
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		synchronized void await(int max) throws SftpException, InterruptedException {
+			while( __failure == null && __outstanding > max ) {
+				wait();
+			}
+			if( __failure != null ) {
+				throw __failure;
+			}
+		}
+
+		@Override
+		public void reply(byte type, Buffer buffer) throws Exception {
+			synchronized( this ) {
+				__outstanding--;
+				notifyAll();
+			}
+			if( type != SSH_FXP_STATUS ) {
+				throw new SftpException(SSH_FX_FAILURE, "Invalid FXP response: " + type);
+			}
+			int status = buffer.getInt();
+			if( status != SSH_FX_OK ) {
+				throw statusError(buffer, status);
+			}
+		}
+
+		@Override
+		public synchronized void failed(SftpException failure) {
+			if( __failure == null ) {
+				__failure = failure;
+			}
+			notifyAll();
+		}
+
+		/** Fails the upload and closes the file. */
+		void fail(SftpException failure) {
+			close(__handle);
+			__result.fail(failure);
+		}
+	}
+
+}
@@ -515,10 +515,50 @@ public final class Buffer {
 	 */
 	void getString(int[] offset, int[] length) {
 		length[0] = getInt();	// Read length of String
+		if( length[0] < 0 || length[0] > buffer.length - _offset ) {
+			throw new IllegalStateException("String length exceeds buffer: "+length[0]);
+		}
 		offset[0] = _offset;	// Set offset of String as current offset
 		_offset += length[0];	// Advance offset by length of String
 	}
 
+	/**
+	 * Skips over the string at the current offset without copying its value.
+	 *
+	 * @return this instance
+	 */
+	public Buffer skipString() {
+		int strlen = getInt();
+		if( strlen < 0 || strlen > buffer.length - _offset ) {
+			throw new IllegalStateException("String length exceeds buffer: "+strlen);
+		}
+		_offset += strlen;
+		return this;
+	}
+
+	/**
+	 * Returns {@code true} if the region of the internal buffer starting at
+	 * the specified {@code offset} through {@code length} (as returned by
+	 * {@link #getString(int[], int[])}) equals the specified {@code value}.
+	 * Allows comparing string values without copying them from the buffer.
+	 *
+	 * @param offset position in internal buffer
+	 * @param length of region in internal buffer
+	 * @param value to compare
+	 * @return true if region equals value
+	 */
+	boolean regionEquals(int offset, int length, byte[] value) {
+		if( length != value.length ) {
+			return false;
+		}
+		for( int i = 0; i < length; i++ ) {
+			if( buffer[offset + i] != value[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Resets the buffer to set the current index and offset positions to 0.
 	 *
@@ -39,9 +39,11 @@ import static org.vngx.jsch.constants.ConnectionProtocol.SSH_MSG_CHANNEL_OPEN_FA
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.vngx.jsch.exception.JSchException;
 import org.vngx.jsch.util.Logger.Level;
@@ -89,17 +91,21 @@ import org.vngx.jsch.util.Logger.Level;
  */
 public abstract class Channel implements Runnable {
 
-	/** Generator used to create unique IDs for each channel. */
-	private final static AtomicInteger ID_GENERATOR = new AtomicInteger();
+	/** Maximum time in milliseconds to wait for open response if no connect timeout is set. */
+	final static int DEFAULT_OPEN_TIMEOUT = 50000;
+	/** Interval in milliseconds at which waiting threads re-check the session state. */
+	final static int WAIT_INTERVAL = 1000;
 
 	/** Session instance channel belongs to. */
 	final Session _session;
-	/** Unique ID for this channel instance. */
+	/** ID of this channel instance unique within the session. */
 	final int _id;
 	/** Type of channel instance. */
 	final ChannelType _channelType;
 	/** Channel type name in bytes to send to server when opening channel. */
 	final byte[] _type;
+	/** Tag identifying the channel when reporting metrics (created when first used). */
+	private String _metricsTag;
 
 	/** True if the channel is connected. */
 	boolean _connected = false;
@@ -110,14 +116,20 @@ public abstract class Channel implements Runnable {
 	/** Channel ID assigned by SSH server to delegate packets. */
 	int _recipient = -1;
 
-	/** Local maximum window size. */
-	int _localWindowMaxSize = 0x100000;
-	/** Local initial window size. */
-	int _localWindowSize = _localWindowMaxSize;
+	/** Local maximum window size (grows when auto-tuned). */
+	volatile int _localWindowMaxSize = 0x100000;
+	/** Local window size remaining (amount of data the server may still send). */
+	final AtomicInteger _localWindowSize = new AtomicInteger(_localWindowMaxSize);
+	/** Amount of received data consumed since the last window adjust. */
+	final AtomicInteger _localWindowConsumed = new AtomicInteger();
+	/** Lock guarding auto-tuning of the local window when claiming consumed data. */
+	private final ReentrantLock _localWindowLock = new ReentrantLock();
+	/** Time in nanoseconds the last window adjust was sent (0 if none sent). */
+	private long _lastWindowAdjust = 0;
 	/** Local maximum packet size. */
 	int _localMaxPacketSize = 0x4000;
-	/** Remote initial window size; */
-	long _remoteWindowSize = 0;
+	/** Remote window size remaining. */
+	final AtomicLong _remoteWindowSize = new AtomicLong();
 	/** Remote maximum packet size. */
 	int _remoteMaxPacketSize = 0;
 
@@ -129,13 +141,32 @@ public abstract class Channel implements Runnable {
 	boolean _eofRemote = false;
 	/** True if the channel is closed. */
 	boolean _closed = false;
+	/** True if the server has closed the channel or refused to open it. */
+	volatile boolean _closeReceived = false;
+	/** True if a request to open the channel has been sent to the server. */
+	volatile boolean _openSent = false;
+	/** True if a close message for the channel has been sent to the server. */
+	volatile boolean _closeSent = false;
+	/** True if the channel holds one of the session's open channel permits. */
+	volatile boolean _channelPermit = false;
 
 	/** Exit status of channel (determined by remote host). */
 	int _exitstatus = -1;
 	/** Reply status from a channel request (-1 waiting, 0 failure, 1 success). */
 	int _reply = 0;
-	/** The number of outstanding global requests waiting to be notified for this channel. */
-	int _notifyMe = 0;
+	/** The number of threads waiting for the remote window to be adjusted. */
+	volatile int _notifyMe = 0;
+	/**
+	 * Lock guarding the channel state shared with the session (recipient,
+	 * request reply) and used by writers to wait for the remote window.  An
+	 * explicit lock is used rather than the channel's monitor so threads
+	 * blocking on the channel do not pin the carrier when running as virtual
+	 * threads.  Window sizes are atomic so the session's dispatcher only
+	 * takes the lock to wake up waiting writers.
+	 */
+	final ReentrantLock _lock = new ReentrantLock();
+	/** Condition signaled when the channel state guarded by the lock changes. */
+	final Condition _stateChanged = _lock.newCondition();
 
 
 	/**
@@ -163,10 +194,10 @@ public abstract class Channel implements Runnable {
 	 * @param type of channel to send when connecting channel
 	 */
 	Channel(Session session, ChannelType channelType, String type) {
-		_id = ID_GENERATOR.getAndIncrement();	// Generate globally unique ID for channel
-
-		// Set the session of channel and add to session's channel pool
+		// Set the session of channel, allocate the channel's ID within the
+		// session and add to session's channel pool
 		_session = session;
+		_id = _session.allocateChannelId();
 		_session.addChannel(this);
 
 		// Set channel type and type name sent to SSH server in connect request
@@ -208,36 +239,28 @@ public abstract class Channel implements Runnable {
 		}
 		_connectTimeout = connectTimeout;	// Set connection timeout
 		try {
-			Buffer buffer = new Buffer(100);
-			Packet packet = new Packet(buffer);
 			// send
 			// byte   SSH_MSG_CHANNEL_OPEN(90)
 			// string channel type         //
 			// uint32 sender channel       // 0
 			// uint32 initial window size  // 0x100000(65536)
 			// uint32 maxmum packet size   // 0x4000(16384)
-			packet.reset();
-			buffer.putByte(SSH_MSG_CHANNEL_OPEN);
-			buffer.putString(_type);
-			buffer.putInt(_id);
-			buffer.putInt(_localWindowSize);
-			buffer.putInt(_localMaxPacketSize);
-			_session.write(packet);
-
-			int retry = 1000;	// Note: Max timeout is 50 seconds (1000 retries * 50ms sleep)
-			long start = System.currentTimeMillis();
-			while( _recipient == -1 && _session.isConnected() && retry-- > 0 ) {
-				if( _connectTimeout > 0L && (System.currentTimeMillis() - start) > _connectTimeout ) {
-					throw new JSchException("Failed to open channel: connection timeout after " + _connectTimeout + " ms");
-				}
-				try { Thread.sleep(50); } catch(Exception ee) { /* Ignore error. */ }
-			}
-			if( !_session.isConnected() ) {
-				throw new JSchException("Failed to open channel: session is not connected");
-			} else if( retry == 0 ) {
-				throw new JSchException("Failed to open channel: no response");
+			Packet packet = _session._packetPool.acquire(100);
+			try {
+				Buffer buffer = packet.buffer;
+				buffer.putByte(SSH_MSG_CHANNEL_OPEN);
+				buffer.putString(_type);
+				buffer.putInt(_id);
+				buffer.putInt(_localWindowSize.get());
+				buffer.putInt(_localMaxPacketSize);
+				_openSent = true;
+				_session.write(packet);
+			} finally {
+				_session._packetPool.release(packet);
 			}
 
+			waitForOpenConfirmation();
+
 			/*
 			 * At the failure in opening the channel on the sshd,
 			 * 'SSH_MSG_CHANNEL_OPEN_FAILURE' will be sent from sshd and it will
@@ -333,15 +356,17 @@ public abstract class Channel implements Runnable {
 
 	/**
 	 * Returns a new instance of <code>InputStream</code> for reading channel
-	 * output.
+	 * output.  The stream is backed by a ring buffer sized from the channel's
+	 * local window and also implements {@code ReadableByteChannel} for reading
+	 * directly into a {@code ByteBuffer}.
 	 *
 	 * @return new instance of InputStream for reading channel output
 	 * @throws IOException if any errors occur
 	 */
 	public InputStream getInputStream() throws IOException {
-		PipedInputStream in = new PipedInputStream(); // TODO this value should be customizable
-		_io.setOutputStream(new PipedOutputStream(in), false);
-		return in;
+		ChannelPipe pipe = new ChannelPipe(_localWindowMaxSize, this);
+		_io.setOutputStream(pipe.getOutputStream(), false);
+		return pipe.getInputStream();
 	}
 
 	/**
@@ -352,9 +377,9 @@ public abstract class Channel implements Runnable {
 	 * @throws IOException if any errors occur
 	 */
 	public InputStream getExtInputStream() throws IOException {
-		PipedInputStream in = new PipedInputStream(); // TODO this value should be customizable
-		_io.setExtOutputStream(new PipedOutputStream(in), false);
-		return in;
+		ChannelPipe pipe = new ChannelPipe(_localWindowMaxSize, this);
+		_io.setExtOutputStream(pipe.getOutputStream(), false);
+		return pipe.getInputStream();
 	}
 
 	/**
@@ -386,7 +411,70 @@ public abstract class Channel implements Runnable {
 	 * @param recipient id
 	 */
 	final void setRecipient(int recipient) {
-		_recipient = recipient;
+		_lock.lock();
+		try {
+			_recipient = recipient;
+			_stateChanged.signalAll();	// Wake thread waiting in connect() for open response
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the server to respond to the channel open request.  The
+	 * waiting thread is signaled by the session when it receives either the
+	 * SSH_MSG_CHANNEL_OPEN_CONFIRMATION or SSH_MSG_CHANNEL_OPEN_FAILURE message
+	 * and sets the recipient ID.  If no connect timeout has been set, the wait
+	 * is limited to {@link #DEFAULT_OPEN_TIMEOUT} milliseconds.  The session
+	 * state is re-checked at least every {@link #WAIT_INTERVAL} milliseconds in
+	 * case the session is dropped without signaling the channel.
+	 *
+	 * @throws JSchException if the session is down or no response was received
+	 */
+	final void waitForOpenConfirmation() throws JSchException {
+		final long timeout = _connectTimeout > 0 ? _connectTimeout : DEFAULT_OPEN_TIMEOUT;
+		final long start = System.currentTimeMillis();
+		final long startNanos = System.nanoTime();
+		_lock.lock();
+		try {
+			long remaining = timeout;
+			while( _recipient == -1 && _session.isConnected() && !_eofRemote ) {
+				if( remaining <= 0L ) {
+					if( _connectTimeout > 0 ) {
+						throw new JSchException("Failed to open channel: connection timeout after " + _connectTimeout + " ms");
+					}
+					throw new JSchException("Failed to open channel: no response");
+				}
+				try {
+					_stateChanged.await(Math.min(remaining, WAIT_INTERVAL), TimeUnit.MILLISECONDS);
+				} catch(InterruptedException e) { /* Ignore error. */ }
+				remaining = timeout - (System.currentTimeMillis() - start);
+			}
+		} finally {
+			_lock.unlock();
+		}
+		if( !_session.isConnected() ) {
+			throw new JSchException("Failed to open channel: session is not connected");
+		} else if( _recipient == -1 ) {
+			throw new JSchException("Failed to open channel: no response");
+		}
+		_session.addRoundTripSample(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Sets the reply status for the last channel request and wakes up any
+	 * thread waiting for the reply.
+	 *
+	 * @param reply status (1 for success, 0 for failure)
+	 */
+	final void setReply(int reply) {
+		_lock.lock();
+		try {
+			_reply = reply;
+			_stateChanged.signalAll();
+		} finally {
+			_lock.unlock();
+		}
 	}
 
 	/**
@@ -413,7 +501,76 @@ public abstract class Channel implements Runnable {
 	 * @param localWindowSize in bytes
 	 */
 	final void setLocalWindowSize(int localWindowSize) {
-		_localWindowSize = localWindowSize;
+		_localWindowSize.set(localWindowSize);
+	}
+
+	/**
+	 * Claims the data consumed since the last window adjust to return it to
+	 * the local window, auto-tuning the local maximum window size first.  If
+	 * half of the window was consumed within two round trips of the previous
+	 * window adjust, the server is being held back by the window rather than
+	 * by bandwidth, so the window is doubled up to the specified maximum size
+	 * and the growth is included in the returned adjustment.
+	 *
+	 * @param roundTripTime to server in nanoseconds (0 if not known)
+	 * @param maxSize local window may grow to in bytes
+	 * @return amount in bytes to send in window adjust (0 if none)
+	 */
+	final int claimLocalWindow(long roundTripTime, int maxSize) {
+		_localWindowLock.lock();
+		try {
+			int adjust = _localWindowConsumed.getAndSet(0);
+			if( adjust <= 0 ) {
+				return 0;
+			}
+			final long now = System.nanoTime();
+			if( _lastWindowAdjust != 0 && roundTripTime > 0 && _localWindowMaxSize < maxSize
+					&& now - _lastWindowAdjust < 2 * roundTripTime ) {
+				int windowMaxSize = (int) Math.min(maxSize, 2L * _localWindowMaxSize);
+				adjust += windowMaxSize - _localWindowMaxSize;
+				_localWindowMaxSize = windowMaxSize;
+			}
+			_lastWindowAdjust = now;
+			_localWindowSize.addAndGet(adjust);
+			return adjust;
+		} finally {
+			_localWindowLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns true if data written to the channel's output stream (or extended
+	 * output stream) is read through a pipe which returns it to the local
+	 * window as it's consumed, rather than as soon as it has been written.
+	 *
+	 * @param extended true to check the extended output stream
+	 * @return true if the reader of the stream returns data to the window
+	 */
+	final boolean isWindowedByReader(boolean extended) {
+		final IO io = _io;
+		return io != null && ChannelPipe.isWindowed(extended ? io._extOut : io._out);
+	}
+
+	/**
+	 * Returns the current maximum size in bytes of the channel's local window,
+	 * which is the amount of data the server may send before waiting for a
+	 * window adjust.  The size grows from the channel's initial window size
+	 * when window auto-tuning is enabled.
+	 *
+	 * @return local maximum window size in bytes
+	 * @see org.vngx.jsch.config.SessionConfig#CHANNEL_WINDOW_MAX
+	 */
+	public final int getLocalWindowMaxSize() {
+		return _localWindowMaxSize;
+	}
+
+	/**
+	 * Returns the remaining size in bytes of the channel's local window.
+	 *
+	 * @return local window size in bytes
+	 */
+	public final int getLocalWindowSize() {
+		return _localWindowSize.get();
 	}
 
 	/**
@@ -430,22 +587,65 @@ public abstract class Channel implements Runnable {
 	 *
 	 * @param remoteWindowSize in bytes
 	 */
-	synchronized final void setRemoteWindowSize(long remoteWindowSize) {
-		_remoteWindowSize = remoteWindowSize;
+	final void setRemoteWindowSize(long remoteWindowSize) {
+		_remoteWindowSize.set(remoteWindowSize);
 	}
 
 	/**
-	 * Adds the specified amount in bytes to the remote window size.
+	 * Adds the specified amount in bytes to the remote window size and wakes
+	 * up any threads waiting for the remote window.  The lock is only taken
+	 * if a thread is waiting, so the session's dispatcher does not contend
+	 * with threads writing to the channel.
 	 *
 	 * @param addRemoteWindowSize in bytes
 	 */
-	synchronized final void addRemoteWindowSize(int addRemoteWindowSize) {
-		_remoteWindowSize += addRemoteWindowSize;
+	final void addRemoteWindowSize(int addRemoteWindowSize) {
+		_remoteWindowSize.addAndGet(addRemoteWindowSize);
 		if( _notifyMe > 0 ) {
-			notifyAll();
+			_lock.lock();
+			try {
+				_stateChanged.signalAll();
+			} finally {
+				_lock.unlock();
+			}
 		}
 	}
 
+	/**
+	 * Consumes the specified length from the remote window if the entire
+	 * length is available.
+	 *
+	 * @param length in bytes to consume
+	 * @return true if the length was consumed
+	 */
+	final boolean consumeRemoteWindow(long length) {
+		long window;
+		do {
+			if( (window = _remoteWindowSize.get()) < length ) {
+				return false;
+			}
+		} while( !_remoteWindowSize.compareAndSet(window, window - length) );
+		return true;
+	}
+
+	/**
+	 * Consumes up to the specified length from the remote window, returning
+	 * the length consumed.
+	 *
+	 * @param length in bytes to consume
+	 * @return length consumed in bytes (0 if remote window is empty)
+	 */
+	final long consumePartialRemoteWindow(long length) {
+		long window, consumed;
+		do {
+			if( (window = _remoteWindowSize.get()) <= 0 ) {
+				return 0;
+			}
+			consumed = Math.min(window, length);
+		} while( !_remoteWindowSize.compareAndSet(window, window - consumed) );
+		return consumed;
+	}
+
 	/**
 	 * Sets the remote maximum packet size in bytes.
 	 *
@@ -515,20 +715,23 @@ public abstract class Channel implements Runnable {
 			return;
 		}
 		_eofLocal = true;
+		_lock.lock();
 		try {
-			synchronized( this ) {
-				if( !_closed ) {
-					Buffer buffer = new Buffer(100);
-					Packet packet = new Packet(buffer);
-					packet.reset();
-					buffer.putByte(SSH_MSG_CHANNEL_EOF);
-					buffer.putInt(_recipient);
+			if( !_closed ) {
+				Packet packet = _session._packetPool.acquire(100);
+				try {
+					packet.buffer.putByte(SSH_MSG_CHANNEL_EOF);
+					packet.buffer.putInt(_recipient);
 					_session.write(packet);
+				} finally {
+					_session._packetPool.release(packet);
 				}
 			}
 		} catch(Exception e) {
 			/* Ignore error, don't bubble exception. */
 			JSch.getLogger().log(Level.DEBUG, "Failed to send channel EOF local", e);
+		} finally {
+			_lock.unlock();
 		}
 	}
 
@@ -566,18 +769,22 @@ public abstract class Channel implements Runnable {
 		}
 		_closed = _eofLocal = _eofRemote = true;
 
+		Packet packet = _session._packetPool.acquire(100);
+		_lock.lock();
 		try {	// Notify SSH server channel is being closed!
-			synchronized( this ) {
-				Buffer buffer = new Buffer(100);
-				Packet packet = new Packet(buffer);
-				packet.reset();
-				buffer.putByte(SSH_MSG_CHANNEL_CLOSE);
-				buffer.putInt(_recipient);
-				_session.write(packet);
+			if( _recipient == -1 ) {
+				return;	// Not opened yet, session closes it if open is confirmed
 			}
+			packet.buffer.putByte(SSH_MSG_CHANNEL_CLOSE);
+			packet.buffer.putInt(_recipient);
+			_session.write(packet);
+			_closeSent = true;
 		} catch(Exception e) {
 			/* Ignore error, don't bubble exception. */
 			JSch.getLogger().log(Level.DEBUG, "Failed to send channel close", e);
+		} finally {
+			_session._packetPool.release(packet);
+			_lock.unlock();
 		}
 	}
 
@@ -597,11 +804,15 @@ public abstract class Channel implements Runnable {
 	 */
 	public final void disconnect() {
 		try {
-			synchronized( this ) {
+			_lock.lock();
+			try {
+				_stateChanged.signalAll();	// Release any threads waiting for a server response
 				if( !_connected ) {
 					return;
 				}
 				_connected = false;
+			} finally {
+				_lock.unlock();
 			}
 			close();			// Switch close/eof flags and send close message to server
 			_thread = null;		// Exits any run() loops dependent on thread being not null
@@ -677,14 +888,28 @@ public abstract class Channel implements Runnable {
 	}
 
 	/**
-	 * Returns the unique ID for this channel.
+	 * Returns the ID for this channel which is unique among the channels open
+	 * on the session.  IDs of closed channels are reused by new channels.
 	 *
-	 * @return unique ID for channel
+	 * @return ID for channel
 	 */
 	public final int getId() {
 		return _id;
 	}
 
+	/**
+	 * Returns the tag identifying the channel when reporting metrics, which is
+	 * the session's metrics tag followed by <code>/</code> and the channel ID.
+	 *
+	 * @return metrics tag
+	 */
+	public final String getMetricsTag() {
+		if( _metricsTag == null ) {
+			_metricsTag = _session.getMetricsTag() + '/' + _id;
+		}
+		return _metricsTag;
+	}
+
 	/**
 	 * Returns the channel type.
 	 *
@@ -707,15 +932,18 @@ public abstract class Channel implements Runnable {
 		// uint32    initial window size
 		// uint32    maximum packet size
 		// ....      channel type specific data follows
-		Buffer buffer = new Buffer(100);
-		Packet packet = new Packet(buffer);
-		packet.reset();
-		buffer.putByte(SSH_MSG_CHANNEL_OPEN_CONFIRMATION);
-		buffer.putInt(_recipient);
-		buffer.putInt(_id);
-		buffer.putInt(_localWindowSize);
-		buffer.putInt(_localMaxPacketSize);
-		_session.write(packet);
+		Packet packet = _session._packetPool.acquire(100);
+		try {
+			Buffer buffer = packet.buffer;
+			buffer.putByte(SSH_MSG_CHANNEL_OPEN_CONFIRMATION);
+			buffer.putInt(_recipient);
+			buffer.putInt(_id);
+			buffer.putInt(_localWindowSize.get());
+			buffer.putInt(_localMaxPacketSize);
+			_session.write(packet);
+		} finally {
+			_session._packetPool.release(packet);
+		}
 	}
 
 	/**
@@ -729,15 +957,14 @@ public abstract class Channel implements Runnable {
 		/* Wrap the send in a try/catch to prevent any errors from stopping the
 		 * channel from completing it's disconnect clean up.
 		 */
+		// byte      SSH_MSG_CHANNEL_OPEN_FAILURE
+		// uint32    recipient channel
+		// uint32    reason code
+		// string    description in ISO-10646 UTF-8 encoding [RFC3629]
+		// string    language tag [RFC3066]
+		Packet packet = _session._packetPool.acquire(100);
 		try {
-			// byte      SSH_MSG_CHANNEL_OPEN_FAILURE
-			// uint32    recipient channel
-			// uint32    reason code
-			// string    description in ISO-10646 UTF-8 encoding [RFC3629]
-			// string    language tag [RFC3066]
-			Buffer buffer = new Buffer(100);
-			Packet packet = new Packet(buffer);
-			packet.reset();
+			Buffer buffer = packet.buffer;
 			buffer.putByte(SSH_MSG_CHANNEL_OPEN_FAILURE);
 			buffer.putInt(_recipient);
 			buffer.putInt(reasonCode);
@@ -747,6 +974,8 @@ public abstract class Channel implements Runnable {
 		} catch(Exception e) {
 			/* Ignore error, don't bubble exception. */
 			JSch.getLogger().log(Level.WARN, "Failed to send channel open failure", e);
+		} finally {
+			_session._packetPool.release(packet);
 		}
 	}
 
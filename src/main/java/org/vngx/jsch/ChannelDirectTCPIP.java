@@ -94,28 +94,23 @@ public class ChannelDirectTCPIP extends Channel {
 			buffer.putByte(SSH_MSG_CHANNEL_OPEN);
 			buffer.putString(_type);
 			buffer.putInt(_id);
-			buffer.putInt(_localWindowSize);
+			buffer.putInt(_localWindowSize.get());
 			buffer.putInt(_localMaxPacketSize);
 			buffer.putString(_host);
 			buffer.putInt(_port);
 			buffer.putString(_originatorIPAddress);
 			buffer.putInt(_originatorPort);
+			_openSent = true;
 			_session.write(packet);
 
-			int retry = 1000;
-			while( _recipient == -1 && _session.isConnected() && retry-- > 0 && !_eofRemote ) {
-				try { Thread.sleep(50); } catch(InterruptedException e) { /* Ignore error. */ }
-			}
-			if( !_session.isConnected() ) {
-				throw new JSchException("Failed to open channel: session is not connected");
-			} else if( retry == 0 || _eofRemote ) {
-				throw new JSchException("Failed to open channel: no response");
+			waitForOpenConfirmation();
+			if( _eofRemote ) {
+				throw new JSchException("Failed to open channel: "+_exitstatus);
 			}
 			_connected = true;
 
 			if( _io.in != null ) {
-				_thread = new Thread(this, "DirectTCPIP thread " + _session.getHost());
-				_thread.setDaemon(_session.isDaemonThread());
+				_thread = _session.newThread(this, "DirectTCPIP thread " + _session.getHost());
 				_thread.start();
 			}
 		} catch(JSchException e) {
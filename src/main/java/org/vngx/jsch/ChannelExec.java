@@ -68,8 +68,7 @@ public class ChannelExec extends ChannelSession {
 		}
 
 		if( _io.in != null ) {
-			_thread = new Thread(this, "Exec thread " + _session.getHost());
-			_thread.setDaemon(_session.isDaemonThread());
+			_thread = _session.newThread(this, "Exec thread " + _session.getHost());
 			_thread.start();
 		}
 	}
@@ -35,9 +35,6 @@ import org.vngx.jsch.constants.SSHConstants;
 import org.vngx.jsch.exception.JSchException;
 import org.vngx.jsch.util.Logger.Level;
 import org.vngx.jsch.util.SocketFactory;
-import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -96,14 +93,14 @@ public class ChannelForwardedTCPIP extends Channel {
 			if( _localPort == -1 ) {
 				_daemon = (ForwardedTCPIPDaemon) Class.forName(_target).newInstance();
 
-				PipedOutputStream out = new PipedOutputStream();
-				_io.setInputStream(new PassiveInputStream(out, 32 * 1024), false);
+				ChannelPipe pipe = new ChannelPipe(_localWindowMaxSize);
+				_io.setInputStream(pipe.getInputStream(), false);
 
-				_daemon.setChannel(this, getInputStream(), out);
+				_daemon.setChannel(this, getInputStream(), pipe.getOutputStream());
 				ForwardedPortData foo = getPort(_session, _remotePort);
 				_daemon.setArg(foo._arg);
 
-				new Thread(_daemon).start();
+				_session.newThread(_daemon, "ForwardedTCPIP daemon " + _session.getHost()).start();
 			} else {
 				_socket = _factory.createSocket(_target, _localPort, TIMEOUT);
 				_socket.setTcpNoDelay(true);
@@ -336,9 +333,8 @@ public class ChannelForwardedTCPIP extends Channel {
 		// boolean want_reply
 		// string  address_to_bind (e.g. "127.0.0.1")
 		// uint32  port number to bind
-		Buffer buffer = new Buffer(100); // ??
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = session._packetPool.acquire(100);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_GLOBAL_REQUEST);
 		buffer.putString("cancel-tcpip-forward");
 		buffer.putByte((byte) 0);
@@ -349,6 +345,8 @@ public class ChannelForwardedTCPIP extends Channel {
 		} catch(Exception e) {
 			/* Ignore error, don't bubble exception. */
 			JSch.getLogger().log(Level.WARN, "Failed to send delete forwarded port", e);
+		} finally {
+			session._packetPool.release(packet);
 		}
 	}
 
@@ -400,37 +398,4 @@ public class ChannelForwardedTCPIP extends Channel {
 
 	}
 
-	/**
-	 * Wrapper for <code>PipedInputStream</code> to override the close() method
-	 * to also close the <code>PipedOutputStream</code> sink.
-	 *
-	 * @author Atsuhiko Yamanaka
-	 */
-	class PassiveInputStream extends PipedInputStream {
-
-		/** Sink for piped stream. */
-		PipedOutputStream __out;
-
-		/**
-		 * Creates a new instance for the specified output stream and size.
-		 * 
-		 * @param out
-		 * @param size
-		 * @throws IOException
-		 */
-		PassiveInputStream(PipedOutputStream out, int size) throws IOException {
-			super(out, size);
-			__out = out;
-		}
-
-		@Override
-		public void close() throws IOException {
-			if( __out != null ) {
-				__out.close();
-			}
-			__out = null;
-		}
-
-	}
-
 }
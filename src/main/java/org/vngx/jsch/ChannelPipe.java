@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Single-producer, single-consumer byte ring buffer used to pass channel
+ * data between two threads, such as from the session's read thread to the
+ * user's thread reading a channel's {@code InputStream}.  It replaces the
+ * {@code PipedInputStream}/{@code PipedOutputStream} pair, which polls with
+ * one second waits, has a small fixed buffer and fails if the writing thread
+ * is no longer alive.</p>
+ *
+ * <p>The reader and writer never lock; each side only updates its own index
+ * and parks when the buffer is empty (reader) or full (writer) until the other
+ * side unparks it.</p>
+ *
+ * <p>A pipe carrying channel data returns the data to the channel's local
+ * window as it is read, so the server may only send as much data as the
+ * reader has room for.  The buffer starts at the size of the local window
+ * and grows with it when the window is auto-tuned, so the session thread
+ * writing to the pipe never waits on a slow reader.  The writer grows the
+ * buffer by copying the unread data into a larger ring and publishing it;
+ * the reader only uses a ring once it has checked that no larger ring was
+ * published before the data it's about to read was written.</p>
+ *
+ * <p>The input stream also implements {@code ReadableByteChannel} to allow
+ * reading directly into a {@code ByteBuffer} without an intermediate
+ * {@code byte[]}.</p>
+ *
+ * <p><strong>Note:</strong> Only one thread may write and only one thread may
+ * read from the pipe at a time.</p>
+ */
+final class ChannelPipe {
+
+	/** Minimum size in bytes of pipe's buffer. */
+	private static final int MIN_SIZE = 1024;
+
+	/** Ring buffer storing data written to the pipe (replaced when grown). */
+	private volatile byte[] _buffer;
+	/** Total number of bytes written to the pipe (only updated by writer). */
+	private volatile long _writeIndex = 0;
+	/** Total number of bytes read from the pipe (only updated by reader). */
+	private volatile long _readIndex = 0;
+	/** Reader thread currently parked waiting for data. */
+	private volatile Thread _parkedReader;
+	/** Writer thread currently parked waiting for space. */
+	private volatile Thread _parkedWriter;
+	/** True if the writing side of the pipe has been closed (EOF). */
+	private volatile boolean _writerClosed = false;
+	/** True if the reading side of the pipe has been closed. */
+	private volatile boolean _readerClosed = false;
+	/** Input stream to read data from the pipe. */
+	private final PipeInputStream _in = new PipeInputStream();
+	/** Output stream to write data to the pipe. */
+	private final PipeOutputStream _out = new PipeOutputStream();
+	/** Channel whose local window data is returned to as it's read (may be null). */
+	private final Channel _channel;
+
+
+	/**
+	 * Creates a new instance of {@code ChannelPipe} with a buffer which can
+	 * hold at least the specified size in bytes.
+	 *
+	 * @param size of buffer in bytes
+	 */
+	ChannelPipe(int size) {
+		this(size, null);
+	}
+
+	/**
+	 * Creates a new instance of {@code ChannelPipe} with a buffer which can
+	 * hold at least the specified size in bytes, which returns data read from
+	 * the pipe to the local window of the specified channel.
+	 *
+	 * @param size of buffer in bytes
+	 * @param channel to return consumed data to (null if none)
+	 */
+	ChannelPipe(int size, Channel channel) {
+		_channel = channel;
+		int capacity = MIN_SIZE;
+		while( capacity < size && capacity < (1 << 30) ) {
+			capacity <<= 1;	// Capacity must be a power of 2 for masking
+		}
+		_buffer = new byte[capacity];
+	}
+
+	/**
+	 * Returns the input stream for reading data from the pipe.
+	 *
+	 * @return input stream
+	 */
+	PipeInputStream getInputStream() {
+		return _in;
+	}
+
+	/**
+	 * Returns the output stream for writing data to the pipe.
+	 *
+	 * @return output stream
+	 */
+	OutputStream getOutputStream() {
+		return _out;
+	}
+
+	/**
+	 * Returns true if the specified stream writes to a pipe which returns data
+	 * to a channel's local window as it is read rather than when written.
+	 *
+	 * @param out stream to check
+	 * @return true if data is returned to the local window by the reader
+	 */
+	static boolean isWindowed(OutputStream out) {
+		return out instanceof PipeOutputStream && ((PipeOutputStream) out).isWindowed();
+	}
+
+	/**
+	 * Returns the specified amount of data read from the pipe to the local
+	 * window of the pipe's channel.
+	 *
+	 * @param length of data read
+	 */
+	private void consumed(int length) {
+		if( _channel != null ) {
+			_channel._session.consumeLocalWindow(_channel, length);
+		}
+	}
+
+	/**
+	 * Replaces the ring buffer with a larger ring which can hold the unread
+	 * data and the specified amount of data to write.  Called by the writer
+	 * only, so no data is added to the old ring while it's being copied.
+	 *
+	 * @param writeIndex current write index
+	 * @param length of data to be written
+	 * @return new ring buffer
+	 */
+	private byte[] grow(long writeIndex, int length) {
+		final byte[] old = _buffer;
+		final long readIndex = _readIndex;
+		final long size = writeIndex - readIndex + length;
+		int capacity = old.length;
+		while( capacity < size && capacity < (1 << 30) ) {
+			capacity <<= 1;
+		}
+		final byte[] buffer = new byte[capacity];
+		for( long index = readIndex; index < writeIndex; ) {
+			int from = (int) index & (old.length - 1), to = (int) index & (capacity - 1);
+			int n = (int) Math.min(writeIndex - index, Math.min(old.length - from, capacity - to));
+			System.arraycopy(old, from, buffer, to, n);
+			index += n;
+		}
+		_buffer = buffer;
+		return buffer;
+	}
+
+	/**
+	 * Parks the current thread until it's unparked by the other side of the
+	 * pipe. Threads must always re-check their wait condition after returning.
+	 *
+	 * @throws InterruptedIOException if the current thread is interrupted
+	 */
+	private void park() throws InterruptedIOException {
+		if( Thread.currentThread().isInterrupted() ) {
+			throw new InterruptedIOException("Interrupted waiting on channel pipe");
+		}
+		LockSupport.park(this);
+	}
+
+	/**
+	 * Unparks the specified thread if it's not null.
+	 *
+	 * @param thread to unpark
+	 */
+	private static void unpark(Thread thread) {
+		if( thread != null ) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Input stream for reading from the pipe which also supports reading
+	 * directly into a {@code ByteBuffer}.
+	 */
+	final class PipeInputStream extends InputStream implements ReadableByteChannel {
+
+		/** Temporary buffer for reading single byte of data. */
+		private final byte[] __b = new byte[1];
+		/** Ring buffer holding the data found available by {@code await()}. */
+		private byte[] __buffer;
+
+		@Override
+		public int read() throws IOException {
+			return read(__b, 0, 1) == -1 ? -1 : __b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if( off < 0 || len < 0 || len > b.length - off ) {
+				throw new IndexOutOfBoundsException();
+			} else if( len == 0 ) {
+				return 0;
+			}
+			int available = await();
+			if( available < 0 ) {
+				return -1;
+			}
+			final byte[] buffer = __buffer;
+			long readIndex = _readIndex;
+			int n = Math.min(len, available);
+			int pos = (int) readIndex & (buffer.length - 1);
+			int first = Math.min(n, buffer.length - pos);
+			System.arraycopy(buffer, pos, b, off, first);
+			System.arraycopy(buffer, 0, b, off + first, n - first);
+			_readIndex = readIndex + n;
+			unpark(_parkedWriter);
+			consumed(n);
+			return n;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if( !dst.hasRemaining() ) {
+				return 0;
+			}
+			int available = await();
+			if( available < 0 ) {
+				return -1;
+			}
+			final byte[] buffer = __buffer;
+			long readIndex = _readIndex;
+			int n = Math.min(dst.remaining(), available);
+			int pos = (int) readIndex & (buffer.length - 1);
+			int first = Math.min(n, buffer.length - pos);
+			dst.put(buffer, pos, first);
+			dst.put(buffer, 0, n - first);
+			_readIndex = readIndex + n;
+			unpark(_parkedWriter);
+			consumed(n);
+			return n;
+		}
+
+		/**
+		 * Waits until data is available to read and returns the amount
+		 * available, or -1 if the writer has closed the pipe and all data has
+		 * been read.  The ring buffer holding the available data is set for
+		 * the read.
+		 *
+		 * @return bytes available or -1 for EOF
+		 * @throws IOException if the pipe is closed or thread is interrupted
+		 */
+		private int await() throws IOException {
+			while( true ) {
+				if( _readerClosed ) {
+					throw new IOException("Channel pipe is closed");
+				}
+				final byte[] buffer = _buffer;
+				int available = (int) (_writeIndex - _readIndex);
+				if( available > 0 ) {
+					if( buffer != _buffer ) {
+						continue;	// Pipe grew, data may only be in new ring
+					}
+					__buffer = buffer;
+					return available;
+				} else if( _writerClosed ) {
+					// Data may have been written just before closing
+					if( _writeIndex == _readIndex ) {
+						return -1;
+					}
+					continue;
+				}
+				_parkedReader = Thread.currentThread();
+				try {
+					if( _writeIndex == _readIndex && !_writerClosed && !_readerClosed ) {
+						park();
+					}
+				} finally {
+					_parkedReader = null;
+				}
+			}
+		}
+
+		@Override
+		public int available() {
+			return (int) (_writeIndex - _readIndex);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return !_readerClosed;
+		}
+
+		@Override
+		public void close() {
+			_readerClosed = true;
+			unpark(_parkedWriter);
+		}
+	}
+
+	/**
+	 * Output stream for writing to the pipe.
+	 */
+	final class PipeOutputStream extends OutputStream {
+
+		/** Temporary buffer for writing single byte of data. */
+		private final byte[] __b = new byte[1];
+
+		@Override
+		public void write(int b) throws IOException {
+			__b[0] = (byte) b;
+			write(__b, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if( off < 0 || len < 0 || len > b.length - off ) {
+				throw new IndexOutOfBoundsException();
+			}
+			while( len > 0 ) {
+				if( _writerClosed || _readerClosed ) {
+					throw new IOException("Channel pipe is closed");
+				}
+				long writeIndex = _writeIndex;
+				byte[] buffer = _buffer;
+				int free = buffer.length - (int) (writeIndex - _readIndex);
+				if( free < len && _channel != null && buffer.length < (1 << 30) ) {
+					// Data is limited by the local window, grow to fit the
+					// window rather than block the session thread
+					buffer = grow(writeIndex, len);
+					free = buffer.length - (int) (writeIndex - _readIndex);
+				}
+				if( free == 0 ) {
+					_parkedWriter = Thread.currentThread();
+					try {
+						if( _writeIndex - _readIndex == buffer.length && !_readerClosed ) {
+							park();
+						}
+					} finally {
+						_parkedWriter = null;
+					}
+					continue;
+				}
+				int n = Math.min(len, free);
+				int pos = (int) writeIndex & (buffer.length - 1);
+				int first = Math.min(n, buffer.length - pos);
+				System.arraycopy(b, off, buffer, pos, first);
+				System.arraycopy(b, off + first, buffer, 0, n - first);
+				_writeIndex = writeIndex + n;
+				unpark(_parkedReader);
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Returns true if data written to the pipe is returned to a channel's
+		 * local window as it is read.
+		 *
+		 * @return true if pipe returns data to local window
+		 */
+		boolean isWindowed() {
+			return _channel != null;
+		}
+
+		@Override
+		public void close() {
+			_writerClosed = true;
+			unpark(_parkedReader);
+		}
+	}
+
+}
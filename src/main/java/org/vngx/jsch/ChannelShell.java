@@ -62,8 +62,7 @@ public class ChannelShell extends ChannelSession {
 		}
 
 		if( _io.in != null ) {
-			_thread = new Thread(this, "Shell for " + _session.getHost());
-			_thread.setDaemon(_session.isDaemonThread());
+			_thread = _session.newThread(this, "Shell for " + _session.getHost());
 			_thread.start();
 		}
 	}
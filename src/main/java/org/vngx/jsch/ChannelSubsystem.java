@@ -79,8 +79,7 @@ public class ChannelSubsystem extends ChannelSession {
 			throw new JSchException("Failed to start ChannelSubsystem", e);
 		}
 		if( _io.in != null ) {
-			_thread = new Thread(this, "Subsystem for " + _session.getHost());
-			_thread.setDaemon(_session.isDaemonThread());
+			_thread = _session.newThread(this, "Subsystem for " + _session.getHost());
 			_thread.start();
 		}
 	}
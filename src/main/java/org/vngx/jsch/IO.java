@@ -49,7 +49,7 @@ final class IO {
 	/** Wrapped output stream. */
 	OutputStream _out;
 	/** Wrapped output stream for extended output. */
-	private OutputStream _extOut;
+	OutputStream _extOut;
 	/** True to indicate input stream should not be closed. */
 	private boolean _dontCloseIn = false;
 	/** True to indicate output stream should not be closed. */
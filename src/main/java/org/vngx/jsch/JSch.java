@@ -35,6 +35,7 @@ import org.vngx.jsch.exception.JSchException;
 import org.vngx.jsch.util.HostKeyRepository;
 import org.vngx.jsch.util.KnownHosts;
 import org.vngx.jsch.util.Logger;
+import org.vngx.jsch.util.Metrics;
 import java.io.InputStream;
 
 /**
@@ -63,6 +64,8 @@ public final class JSch {
 
 	/** Logger instance (null by default). */
 	private static Logger $logger = Logger.NULL_LOGGER;
+	/** Metrics instance for new sessions (null metrics by default). */
+	private static volatile Metrics $metrics = Metrics.NULL_METRICS;
 
 
 	/**
@@ -180,4 +183,25 @@ public final class JSch {
 		$logger = logger != null ? logger : Logger.NULL_LOGGER;
 	}
 
+	/**
+	 * Returns the <code>Metrics</code> instance used by new sessions to report
+	 * measurements.
+	 *
+	 * @return metrics instance
+	 */
+	public static Metrics getMetrics() {
+		return $metrics;
+	}
+
+	/**
+	 * Sets the <code>Metrics</code> instance used by new sessions to report
+	 * measurements.  Setting the metrics to null turns off all measurements
+	 * for sessions created afterwards.
+	 *
+	 * @param metrics to use
+	 */
+	public static void setMetrics(Metrics metrics) {
+		$metrics = metrics != null ? metrics : Metrics.NULL_METRICS;
+	}
+
 }
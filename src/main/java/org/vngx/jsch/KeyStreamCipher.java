@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.vngx.jsch.cipher.AEADCipher;
+import org.vngx.jsch.cipher.ByteBufferCipher;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherException;
+import org.vngx.jsch.cipher.CipherImpl;
+
+/**
+ * <p>Implementation of {@code Cipher} which wraps an initialized stream mode
+ * cipher (counter mode or arcfour) and precomputes its keystream on a helper
+ * thread.  Since the keystream of a stream mode cipher does not depend on the
+ * data, it can be generated ahead of time by encrypting zeros; decrypting is
+ * then reduced to XORing the data with the next bytes of keystream.</p>
+ *
+ * <p>The keystream is generated in fixed size chunks which are recycled
+ * between the helper thread and the thread decrypting, so only a bounded
+ * amount of keystream is ever computed ahead.  Only a single thread may call
+ * the update methods.</p>
+ */
+final class KeyStreamCipher implements ByteBufferCipher, Runnable {
+
+	/** Size of each chunk of keystream generated by the helper thread. */
+	private final static int CHUNK_SIZE = 32768;
+	/** Number of chunks of keystream which may be generated ahead. */
+	private final static int CHUNK_COUNT = 4;
+
+	/** Wrapped stream mode cipher which generates the keystream. */
+	private final Cipher _cipher;
+	/** Zeros encrypted by the wrapped cipher to generate keystream. */
+	private final byte[] _zeros = new byte[CHUNK_SIZE];
+	/** Chunks of keystream ready to be used for decrypting. */
+	private final BlockingQueue<byte[]> _filled = new ArrayBlockingQueue<byte[]>(CHUNK_COUNT);
+	/** Used chunks waiting to be refilled by the helper thread. */
+	private final BlockingQueue<byte[]> _empty = new ArrayBlockingQueue<byte[]>(CHUNK_COUNT);
+	/** Chunk of keystream currently being used. */
+	private byte[] _chunk;
+	/** Position of next unused byte of keystream in current chunk. */
+	private int _chunkPos;
+	/** Cause of failure if helper thread failed to generate keystream. */
+	private volatile Exception _failure;
+	/** Helper thread generating keystream (null until started). */
+	private volatile Thread _thread;
+	/** True once the cipher has been closed and keystream is no longer required. */
+	private volatile boolean _closed;
+
+
+	/**
+	 * Creates a new instance of {@code KeyStreamCipher} which wraps the
+	 * specified initialized stream mode cipher.  The helper thread must be
+	 * started by the caller to generate the keystream.
+	 *
+	 * @param cipher stream mode cipher to wrap (must not be CBC)
+	 */
+	KeyStreamCipher(Cipher cipher) {
+		if( cipher == null ) {
+			throw new IllegalArgumentException("Cipher cannot be null");
+		} else if( cipher.isCBC() ) {
+			throw new IllegalArgumentException("Cipher must be a stream mode cipher");
+		}
+		_cipher = cipher;
+		for( int i = 0; i < CHUNK_COUNT; i++ ) {
+			_empty.add(new byte[CHUNK_SIZE]);
+		}
+	}
+
+	/**
+	 * Returns true if the specified cipher generates a keystream which does
+	 * not depend on the data and can be wrapped by this class.
+	 *
+	 * @param cipher to check
+	 * @return true if keystream can be precomputed
+	 */
+	static boolean isSupported(Cipher cipher) {
+		return cipher instanceof CipherImpl && !cipher.isCBC() && !(cipher instanceof AEADCipher);
+	}
+
+	/**
+	 * Generates keystream into empty chunks until stopped.
+	 */
+	@Override
+	public void run() {
+		_thread = Thread.currentThread();
+		try {
+			while( !_closed ) {
+				byte[] chunk = _empty.take();
+				_cipher.update(_zeros, 0, CHUNK_SIZE, chunk, 0);
+				_filled.put(chunk);
+			}
+		} catch(InterruptedException e) {
+			/* Stopped, no more keystream required. */
+		} catch(Exception e) {
+			_failure = e;
+			_filled.offer(new byte[0]);	// Wake up any waiting decrypt
+		}
+	}
+
+	/**
+	 * Stops the helper thread generating keystream.  The cipher cannot be
+	 * used once closed.
+	 */
+	void close() {
+		_closed = true;
+		Thread thread = _thread;
+		if( thread != null ) {
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public int getIVSize() {
+		return _cipher.getIVSize();
+	}
+
+	@Override
+	public int getBlockSize() {
+		return _cipher.getBlockSize();
+	}
+
+	@Override
+	public boolean isCBC() {
+		return false;
+	}
+
+	@Override
+	public void init(int mode, byte[] key, byte[] iv) throws CipherException {
+		throw new CipherException("KeyStreamCipher wraps an initialized cipher");
+	}
+
+	@Override
+	public void update(byte[] src, int srcOffset, int length, byte[] dest, int destOffset) throws CipherException {
+		while( length > 0 ) {
+			int len = Math.min(length, nextKeyStream());
+			for( int i = 0, pos = _chunkPos; i < len; i++ ) {
+				dest[destOffset + i] = (byte) (src[srcOffset + i] ^ _chunk[pos + i]);
+			}
+			_chunkPos += len;
+			srcOffset += len;
+			destOffset += len;
+			length -= len;
+		}
+	}
+
+	@Override
+	public void update(ByteBuffer src, ByteBuffer dest) throws CipherException {
+		while( src.hasRemaining() ) {
+			int len = Math.min(src.remaining(), nextKeyStream());
+			for( int i = 0; i < len; i++ ) {
+				dest.put((byte) (src.get() ^ _chunk[_chunkPos++]));
+			}
+		}
+	}
+
+	/**
+	 * Ensures there is unused keystream in the current chunk, waiting for the
+	 * helper thread to generate the next chunk if required, and returns the
+	 * number of unused bytes of keystream available.
+	 *
+	 * @return number of bytes of keystream available in current chunk
+	 * @throws CipherException if the keystream could not be generated
+	 */
+	private int nextKeyStream() throws CipherException {
+		if( _chunk == null || _chunkPos == _chunk.length ) {
+			if( _chunk != null ) {
+				_empty.offer(_chunk);	// Return used chunk to be refilled
+				_chunk = null;
+			}
+			try {
+				_chunk = _filled.take();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CipherException("Interrupted waiting for keystream", e);
+			}
+			_chunkPos = 0;
+			if( _chunk.length == 0 ) {
+				_chunk = null;
+				throw new CipherException("Failed to generate keystream", _failure);
+			}
+		}
+		return _chunk.length - _chunkPos;
+	}
+
+}
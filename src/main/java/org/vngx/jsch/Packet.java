@@ -139,9 +139,24 @@ public final class Packet {
 	 * @param random instance used for generating random padding data
 	 */
 	void setPadding(int blockSize, Random random) {
+		setPadding(blockSize, 0, random);
+	}
+
+	/**
+	 * Sets the padding for the packet using the specified block size, where
+	 * the first {@code unaligned} bytes of the packet are excluded when
+	 * aligning the packet to the block size.  Authenticated ciphers which send
+	 * the packet length field unencrypted only require the data following the
+	 * packet length to be a multiple of the block size.
+	 *
+	 * @param blockSize to determine padding length
+	 * @param unaligned number of bytes at start of packet to exclude
+	 * @param random instance used for generating random padding data
+	 */
+	void setPadding(int blockSize, int unaligned, Random random) {
 		// Calculate length of random padding and total length of packet
 		int packetLength = buffer.index;
-		int paddingLength = (-packetLength) & (blockSize - 1);
+		int paddingLength = (-(packetLength - unaligned)) & (blockSize - 1);
 		if( paddingLength < blockSize ) {
 			paddingLength += blockSize;
 		}
@@ -167,12 +182,13 @@ public final class Packet {
 	 * and padding length are set.
 	 *
 	 * @param length
+	 * @param unaligned number of bytes at start of packet excluded from padding
 	 * @param mac
 	 * @return offset
 	 */
-	int shift(int length, int mac) {
+	int shift(int length, int unaligned, int mac) {
 		int offset = length + 5 + 9;
-		int paddingLength = (-offset) & 15;	// Create random padding size by
+		int paddingLength = (-(offset - unaligned)) & 15;	// Create random padding size by
 		if( paddingLength < 16 ) {
 			paddingLength += 16;
 		}
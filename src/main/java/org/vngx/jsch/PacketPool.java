@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Pool of reusable {@link Packet} instances and their backing
+ * {@link Buffer}s owned by a {@link Session}.  Short lived control messages
+ * (channel EOF/close, window adjusts, channel requests, keep alive, etc) are
+ * built in a pooled packet and returned to the pool once written to the
+ * session instead of allocating a new buffer for every message.</p>
+ *
+ * <p>Packets are pooled in size classes up to {@link Packet#MAX_SIZE}.  A
+ * request for a packet is served from the smallest size class which can hold
+ * the requested size, and a packet is returned to the largest size class its
+ * buffer can hold (the buffer may have grown while in use).  The number of
+ * idle packets kept in each size class is bounded; packets released to a full
+ * size class are left for garbage collection.</p>
+ *
+ * <p><strong>Note:</strong> Pooled buffers are not cleared when released, so
+ * packets containing sensitive data (user authentication, key exchange) should
+ * not be built using pooled packets.  A packet must not be used after it has
+ * been released to the pool.</p>
+ *
+ * @see org.vngx.jsch.Packet
+ * @see org.vngx.jsch.Buffer
+ */
+final class PacketPool {
+
+	/** Buffer sizes for each size class of pooled packets. */
+	private static final int[] SIZE_CLASSES = { 256, 2 * 1024, 8 * 1024, 36 * 1024, Packet.MAX_SIZE };
+	/** Maximum number of bytes of idle buffers kept in a single size class. */
+	private static final int MAX_POOLED_BYTES = 256 * 1024;
+	/** Maximum number of idle packets kept in a single size class. */
+	private static final int MAX_POOLED_PACKETS = 64;
+
+	/** Idle packets available for reuse for each size class. */
+	private final List<ConcurrentLinkedQueue<Packet>> _pools;
+	/** Number of idle packets held for each size class. */
+	private final AtomicInteger[] _pooled;
+
+
+	/**
+	 * Creates a new instance of {@code PacketPool}.
+	 */
+	PacketPool() {
+		_pools = new ArrayList<ConcurrentLinkedQueue<Packet>>(SIZE_CLASSES.length);
+		_pooled = new AtomicInteger[SIZE_CLASSES.length];
+		for( int i = 0; i < SIZE_CLASSES.length; i++ ) {
+			_pools.add(new ConcurrentLinkedQueue<Packet>());
+			_pooled[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * Returns a packet from the pool with a buffer of at least the specified
+	 * {@code size} in bytes.  The packet is reset and ready for writing the
+	 * SSH command.
+	 *
+	 * @param size minimum size of packet buffer in bytes
+	 * @return reset packet from pool
+	 * @throws IllegalArgumentException if size exceeds maximum packet size
+	 */
+	Packet acquire(int size) {
+		if( size > Packet.MAX_SIZE ) {
+			throw new IllegalArgumentException("Buffer cannot exceed maximum packet size: "+size);
+		}
+		int sizeClass = 0;
+		while( SIZE_CLASSES[sizeClass] < size ) {
+			sizeClass++;
+		}
+		Packet packet = _pools.get(sizeClass).poll();
+		if( packet != null ) {
+			_pooled[sizeClass].decrementAndGet();
+			packet.buffer.reset();
+		} else {
+			packet = new Packet(new Buffer(SIZE_CLASSES[sizeClass]));
+		}
+		packet.reset();
+		return packet;
+	}
+
+	/**
+	 * Releases the specified {@code packet} back to the pool for reuse.  The
+	 * packet must not be used by the caller after it has been released.
+	 *
+	 * @param packet to release (null values are ignored)
+	 */
+	void release(Packet packet) {
+		if( packet == null ) {
+			return;
+		}
+		int size = packet.buffer.size();
+		int sizeClass = SIZE_CLASSES.length - 1;
+		while( sizeClass >= 0 && SIZE_CLASSES[sizeClass] > size ) {
+			sizeClass--;
+		}
+		if( sizeClass < 0 ) {
+			return;	// Buffer too small for any size class, leave for GC
+		}
+		int maxPooled = Math.min(MAX_POOLED_PACKETS, Math.max(1, MAX_POOLED_BYTES / SIZE_CLASSES[sizeClass]));
+		if( _pooled[sizeClass].incrementAndGet() <= maxPooled ) {
+			_pools.get(sizeClass).offer(packet);
+		} else {
+			_pooled[sizeClass].decrementAndGet();
+		}
+	}
+
+}
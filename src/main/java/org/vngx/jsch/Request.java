@@ -31,6 +31,7 @@ package org.vngx.jsch;
 
 import org.vngx.jsch.constants.ConnectionProtocol;
 import org.vngx.jsch.exception.JSchException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Base implementation of a SSH request which sends a request packet over the
@@ -110,7 +111,20 @@ abstract class Request implements ConnectionProtocol {
 	}
 
 	/**
-	 * Writes the specified SSH packet to the session through the channel.
+	 * Returns a reset packet from the session's packet pool with a buffer of
+	 * at least the specified {@code size} for building the request.  The
+	 * packet is released back to the pool by {@link #write(Packet)}.
+	 *
+	 * @param size minimum size of packet buffer in bytes
+	 * @return packet for building request
+	 */
+	final Packet createPacket(int size) {
+		return _session._packetPool.acquire(size);
+	}
+
+	/**
+	 * Writes the specified SSH packet to the session through the channel.  The
+	 * packet is released back to the session's packet pool once written.
 	 *
 	 * If the request has been set to wait for a reply, then the calling thread
 	 * will wait for a reply from the server.  The response from the server is
@@ -126,18 +140,32 @@ abstract class Request implements ConnectionProtocol {
 		if( _reply ) {				// Reset channel's reply to -1, reply will be
 			_channel._reply = -1;	// set by the session when response is received
 		}							// to 1 for success or 0 for failure
-		_session.write(packet);
+		try {
+			_session.write(packet);
+		} finally {
+			_session._packetPool.release(packet);
+		}
 		if( _reply ) {
 			long start = System.currentTimeMillis();
 			long timeout = _channel._connectTimeout;
-			while( _channel.isConnected() && _channel._reply == -1 ) {	// reply will be changed by session
-				try {
-					Thread.sleep(10);
-				} catch(InterruptedException e) { /* Ignore error. */ }
-				if( timeout > 0L && (System.currentTimeMillis() - start) > timeout ) {
-					_channel._reply = 0;
-					throw new JSchException("Channel request timed out after "+_channel._connectTimeout+"ms, "+getClass().getSimpleName());
+			_channel._lock.lock();
+			try {
+				while( _channel.isConnected() && _channel._reply == -1 ) {	// reply will be signaled by session
+					long wait = Channel.WAIT_INTERVAL;
+					if( timeout > 0L ) {
+						long remaining = timeout - (System.currentTimeMillis() - start);
+						if( remaining <= 0L ) {
+							_channel._reply = 0;
+							throw new JSchException("Channel request timed out after "+_channel._connectTimeout+"ms, "+getClass().getSimpleName());
+						}
+						wait = Math.min(remaining, wait);
+					}
+					try {
+						_channel._stateChanged.await(wait, TimeUnit.MILLISECONDS);
+					} catch(InterruptedException e) { /* Ignore error. */ }
 				}
+			} finally {
+				_channel._lock.unlock();
 			}
 			if( _channel._reply == 0 ) {	// Should this be an exception?
 				throw new JSchException("Server responded with failure for channel request, "+getClass().getSimpleName());
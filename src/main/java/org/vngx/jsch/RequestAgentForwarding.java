@@ -59,9 +59,8 @@ final class RequestAgentForwarding extends Request {
 		// uint32	recipient channel
 		// string	request type        // "auth-agent-req@openssh.com"
 		// boolean	want reply          // 0 always false
-		Buffer buffer = new Buffer(500);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(500);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(AGENT_FORWARDING_REQUEST);
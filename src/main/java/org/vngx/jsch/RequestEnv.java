@@ -87,9 +87,8 @@ final class RequestEnv extends Request {
 		// boolean	want reply          // 0
 		// string   env name			// environment variable name
 		// string   env value			// environment variable value
-		Buffer buffer = new Buffer(200 + _name.length + _value.length);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(200 + _name.length + _value.length);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(ENV_REQUEST);
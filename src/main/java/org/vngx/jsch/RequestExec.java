@@ -71,9 +71,8 @@ final class RequestExec extends Request {
 		// string request type       // "exec"
 		// boolean want reply        // 0
 		// string command
-		Buffer buffer = new Buffer(200 + _command.length);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(200 + _command.length);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(EXEC_REQUEST);
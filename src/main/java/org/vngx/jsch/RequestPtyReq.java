@@ -115,9 +115,8 @@ final class RequestPtyReq extends Request {
 		// uint32    terminal width, pixels (e.g., 640)
 		// uint32    terminal height, pixels (e.g., 480)
 		// string    encoded terminal modes
-		Buffer buffer = new Buffer(1024);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(1024);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(PTY_REQUEST);
@@ -52,9 +52,8 @@ final class RequestShell extends Request {
 		// uint32	recipient channel
 		// string	request type       // "shell"
 		// boolean	want reply         // 0
-		Buffer buffer = new Buffer(150);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(150);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(SHELL_REQUEST);
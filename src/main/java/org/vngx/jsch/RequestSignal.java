@@ -71,9 +71,8 @@ final class RequestSignal extends Request {
 		// string	request type        // "signal"
 		// boolean	want reply          // 0
 		// string   signal
-		Buffer buffer = new Buffer(150 + _signal.length());
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(150 + _signal.length());
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(SIGNAL_REQUEST);
@@ -66,9 +66,8 @@ class RequestSubsystem extends Request {
 		// string	request type        // "subsystem"
 		// boolean	want reply          // 1
 		// string   subsystem			// subsystem value to request
-		Buffer buffer = new Buffer(150 + _subsystem.length());
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(150 + _subsystem.length());
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(SUBSYSTEM_REQUEST);
@@ -88,9 +88,8 @@ final class RequestWindowChange extends Request {
 		//uint32    terminal height, rows
 		//uint32    terminal width, pixels
 		//uint32    terminal height, pixels
-		Buffer buffer = new Buffer(200);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(200);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(WINDOW_CHANGE_REQUEST);
@@ -67,9 +67,8 @@ final class RequestX11 extends Request {
 		// string    x11 authentication protocol // "MIT-MAGIC-COOKIE-1".
 		// string    x11 authentication cookie
 		// uint32    x11 screen number
-		Buffer buffer = new Buffer(1024);
-		Packet packet = new Packet(buffer);
-		packet.reset();
+		Packet packet = createPacket(1024);
+		Buffer buffer = packet.buffer;
 		buffer.putByte(SSH_MSG_CHANNEL_REQUEST);
 		buffer.putInt(channel.getRecipient());
 		buffer.putString(X11_REQUEST);
@@ -32,22 +32,32 @@ import static org.vngx.jsch.constants.TransportLayerProtocol.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import org.vngx.jsch.algorithm.AlgorithmManager;
 import org.vngx.jsch.algorithm.Algorithms;
 import org.vngx.jsch.algorithm.Compression;
+import org.vngx.jsch.algorithm.EnginePool;
 import org.vngx.jsch.algorithm.Random;
+import org.vngx.jsch.cipher.AEADCipher;
+import org.vngx.jsch.cipher.ByteBufferCipher;
 import org.vngx.jsch.cipher.Cipher;
 import org.vngx.jsch.cipher.CipherManager;
 import org.vngx.jsch.config.SessionConfig;
 import org.vngx.jsch.exception.JSchException;
+import org.vngx.jsch.hash.EncryptThenMAC;
 import org.vngx.jsch.hash.Hash;
 import org.vngx.jsch.hash.HashManager;
 import org.vngx.jsch.hash.MAC;
 import org.vngx.jsch.hash.MACException;
 import org.vngx.jsch.kex.KexProposal;
 import org.vngx.jsch.kex.KeyExchange;
+import org.vngx.jsch.util.Metrics;
 
 /**
  * Implementation to manage the transport layer for {@code Session} to read and
@@ -59,24 +69,50 @@ final class SessionIO {
 
 	/** Minimum read size in bytes. (8 bytes) */
 	private final static int MIN_READ_SIZE = 8;
+	/** Decode state waiting to start reading a new packet. */
+	private final static int DECODE_START = 0;
+	/** Decode state reading in first block containing packet length. */
+	private final static int DECODE_LENGTH = 1;
+	/** Decode state reading in remaining packet data. */
+	private final static int DECODE_PAYLOAD = 2;
+	/** Decode state reading in MAC sent by server. */
+	private final static int DECODE_MAC = 3;
+	/** Decode state discarding data after a corrupt packet (CBC only). */
+	private final static int DECODE_DISCARD = 4;
 
 	/** Session instance this IO belongs to. */
 	private final Session _session;
 	/** Random instance for generating the random padding in outbound packets. */
 	private final Random _random;
 	/** Socket input stream for session's transport layer. */
-	private final InputStream _sessionIn;
+	private InputStream _sessionIn;
 	/** Socket output stream for session's transport layer. */
-	private final OutputStream _sessionOut;
+	private OutputStream _sessionOut;
+	/** Socket channel for writing the write batch (null if using stream). */
+	private WritableByteChannel _sessionChannel;
 
 	/** Cipher instance for decrypting inbound data from server to client. */
 	private Cipher _readCipher;
 	/** Cipher instance for encrypting outbound data from client to server. */
 	private Cipher _writeCipher;
+	/** Authenticated cipher for inbound data (null if read cipher is not authenticated). */
+	private AEADCipher _readAead;
+	/** Authenticated cipher for outbound data (null if write cipher is not authenticated). */
+	private AEADCipher _writeAead;
+	/** Size of authentication tag following inbound packets (0 if not authenticated). */
+	private int _readTagSize = 0;
 	/** MAC for generating MACs to validate data sent from server to client. */
 	private MAC _readMac;
 	/** MAC for generating MACs to send to server from client for validation. */
 	private MAC _writeMac;
+	/** True if the inbound MAC is computed over the encrypted packet. */
+	private boolean _readEtm;
+	/** True if the outbound MAC is computed over the encrypted packet. */
+	private boolean _writeEtm;
+	/** Previous outbound cipher to release once no longer in use after new keys. */
+	private volatile Cipher _retiredWriteCipher;
+	/** Previous outbound MAC to release once no longer in use after new keys. */
+	private volatile MAC _retiredWriteMac;
 	/** Deflater for compressing outbound data (when compression is used). */
 	private Compression _compressor;
 	/** Inflater for decompressing inbound data (when compression is used). */
@@ -95,6 +131,38 @@ final class SessionIO {
 	private int _writeCipherSize = MIN_READ_SIZE;
 	/** Local buffer to retrieve uncompressed length when compression is used. */
 	private final int[] _uncompressLen = new int[1];
+	/** Current state of non-blocking decode of inbound packet. */
+	private int _decodeState = DECODE_START;
+	/** Size of first block of inbound packet being decoded. */
+	private int _decodeRead;
+	/** Remaining size of inbound packet being decoded after first block. */
+	private int _decodeRemaining;
+	/** Number of bytes of server MAC read in for inbound packet being decoded. */
+	private int _decodeMacRead;
+	/** Number of bytes left to discard after a corrupt packet being decoded. */
+	private int _decodeDiscard;
+	/** MAC updated with the discarded data (null if not required). */
+	private MAC _decodeDiscardMac;
+	/** Exception to throw once the discarded data has been consumed. */
+	private JSchException _decodeDiscardError;
+	/** Buffer for coalescing encoded outbound packets into a single socket write. */
+	private ByteBuffer _writeBatch;
+	/** Time in milliseconds the oldest packet in the write batch was added. */
+	private long _writeBatchTime;
+	/** Maximum time in milliseconds a packet may be held in the write batch. */
+	private final int _writeMaxLatency;
+	/** Total number of packets written to the session. */
+	private volatile long _packetsWritten = 0;
+	/** Total number of writes to the session's socket stream. */
+	private volatile long _socketWrites = 0;
+	/** Number of inbound packets read ahead by the read pipeline (0 if disabled). */
+	private final int _readPipelineDepth;
+	/** Pipeline reading and decrypting inbound packets ahead (null if not running). */
+	private volatile ReadPipeline _readPipeline;
+	/** Metrics instance to report transport measurements. */
+	private final Metrics _metrics;
+	/** Tag identifying the session when reporting metrics. */
+	private final String _metricsTag;
 	
 	
 	/**
@@ -117,30 +185,230 @@ final class SessionIO {
 		_sessionIn = in;
 		_sessionOut = out;
 		_random = AlgorithmManager.getManager().createAlgorithm(Algorithms.RANDOM, _session);
+		_writeBatch = ByteBuffer.allocate(_session.getConfig().getInteger(SessionConfig.WRITE_BATCH_SIZE));
+		_writeMaxLatency = _session.getConfig().getInteger(SessionConfig.WRITE_MAX_LATENCY);
+		_readPipelineDepth = _session.getConfig().getInteger(SessionConfig.READ_PIPELINE_DEPTH);
+		_metrics = _session.getMetrics();
+		_metricsTag = _session.getMetricsTag();
 	}
 
 	static SessionIO createIO(Session session, InputStream in, OutputStream out) throws JSchException {
 		return new SessionIO(session, in, out);
 	}
 
+	/**
+	 * Replaces the streams used to read and write the session's transport
+	 * layer.  Called when the session switches to a non-blocking transport
+	 * after the connection has been established.  If the output stream is
+	 * also a {@code WritableByteChannel}, the write batch is moved to a direct
+	 * buffer so outbound packets are encrypted straight into the memory
+	 * written to the socket.
+	 *
+	 * @param in stream of session socket
+	 * @param out stream of session socket
+	 * @throws IOException if any batched packets fail to write
+	 */
+	void setStreams(InputStream in, OutputStream out) throws IOException {
+		if( in == null ) {
+			throw new IllegalArgumentException("InputStream cannot be null");
+		} else if( out == null ) {
+			throw new IllegalArgumentException("OutputStream cannot be null");
+		}
+		flush();	// Write out any batched packets to the previous stream
+		_sessionIn = in;
+		_sessionOut = out;
+		if( out instanceof WritableByteChannel ) {
+			_sessionChannel = (WritableByteChannel) out;
+			_writeBatch = ByteBuffer.allocateDirect(_writeBatch.capacity());
+		}
+	}
+
+	/**
+	 * Reads the next SSH packet from the session input stream into the
+	 * specified buffer, blocking until the entire packet has been read in,
+	 * decrypted and its MAC verified.  If the read pipeline is running, the
+	 * next packet already read in and decrypted by the pipeline is taken and
+	 * only its MAC is verified.
+	 *
+	 * @param buffer to read packet into
+	 * @return buffer containing packet
+	 * @throws JSchException if packet is corrupt or cannot be decoded
+	 * @throws IOException if any IO errors occur
+	 */
 	public Buffer read(final Buffer buffer) throws JSchException, IOException {
+		final ReadPipeline pipeline = _readPipeline;
+		if( pipeline != null ) {
+			return pipeline.read(buffer);
+		}
+
 		// Reset specified buffer and read in the first block of data.
 		// Implementations should decrypt the length after receiving the first 8
 		// (or cipher block size, whichever is larger) bytes of a packet.
 		buffer.reset();
-		final int read = getByte(buffer, Math.max(MIN_READ_SIZE, _readCipherSize));
-		if( _readCipher != null ) {
-			_readCipher.update(buffer.buffer, 0, read, buffer.buffer, 0);
+		final int read = getFirstReadSize();
+		getByte(buffer, read);
+		final int remaining = readPacketLength(buffer, read);
+
+		// Read in rest of inbound packet and any authentication tag from the
+		// input stream
+		if( remaining + _readTagSize > 0 ) {
+			buffer.ensureCapacity(remaining + _readTagSize);	// Always ensure buffer capacity
+			getByte(buffer, remaining + _readTagSize);
+		}
+		if( _readMac != null ) {
+			getByte(_serverMacDigest, 0, _serverMacDigest.length);	// Read server sent MAC
+		}
+		return decodePacket(buffer, read, remaining);
+	}
+
+	/**
+	 * Decodes as much of the next SSH packet as is available in the specified
+	 * {@code src} without blocking.  Returns true once the entire packet has
+	 * been read into the buffer, decrypted and its MAC verified; otherwise any
+	 * partial packet data is retained and the next call will continue where
+	 * the previous one left off.  Used by the non-blocking transport where the
+	 * selector thread feeds the data read from the socket channel.
+	 *
+	 * @param src containing inbound data read from socket
+	 * @param buffer to read packet into (must be same buffer until complete)
+	 * @return true if a complete packet has been decoded into buffer
+	 * @throws JSchException if packet is corrupt or cannot be decoded
+	 * @throws IOException if any IO errors occur
+	 */
+	boolean decode(final ByteBuffer src, final Buffer buffer) throws JSchException, IOException {
+		if( _decodeState == DECODE_DISCARD ) {
+			return discard(src, buffer);
+		}
+		if( _decodeState == DECODE_START ) {
+			buffer.reset();
+			_decodeRead = getFirstReadSize();
+			_decodeState = DECODE_LENGTH;
+		}
+		if( _decodeState == DECODE_LENGTH ) {
+			if( !transfer(src, buffer, _decodeRead) ) {
+				return false;
+			}
+			_decodeRemaining = readPacketLength(buffer, _decodeRead);
+			if( _decodeState == DECODE_DISCARD ) {
+				return discard(src, buffer);
+			}
+			buffer.ensureCapacity(_decodeRemaining + _readTagSize);
+			_decodeState = DECODE_PAYLOAD;
+		}
+		if( _decodeState == DECODE_PAYLOAD ) {
+			if( !transfer(src, buffer, _decodeRead + _decodeRemaining + _readTagSize) ) {
+				return false;
+			}
+			_decodeMacRead = 0;
+			_decodeState = DECODE_MAC;
+		}
+		if( _readMac != null ) {
+			int len = Math.min(src.remaining(), _serverMacDigest.length - _decodeMacRead);
+			src.get(_serverMacDigest, _decodeMacRead, len);
+			if( (_decodeMacRead += len) < _serverMacDigest.length ) {
+				return false;
+			}
+		}
+		decodePacket(buffer, _decodeRead, _decodeRemaining);
+		if( _decodeState == DECODE_DISCARD ) {
+			return discard(src, buffer);
+		}
+		_decodeState = DECODE_START;
+		return true;
+	}
+
+	/**
+	 * Consumes the data being discarded after a corrupt packet from the
+	 * inbound data passed to {@link #decode(ByteBuffer, Buffer)}, and throws
+	 * the exception for the corrupt packet once all of it has been consumed.
+	 *
+	 * @param src containing inbound data read from socket
+	 * @param buffer to use for discarded data
+	 * @return false if more data needs to be discarded
+	 * @throws JSchException once all data has been discarded
+	 */
+	private boolean discard(final ByteBuffer src, final Buffer buffer) throws JSchException {
+		while( _decodeDiscard > 0 && src.hasRemaining() ) {
+			int len = Math.min(Math.min(_decodeDiscard, src.remaining()), buffer.buffer.length);
+			src.get(buffer.buffer, 0, len);
+			if( _decodeDiscardMac != null ) {
+				_decodeDiscardMac.update(buffer.buffer, 0, len);
+			}
+			_decodeDiscard -= len;
+		}
+		if( _decodeDiscard > 0 ) {
+			return false;
+		}
+		if( _decodeDiscardMac != null ) {
+			_decodeDiscardMac.doFinal(buffer.buffer, 0);
+		}
+		throw _decodeDiscardError;
+	}
+
+	/**
+	 * Returns the size of the first block of an inbound packet to read in
+	 * which contains the packet length.  Authenticated ciphers and
+	 * encrypt-then-MAC only require the 4 byte packet length since the rest of
+	 * the packet is processed as a whole once it has been read in.
+	 *
+	 * @return size of first block of inbound packet
+	 */
+	private int getFirstReadSize() {
+		return _readAead != null || _readEtm ? 4 : Math.max(MIN_READ_SIZE, _readCipherSize);
+	}
+
+	/**
+	 * Transfers available data from {@code src} into the buffer until the
+	 * buffer's index reaches the specified {@code end}.
+	 *
+	 * @param src to transfer from
+	 * @param buffer to transfer into
+	 * @param end index to fill buffer to
+	 * @return true if buffer has been filled to end index
+	 */
+	private static boolean transfer(final ByteBuffer src, final Buffer buffer, final int end) {
+		int len = Math.min(src.remaining(), end - buffer.index);
+		src.get(buffer.buffer, buffer.index, len);
+		buffer.skip(len);
+		return buffer.index == end;
+	}
+
+	/**
+	 * Decrypts the first block of an inbound packet which has been read into
+	 * the buffer and returns the remaining number of bytes of the packet which
+	 * need to be read in (excluding the MAC or authentication tag).
+	 *
+	 * @param buffer containing first block of packet
+	 * @param read number of bytes of packet read into buffer
+	 * @return number of bytes remaining to read for packet
+	 * @throws JSchException if packet length is invalid
+	 * @throws IOException if any IO errors occur
+	 */
+	private int readPacketLength(final Buffer buffer, final int read) throws JSchException, IOException {
+		final int packetLen;
+		if( _readAead != null ) {
+			// Authenticated ciphers return the length without modifying the
+			// packet since the length is authenticated with the packet data
+			packetLen = _readAead.getPacketLength(_inSequence, buffer.buffer, 0);
+		} else {
+			if( _readCipher != null && !_readEtm ) {	// Length unencrypted with ETM
+				final long start = _metrics.isEnabled() ? System.nanoTime() : 0;
+				_readCipher.update(buffer.buffer, 0, read, buffer.buffer, 0);
+				if( start != 0 ) {
+					_metrics.time(Metrics.Timer.DECRYPT, _metricsTag, System.nanoTime() - start);
+				}
+			}
+			packetLen = buffer.getInt();
 		}
 
-		// Read total length of the SSH packet to determine how much to read in
+		// Check total length of the SSH packet to determine how much to read in
 		// RFC 4253 6.1 Maximum Packet Length - Throw exception if invalid size.
 		// Implementations should check that the packet length is reasonable in
 		// order for the implementation to avoid denial of service and/or buffer
 		// overflow attacks.
-		final int packetLen = buffer.getInt();
 		if( packetLen < 5 || packetLen > Packet.MAX_SIZE ) {
 			startDiscard(buffer, packetLen, Packet.MAX_SIZE, packetLen < 16 ? "too small" : "too big", SSH_DISCONNECT_PROTOCOL_ERROR);
+			return 0;	// Discarding by non-blocking decode
 		}
 
 		// Determine required space needed to read in remaining packet data and
@@ -149,33 +417,143 @@ final class SessionIO {
 		final int remaining = packetLen + 4 - read;
 		if( remaining % Math.max(MIN_READ_SIZE, _readCipherSize) != 0 ) {
 			startDiscard(buffer, packetLen, Packet.MAX_SIZE - _readCipherSize, "invalid size", SSH_DISCONNECT_PROTOCOL_ERROR);
+			return 0;	// Discarding by non-blocking decode
 		}
+		return remaining;
+	}
 
-		// Read in rest of inbound packet from the input stream
-		if( remaining > 0 ) {
-			buffer.ensureCapacity(remaining);	// Always ensure buffer capacity
-			getByte(buffer, remaining);
-			if( _readCipher != null ) {
+	/**
+	 * Decrypts the remaining data of an inbound packet which has been read
+	 * into the buffer, verifies the MAC sent by the server and decompresses
+	 * the payload if compression is enabled.  When an authenticated cipher is
+	 * used, the entire packet is verified and decrypted in a single pass; when
+	 * encrypt-then-MAC is used, the MAC is verified before decrypting.
+	 *
+	 * @param buffer containing entire packet
+	 * @param read number of bytes in first block (already decrypted)
+	 * @param remaining number of bytes after first block
+	 * @return buffer rewound and ready for use
+	 * @throws JSchException if packet is corrupt
+	 * @throws IOException if any IO errors occur
+	 */
+	private Buffer decodePacket(final Buffer buffer, final int read, final int remaining) throws JSchException, IOException {
+		final boolean timed = _metrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		if( _readAead != null ) {
+			if( !_readAead.decrypt(_inSequence, buffer.buffer, 0, read + remaining) ) {
+				throw new JSchException("Inbound packet is corrupt: MAC verification failed", SSH_DISCONNECT_MAC_ERROR);
+			}
+			buffer.index = read + remaining;	// Exclude authentication tag
+			if( timed ) {
+				_metrics.time(Metrics.Timer.DECRYPT, _metricsTag, System.nanoTime() - start);
+			}
+		} else if( _readEtm ) {
+			// Verify the MAC computed over the encrypted packet before spending
+			// any time decrypting it; since the length was sent unencrypted,
+			// corrupt packets can be rejected without discarding any data
+			final boolean valid = verifyMac(buffer.buffer, buffer.index);
+			if( timed ) {
+				long end = System.nanoTime();
+				_metrics.time(Metrics.Timer.MAC, _metricsTag, end - start);
+				start = end;
+			}
+			if( !valid ) {
+				throw new MACException("Inbound packet is corrupt: MAC verification failed");
+			}
+			_readCipher.update(buffer.buffer, read, remaining, buffer.buffer, read);
+			if( timed ) {
+				_metrics.time(Metrics.Timer.DECRYPT, _metricsTag, System.nanoTime() - start);
+			}
+		} else {
+			if( remaining > 0 && _readCipher != null ) {
 				_readCipher.update(buffer.buffer, read, remaining, buffer.buffer, read);
+				if( timed ) {
+					long end = System.nanoTime();
+					_metrics.time(Metrics.Timer.DECRYPT, _metricsTag, end - start);
+					start = end;
+				}
 			}
-		}
 
-		// Generate MAC for packet data and compare to the MAC found at the end
-		// of the packet sent from server to verify data integrity
-		if( _readMac != null ) {
-			_readMac.update(_inSequence);	// MAC calculation includes inbound packet sequence
-			_readMac.update(buffer.buffer, 0, buffer.index);
-			_readMac.doFinal(_clientMacDigest, 0);
-			getByte(_serverMacDigest, 0, _serverMacDigest.length);	// Read server sent MAC
-			if( !Arrays.equals(_clientMacDigest, _serverMacDigest) ) {
-				if( remaining > Packet.MAX_SIZE ) {
-					throw new MACException("Inbound packet is corrupt: MAC verification failed");
+			// Generate MAC for packet data and compare to the MAC found at the
+			// end of the packet sent from server to verify data integrity
+			if( _readMac != null ) {
+				final boolean valid = verifyMac(buffer.buffer, buffer.index);
+				if( timed ) {
+					_metrics.time(Metrics.Timer.MAC, _metricsTag, System.nanoTime() - start);
+				}
+				if( !valid ) {
+					if( remaining > Packet.MAX_SIZE ) {
+						throw new MACException("Inbound packet is corrupt: MAC verification failed");
+					}
+					startDiscard(buffer, read + remaining - 4, Packet.MAX_SIZE - remaining, "MAC verification failed", SSH_DISCONNECT_MAC_ERROR);
+					return buffer;	// Discarding by non-blocking decode
 				}
-				startDiscard(buffer, packetLen, Packet.MAX_SIZE - remaining, "MAC verification failed", SSH_DISCONNECT_MAC_ERROR);
 			}
 		}
+		return completePacket(buffer, read, remaining);
+	}
 
+	/**
+	 * Verifies the MAC of a packet read in from the pipeline.  The packet
+	 * has already been decrypted by the pipeline's reader thread; when
+	 * encrypt-then-MAC is used, the MAC is verified over the encrypted packet
+	 * retained by the reader.
+	 *
+	 * @param buffer containing entire decrypted packet
+	 * @param read number of bytes in first block
+	 * @param remaining number of bytes after first block
+	 * @param encrypted buffer containing encrypted packet (ETM only)
+	 * @return buffer rewound and ready for use
+	 * @throws JSchException if packet is corrupt
+	 * @throws IOException if any IO errors occur
+	 */
+	private Buffer decodePipelined(final Buffer buffer, final int read, final int remaining, final Buffer encrypted) throws JSchException, IOException {
+		final long start = _metrics.isEnabled() ? System.nanoTime() : 0;
+		final boolean valid = _readEtm ?
+				verifyMac(encrypted.buffer, encrypted.index) :
+				verifyMac(buffer.buffer, buffer.index);
+		if( start != 0 ) {
+			_metrics.time(Metrics.Timer.MAC, _metricsTag, System.nanoTime() - start);
+		}
+		if( !valid ) {
+			throw new MACException("Inbound packet is corrupt: MAC verification failed");
+		}
+		return completePacket(buffer, read, remaining);
+	}
+
+	/**
+	 * Generates the MAC for the specified inbound packet data and compares it
+	 * to the MAC sent by the server following the packet.
+	 *
+	 * @param data of packet
+	 * @param length of packet
+	 * @return true if the MAC sent by server is valid
+	 * @throws MACException if MAC cannot be generated
+	 */
+	private boolean verifyMac(final byte[] data, final int length) throws MACException {
+		_readMac.update(_inSequence);	// MAC calculation includes inbound packet sequence
+		_readMac.update(data, 0, length);
+		_readMac.doFinal(_clientMacDigest, 0);
+		return Arrays.equals(_clientMacDigest, _serverMacDigest);
+	}
+
+	/**
+	 * Completes decoding an inbound packet which has been decrypted and
+	 * verified by incrementing the inbound sequence and decompressing the
+	 * payload if compression is enabled.
+	 *
+	 * @param buffer containing entire packet
+	 * @param read number of bytes in first block
+	 * @param remaining number of bytes after first block
+	 * @return buffer rewound and ready for use
+	 * @throws JSchException if packet cannot be decompressed
+	 */
+	private Buffer completePacket(final Buffer buffer, final int read, final int remaining) throws JSchException {
 		_inSequence++;	// Increment number of inbound packets (required for MAC)
+		if( _metrics.isEnabled() ) {
+			_metrics.count(Metrics.Counter.PACKETS_IN, _metricsTag, 1);
+			_metrics.count(Metrics.Counter.BYTES_IN, _metricsTag, read + remaining + _readTagSize + (_readMac != null ? _serverMacDigest.length : 0));
+		}
 
 		// Decompress the packet data portion if enabled
 		if( _decompressor != null ) {
@@ -196,7 +574,10 @@ final class SessionIO {
 	/**
 	 * Detects an attack on the SSH session during a read operation and throws
 	 * an appropriate exception.  The method will always complete with an
-	 * exception being thrown.
+	 * exception being thrown, except during a non-blocking decode with a CBC
+	 * cipher: the socket channel cannot be read from directly, so the decode
+	 * state is set to discard the data as it is passed to {@code decode()},
+	 * which throws the exception once it has all been consumed.
 	 *
 	 * @param buffer to read into
 	 * @param packetLength
@@ -208,8 +589,9 @@ final class SessionIO {
 	 */
 	private void startDiscard(Buffer buffer, int packetLength, int discard, String msg, int reasonCode) throws JSchException, IOException {
 		// If the server-to-client cipher is not using cipher-block chaining mode
-		// of operation, then the inbound SSH packet is corrupt and session should end
-		if( !_readCipher.isCBC() ) {
+		// of operation or the packet length was not encrypted (ETM), then the
+		// inbound SSH packet is corrupt and session should end
+		if( !_readCipher.isCBC() || _readEtm ) {
 			throw new JSchException("Inbound packet is corrupt: "+msg, reasonCode);
 		}
 
@@ -217,6 +599,13 @@ final class SessionIO {
 		// which needs to be discarded.
 		MAC discardMac = packetLength != Packet.MAX_SIZE ? _readMac : null;
 		discard -= buffer.index;
+		if( _decodeState != DECODE_START && discard > 0 ) {
+			_decodeState = DECODE_DISCARD;
+			_decodeDiscard = discard;
+			_decodeDiscardMac = discardMac;
+			_decodeDiscardError = new JSchException("Inbound packet is corrupt: "+msg, reasonCode);
+			return;
+		}
 		while( discard > 0 ) {
 			buffer.reset();
 			int len = Math.min(discard, buffer.buffer.length);
@@ -235,35 +624,73 @@ final class SessionIO {
 	/**
 	 * Writes the packet to the outbound socket stream after applying encoding.
 	 * Encoding includes compression, random setPadding, MAC hash, and cipher
-	 * encryption.
+	 * encryption.  When an authenticated cipher is used, the packet is
+	 * encrypted in place and its authentication tag replaces the MAC.  When
+	 * encrypt-then-MAC is used, the packet is encrypted in place before the
+	 * MAC is computed over the encrypted packet.
 	 *
 	 * @param packet to send
 	 * @throws Exception if any errors occur
 	 */
 	void write(final Packet packet) throws JSchException, IOException {
+		if( _retiredWriteCipher != null || _retiredWriteMac != null ) {
+			releaseRetiredWrite();
+		}
 		// If compression is enabled, compress the buffer data excluding the
 		// packet size and setPadding size (first 5 bytes of buffer)
 		if( _compressor != null ) {
 			packet.buffer.index = _compressor.compress(packet.buffer.buffer, 5, packet.buffer.index);
 		}
 		// Add random padding to end of packet and set packet length and pad length
-		packet.setPadding(_writeCipher != null ? _writeCipherSize : 8, _random);
+		packet.setPadding(_writeCipher != null ? _writeCipherSize : 8, getWriteUnaligned(), _random);
 
-		// If MAC algorithm is set, add the MAC to end of packet
-		if( _writeMac != null ) {
+		// If authenticated cipher is set, encrypt the packet and add the tag
+		if( _writeAead != null ) {
+			final long start = _metrics.isEnabled() ? System.nanoTime() : 0;
+			packet.buffer.ensureCapacity(_writeAead.getTagSize());
+			_writeAead.encrypt(_outSequence, packet.buffer.buffer, 0, packet.buffer.index);
+			if( start != 0 ) {
+				_metrics.time(Metrics.Timer.ENCRYPT, _metricsTag, System.nanoTime() - start);
+			}
+			put(packet, _writeAead.getTagSize(), null);
+			_outSequence++;
+			return;
+		}
+
+		// If encrypt-then-MAC is used, encrypt the packet following the length
+		// and add the MAC computed over the encrypted packet
+		if( _writeEtm ) {
+			final boolean timed = _metrics.isEnabled();
+			long start = timed ? System.nanoTime() : 0;
+			_writeCipher.update(packet.buffer.buffer, 4, packet.buffer.index - 4, packet.buffer.buffer, 4);
+			if( timed ) {
+				long end = System.nanoTime();
+				_metrics.time(Metrics.Timer.ENCRYPT, _metricsTag, end - start);
+				start = end;
+			}
 			_writeMac.update(_outSequence);
 			_writeMac.update(packet.buffer.buffer, 0, packet.buffer.index);
 			_writeMac.doFinal(packet.buffer.buffer, packet.buffer.index);
+			if( timed ) {
+				_metrics.time(Metrics.Timer.MAC, _metricsTag, System.nanoTime() - start);
+			}
+			put(packet, _writeMac.getBlockSize(), null);
+			_outSequence++;
+			return;
 		}
-		// Apply the encryption to the entire packet contents, excluding MAC at end
-		if( _writeCipher != null ) {
-			_writeCipher.update(packet.buffer.buffer, 0, packet.buffer.index, packet.buffer.buffer, 0);
-		}
-		// Move index to end of MAC (MAC should not have been encrypted)
+
+		// If MAC algorithm is set, add the MAC to end of packet
 		if( _writeMac != null ) {
-			packet.buffer.skip(_writeMac.getBlockSize());
+			final long start = _metrics.isEnabled() ? System.nanoTime() : 0;
+			_writeMac.update(_outSequence);
+			_writeMac.update(packet.buffer.buffer, 0, packet.buffer.index);
+			_writeMac.doFinal(packet.buffer.buffer, packet.buffer.index);
+			if( start != 0 ) {
+				_metrics.time(Metrics.Timer.MAC, _metricsTag, System.nanoTime() - start);
+			}
 		}
-		put(packet);	// Send packet data to session output stream
+		// Encrypt the packet (excluding MAC) and send to session output stream
+		put(packet, _writeMac != null ? _writeMac.getBlockSize() : 0, _writeCipher);
 		_outSequence++;	// Increment outbound sequence after packet's been sent
 	}
 
@@ -306,25 +733,132 @@ final class SessionIO {
 	}
 
 	/**
-	 * Writes the specified packet to the output stream.
+	 * Encrypts the specified packet and adds it to the write batch.  The
+	 * packet is encrypted directly from the packet buffer into the batch if
+	 * the cipher is a {@link ByteBufferCipher}, otherwise it is encrypted in
+	 * place and copied; the MAC following the packet data is appended
+	 * unencrypted.  The batch
+	 * is written to the output stream once it is full or once the oldest
+	 * packet has been held for the maximum latency; otherwise the packet is
+	 * written by the next call to {@link #flush()}.  Packets too large to fit
+	 * in the batch are encrypted in place and written directly after any
+	 * batched packets.
 	 *
 	 * @param p packet to write
+	 * @param macLength length of MAC following packet data in buffer
+	 * @param cipher to encrypt packet with (null if no encryption or already
+	 *			encrypted)
+	 * @throws JSchException if encryption fails
 	 * @throws IOException
 	 */
-	void put(Packet p) throws IOException {
-		_sessionOut.write(p.buffer.buffer, 0, p.buffer.index);
-		_sessionOut.flush();
+	private void put(Packet p, int macLength, Cipher cipher) throws JSchException, IOException {
+		final int length = p.buffer.index;
+		if( _writeBatch.position() + length + macLength > _writeBatch.capacity() ) {
+			flush();	// Make room by writing out any batched packets first
+		}
+		_packetsWritten++;
+		final boolean timed = _metrics.isEnabled();
+		if( timed ) {
+			_metrics.count(Metrics.Counter.PACKETS_OUT, _metricsTag, 1);
+			_metrics.count(Metrics.Counter.BYTES_OUT, _metricsTag, length + macLength);
+		}
+		final long start = timed ? System.nanoTime() : 0;
+		if( length + macLength > _writeBatch.capacity() ) {
+			if( cipher != null ) {
+				cipher.update(p.buffer.buffer, 0, length, p.buffer.buffer, 0);
+				if( timed ) {
+					_metrics.time(Metrics.Timer.ENCRYPT, _metricsTag, System.nanoTime() - start);
+				}
+			}
+			p.buffer.skip(macLength);	// MAC should not have been encrypted
+			_sessionOut.write(p.buffer.buffer, 0, p.buffer.index);
+			_sessionOut.flush();
+			_socketWrites++;
+			return;
+		}
+		if( _writeBatch.position() == 0 ) {
+			_writeBatchTime = System.currentTimeMillis();
+		}
+		if( cipher instanceof ByteBufferCipher ) {
+			((ByteBufferCipher) cipher).update(ByteBuffer.wrap(p.buffer.buffer, 0, length), _writeBatch);
+		} else {
+			if( cipher != null ) {	// Encrypt in place if cipher has no buffer support
+				cipher.update(p.buffer.buffer, 0, length, p.buffer.buffer, 0);
+			}
+			_writeBatch.put(p.buffer.buffer, 0, length);
+		}
+		if( cipher != null && timed ) {
+			_metrics.time(Metrics.Timer.ENCRYPT, _metricsTag, System.nanoTime() - start);
+		}
+		_writeBatch.put(p.buffer.buffer, length, macLength);
+		if( _writeMaxLatency == 0 || System.currentTimeMillis() - _writeBatchTime >= _writeMaxLatency ) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes any packets held in the write batch to the output stream with a
+	 * single write.  Called once there are no more writers waiting to write
+	 * to the session.
+	 *
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		if( _writeBatch.position() > 0 ) {
+			_writeBatch.flip();
+			try {
+				if( _sessionChannel != null ) {
+					while( _writeBatch.hasRemaining() ) {
+						_sessionChannel.write(_writeBatch);
+					}
+				} else {
+					_sessionOut.write(_writeBatch.array(), 0, _writeBatch.limit());
+					_sessionOut.flush();
+				}
+			} finally {
+				_writeBatch.clear();
+			}
+			_socketWrites++;
+		}
+	}
+
+	/**
+	 * Returns the total number of packets written to the session.
+	 *
+	 * @return number of packets written
+	 */
+	long getPacketsWritten() {
+		return _packetsWritten;
+	}
+
+	/**
+	 * Returns the total number of writes to the session's socket stream.  The
+	 * ratio of packets written to socket writes shows how well packets are
+	 * being coalesced.
+	 *
+	 * @return number of socket writes
+	 */
+	long getSocketWrites() {
+		return _socketWrites;
 	}
 
 	/**
 	 * Generates new keys during key exchange and sets up the required
 	 * algorithms for the session including ciphers, MACs and compression
-	 * implementations.
+	 * implementations.  Any read pipeline using the previous keys is stopped
+	 * and a new pipeline is started if enabled for the new keys.  The previous
+	 * algorithms are released to the {@code EnginePool} for reuse: inbound
+	 * algorithms immediately since they are only used by the thread reading
+	 * from the session (which installs new keys), and outbound algorithms by
+	 * the next write since only writers holding the write lock use them.
 	 *
 	 * @param kex to use for generating key values
 	 * @throws JSchException if any errors occur
 	 */
 	void initNewKeys(KeyExchange kex) throws JSchException {
+		stopReadPipeline();	// Pipeline stops reading after new keys message
+		final Cipher oldReadCipher = _readCipher, oldWriteCipher = _writeCipher;
+		final MAC oldReadMac = _readMac, oldWriteMac = _writeMac;
 		KexProposal proposal = kex.getKexProposal();
 		Hash hash = kex.getKexAlgorithm().getHash();
 		byte[] H = kex.getKexAlgorithm().getH();
@@ -368,45 +902,173 @@ final class SessionIO {
 
 			// Generate server-to-client cipher instance
 			_readCipher = CipherManager.getManager().createCipher(proposal.getCipherAlgStoC(), _session);
-			while( _readCipher.getBlockSize() > s2cCipherKey.length ) {
-				buffer.reset();
-				buffer.skip(letterIndex);
-				buffer.putBytes(s2cCipherKey);
-				hash.update(buffer.buffer, 0, buffer.index);
-				s2cCipherKey = Util.join(s2cCipherKey, hash.digest());
-			}
+			s2cCipherKey = expandKey(hash, buffer, letterIndex, s2cCipherKey, _readCipher.getBlockSize());
 			_readCipher.init(Cipher.DECRYPT_MODE, s2cCipherKey, s2cCipherIV);
-			_readCipherSize = _readCipher.getIVSize();
 
-			// Generate server-to-client MAC instance
-			_readMac = HashManager.getManager().createMAC(proposal.getMACAlgStoC());
-			_readMac.init(s2cMacIV);
-			_clientMacDigest = new byte[_readMac.getBlockSize()];
-			_serverMacDigest = new byte[_readMac.getBlockSize()];
+			// Generate server-to-client MAC instance (unless cipher is authenticated)
+			MAC readMac = null;
+			if( !(_readCipher instanceof AEADCipher) ) {
+				readMac = HashManager.getManager().createMAC(proposal.getMACAlgStoC());
+				readMac.init(expandKey(hash, buffer, letterIndex, s2cMacIV, readMac.getBlockSize()));
+			}
+			setReadAlgorithms(_readCipher, readMac);
 
 			// Generate client-to-server cipher instance
 			_writeCipher = CipherManager.getManager().createCipher(proposal.getCipherAlgCtoS(), _session);
-			while( _writeCipher.getBlockSize() > c2sCipherKey.length ) {
-				buffer.reset();
-				buffer.skip(letterIndex);
-				buffer.putBytes(c2sCipherKey);
-				hash.update(buffer.buffer, 0, buffer.index);
-				c2sCipherKey = Util.join(c2sCipherKey, hash.digest());
-			}
+			c2sCipherKey = expandKey(hash, buffer, letterIndex, c2sCipherKey, _writeCipher.getBlockSize());
 			_writeCipher.init(Cipher.ENCRYPT_MODE, c2sCipherKey, c2sCipherIV);
-			_writeCipherSize = _writeCipher.getIVSize();
 
-			// Generate client-to-server MAC instance
-			_writeMac = HashManager.getManager().createMAC(proposal.getMACAlgCtoS());
-			_writeMac.init(c2sMacIV);
+			// Generate client-to-server MAC instance (unless cipher is authenticated)
+			MAC writeMac = null;
+			if( !(_writeCipher instanceof AEADCipher) ) {
+				writeMac = HashManager.getManager().createMAC(proposal.getMACAlgCtoS());
+				writeMac.init(expandKey(hash, buffer, letterIndex, c2sMacIV, writeMac.getBlockSize()));
+			}
+			setWriteAlgorithms(_writeCipher, writeMac);
 
 			// Generate inflater/deflater instances for compression
 			initCompressor(proposal.getCompressionAlgCtoS());
 			initDecompressor(proposal.getCompressionAlgStoC());
+			startReadPipeline(proposal);
 		} catch(Exception e) {
 			throw new JSchException("Failed to initialize new keys", e);
 		}
-		kex.kexCompleted();	// No longer in key exchange
+		EnginePool.release(hash);	// Exchange hash no longer required
+		EnginePool.release(oldReadCipher);
+		EnginePool.release(oldReadMac);
+		_retiredWriteCipher = oldWriteCipher;
+		_retiredWriteMac = oldWriteMac;
+		kex.newKeysInstalled();	// No longer in key exchange
+	}
+
+	/**
+	 * Releases the outbound cipher and MAC replaced by the last key exchange.
+	 * Called by the next writer holding the write lock, so any write using
+	 * the previous algorithms has completed.
+	 */
+	private void releaseRetiredWrite() {
+		EnginePool.release(_retiredWriteCipher);
+		EnginePool.release(_retiredWriteMac);
+		_retiredWriteCipher = null;
+		_retiredWriteMac = null;
+	}
+
+	/**
+	 * Starts the read pipeline if enabled and supported by the negotiated
+	 * server-to-client algorithms.  The pipeline requires a stream mode cipher
+	 * whose keystream can be precomputed, a MAC and no compression (the
+	 * pipeline must see the message type to stop at the new keys message).
+	 * The pipeline reads from the blocking socket stream, so it is not used
+	 * with the non-blocking transport.
+	 *
+	 * @param proposal of negotiated algorithms
+	 */
+	private void startReadPipeline(KexProposal proposal) {
+		if( _readPipelineDepth == 0 || _readMac == null || !KeyStreamCipher.isSupported(_readCipher) ||
+				!Compression.COMPRESSION_NONE.equals(proposal.getCompressionAlgStoC()) ||
+				_session.getConfig().getBoolean(SessionConfig.NIO_TRANSPORT) ) {
+			return;
+		}
+		KeyStreamCipher keyStream = new KeyStreamCipher(_readCipher);
+		_readCipher = keyStream;
+		_readPipeline = new ReadPipeline(keyStream, _readPipelineDepth, _serverMacDigest.length);
+		_session.newThread(keyStream, "Keystream " + _session.getHost() + " session").start();
+		_session.newThread(_readPipeline, "Read pipeline " + _session.getHost() + " session").start();
+	}
+
+	/**
+	 * Stops the read pipeline if running.
+	 */
+	private void stopReadPipeline() {
+		ReadPipeline pipeline = _readPipeline;
+		_readPipeline = null;
+		if( pipeline != null ) {
+			pipeline.close();
+		}
+	}
+
+	/**
+	 * Closes the transport layer, stopping any threads used for reading.
+	 * Called when the session is disconnected.
+	 */
+	void close() {
+		stopReadPipeline();
+	}
+
+	/**
+	 * Expands the specified key to at least the required size as defined in
+	 * RFC 4253 section 7.2, where each additional block of key data is the
+	 * hash of K || H || key so far:
+	 * <pre>
+	 *		K1 = HASH(K || H || X || session_id)
+	 *		K2 = HASH(K || H || K1)
+	 *		K3 = HASH(K || H || K1 || K2)
+	 * </pre>
+	 *
+	 * @param hash to generate key data
+	 * @param buffer containing K || H
+	 * @param length of K || H in buffer
+	 * @param key to expand
+	 * @param size required
+	 * @return expanded key
+	 */
+	private static byte[] expandKey(Hash hash, Buffer buffer, int length, byte[] key, int size) {
+		while( size > key.length ) {
+			buffer.reset();
+			buffer.skip(length);
+			buffer.putBytes(key);
+			hash.update(buffer.buffer, 0, buffer.index);
+			key = Util.join(key, hash.digest());
+		}
+		return key;
+	}
+
+	/**
+	 * Sets the initialized cipher and MAC used for decoding inbound packets.
+	 * If the cipher is an {@code AEADCipher}, the MAC should be null since
+	 * the cipher authenticates the packets.
+	 *
+	 * @param cipher to decrypt inbound packets
+	 * @param mac to verify inbound packets (null if cipher is authenticated)
+	 */
+	void setReadAlgorithms(Cipher cipher, MAC mac) {
+		_readCipher = cipher;
+		if( cipher instanceof AEADCipher ) {
+			_readAead = (AEADCipher) cipher;
+			_readCipherSize = _readAead.getPaddingSize();
+			_readTagSize = _readAead.getTagSize();
+		} else {
+			_readAead = null;
+			_readCipherSize = cipher.getIVSize();
+			_readTagSize = 0;
+		}
+		_readMac = mac;
+		_readEtm = mac instanceof EncryptThenMAC;
+		if( mac != null ) {
+			_clientMacDigest = new byte[mac.getBlockSize()];
+			_serverMacDigest = new byte[mac.getBlockSize()];
+		}
+	}
+
+	/**
+	 * Sets the initialized cipher and MAC used for encoding outbound packets.
+	 * If the cipher is an {@code AEADCipher}, the MAC should be null since
+	 * the cipher authenticates the packets.
+	 *
+	 * @param cipher to encrypt outbound packets
+	 * @param mac to sign outbound packets (null if cipher is authenticated)
+	 */
+	void setWriteAlgorithms(Cipher cipher, MAC mac) {
+		_writeCipher = cipher;
+		if( cipher instanceof AEADCipher ) {
+			_writeAead = (AEADCipher) cipher;
+			_writeCipherSize = _writeAead.getPaddingSize();
+		} else {
+			_writeAead = null;
+			_writeCipherSize = cipher.getIVSize();
+		}
+		_writeMac = mac;
+		_writeEtm = mac instanceof EncryptThenMAC;
 	}
 
 	/**
@@ -454,7 +1116,235 @@ final class SessionIO {
 	}
 
 	int getWriteMacSize() {
-		return _writeMac != null ? _writeMac.getBlockSize() : 0;
+		return _writeAead != null ? _writeAead.getTagSize() : _writeMac != null ? _writeMac.getBlockSize() : 0;
+	}
+
+	/**
+	 * Returns the number of bytes at the start of outbound packets which are
+	 * excluded when padding the packet to the cipher's block size.
+	 * Authenticated ciphers and encrypt-then-MAC only pad the data following
+	 * the unencrypted packet length.
+	 *
+	 * @return number of unaligned bytes at start of outbound packets
+	 */
+	int getWriteUnaligned() {
+		return _writeAead != null || _writeEtm ? 4 : 0;
+	}
+
+	/**
+	 * <p>Pipeline which reads inbound packets ahead on a separate thread so
+	 * the work of each packet is spread across threads: the keystream is
+	 * precomputed by the {@code KeyStreamCipher} helper thread, the reader
+	 * thread reads in and decrypts packets, and the thread reading from the
+	 * session verifies the MACs.  The MAC of a packet is verified while the
+	 * following packets are being read and decrypted.</p>
+	 *
+	 * <p>Packets are handed over in order through a bounded queue and MACs are
+	 * verified by the thread reading from the session, so the inbound sequence
+	 * is only ever updated by that thread.  The reader stops after reading the
+	 * new keys message since the following packets cannot be decrypted until
+	 * the new keys have been installed.</p>
+	 */
+	private final class ReadPipeline implements Runnable {
+
+		/** Cipher decrypting inbound packets with precomputed keystream. */
+		private final KeyStreamCipher __keyStream;
+		/** Packets free to be read into by the reader thread. */
+		private final BlockingQueue<InboundPacket> __free;
+		/** Packets read in and decrypted in order of arrival. */
+		private final BlockingQueue<InboundPacket> __ready;
+		/** Reader thread (null until started). */
+		private volatile Thread __thread;
+		/** True once the pipeline has been closed. */
+		private volatile boolean __closed;
+
+
+		/**
+		 * Creates a new instance of {@code ReadPipeline}.
+		 *
+		 * @param keyStream cipher to decrypt inbound packets
+		 * @param depth number of packets which may be read ahead
+		 * @param macSize size of MAC following inbound packets
+		 */
+		ReadPipeline(KeyStreamCipher keyStream, int depth, int macSize) {
+			__keyStream = keyStream;
+			__free = new ArrayBlockingQueue<InboundPacket>(depth);
+			__ready = new ArrayBlockingQueue<InboundPacket>(depth + 1);	// Room for failure
+			for( int i = 0; i < depth; i++ ) {
+				__free.add(new InboundPacket(macSize));
+			}
+		}
+
+		/**
+		 * Reads in and decrypts inbound packets until the new keys message has
+		 * been read, the pipeline is closed or reading fails.  Read timeouts
+		 * are passed on in order and do not stop the reader; any other failure
+		 * is passed on and stops the reader.
+		 */
+		@Override
+		public void run() {
+			__thread = Thread.currentThread();
+			Exception failure;
+			try {
+				while( !__closed ) {
+					InboundPacket packet = __free.take();
+					try {
+						readPacket(packet);
+						final boolean newKeys = packet.__buffer.buffer[5] == SSH_MSG_NEWKEYS;
+						__ready.put(packet);	// Packet belongs to session once queued
+						if( newKeys ) {
+							return;	// Following packets require new keys
+						}
+					} catch(InterruptedIOException e) {
+						if( __closed ) {
+							break;
+						}
+						packet.__failure = e;	// Pass on read timeout in order
+						__ready.put(packet);
+					}
+				}
+				failure = new IOException("Read pipeline closed");
+			} catch(InterruptedException e) {
+				failure = new IOException("Read pipeline closed");
+			} catch(Exception e) {
+				failure = e;
+			}
+			InboundPacket packet = new InboundPacket(0);
+			packet.__failure = failure;
+			__ready.offer(packet);	// Always room for failure
+		}
+
+		/**
+		 * Reads in the next inbound packet and decrypts it.  When
+		 * encrypt-then-MAC is used, the packet is decrypted into a separate
+		 * buffer since the MAC is verified over the encrypted packet.
+		 *
+		 * @param packet to read into
+		 * @throws JSchException if packet is corrupt or cannot be decrypted
+		 * @throws IOException if any IO errors occur
+		 */
+		private void readPacket(final InboundPacket packet) throws JSchException, IOException {
+			final Buffer buffer = _readEtm ? packet.__encrypted : packet.__buffer;
+			buffer.reset();
+			final int read = getFirstReadSize();
+			buffer.ensureCapacity(read);
+			getByte(buffer, read);
+			final int remaining = readPacketLength(buffer, read);
+			if( remaining > 0 ) {
+				buffer.ensureCapacity(remaining);
+				getByte(buffer, remaining);
+			}
+			getByte(packet.__mac, 0, packet.__mac.length);
+
+			final long start = _metrics.isEnabled() ? System.nanoTime() : 0;
+			if( _readEtm ) {
+				packet.__buffer.reset();
+				packet.__buffer.ensureCapacity(buffer.index);
+				System.arraycopy(buffer.buffer, 0, packet.__buffer.buffer, 0, read);
+				__keyStream.update(buffer.buffer, read, remaining, packet.__buffer.buffer, read);
+				packet.__buffer.index = buffer.index;
+			} else if( remaining > 0 ) {
+				__keyStream.update(buffer.buffer, read, remaining, buffer.buffer, read);
+			}
+			if( start != 0 ) {
+				_metrics.time(Metrics.Timer.DECRYPT, _metricsTag, System.nanoTime() - start);
+			}
+			packet.__read = read;
+			packet.__remaining = remaining;
+		}
+
+		/**
+		 * Takes the next packet read in by the reader thread, blocking until
+		 * available, and verifies its MAC.  The packet data is swapped into
+		 * the specified buffer to avoid copying.
+		 *
+		 * @param buffer to read packet into
+		 * @return buffer containing packet
+		 * @throws JSchException if packet is corrupt or cannot be decoded
+		 * @throws IOException if any IO errors occur
+		 */
+		Buffer read(final Buffer buffer) throws JSchException, IOException {
+			final InboundPacket packet;
+			try {
+				packet = __ready.take();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted reading packet", e);
+			}
+			final Exception failure = packet.__failure;
+			if( failure != null ) {
+				if( failure instanceof InterruptedIOException ) {
+					packet.__failure = null;
+					__free.offer(packet);
+				} else {
+					__ready.offer(packet);	// Fail any following reads
+				}
+				if( failure instanceof IOException ) {
+					throw (IOException) failure;
+				} else if( failure instanceof JSchException ) {
+					throw (JSchException) failure;
+				} else if( failure instanceof RuntimeException ) {
+					throw (RuntimeException) failure;
+				}
+				throw new JSchException("Failed to read packet", failure);
+			}
+
+			// Swap the packet data and MAC sent by server into place
+			final byte[] data = buffer.buffer;
+			buffer.buffer = packet.__buffer.buffer;
+			buffer.index = packet.__buffer.index;
+			packet.__buffer.buffer = data;
+			final byte[] mac = _serverMacDigest;
+			_serverMacDigest = packet.__mac;
+			packet.__mac = mac;
+			try {
+				return decodePipelined(buffer, packet.__read, packet.__remaining, packet.__encrypted);
+			} finally {
+				__free.offer(packet);
+			}
+		}
+
+		/**
+		 * Closes the pipeline, stopping the reader and keystream threads.
+		 */
+		void close() {
+			__closed = true;
+			__keyStream.close();
+			Thread thread = __thread;
+			if( thread != null ) {
+				thread.interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * Inbound packet read in and decrypted by the {@code ReadPipeline}.
+	 */
+	private static final class InboundPacket {
+
+		/** Buffer containing decrypted packet. */
+		final Buffer __buffer = new Buffer();
+		/** Buffer containing encrypted packet (only used with encrypt-then-MAC). */
+		final Buffer __encrypted = new Buffer(0);
+		/** MAC sent by server following packet. */
+		byte[] __mac;
+		/** Number of bytes in first block of packet. */
+		int __read;
+		/** Number of bytes of packet after first block. */
+		int __remaining;
+		/** Cause of failure if packet could not be read (null if read). */
+		Exception __failure;
+
+		/**
+		 * Creates a new instance of {@code InboundPacket}.
+		 *
+		 * @param macSize size of MAC following packet
+		 */
+		InboundPacket(int macSize) {
+			__mac = new byte[macSize];
+		}
+
 	}
 
 }
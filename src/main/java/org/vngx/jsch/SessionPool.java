@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.vngx.jsch.config.SessionConfig;
+import org.vngx.jsch.exception.JSchException;
+import org.vngx.jsch.util.Logger.Level;
+
+/**
+ * <p>Pool of connected and authenticated {@link Session}s which are reused
+ * for opening channels to the same remote host.  Opening a channel through
+ * the pool avoids the cost of connecting the socket, exchanging versions,
+ * performing the key exchange and authenticating the user for every
+ * operation against a host.</p>
+ *
+ * <p>Sessions are pooled by {@link Key} (username, host, port, session
+ * configuration and credentials).  A channel is opened on the first pooled
+ * session for the key which has fewer than the maximum number of channels per
+ * session open; if all sessions are full, a new session is connected and
+ * added to the pool.  A channel counts against its session until the channel
+ * is disconnected, so channels opened through the pool must always be
+ * disconnected once they are no longer used.</p>
+ *
+ * <p>Sessions are connected and channels are opened without holding the
+ * lock for the key; a place on the chosen session is reserved while the
+ * channel is opened.  A new session is added to the pool before it connects,
+ * so threads needing a session for the key while it connects reserve a
+ * place on it and wait for it rather than each connecting another
+ * session.</p>
+ *
+ * <p>Sessions found disconnected are removed from the pool and transparently
+ * replaced by a new session.  If the pool is created with a check interval,
+ * a background thread periodically checks the pooled sessions: sessions with
+ * no open channels which have been idle longer than the idle timeout are
+ * disconnected and removed, and other sessions with no open channels are sent
+ * a keep alive message to detect broken connections.</p>
+ *
+ * @see org.vngx.jsch.Session
+ */
+public final class SessionPool {
+
+	/** Default maximum number of open channels per pooled session. */
+	public static final int DEFAULT_MAX_CHANNELS = 10;
+	/** Default time in milliseconds an unused session is kept in the pool. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000L;
+	/** Default interval in milliseconds between checks of pooled sessions. */
+	public static final long DEFAULT_CHECK_INTERVAL = 60 * 1000L;
+
+	/** Pooled sessions by key. */
+	private final ConcurrentMap<Key,HostSessions> _pool = new ConcurrentHashMap<Key,HostSessions>();
+	/** Maximum number of open channels per pooled session. */
+	private final int _maxChannels;
+	/** Time in milliseconds an unused session is kept in the pool. */
+	private final long _idleTimeout;
+	/** Executor running periodic checks of pooled sessions (null if disabled). */
+	private final ScheduledExecutorService _checkExecutor;
+	/** True if the pool has been closed. */
+	private volatile boolean _closed = false;
+
+
+	/**
+	 * Creates a new instance of <code>SessionPool</code> using the default
+	 * maximum channels per session, idle timeout and check interval.
+	 */
+	public SessionPool() {
+		this(DEFAULT_MAX_CHANNELS, DEFAULT_IDLE_TIMEOUT, DEFAULT_CHECK_INTERVAL);
+	}
+
+	/**
+	 * Creates a new instance of <code>SessionPool</code>.
+	 *
+	 * @param maxChannels maximum number of open channels per session
+	 * @param idleTimeout time in milliseconds an unused session is kept
+	 * @param checkInterval interval in milliseconds between checks of pooled
+	 *			sessions in a background thread (0 to disable)
+	 */
+	public SessionPool(int maxChannels, long idleTimeout, long checkInterval) {
+		if( maxChannels < 1 ) {
+			throw new IllegalArgumentException("Max channels per session must be at least 1: " + maxChannels);
+		} else if( idleTimeout < 0 ) {
+			throw new IllegalArgumentException("Idle timeout cannot be less than zero: " + idleTimeout);
+		} else if( checkInterval < 0 ) {
+			throw new IllegalArgumentException("Check interval cannot be less than zero: " + checkInterval);
+		}
+		_maxChannels = maxChannels;
+		_idleTimeout = idleTimeout;
+		if( checkInterval > 0 ) {
+			_checkExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SessionPool check thread");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			_checkExecutor.scheduleWithFixedDelay(new Runnable() {
+				@Override public void run() {
+					checkSessions();
+				}
+			}, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+		} else {
+			_checkExecutor = null;
+		}
+	}
+
+	/**
+	 * Opens a new channel of the specified type on a pooled session for the
+	 * key, connecting a new session if no pooled session has room for another
+	 * channel.  The returned channel must be connected by the caller and must
+	 * be disconnected once no longer used to release its place on the session.
+	 *
+	 * @param <T> type of channel instance
+	 * @param key of session to open channel on
+	 * @param type of channel to open
+	 * @return new channel instance
+	 * @throws JSchException if the pool is closed, a new session fails to
+	 *			connect or the channel cannot be opened
+	 */
+	public <T extends Channel> T openChannel(Key key, ChannelType type) throws JSchException {
+		HostSessions sessions = getHostSessions(key);
+		for( int attempt = 0; ; attempt++ ) {
+			PooledSession pooled = reserve(key, sessions);
+			try {
+				return pooled.<T>openChannel(type);
+			} catch(JSchException e) {
+				if( pooled.__session.isConnected() || attempt > 0 ) {
+					throw e;
+				}
+				// Session died while opening channel, retry once on another
+				// session (dead session is removed by next reserve)
+			} finally {
+				release(sessions, pooled);
+			}
+		}
+	}
+
+	/**
+	 * Returns a pooled session for the key which has room for another channel,
+	 * connecting a new session if no pooled session has room.  The session is
+	 * owned by the pool and should not be disconnected by the caller; like
+	 * any pooled session, it is disconnected once it has had no open channels
+	 * for longer than the idle timeout.
+	 *
+	 * @param key of session to return
+	 * @return connected and authenticated session
+	 * @throws JSchException if the pool is closed or a new session fails to
+	 *			connect
+	 */
+	public Session getSession(Key key) throws JSchException {
+		HostSessions sessions = getHostSessions(key);
+		PooledSession pooled = reserve(key, sessions);
+		release(sessions, pooled);
+		pooled.__lastUsed = System.currentTimeMillis();
+		return pooled.__session;
+	}
+
+	/**
+	 * Checks all pooled sessions, removing any disconnected sessions and
+	 * disconnecting sessions with no open channels which have been idle longer
+	 * than the idle timeout.  Remaining sessions with no open channels are sent
+	 * a keep alive message; sessions which fail to send are disconnected and
+	 * removed.  This method is called periodically if the pool was created
+	 * with a check interval.
+	 */
+	public void checkSessions() {
+		final long now = System.currentTimeMillis();
+		List<Session> expired = new ArrayList<Session>();
+		List<Session> idle = new ArrayList<Session>();
+		for( HostSessions sessions : _pool.values() ) {
+			sessions.__lock.lock();
+			try {
+				for( Iterator<PooledSession> iter = sessions.__sessions.iterator(); iter.hasNext(); ) {
+					PooledSession pooled = iter.next();
+					if( pooled.isDead() ) {
+						iter.remove();
+					} else if( !pooled.__connecting && pooled.__reserved == 0
+							&& pooled.__session.getChannelCount() == 0 ) {
+						if( now - pooled.__lastUsed >= _idleTimeout ) {
+							iter.remove();
+							expired.add(pooled.__session);
+						} else {
+							idle.add(pooled.__session);
+						}
+					}
+				}
+			} finally {
+				sessions.__lock.unlock();
+			}
+		}
+
+		// Disconnect and send keep alives outside of locks to avoid blocking
+		// threads opening channels while writing to the sessions
+		for( Session session : expired ) {
+			session.disconnect();
+		}
+		for( Session session : idle ) {
+			try {
+				session.sendKeepAliveMsg();
+			} catch(Exception e) {
+				JSch.getLogger().log(Level.INFO, "Pooled session failed keep alive, disconnecting: " + session.getMetricsTag(), e);
+				session.disconnect();	// Removed from pool on next check or use
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of sessions currently in the pool.
+	 *
+	 * @return number of pooled sessions
+	 */
+	public int getSessionCount() {
+		int count = 0;
+		for( HostSessions sessions : _pool.values() ) {
+			sessions.__lock.lock();
+			try {
+				count += sessions.__sessions.size();
+			} finally {
+				sessions.__lock.unlock();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Closes the pool by stopping the background checks and disconnecting all
+	 * pooled sessions (including any channels still open on them).  Once
+	 * closed, the pool cannot be used to open channels.
+	 */
+	public void close() {
+		_closed = true;
+		if( _checkExecutor != null ) {
+			_checkExecutor.shutdownNow();
+		}
+		List<Session> closed = new ArrayList<Session>();
+		for( HostSessions sessions : _pool.values() ) {
+			sessions.__lock.lock();
+			try {
+				for( PooledSession pooled : sessions.__sessions ) {
+					closed.add(pooled.__session);
+				}
+				sessions.__sessions.clear();
+			} finally {
+				sessions.__lock.unlock();
+			}
+		}
+		for( Session session : closed ) {
+			session.disconnect();	// Fails any sessions still connecting
+		}
+	}
+
+	/**
+	 * Returns the sessions for the specified key, creating an empty list of
+	 * sessions if the key has not been used.
+	 *
+	 * @param key of sessions
+	 * @return sessions for key
+	 * @throws JSchException if the pool is closed
+	 */
+	private HostSessions getHostSessions(Key key) throws JSchException {
+		if( key == null ) {
+			throw new IllegalArgumentException("Session pool key cannot be null");
+		} else if( _closed ) {
+			throw new JSchException("Session pool is closed");
+		}
+		HostSessions sessions = _pool.get(key);
+		if( sessions == null ) {
+			HostSessions existing = _pool.putIfAbsent(key, sessions = new HostSessions());
+			if( existing != null ) {
+				sessions = existing;
+			}
+		}
+		return sessions;
+	}
+
+	/**
+	 * Reserves a place for a channel on a pooled session for the key which has
+	 * room for another channel, adding a new session to the pool if no pooled
+	 * session has room.  The lock of the sessions is only held while choosing
+	 * the session; a new session is connected by the thread which added it
+	 * while other threads reserving it wait until it's connected.  The
+	 * reservation must be released once the channel is opened (or failed).
+	 *
+	 * @param key of session to reserve
+	 * @param sessions for key
+	 * @return connected pooled session with a place reserved
+	 * @throws JSchException if the pool is closed or a new session fails to
+	 *			connect
+	 */
+	private PooledSession reserve(Key key, HostSessions sessions) throws JSchException {
+		PooledSession pooled = null;
+		boolean created = false;
+		sessions.__lock.lock();
+		try {
+			for( Iterator<PooledSession> iter = sessions.__sessions.iterator(); iter.hasNext(); ) {
+				PooledSession next = iter.next();
+				if( next.isDead() ) {
+					iter.remove();	// Remove dead session, will be replaced if needed
+				} else if( next.__session.getChannelCount() + next.__reserved < _maxChannels ) {
+					pooled = next;
+					break;
+				}
+			}
+			if( pooled == null ) {
+				pooled = new PooledSession(JSch.getInstance().createSession(key.__username, key.__host, key.__port, key.__config));
+				sessions.__sessions.add(pooled);
+				created = true;
+			}
+			pooled.__reserved++;
+		} finally {
+			sessions.__lock.unlock();
+		}
+
+		try {
+			if( created ) {
+				connect(key, sessions, pooled);
+			} else {
+				pooled.awaitConnected();
+			}
+		} catch(JSchException e) {
+			release(sessions, pooled);
+			throw e;
+		}
+		return pooled;
+	}
+
+	/**
+	 * Releases a place reserved on the pooled session.
+	 *
+	 * @param sessions for key
+	 * @param pooled session to release place on
+	 */
+	private static void release(HostSessions sessions, PooledSession pooled) {
+		sessions.__lock.lock();
+		try {
+			pooled.__reserved--;
+		} finally {
+			sessions.__lock.unlock();
+		}
+	}
+
+	/**
+	 * Connects the new pooled session for the specified key without holding
+	 * the lock of the sessions.  If the session fails to connect, it's removed
+	 * from the pool and the error is passed to any threads waiting for it.
+	 *
+	 * @param key of session to connect
+	 * @param sessions session was added to
+	 * @param pooled session to connect
+	 * @throws JSchException if the session fails to connect
+	 */
+	private void connect(Key key, HostSessions sessions, PooledSession pooled) throws JSchException {
+		Session session = pooled.__session;
+		try {
+			if( key.__userInfo != null ) {
+				session.setUserInfo(key.__userInfo);
+			}
+			session.connect(key.__password);
+			if( _closed ) {	// Pool closed while connecting, don't leak session
+				session.disconnect();
+				throw new JSchException("Session pool is closed");
+			}
+		} catch(JSchException e) {
+			pooled.__error = e;
+			sessions.__lock.lock();
+			try {
+				sessions.__sessions.remove(pooled);
+			} finally {
+				sessions.__lock.unlock();
+			}
+			throw e;
+		} finally {
+			pooled.__connecting = false;
+			pooled.__connected.countDown();
+		}
+	}
+
+	/**
+	 * Key identifying pooled sessions which may be shared.  Keys are equal if
+	 * they have the same username, host, port, session configuration instance,
+	 * password and user info instance, so sessions authenticated with one set
+	 * of credentials are never handed out for another.
+	 */
+	public static final class Key {
+
+		/** Username for connecting to remote host. */
+		final String __username;
+		/** Remote host to connect to. */
+		final String __host;
+		/** Port of remote host to connect to. */
+		final int __port;
+		/** Session configuration (null to use global configuration). */
+		final SessionConfig __config;
+		/** Password to authenticate new sessions (may be null). */
+		final byte[] __password;
+		/** User info to authenticate new sessions (may be null). */
+		final UserInfo __userInfo;
+
+		/**
+		 * Creates a new instance of <code>Key</code>.
+		 *
+		 * @param username to connect with
+		 * @param host to connect to
+		 * @param port to connect to
+		 * @param config to override global configuration (may be null)
+		 * @param password to authenticate new sessions (may be null)
+		 * @param userInfo to authenticate new sessions (may be null)
+		 */
+		public Key(String username, String host, int port, SessionConfig config, byte[] password, UserInfo userInfo) {
+			if( host == null || host.length() == 0 ) {
+				throw new IllegalArgumentException("SSH host cannot be null/empty: " + host);
+			} else if( port < 0 ) {
+				throw new IllegalArgumentException("SSH port cannot be less than zero: " + port);
+			} else if( username == null || username.length() == 0 ) {
+				throw new IllegalArgumentException("SSH username cannot be null/empty: " + username);
+			}
+			__username = username;
+			__host = host;
+			__port = port;
+			__config = config;
+			__password = password != null ? password.clone() : null;
+			__userInfo = userInfo;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if( this == obj ) {
+				return true;
+			} else if( !(obj instanceof Key) ) {
+				return false;
+			}
+			Key key = (Key) obj;
+			return __port == key.__port && __username.equals(key.__username)
+					&& __host.equals(key.__host) && __config == key.__config
+					&& Arrays.equals(__password, key.__password) && __userInfo == key.__userInfo;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = __username.hashCode();
+			hash = 31 * hash + __host.hashCode();
+			hash = 31 * hash + __port;
+			hash = 31 * hash + (__config != null ? System.identityHashCode(__config) : 0);
+			hash = 31 * hash + Arrays.hashCode(__password);
+			return 31 * hash + (__userInfo != null ? System.identityHashCode(__userInfo) : 0);
+		}
+
+		@Override
+		public String toString() {
+			return __username + '@' + __host + ':' + __port;
+		}
+
+	}
+
+	/**
+	 * Sessions pooled for a single key guarded by a lock held while choosing a
+	 * session to open a channel on or adding a new session.  The lock is never
+	 * held while connecting a session or opening a channel.
+	 */
+	private static final class HostSessions {
+		/** Lock guarding the list of sessions. */
+		final ReentrantLock __lock = new ReentrantLock();
+		/** Pooled sessions for key. */
+		final List<PooledSession> __sessions = new ArrayList<PooledSession>();
+	}
+
+	/**
+	 * Session in the pool, its connection state, the places reserved on it and
+	 * the last time it was used.
+	 */
+	private static final class PooledSession {
+		/** Pooled session. */
+		final Session __session;
+		/** Released once the session has connected or failed to connect. */
+		final CountDownLatch __connected = new CountDownLatch(1);
+		/** True while the session is being connected. */
+		volatile boolean __connecting = true;
+		/** Error if the session failed to connect. */
+		volatile JSchException __error;
+		/** Places reserved for channels being opened (guarded by lock). */
+		int __reserved;
+		/** Time in milliseconds the session was last used. */
+		volatile long __lastUsed = System.currentTimeMillis();
+
+		PooledSession(Session session) {
+			__session = session;
+		}
+
+		/**
+		 * Returns true if the session has finished connecting and is no
+		 * longer connected.
+		 */
+		boolean isDead() {
+			return !__connecting && !__session.isConnected();
+		}
+
+		/**
+		 * Waits until the session has finished connecting.
+		 *
+		 * @throws JSchException if the session failed to connect or the
+		 *			thread is interrupted
+		 */
+		void awaitConnected() throws JSchException {
+			try {
+				__connected.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JSchException("Interrupted waiting for pooled session to connect", e);
+			}
+			if( __error != null ) {
+				throw new JSchException("Pooled session failed to connect", __error);
+			}
+		}
+
+		/**
+		 * Opens a new channel on the pooled session and updates the last time
+		 * the session was used.
+		 */
+		<T extends Channel> T openChannel(ChannelType type) throws JSchException {
+			T channel = __session.<T>openChannel(type);
+			__lastUsed = System.currentTimeMillis();
+			return channel;
+		}
+	}
+
+}
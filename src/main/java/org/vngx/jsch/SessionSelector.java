@@ -0,0 +1,605 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.vngx.jsch.config.JSchConfig;
+import org.vngx.jsch.config.SSHConfigConstants;
+import org.vngx.jsch.util.Logger;
+
+/**
+ * Shared pool of selector threads which drive the transport layer of sessions
+ * using the non-blocking transport.  Rather than each session owning a thread
+ * which blocks reading its socket, the session's {@code SocketChannel} is
+ * registered with one of a small, fixed number of selector threads.  When
+ * data arrives the selector thread reads it, decrypts and verifies the MAC of
+ * each complete packet and dispatches it to the session's channels.
+ *
+ * The blocking stream API used by the rest of the library (key exchange,
+ * channel writes, etc) is provided by stream adapters on top of the
+ * non-blocking socket channel which wait for the channel to become ready.
+ * Since dispatching happens on the selector thread, the selector thread never
+ * waits for the socket to become writable: data it cannot write immediately
+ * is kept in a backlog which is written once the selector reports the socket
+ * writable.  Packets the dispatcher sends are deferred by the session rather
+ * than waiting for the session's write lock, and channel data is returned to
+ * the channel's window only as it's read, so a slow reader never blocks the
+ * dispatcher.  Work which still blocks the dispatcher (such as a key exchange
+ * initiated by the server) will delay the other sessions handled by the same
+ * selector thread until complete.
+ *
+ * The number of selector threads is set by the global configuration property
+ * {@link SSHConfigConstants#NIO_SELECTOR_THREADS} when the pool is first used.
+ */
+final class SessionSelector {
+
+	/** Maximum time in milliseconds to wait in select before checking for idle sessions. */
+	private final static int SELECT_TIMEOUT = 1000;
+	/** Size of buffer in bytes used to read inbound data from the socket channel. */
+	private final static int READ_BUFFER_SIZE = 32 * 1024;
+
+	/** Shared selector instance, created when the first session is registered. */
+	private static SessionSelector $selector;
+
+	/** Selector loops which each drive a subset of the registered sessions. */
+	private final SelectorLoop[] _loops;
+	/** Counter to assign sessions to selector loops in round-robin order. */
+	private final AtomicInteger _next = new AtomicInteger();
+
+
+	/**
+	 * Creates a new instance of {@code SessionSelector} with the specified
+	 * number of selector threads.
+	 *
+	 * @param threads number of selector threads
+	 * @throws IOException if selectors cannot be opened
+	 */
+	private SessionSelector(int threads) throws IOException {
+		_loops = new SelectorLoop[threads];
+		for( int i = 0; i < threads; i++ ) {
+			_loops[i] = new SelectorLoop(i);
+		}
+	}
+
+	/**
+	 * Returns the shared {@code SessionSelector} instance, creating and
+	 * starting the selector threads on first use.
+	 *
+	 * @return shared session selector
+	 * @throws IOException if selectors cannot be opened
+	 */
+	static synchronized SessionSelector getSelector() throws IOException {
+		if( $selector == null ) {
+			$selector = new SessionSelector(JSchConfig.getConfig().getInteger(SSHConfigConstants.NIO_SELECTOR_THREADS));
+		}
+		return $selector;
+	}
+
+	/**
+	 * Creates a {@code Socket} backed by a {@code SocketChannel} connected to
+	 * the specified host and port.  The channel is left in blocking mode so
+	 * the socket's streams can be used for the initial connection.
+	 *
+	 * @param host to connect to
+	 * @param port to connect to
+	 * @param timeout in milliseconds (zero or less for no timeout)
+	 * @return connected socket with channel
+	 * @throws IOException if any errors occur
+	 */
+	static Socket createSocket(String host, int port, int timeout) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		try {
+			channel.socket().connect(new InetSocketAddress(host, port), timeout > 0 ? timeout : 0);
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel.socket();
+	}
+
+	/**
+	 * Creates a non-blocking transport for the specified session and socket
+	 * channel.  The transport is not driven by the selector until
+	 * {@link Transport#start()} is called.
+	 *
+	 * @param session to create transport for
+	 * @param channel of session's socket
+	 * @return transport for session
+	 * @throws IOException if channel cannot be made non-blocking
+	 */
+	Transport createTransport(Session session, SocketChannel channel) throws IOException {
+		SelectorLoop loop = _loops[(_next.getAndIncrement() & Integer.MAX_VALUE) % _loops.length];
+		return new Transport(session, channel, loop);
+	}
+
+	/**
+	 * Waits for the specified channel to become ready for the specified
+	 * operations using a temporary selector.  Used by the stream adapters when
+	 * the channel cannot be read from or written to without blocking.
+	 *
+	 * @param channel to wait for
+	 * @param ops to wait for
+	 * @param timeout in milliseconds (zero or less for no timeout)
+	 * @throws IOException if the channel is closed or the timeout elapses
+	 */
+	private static void await(SocketChannel channel, int ops, int timeout) throws IOException {
+		final long start = System.currentTimeMillis();
+		final Selector selector = Selector.open();
+		try {
+			channel.register(selector, ops);
+			while( selector.select(SELECT_TIMEOUT) == 0 ) {
+				if( !channel.isOpen() ) {
+					throw new ClosedChannelException();
+				} else if( timeout > 0 && System.currentTimeMillis() - start >= timeout ) {
+					throw new SocketTimeoutException("Read timed out");
+				}
+			}
+		} finally {
+			selector.close();
+		}
+	}
+
+	/**
+	 * Selector thread which drives the transports of the sessions assigned to
+	 * it.  Registrations are queued and handled by the selector thread to
+	 * avoid blocking on the selector's key set while it is selecting.
+	 */
+	private final static class SelectorLoop implements Runnable {
+
+		/** Selector for the registered session channels. */
+		private final Selector __selector;
+		/** Thread running the selector loop. */
+		private final Thread __thread;
+		/** Transports waiting to be registered with the selector. */
+		private final Queue<Transport> __pending = new ConcurrentLinkedQueue<Transport>();
+		/** Time of the last check for idle sessions. */
+		private long __lastIdleCheck = System.currentTimeMillis();
+
+		/**
+		 * Creates a new selector loop and starts its daemon thread.
+		 *
+		 * @param index of selector loop
+		 * @throws IOException if selector cannot be opened
+		 */
+		SelectorLoop(int index) throws IOException {
+			__selector = Selector.open();
+			__thread = new Thread(this, "Session selector " + index);
+			__thread.setDaemon(true);
+			__thread.start();
+		}
+
+		/**
+		 * Queues the transport to be registered and wakes up the selector.
+		 *
+		 * @param transport to register
+		 */
+		void register(Transport transport) {
+			__pending.add(transport);
+			__selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			while( true ) {
+				try {
+					__selector.select(SELECT_TIMEOUT);
+
+					// Register any newly started transports
+					Transport transport;
+					while( (transport = __pending.poll()) != null ) {
+						transport.register(__selector);
+					}
+
+					// Write backlogs and read and dispatch inbound data for ready sessions
+					Iterator<SelectionKey> keys = __selector.selectedKeys().iterator();
+					while( keys.hasNext() ) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						if( key.isValid() && key.isWritable() ) {
+							((Transport) key.attachment()).writable();
+						}
+						if( key.isValid() && key.isReadable() ) {
+							((Transport) key.attachment()).readable();
+						}
+					}
+
+					// Check for sessions which have timed out waiting for data
+					long now = System.currentTimeMillis();
+					if( now - __lastIdleCheck >= SELECT_TIMEOUT ) {
+						__lastIdleCheck = now;
+						for( SelectionKey key : __selector.keys() ) {
+							if( key.isValid() ) {
+								((Transport) key.attachment()).checkIdle(now);
+							}
+						}
+					}
+				} catch(Exception e) {
+					JSch.getLogger().log(Logger.Level.ERROR, "Unexpected error in session selector", e);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Non-blocking transport for a single session which is driven by a
+	 * selector loop.  Provides blocking stream adapters on top of the socket
+	 * channel for use by the session's transport layer.
+	 */
+	final static class Transport {
+
+		/** Session the transport belongs to. */
+		private final Session __session;
+		/** Socket channel of the session (non-blocking). */
+		private final SocketChannel __channel;
+		/** Selector loop driving the transport. */
+		private final SelectorLoop __loop;
+		/**
+		 * Inbound data read from the channel (always kept ready for reading).
+		 * Direct buffer so the channel reads from the socket without copying
+		 * through a temporary direct buffer.
+		 */
+		private final ByteBuffer __inbound = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		/** Buffer for decoding inbound packets. */
+		private final Buffer __readBuffer = new Buffer();
+		/** Packet for sending responses from the dispatcher. */
+		private final Packet __readPacket = new Packet(__readBuffer);
+		/** Blocking input stream adapter for reading from the channel. */
+		private final InputStream __in = new TransportInputStream();
+		/** Blocking output stream adapter for writing to the channel. */
+		private final OutputStream __out = new TransportOutputStream();
+		/** Selection key of channel once registered with selector. */
+		private SelectionKey __key;
+		/** Time of the last data read from the channel. */
+		private long __lastRead = System.currentTimeMillis();
+		/** Number of consecutive read timeouts (keep alive messages sent). */
+		private int __timeouts = 0;
+		/** True if the transport has been closed. */
+		private volatile boolean __closed = false;
+		/**
+		 * Outbound data written by the selector thread which could not be
+		 * written without blocking, ready for reading (null if none).
+		 */
+		private ByteBuffer __backlog;
+		/** Lock guarding writes to the channel and the outbound backlog. */
+		private final ReentrantLock __writeLock = new ReentrantLock();
+
+		/**
+		 * Creates a new instance of {@code Transport} and switches the channel
+		 * to non-blocking mode.
+		 *
+		 * @param session transport belongs to
+		 * @param channel of session's socket
+		 * @param loop to drive transport
+		 * @throws IOException if channel cannot be made non-blocking
+		 */
+		private Transport(Session session, SocketChannel channel, SelectorLoop loop) throws IOException {
+			__session = session;
+			__channel = channel;
+			__loop = loop;
+			__inbound.limit(0);	// Start with no inbound data ready to read
+			__channel.configureBlocking(false);
+		}
+
+		/**
+		 * Starts driving the transport by registering it with its selector.
+		 */
+		void start() {
+			__loop.register(this);
+		}
+
+		/**
+		 * Stops driving the transport by cancelling its registration with the
+		 * selector.  The socket channel is closed by the session.
+		 */
+		void close() {
+			__closed = true;
+			if( __key != null ) {
+				__key.cancel();
+			}
+		}
+
+		/**
+		 * Returns the blocking input stream adapter for the transport.
+		 *
+		 * @return input stream
+		 */
+		InputStream getInputStream() {
+			return __in;
+		}
+
+		/**
+		 * Returns the blocking output stream adapter for the transport.
+		 *
+		 * @return output stream
+		 */
+		OutputStream getOutputStream() {
+			return __out;
+		}
+
+		/**
+		 * Registers the channel with the specified selector for reading.  Called
+		 * by the selector thread.
+		 *
+		 * @param selector to register with
+		 */
+		private void register(Selector selector) {
+			if( __closed ) {
+				return;
+			}
+			try {
+				__key = __channel.register(selector, SelectionKey.OP_READ, this);
+			} catch(IOException e) {
+				failed(e);
+			}
+		}
+
+		/**
+		 * Reads available data from the channel and dispatches any complete
+		 * packets to the session.  Called by the selector thread.
+		 */
+		private void readable() {
+			try {
+				if( fill() < 0 ) {
+					throw new IOException("End of Session InputStream");
+				}
+				__session.processInbound(__inbound, __readBuffer, __readPacket);
+			} catch(Exception e) {
+				failed(e);
+			}
+		}
+
+		/**
+		 * Writes as much of the outbound backlog as the channel accepts without
+		 * blocking, and stops waiting for the channel to become writable once
+		 * the backlog is empty.  Called by the selector thread.
+		 */
+		private void writable() {
+			__writeLock.lock();
+			try {
+				if( writeBacklog() ) {
+					__key.interestOps(SelectionKey.OP_READ);
+				}
+			} catch(IOException e) {
+				failed(e);
+			} finally {
+				__writeLock.unlock();
+			}
+		}
+
+		/**
+		 * Writes as much of the outbound backlog to the channel as possible
+		 * without blocking.  Must be called holding the write lock.
+		 *
+		 * @return true if the backlog is empty
+		 * @throws IOException if any IO errors occur
+		 */
+		private boolean writeBacklog() throws IOException {
+			if( __backlog != null ) {
+				__channel.write(__backlog);
+				if( __backlog.hasRemaining() ) {
+					return false;
+				}
+				__backlog = null;
+			}
+			return true;
+		}
+
+		/**
+		 * Adds the remaining data in the specified buffer to the outbound
+		 * backlog and waits for the channel to become writable.  Must be called
+		 * by the selector thread holding the write lock.
+		 *
+		 * @param src data to add to backlog
+		 */
+		private void addBacklog(ByteBuffer src) {
+			ByteBuffer backlog = ByteBuffer.allocate((__backlog != null ? __backlog.remaining() : 0) + src.remaining());
+			if( __backlog != null ) {
+				backlog.put(__backlog);
+			}
+			backlog.put(src);
+			backlog.flip();
+			__backlog = backlog;
+			if( __key != null && __key.isValid() ) {
+				__key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+
+		/**
+		 * Checks if the session has timed out waiting for data and notifies the
+		 * session to send a keep alive message or end the session.  Called by
+		 * the selector thread.
+		 *
+		 * @param now current time in milliseconds
+		 */
+		private void checkIdle(long now) {
+			int timeout = __session.getTimeout();
+			if( timeout > 0 && now - __lastRead >= timeout ) {
+				__lastRead = now;
+				try {
+					if( !__session.readTimedOut(__timeouts++) ) {
+						throw new SocketTimeoutException("Read timed out");
+					}
+				} catch(Exception e) {
+					failed(e);
+				}
+			}
+		}
+
+		/**
+		 * Ends the transport after a failure and notifies the session.
+		 *
+		 * @param e cause of failure
+		 */
+		private void failed(Exception e) {
+			if( !__closed ) {
+				close();
+				__session.transportClosed(e);
+			}
+		}
+
+		/**
+		 * Reads any available data from the channel into the inbound buffer
+		 * without blocking.
+		 *
+		 * @return number of bytes read or -1 if end of stream
+		 * @throws IOException if any IO errors occur
+		 */
+		private int fill() throws IOException {
+			__inbound.compact();
+			try {
+				int read = __channel.read(__inbound);
+				if( read > 0 ) {
+					__lastRead = System.currentTimeMillis();
+					__timeouts = 0;
+				}
+				return read;
+			} finally {
+				__inbound.flip();
+			}
+		}
+
+		/**
+		 * Blocking input stream adapter which reads any buffered inbound data
+		 * before reading from the channel.  Only used by the thread dispatching
+		 * packets for the session (selector thread).
+		 */
+		private final class TransportInputStream extends InputStream {
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if( len == 0 ) {
+					return 0;
+				}
+				while( !__inbound.hasRemaining() ) {
+					int read = fill();
+					if( read < 0 ) {
+						return -1;
+					} else if( read == 0 ) {
+						await(__channel, SelectionKey.OP_READ, __session.getTimeout());
+					}
+				}
+				len = Math.min(len, __inbound.remaining());
+				__inbound.get(b, off, len);
+				return len;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return __inbound.remaining();
+			}
+
+			@Override
+			public void close() throws IOException {
+				__channel.close();
+			}
+
+		}
+
+		/**
+		 * Output stream adapter which writes to the channel, waiting for the
+		 * channel to become writable if the socket's send buffer is full.  The
+		 * selector thread never waits; any data it cannot write is added to the
+		 * backlog, which is written before any later data.  Also a
+		 * {@code WritableByteChannel} so direct buffers can be written to the
+		 * channel without copying.  Writes are serialized by the session's
+		 * write lock.
+		 */
+		private final class TransportOutputStream extends OutputStream implements WritableByteChannel {
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				write(ByteBuffer.wrap(b, off, len));
+			}
+
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				int length = src.remaining();
+				final boolean selectorThread = Thread.currentThread() == __loop.__thread;
+				while( true ) {
+					__writeLock.lock();
+					try {
+						if( writeBacklog() && src.hasRemaining() ) {
+							__channel.write(src);
+						}
+						if( !src.hasRemaining() ) {
+							return length;
+						} else if( selectorThread ) {
+							addBacklog(src);
+							return length;
+						}
+					} finally {
+						__writeLock.unlock();
+					}
+					await(__channel, SelectionKey.OP_WRITE, 0);
+				}
+			}
+
+			@Override
+			public boolean isOpen() {
+				return __channel.isOpen();
+			}
+
+			@Override
+			public void close() throws IOException {
+				__channel.close();
+			}
+
+		}
+
+	}
+
+}
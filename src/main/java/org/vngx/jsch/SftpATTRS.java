@@ -62,6 +62,12 @@ public final class SftpATTRS {
 	private String[] _extended;
 
 
+	/**
+	 * Creates a new empty instance of <code>SftpATTRS</code> with no flags
+	 * set, used for setting only specific attributes of a file.
+	 */
+	SftpATTRS() { }
+
 	/**
 	 * Creates a new instance of <code>SftpATTRS</code> from the specified
 	 * <code>Buffer</code> response from the SFTP channel containing the
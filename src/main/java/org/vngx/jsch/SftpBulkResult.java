@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+import static org.vngx.jsch.constants.SftpProtocol.SSH_FX_FAILURE;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.vngx.jsch.exception.SftpException;
+
+/**
+ * <p>Results of a bulk SFTP operation performed on many paths at once, such
+ * as {@link ChannelSftp#stat(java.util.List)}.  Each path passed to the
+ * operation maps to either its result or the failure returned by the server
+ * for that path, so the failure of one path does not prevent the operation
+ * from being performed on the others.</p>
+ *
+ * <p>Paths are kept in the order they were passed to the operation, whatever
+ * the order the server replied in.  A path passed more than once is only
+ * sent to the server once and is reported once, at the position it was
+ * first passed.</p>
+ *
+ * @param <T> type of result for each path
+ *
+ * @see org.vngx.jsch.ChannelSftp
+ */
+public final class SftpBulkResult<T> {
+
+	/** Outcomes by path in the order paths were passed to the operation. */
+	private final Map<String,Outcome<T>> _outcomes;
+
+
+	/**
+	 * Creates a new instance of <code>SftpBulkResult</code>.  Instances should
+	 * only be created by the SFTP channel, hence the package access level.
+	 *
+	 * @param size expected number of paths
+	 */
+	SftpBulkResult(int size) {
+		_outcomes = new LinkedHashMap<String,Outcome<T>>(Math.max(16, size * 4 / 3 + 1));
+	}
+
+	/**
+	 * Adds the specified path in the next position of the results, returning
+	 * false if the path was already added and should not be sent again.
+	 *
+	 * @param path passed to operation
+	 * @return true if path was added
+	 */
+	boolean add(String path) {
+		if( _outcomes.containsKey(path) ) {
+			return false;
+		}
+		_outcomes.put(path, new Outcome<T>());
+		return true;
+	}
+
+	/**
+	 * Sets the result for the specified path.
+	 *
+	 * @param path
+	 * @param result
+	 */
+	void succeeded(String path, T result) {
+		Outcome<T> outcome = _outcomes.get(path);
+		outcome.__result = result;
+		outcome.__failure = null;
+	}
+
+	/**
+	 * Sets the failure for the specified path.
+	 *
+	 * @param path
+	 * @param failure
+	 */
+	void failed(String path, SftpException failure) {
+		_outcomes.get(path).__failure = failure;
+	}
+
+	/**
+	 * Returns the result for the specified path, throwing the failure if the
+	 * operation failed for the path.
+	 *
+	 * @param path passed to operation
+	 * @return result for path (null for operations without a result)
+	 * @throws SftpException if the operation failed for the path or the path
+	 *			was not part of the operation
+	 */
+	public T get(String path) throws SftpException {
+		Outcome<T> outcome = _outcomes.get(path);
+		if( outcome == null ) {
+			throw new SftpException(SSH_FX_FAILURE, "Path was not part of bulk operation: "+path);
+		} else if( outcome.__failure != null ) {
+			throw outcome.__failure;
+		}
+		return outcome.__result;
+	}
+
+	/**
+	 * Returns an unmodifiable map of results by path for the paths which
+	 * succeeded, in the order the paths were passed to the operation.
+	 *
+	 * @return results of succeeded paths
+	 */
+	public Map<String,T> getResults() {
+		Map<String,T> results = new LinkedHashMap<String,T>();
+		for( Map.Entry<String,Outcome<T>> entry : _outcomes.entrySet() ) {
+			if( entry.getValue().__failure == null ) {
+				results.put(entry.getKey(), entry.getValue().__result);
+			}
+		}
+		return Collections.unmodifiableMap(results);
+	}
+
+	/**
+	 * Returns an unmodifiable map of failures by path for the paths which
+	 * failed, in the order the paths were passed to the operation.
+	 *
+	 * @return failures of failed paths
+	 */
+	public Map<String,SftpException> getFailures() {
+		Map<String,SftpException> failures = new LinkedHashMap<String,SftpException>();
+		for( Map.Entry<String,Outcome<T>> entry : _outcomes.entrySet() ) {
+			if( entry.getValue().__failure != null ) {
+				failures.put(entry.getKey(), entry.getValue().__failure);
+			}
+		}
+		return Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * Returns true if the operation succeeded for every path.
+	 *
+	 * @return true if no paths failed
+	 */
+	public boolean isSuccess() {
+		return failedCount() == 0;
+	}
+
+	/**
+	 * Returns the number of paths which failed.
+	 *
+	 * @return number of failed paths
+	 */
+	private int failedCount() {
+		int failed = 0;
+		for( Outcome<T> outcome : _outcomes.values() ) {
+			if( outcome.__failure != null ) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	@Override
+	public String toString() {
+		int failed = failedCount();
+		return "SftpBulkResult[succeeded=" + (_outcomes.size() - failed) + ", failed=" + failed + "]";
+	}
+
+	/**
+	 * Outcome of the operation for a single path, either its result or its
+	 * failure.
+	 *
+	 * @param <T> type of result
+	 */
+	private static final class Outcome<T> {
+		/** Result for path (null if failed or no result). */
+		T __result;
+		/** Failure for path (null if succeeded). */
+		SftpException __failure;
+	}
+
+}
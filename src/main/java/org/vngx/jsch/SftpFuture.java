@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+import static org.vngx.jsch.constants.SftpProtocol.SSH_FX_FAILURE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.vngx.jsch.exception.SftpException;
+import org.vngx.jsch.util.Logger.Level;
+
+/**
+ * <p>Result of an asynchronous SFTP operation started with {@link AsyncSftp}.
+ * The result can be waited for with {@link #get()} or {@link #getResult()},
+ * or handled when the operation completes by adding a {@link Listener}.</p>
+ *
+ * <p>Listeners are called by the thread which completes the operation, which
+ * is usually the thread reading replies from the SFTP channel; listeners
+ * should return quickly and must not wait on the result of another operation
+ * on the same channel.  Listeners added after the operation has completed are
+ * called immediately by the thread adding the listener.</p>
+ *
+ * <p>Cancelling a future only stops waiting for the result; the request has
+ * already been sent to the server and may still be performed.</p>
+ *
+ * @param <T> type of result
+ *
+ * @see org.vngx.jsch.AsyncSftp
+ */
+public final class SftpFuture<T> implements Future<T> {
+
+	/** State of future waiting for operation to complete. */
+	private final static int PENDING = 0;
+	/** State of future once operation has completed successfully. */
+	private final static int COMPLETED = 1;
+	/** State of future once operation has failed. */
+	private final static int FAILED = 2;
+	/** State of future once cancelled. */
+	private final static int CANCELLED = 3;
+
+	/** Current state of future. */
+	private final AtomicInteger _state = new AtomicInteger(PENDING);
+	/** Latch released once the future is done. */
+	private final CountDownLatch _done = new CountDownLatch(1);
+	/** Lock guarding the listeners. */
+	private final ReentrantLock _lock = new ReentrantLock();
+	/** Listeners to call once the future is done (null once called). */
+	private List<Listener<T>> _listeners = new ArrayList<Listener<T>>(2);
+	/** Result of operation if completed. */
+	private volatile T _result;
+	/** Cause of failure if operation failed. */
+	private volatile SftpException _failure;
+
+
+	/**
+	 * Creates a new instance of <code>SftpFuture</code>.  Futures should only
+	 * be created by the SFTP client, hence the package access level.
+	 */
+	SftpFuture() { }
+
+	/**
+	 * Completes the operation with the specified result.
+	 *
+	 * @param result of operation
+	 * @return true if the future was completed, false if already done
+	 */
+	boolean complete(T result) {
+		if( !_state.compareAndSet(PENDING, COMPLETED) ) {
+			return false;
+		}
+		_result = result;
+		done();
+		return true;
+	}
+
+	/**
+	 * Completes the operation with the specified failure.
+	 *
+	 * @param failure cause of failure
+	 * @return true if the future was failed, false if already done
+	 */
+	boolean fail(SftpException failure) {
+		if( !_state.compareAndSet(PENDING, FAILED) ) {
+			return false;
+		}
+		_failure = failure;
+		done();
+		return true;
+	}
+
+	/**
+	 * Releases any waiting threads and calls the listeners once the future is
+	 * done.
+	 */
+	private void done() {
+		_done.countDown();
+		List<Listener<T>> listeners;
+		_lock.lock();
+		try {
+			listeners = _listeners;
+			_listeners = null;
+		} finally {
+			_lock.unlock();
+		}
+		for( Listener<T> listener : listeners ) {
+			notifyListener(listener);
+		}
+	}
+
+	/**
+	 * Calls the specified listener, logging any exception thrown.
+	 *
+	 * @param listener to call
+	 */
+	private void notifyListener(Listener<T> listener) {
+		try {
+			listener.completed(this);
+		} catch(RuntimeException e) {
+			JSch.getLogger().log(Level.WARN, "SftpFuture listener failed: " + e, e);
+		}
+	}
+
+	/**
+	 * Adds a listener to call once the operation completes, fails or is
+	 * cancelled.  If the future is already done, the listener is called
+	 * immediately.
+	 *
+	 * @param listener to add
+	 * @return this future
+	 */
+	public SftpFuture<T> addListener(Listener<T> listener) {
+		if( listener == null ) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		_lock.lock();
+		try {
+			if( _listeners != null ) {
+				_listeners.add(listener);
+				return this;
+			}
+		} finally {
+			_lock.unlock();
+		}
+		notifyListener(listener);
+		return this;
+	}
+
+	/**
+	 * Waits for the operation to complete and returns its result.  Unlike
+	 * {@link #get()}, the failure of the operation is thrown directly.
+	 *
+	 * @return result of operation
+	 * @throws SftpException if the operation failed, was cancelled or the
+	 *			thread was interrupted while waiting
+	 */
+	public T getResult() throws SftpException {
+		try {
+			_done.await();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SftpException(SSH_FX_FAILURE, "Interrupted waiting for SFTP operation", e);
+		}
+		switch( _state.get() ) {
+			case COMPLETED:
+				return _result;
+			case FAILED:
+				throw _failure;
+			default:
+				throw new SftpException(SSH_FX_FAILURE, "SFTP operation was cancelled");
+		}
+	}
+
+	/**
+	 * Returns the result of the operation without waiting.  Used by the SFTP
+	 * client from listeners once the operation has completed.
+	 *
+	 * @return result of operation or null if not completed
+	 */
+	T getNow() {
+		return _result;
+	}
+
+	/**
+	 * Returns the cause of failure if the operation failed.
+	 *
+	 * @return cause of failure or null if not failed
+	 */
+	public SftpException getFailure() {
+		return _failure;
+	}
+
+	/**
+	 * Returns true if the operation completed successfully.
+	 *
+	 * @return true if completed successfully
+	 */
+	public boolean isSuccess() {
+		return _state.get() == COMPLETED;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if( !_state.compareAndSet(PENDING, CANCELLED) ) {
+			return false;
+		}
+		done();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return _state.get() == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone() {
+		return _state.get() != PENDING;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		_done.await();
+		return report();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if( !_done.await(timeout, unit) ) {
+			throw new TimeoutException("Timed out waiting for SFTP operation");
+		}
+		return report();
+	}
+
+	/**
+	 * Returns the result of the done future or throws the appropriate
+	 * exception if it failed or was cancelled.
+	 *
+	 * @return result of operation
+	 * @throws ExecutionException if the operation failed
+	 */
+	private T report() throws ExecutionException {
+		switch( _state.get() ) {
+			case COMPLETED:
+				return _result;
+			case FAILED:
+				throw new ExecutionException(_failure);
+			default:
+				throw new CancellationException("SFTP operation was cancelled");
+		}
+	}
+
+	/**
+	 * Listener called once an SFTP operation is done.
+	 *
+	 * @param <T> type of result
+	 */
+	public interface Listener<T> {
+
+		/**
+		 * Called once the operation has completed, failed or been cancelled.
+		 *
+		 * @param future which is done
+		 */
+		void completed(SftpFuture<T> future);
+
+	}
+
+}
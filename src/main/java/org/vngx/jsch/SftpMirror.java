@@ -0,0 +1,640 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+import static org.vngx.jsch.constants.SftpProtocol.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.vngx.jsch.ChannelSftp.LsEntry;
+import org.vngx.jsch.ChannelSftp.LsEntrySelector;
+import org.vngx.jsch.exception.JSchException;
+import org.vngx.jsch.exception.SftpException;
+import org.vngx.jsch.util.Logger.Level;
+
+/**
+ * <p>Recursively mirrors a directory tree between the local file system and
+ * an SFTP server in either direction.  Only files which are missing or whose
+ * size or modification time differ from the source are transferred, and the
+ * modification time of each transferred file is set to match its source so
+ * unchanged files are skipped by the next mirror.</p>
+ *
+ * <p>The trees are walked and the files transferred by a pool of worker
+ * threads, each with its own SFTP channel on the same session, so the round
+ * trips of listing directories and opening, transferring and closing many
+ * small files overlap instead of being paid one file at a time.  Missing
+ * remote directories are created with pipelined MKDIR requests.</p>
+ *
+ * <p>Symbolic links and special files are skipped and files which exist only
+ * in the destination are left in place.  Failures of individual files or
+ * directories do not stop the mirror; they are reported in the
+ * {@link Result} along with the aggregate throughput.</p>
+ *
+ * @see org.vngx.jsch.ChannelSftp
+ */
+public final class SftpMirror {
+
+	/** Session to open SFTP channels on. */
+	private final Session _session;
+	/** Number of SFTP channels (and worker threads) to use. */
+	private final int _channels;
+
+
+	/**
+	 * Creates a new instance of <code>SftpMirror</code> which uses the
+	 * specified number of SFTP channels on the session.
+	 *
+	 * @param session to open SFTP channels on
+	 * @param channels number of concurrent SFTP channels (1 or greater)
+	 */
+	public SftpMirror(Session session, int channels) {
+		if( session == null ) {
+			throw new IllegalArgumentException("Session cannot be null");
+		} else if( channels < 1 ) {
+			throw new IllegalArgumentException("Channels must be 1 or greater: "+channels);
+		}
+		_session = session;
+		_channels = channels;
+	}
+
+	/**
+	 * Mirrors the remote directory tree into the local directory, creating
+	 * the local directory if it does not exist.
+	 *
+	 * @param remoteDir remote directory to mirror from
+	 * @param localDir local directory to mirror to
+	 * @return result of mirror
+	 * @throws SftpException if the mirror cannot be started
+	 */
+	public Result download(String remoteDir, String localDir) throws SftpException {
+		return mirror(true, new File(localDir), remoteDir);
+	}
+
+	/**
+	 * Mirrors the local directory tree into the remote directory, creating
+	 * the remote directory if it does not exist.
+	 *
+	 * @param localDir local directory to mirror from
+	 * @param remoteDir remote directory to mirror to
+	 * @return result of mirror
+	 * @throws SftpException if the mirror cannot be started
+	 */
+	public Result upload(String localDir, String remoteDir) throws SftpException {
+		return mirror(false, new File(localDir), remoteDir);
+	}
+
+	/**
+	 * Performs the mirror in the specified direction, prepares the root
+	 * directories with the first channel on the calling thread and then
+	 * walks the trees with the worker threads, waiting until all the work
+	 * is done.
+	 *
+	 * @param download true to mirror remote to local, false for local to remote
+	 * @param localDir local root directory
+	 * @param remoteDir remote root directory
+	 * @return result of mirror
+	 * @throws SftpException if the mirror cannot be started
+	 */
+	private Result mirror(boolean download, File localDir, String remoteDir) throws SftpException {
+		final Walk walk = new Walk(download);
+		ChannelSftp channel = openChannel();
+		try {
+			boolean created = false;
+			if( download ) {
+				if( !channel.stat(Util.quote(remoteDir)).isDir() ) {
+					throw new SftpException(SSH_FX_FAILURE, "Not a remote directory: "+remoteDir);
+				} else if( !localDir.isDirectory() && !localDir.mkdirs() ) {
+					throw new SftpException(SSH_FX_FAILURE, "Failed to create local directory: "+localDir);
+				}
+			} else {
+				if( !localDir.isDirectory() ) {
+					throw new SftpException(SSH_FX_FAILURE, "Not a local directory: "+localDir);
+				}
+				try {
+					if( !channel.stat(Util.quote(remoteDir)).isDir() ) {
+						throw new SftpException(SSH_FX_FAILURE, "Not a remote directory: "+remoteDir);
+					}
+				} catch(SftpException e) {
+					if( e.getId() != SSH_FX_NO_SUCH_FILE ) {
+						throw e;
+					}
+					channel.mkdir(Util.quote(remoteDir));
+					walk.__result.__directoriesCreated.incrementAndGet();
+					created = true;
+				}
+			}
+			walk.submit(new DirTask(localDir, remoteDir, created));
+
+			List<Thread> threads = new ArrayList<Thread>();
+			for( int i = 1; i < _channels; i++ ) {
+				Thread thread = _session.newThread(new Runnable() {
+					@Override public void run() {
+						ChannelSftp workerChannel = null;
+						try {
+							workerChannel = openChannel();
+						} catch(SftpException e) {
+							JSch.getLogger().log(Level.WARN, "Failed to open SFTP mirror channel: "+e, e);
+							return;	// Remaining workers continue the mirror
+						}
+						try {
+							workerChannel = walk.work(workerChannel);
+						} finally {
+							workerChannel.disconnect();
+						}
+					}
+				}, "SFTP mirror " + i + " " + _session.getHost());
+				thread.start();
+				threads.add(thread);
+			}
+			channel = walk.work(channel);
+			for( Thread thread : threads ) {
+				thread.join();
+			}
+			walk.abandon();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SftpException(SSH_FX_FAILURE, "Interrupted waiting for SFTP mirror", e);
+		} finally {
+			walk.stop();
+			channel.disconnect();
+		}
+		walk.__result.__elapsedTime = System.currentTimeMillis() - walk.__result.__startTime;
+		return walk.__result;
+	}
+
+	/**
+	 * Opens and connects a new SFTP channel on the session.
+	 *
+	 * @return connected SFTP channel
+	 * @throws SftpException if the channel cannot be opened
+	 */
+	private ChannelSftp openChannel() throws SftpException {
+		try {
+			ChannelSftp channel = _session.openChannel(ChannelType.SFTP);
+			channel.connect();
+			return channel;
+		} catch(JSchException e) {
+			throw new SftpException(SSH_FX_NO_CONNECTION, "Failed to open SFTP channel", e);
+		}
+	}
+
+	/**
+	 * Returns the path of the child with the specified name in the remote
+	 * directory.
+	 *
+	 * @param dir remote directory
+	 * @param name of child
+	 * @return remote path of child
+	 */
+	private static String child(String dir, String name) {
+		return dir.endsWith("/") ? dir + name : dir + '/' + name;
+	}
+
+	/**
+	 * Returns true if the local file has the same size and modification time
+	 * (in seconds) as the remote file.
+	 *
+	 * @param file local file
+	 * @param attrs of remote file
+	 * @return true if files are the same
+	 */
+	private static boolean same(File file, SftpATTRS attrs) {
+		return file.length() == attrs.getSize() && file.lastModified() / 1000L == attrs.getModifiedTime();
+	}
+
+	/**
+	 * State of a single mirror shared by the worker threads: the queue of
+	 * directories to walk and files to transfer, and the number of tasks
+	 * which are queued or running.  File tasks are taken before directory
+	 * tasks to keep the queue small while the trees are walked.
+	 */
+	private final class Walk {
+		/** Marker task which tells a worker to stop. */
+		private final Task __stop = new Task() {
+			@Override public void run(ChannelSftp channel, Walk walk) { }
+			@Override public String getPath(Walk walk) { return null; }
+		};
+		/** Queue of tasks to perform. */
+		final BlockingDeque<Task> __queue = new LinkedBlockingDeque<Task>();
+		/** Number of tasks which are queued or running. */
+		final AtomicInteger __tasks = new AtomicInteger();
+		/** True to mirror remote to local, false for local to remote. */
+		final boolean __download;
+		/** Result of the mirror. */
+		final Result __result = new Result();
+
+		Walk(boolean download) {
+			__download = download;
+		}
+
+		/**
+		 * Queues the specified task to be performed by a worker.
+		 *
+		 * @param task to perform
+		 */
+		void submit(Task task) {
+			__tasks.incrementAndGet();
+			if( task instanceof FileTask ) {
+				__queue.addFirst(task);
+			} else {
+				__queue.addLast(task);
+			}
+		}
+
+		/**
+		 * Performs tasks with the specified channel until all the tasks of the
+		 * mirror are done.  The channel is replaced with a new one after any
+		 * failed task, since the failure may have left replies unread or
+		 * handles open on it.
+		 *
+		 * @param channel to perform tasks with
+		 * @return channel the worker finished with, to be disconnected
+		 */
+		ChannelSftp work(ChannelSftp channel) {
+			try {
+				for( Task task; (task = __queue.takeFirst()) != __stop; ) {
+					try {
+						task.run(channel, this);
+					} catch(Exception e) {
+						__result.__failures.put(task.getPath(this), e);
+						channel.disconnect();
+						try {
+							channel = openChannel();
+						} catch(SftpException ce) {
+							JSch.getLogger().log(Level.WARN, "Failed to reopen SFTP mirror channel: "+ce, ce);
+							return channel;	// Leave tasks to remaining workers
+						}
+					} finally {
+						if( __tasks.decrementAndGet() == 0 ) {
+							stop();
+						}
+					}
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return channel;
+		}
+
+		/**
+		 * Reports any tasks left in the queue once all the workers have
+		 * stopped, which only happens if the channels of all workers failed.
+		 */
+		void abandon() {
+			for( Task task; (task = __queue.pollFirst()) != null; ) {
+				if( task != __stop ) {
+					__result.__failures.put(task.getPath(this), new SftpException(SSH_FX_CONNECTION_LOST, "SFTP mirror channels failed"));
+				}
+			}
+		}
+
+		/**
+		 * Stops all the workers once there is no more work to do.
+		 */
+		void stop() {
+			for( int i = 0; i < _channels; i++ ) {
+				__queue.addLast(__stop);
+			}
+		}
+	}
+
+	/**
+	 * Unit of work performed by a worker of the mirror.
+	 */
+	private interface Task {
+
+		/**
+		 * Performs the task.
+		 *
+		 * @param channel of worker performing the task
+		 * @param walk the task belongs to
+		 * @throws Exception if the task fails
+		 */
+		void run(ChannelSftp channel, Walk walk) throws Exception;
+
+		/**
+		 * Returns the source path of the task for reporting failures.
+		 *
+		 * @param walk the task belongs to
+		 * @return source path
+		 */
+		String getPath(Walk walk);
+
+	}
+
+	/**
+	 * Task which compares a source directory with its destination, queuing
+	 * a task for each subdirectory and each file which has changed.
+	 */
+	private final class DirTask implements Task {
+		/** Local directory. */
+		final File __local;
+		/** Remote directory. */
+		final String __remote;
+		/** True if the destination was just created (so is known to be empty). */
+		final boolean __created;
+
+		DirTask(File local, String remote, boolean created) {
+			__local = local;
+			__remote = remote;
+			__created = created;
+		}
+
+		@Override
+		public void run(ChannelSftp channel, Walk walk) throws Exception {
+			if( walk.__download ) {
+				download(channel, walk);
+			} else {
+				upload(channel, walk);
+			}
+		}
+
+		/**
+		 * Lists the remote directory and compares each entry with the local
+		 * directory.
+		 */
+		private void download(ChannelSftp channel, final Walk walk) throws Exception {
+			final List<LsEntry> entries = new ArrayList<LsEntry>();
+			channel.ls(Util.quote(__remote), new LsEntrySelector() {
+				@Override public int select(LsEntry entry) {
+					entries.add(entry);
+					return CONTINUE;
+				}
+			});
+			for( LsEntry entry : entries ) {
+				String name = entry.getFilename();
+				SftpATTRS attrs = entry.getAttrs();
+				if( ".".equals(name) || "..".equals(name) || attrs.isLink() ) {
+					continue;
+				}
+				File local = new File(__local, name);
+				String remote = child(__remote, name);
+				if( attrs.isDir() ) {
+					if( !local.isDirectory() ) {
+						if( !local.mkdir() ) {
+							walk.__result.__failures.put(remote, new IOException("Failed to create local directory: "+local));
+							continue;
+						}
+						walk.__result.__directoriesCreated.incrementAndGet();
+					}
+					walk.submit(new DirTask(local, remote, false));
+				} else if( local.isFile() && same(local, attrs) ) {
+					walk.__result.__filesSkipped.incrementAndGet();
+				} else {
+					walk.submit(new FileTask(local, remote, attrs));
+				}
+			}
+		}
+
+		/**
+		 * Lists the local directory and compares each file with the remote
+		 * directory, creating any missing remote subdirectories.
+		 */
+		private void upload(ChannelSftp channel, Walk walk) throws Exception {
+			File[] files = __local.listFiles();
+			if( files == null ) {
+				throw new IOException("Failed to list local directory: "+__local);
+			}
+			final Map<String,SftpATTRS> existing = new HashMap<String,SftpATTRS>();
+			if( !__created ) {
+				channel.ls(Util.quote(__remote), new LsEntrySelector() {
+					@Override public int select(LsEntry entry) {
+						existing.put(entry.getFilename(), entry.getAttrs());
+						return CONTINUE;
+					}
+				});
+			}
+
+			List<String> mkdirs = new ArrayList<String>();
+			Map<String,File> mkdirFiles = new HashMap<String,File>();
+			for( File local : files ) {
+				String name = local.getName();
+				String remote = child(__remote, name);
+				SftpATTRS attrs = existing.get(name);
+				if( local.isDirectory() ) {
+					if( attrs == null ) {
+						mkdirs.add(remote);
+						mkdirFiles.put(remote, local);
+					} else if( attrs.isDir() ) {
+						walk.submit(new DirTask(local, remote, false));
+					} else {
+						walk.__result.__failures.put(local.getPath(), new SftpException(SSH_FX_FAILURE, "Not a remote directory: "+remote));
+					}
+				} else if( !local.isFile() ) {
+					continue;	// Skip special files
+				} else if( attrs != null && !attrs.isDir() && same(local, attrs) ) {
+					walk.__result.__filesSkipped.incrementAndGet();
+				} else {
+					walk.submit(new FileTask(local, remote, null));
+				}
+			}
+
+			if( !mkdirs.isEmpty() ) {
+				SftpBulkResult<Void> created = channel.mkdir(mkdirs);
+				for( Map.Entry<String,SftpException> failure : created.getFailures().entrySet() ) {
+					walk.__result.__failures.put(mkdirFiles.get(failure.getKey()).getPath(), failure.getValue());
+				}
+				for( String remote : created.getResults().keySet() ) {
+					walk.__result.__directoriesCreated.incrementAndGet();
+					walk.submit(new DirTask(mkdirFiles.get(remote), remote, true));
+				}
+			}
+		}
+
+		@Override
+		public String getPath(Walk walk) {
+			return walk.__download ? __remote : __local.getPath();
+		}
+	}
+
+	/**
+	 * Task which transfers a single changed file and sets its modification
+	 * time to match the source.
+	 */
+	private final class FileTask implements Task {
+		/** Local file. */
+		final File __local;
+		/** Remote file. */
+		final String __remote;
+		/** Attributes of remote file for downloads (null for uploads). */
+		final SftpATTRS __attrs;
+
+		FileTask(File local, String remote, SftpATTRS attrs) {
+			__local = local;
+			__remote = remote;
+			__attrs = attrs;
+		}
+
+		@Override
+		public void run(ChannelSftp channel, Walk walk) throws Exception {
+			if( walk.__download ) {
+				FileOutputStream out = new FileOutputStream(__local);
+				try {
+					channel.get(Util.quote(__remote), out);
+				} finally {
+					try { out.close(); } catch(IOException ie) { /* Ignore error. */ }
+				}
+				__local.setLastModified(__attrs.getModifiedTime() * 1000L);
+			} else {
+				long modified = __local.lastModified();
+				FileInputStream in = new FileInputStream(__local);
+				try {
+					channel.put(in, Util.quote(__remote));
+				} finally {
+					try { in.close(); } catch(IOException ie) { /* Ignore error. */ }
+				}
+				SftpATTRS attrs = new SftpATTRS();
+				attrs.setACMODTIME((int) (modified / 1000L), (int) (modified / 1000L));
+				channel.setStat(Util.quote(__remote), attrs);
+			}
+			walk.__result.__filesTransferred.incrementAndGet();
+			walk.__result.__bytesTransferred.addAndGet(__local.length());
+		}
+
+		@Override
+		public String getPath(Walk walk) {
+			return walk.__download ? __remote : __local.getPath();
+		}
+	}
+
+	/**
+	 * Result of a mirror with the number of files and bytes transferred, the
+	 * aggregate throughput and the paths which failed.
+	 */
+	public static final class Result {
+		/** Time in milliseconds the mirror started. */
+		final long __startTime = System.currentTimeMillis();
+		/** Time in milliseconds the mirror took. */
+		volatile long __elapsedTime;
+		/** Number of files transferred. */
+		final AtomicLong __filesTransferred = new AtomicLong();
+		/** Number of unchanged files skipped. */
+		final AtomicLong __filesSkipped = new AtomicLong();
+		/** Number of bytes transferred. */
+		final AtomicLong __bytesTransferred = new AtomicLong();
+		/** Number of destination directories created. */
+		final AtomicLong __directoriesCreated = new AtomicLong();
+		/** Failures by source path. */
+		final Map<String,Exception> __failures = new ConcurrentHashMap<String,Exception>();
+
+		Result() { }
+
+		/**
+		 * Returns the number of files which were transferred.
+		 *
+		 * @return number of files transferred
+		 */
+		public long getFilesTransferred() {
+			return __filesTransferred.get();
+		}
+
+		/**
+		 * Returns the number of unchanged files which were skipped.
+		 *
+		 * @return number of files skipped
+		 */
+		public long getFilesSkipped() {
+			return __filesSkipped.get();
+		}
+
+		/**
+		 * Returns the number of bytes transferred.
+		 *
+		 * @return number of bytes transferred
+		 */
+		public long getBytesTransferred() {
+			return __bytesTransferred.get();
+		}
+
+		/**
+		 * Returns the number of destination directories which were created.
+		 *
+		 * @return number of directories created
+		 */
+		public long getDirectoriesCreated() {
+			return __directoriesCreated.get();
+		}
+
+		/**
+		 * Returns the time in milliseconds the mirror took.
+		 *
+		 * @return elapsed time in milliseconds
+		 */
+		public long getElapsedTime() {
+			return __elapsedTime;
+		}
+
+		/**
+		 * Returns the aggregate throughput of the mirror in bytes per second.
+		 *
+		 * @return bytes transferred per second
+		 */
+		public long getBytesPerSecond() {
+			return __bytesTransferred.get() * 1000L / Math.max(1L, __elapsedTime);
+		}
+
+		/**
+		 * Returns an unmodifiable map of failures by source path for the
+		 * files and directories which could not be mirrored.
+		 *
+		 * @return failures by source path
+		 */
+		public Map<String,Exception> getFailures() {
+			return Collections.unmodifiableMap(__failures);
+		}
+
+		/**
+		 * Returns true if every file and directory was mirrored.
+		 *
+		 * @return true if there were no failures
+		 */
+		public boolean isSuccess() {
+			return __failures.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "SftpMirror.Result[transferred=" + __filesTransferred + ", skipped=" + __filesSkipped
+					+ ", bytes=" + __bytesTransferred + ", directories=" + __directoriesCreated
+					+ ", failures=" + __failures.size() + ", bytes/s=" + getBytesPerSecond() + "]";
+		}
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.algorithm;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Mac;
+import org.vngx.jsch.config.JSchConfig;
+
+/**
+ * <p>Pool of JCE engine instances ({@code javax.crypto.Cipher}, {@code Mac}
+ * and {@code MessageDigest}) for each algorithm, shared by all sessions.
+ * Creating an engine resolves the algorithm against the registered security
+ * providers, which is slow and serialized across threads; since engines can be
+ * reinitialized with new keys, engines released by a session after a key
+ * exchange are kept and reused by the next session or key exchange requiring
+ * the same algorithm.</p>
+ *
+ * <p>An engine checked out of the pool is confined to the caller until it is
+ * released, so engines are never shared between threads while in use.  The
+ * number of idle engines kept for each algorithm is limited by the global
+ * configuration property {@link JSchConfig#ENGINE_POOL_SIZE}; engines released
+ * once the limit has been reached are discarded.  Idle engines are discarded if
+ * the {@link JSchConfig#DEFAULT_SECURITY_PROVIDER} changes.</p>
+ *
+ * <p><strong>Note:</strong> This implementation is thread-safe.</p>
+ *
+ * @param <T> type of engine
+ *
+ * @see org.vngx.jsch.algorithm.Releasable
+ */
+public abstract class EnginePool<T> {
+
+	/** Pool of {@code javax.crypto.Cipher} engines by transformation. */
+	public static final EnginePool<javax.crypto.Cipher> CIPHERS = new EnginePool<javax.crypto.Cipher>() {
+		@Override
+		protected javax.crypto.Cipher newInstance(String algorithm, String provider) throws GeneralSecurityException {
+			return provider.length()==0 ? javax.crypto.Cipher.getInstance(algorithm) :
+										  javax.crypto.Cipher.getInstance(algorithm, provider);
+		}
+	};
+
+	/** Pool of {@code Mac} engines by algorithm. */
+	public static final EnginePool<Mac> MACS = new EnginePool<Mac>() {
+		@Override
+		protected Mac newInstance(String algorithm, String provider) throws GeneralSecurityException {
+			return provider.length()==0 ? Mac.getInstance(algorithm) : Mac.getInstance(algorithm, provider);
+		}
+
+		@Override
+		protected void reset(Mac engine) {
+			engine.reset();
+		}
+	};
+
+	/** Pool of {@code MessageDigest} engines by algorithm. */
+	public static final EnginePool<MessageDigest> DIGESTS = new EnginePool<MessageDigest>() {
+		@Override
+		protected MessageDigest newInstance(String algorithm, String provider) throws GeneralSecurityException {
+			return provider.length()==0 ? MessageDigest.getInstance(algorithm) :
+										  MessageDigest.getInstance(algorithm, provider);
+		}
+
+		@Override
+		protected void reset(MessageDigest engine) {
+			engine.reset();
+		}
+	};
+
+	/** Map of idle engines by algorithm name. */
+	private final ConcurrentMap<String,Idle<T>> _idle = new ConcurrentHashMap<String,Idle<T>>();
+	/** Security provider used to create the idle engines. */
+	private volatile String _provider = "";
+
+
+	/**
+	 * Creates a new instance of {@code EnginePool}.
+	 */
+	protected EnginePool() { }
+
+	/**
+	 * Checks out an engine for the specified algorithm, reusing an idle
+	 * engine if available or creating a new engine using the configured
+	 * security provider.  The engine is confined to the caller until released
+	 * and must be initialized before use.
+	 *
+	 * @param algorithm name of engine
+	 * @return engine instance
+	 * @throws GeneralSecurityException if engine cannot be created
+	 */
+	public T checkout(String algorithm) throws GeneralSecurityException {
+		String provider = JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER);
+		if( !provider.equals(_provider) ) {
+			_idle.clear();	// Discard engines created by previous provider
+			_provider = provider;
+		}
+		Idle<T> idle = _idle.get(algorithm);
+		T engine = idle != null ? idle.poll() : null;
+		return engine != null ? engine : newInstance(algorithm, provider);
+	}
+
+	/**
+	 * Releases the specified engine back to the pool of idle engines for the
+	 * algorithm.  The caller must not use the engine once released.
+	 *
+	 * @param algorithm name of engine
+	 * @param engine to release (ignored if null)
+	 */
+	public void release(String algorithm, T engine) {
+		final int maxIdle = JSchConfig.getConfig().getInteger(JSchConfig.ENGINE_POOL_SIZE);
+		if( engine == null || maxIdle <= 0 ) {
+			return;
+		}
+		reset(engine);
+		Idle<T> idle = _idle.get(algorithm);
+		if( idle == null ) {
+			Idle<T> created = new Idle<T>();
+			if( (idle = _idle.putIfAbsent(algorithm, created)) == null ) {
+				idle = created;
+			}
+		}
+		idle.offer(engine, maxIdle);
+	}
+
+	/**
+	 * Releases any pooled engine held by the specified algorithm if the
+	 * algorithm implements {@code Releasable}; other algorithms are ignored.
+	 * The algorithm must not be used once released.
+	 *
+	 * @param algorithm to release (ignored if null)
+	 */
+	public static void release(Algorithm algorithm) {
+		if( algorithm instanceof Releasable ) {
+			((Releasable) algorithm).release();
+		}
+	}
+
+	/**
+	 * Returns the number of idle engines in the pool for the specified
+	 * algorithm.
+	 *
+	 * @param algorithm name of engine
+	 * @return number of idle engines
+	 */
+	public int getIdleCount(String algorithm) {
+		Idle<T> idle = _idle.get(algorithm);
+		return idle != null ? idle.__size.get() : 0;
+	}
+
+	/**
+	 * Creates a new engine for the specified algorithm using the specified
+	 * security provider.
+	 *
+	 * @param algorithm name of engine
+	 * @param provider name of security provider (empty for JCE default)
+	 * @return new engine instance
+	 * @throws GeneralSecurityException if engine cannot be created
+	 */
+	protected abstract T newInstance(String algorithm, String provider) throws GeneralSecurityException;
+
+	/**
+	 * Resets the state of the specified engine before it is added to the
+	 * pool of idle engines.  Engines are always reinitialized when checked
+	 * out, so by default nothing is reset.
+	 *
+	 * @param engine to reset
+	 */
+	protected void reset(T engine) { }
+
+	/**
+	 * Idle engines for a single algorithm with a count to enforce the
+	 * maximum number of idle engines without walking the queue.
+	 *
+	 * @param <T> type of engine
+	 */
+	private static final class Idle<T> {
+
+		/** Queue of idle engines. */
+		final ConcurrentLinkedQueue<T> __engines = new ConcurrentLinkedQueue<T>();
+		/** Number of idle engines in queue. */
+		final AtomicInteger __size = new AtomicInteger();
+
+		/**
+		 * Removes and returns an idle engine.
+		 *
+		 * @return idle engine or null if none
+		 */
+		T poll() {
+			T engine = __engines.poll();
+			if( engine != null ) {
+				__size.decrementAndGet();
+			}
+			return engine;
+		}
+
+		/**
+		 * Adds the engine to the idle engines unless the maximum number of
+		 * idle engines has been reached.
+		 *
+		 * @param engine to add
+		 * @param maxIdle maximum number of idle engines
+		 */
+		void offer(T engine, int maxIdle) {
+			int size;
+			do {
+				if( (size = __size.get()) >= maxIdle ) {
+					return;	// Discard engine, pool is full
+				}
+			} while( !__size.compareAndSet(size, size + 1) );
+			__engines.offer(engine);
+		}
+
+	}
+
+}
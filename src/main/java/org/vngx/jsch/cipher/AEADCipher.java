@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.cipher;
+
+/**
+ * <p>{@code AEADCipher} defines an interface for a {@code Cipher} providing
+ * authenticated encryption with associated data (AEAD).  An authenticated
+ * cipher both encrypts the packet and generates an authentication tag which is
+ * sent following the packet in place of a MAC; when an authenticated cipher is
+ * negotiated the MAC algorithm is ignored.</p>
+ *
+ * <p>Unlike other ciphers, the packet length field is not encrypted with the
+ * rest of the packet data as part of a single stream; instead the cipher is
+ * given the entire packet and determines how the length is protected.  For
+ * AES-GCM the length is sent in the clear and authenticated as additional
+ * data, so only the data following the length must be a multiple of the
+ * cipher's padding size.</p>
+ *
+ * <p><a href="http://tools.ietf.org/html/rfc5647">RFC 5647 - AES Galois
+ * Counter Mode for the Secure Shell Transport Layer Protocol</a></p>
+ * <p><a href="http://cvsweb.openbsd.org/cgi-bin/cvsweb/src/usr.bin/ssh/PROTOCOL">
+ * OpenSSH Protocol: AES-GCM</a></p>
+ *
+ * @see org.vngx.jsch.cipher.Cipher
+ */
+public interface AEADCipher extends Cipher {
+
+	/**
+	 * Returns the length in bytes of the authentication tag which follows each
+	 * encrypted packet.
+	 *
+	 * @return authentication tag size
+	 */
+	int getTagSize();
+
+	/**
+	 * Returns the block size which the packet data following the packet
+	 * length field must be padded to a multiple of.
+	 *
+	 * @return padding block size
+	 */
+	int getPaddingSize();
+
+	/**
+	 * Returns the packet length of the inbound packet starting at the
+	 * specified {@code offset} in the buffer without modifying the buffer.
+	 * Only the first 4 bytes of the packet are required to be read in.
+	 *
+	 * @param sequence number of packet
+	 * @param buffer containing start of packet
+	 * @param offset of packet in buffer
+	 * @return packet length
+	 * @throws CipherException if any errors occur
+	 */
+	int getPacketLength(int sequence, byte[] buffer, int offset) throws CipherException;
+
+	/**
+	 * Encrypts the packet in place in the specified buffer from the start
+	 * {@code offset} through {@code length} (including the packet length
+	 * field) and writes the authentication tag to the buffer immediately
+	 * following the packet.
+	 *
+	 * @param sequence number of packet
+	 * @param buffer containing packet
+	 * @param offset of packet in buffer
+	 * @param length of packet including packet length field
+	 * @throws CipherException if any errors occur
+	 */
+	void encrypt(int sequence, byte[] buffer, int offset, int length) throws CipherException;
+
+	/**
+	 * Verifies the authentication tag immediately following the packet in the
+	 * buffer and decrypts the packet in place from the start {@code offset}
+	 * through {@code length} (including the packet length field).  If the
+	 * packet fails authentication, false is returned and the packet data
+	 * should not be used.
+	 *
+	 * @param sequence number of packet
+	 * @param buffer containing packet followed by authentication tag
+	 * @param offset of packet in buffer
+	 * @param length of packet including packet length field
+	 * @return true if packet was authenticated and decrypted
+	 * @throws CipherException if any errors occur
+	 */
+	boolean decrypt(int sequence, byte[] buffer, int offset, int length) throws CipherException;
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.vngx.jsch.cipher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>{@code ByteBufferCipher} defines an optional interface for a
+ * {@code Cipher} which can encrypt or decrypt directly between
+ * {@code ByteBuffer}s.  The non-blocking transport batches outbound packets
+ * in a direct buffer, and ciphers implementing this interface encrypt each
+ * packet straight into the batch; other ciphers encrypt the packet in place
+ * before it is copied into the batch.</p>
+ *
+ * <p>The method is kept out of {@link Cipher} so existing implementations of
+ * {@code Cipher} are not required to provide it.</p>
+ *
+ * @see org.vngx.jsch.cipher.Cipher
+ */
+public interface ByteBufferCipher extends Cipher {
+
+	/**
+	 * Encrypts or decrypts (based on the mode set in {@code init()} method
+	 * the remaining bytes of the specified source buffer and places the output
+	 * in the destination buffer, advancing the position of both buffers.  The
+	 * buffers may be direct buffers, allowing the output to be written straight
+	 * into off-heap memory used for socket I/O.
+	 *
+	 * @param src buffer to encrypt/decrypt
+	 * @param dest destination buffer to receive output
+	 * @throws CipherException if any errors occur
+	 */
+	void update(ByteBuffer src, ByteBuffer dest) throws CipherException;
+
+}
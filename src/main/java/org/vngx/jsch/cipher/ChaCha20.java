@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.cipher;
+
+/**
+ * <p>Pure Java implementation of the original ChaCha20 stream cipher with a
+ * 64-bit nonce and 64-bit block counter, as used by the
+ * chacha20-poly1305@openssh.com cipher.  The state and key stream are kept in
+ * preallocated arrays so no objects are allocated once the instance has been
+ * created.</p>
+ *
+ * <p><a href="http://cr.yp.to/chacha.html">ChaCha, a variant of Salsa20</a></p>
+ *
+ * <p><strong>Note:</strong> Instances are not thread-safe.</p>
+ */
+final class ChaCha20 {
+
+	/** Size in bytes of each block of key stream. */
+	static final int BLOCK_SIZE = 64;
+
+	/** Input state (constants, key, counter and nonce). */
+	private final int[] _state = new int[16];
+	/** Buffer for current block of key stream. */
+	private final byte[] _keyStream = new byte[BLOCK_SIZE];
+
+
+	/**
+	 * Sets the 256-bit key starting at the specified offset.
+	 *
+	 * @param key containing 32 byte key
+	 * @param offset of key
+	 */
+	void setKey(byte[] key, int offset) {
+		_state[0] = 0x61707865;	// "expand 32-byte k"
+		_state[1] = 0x3320646e;
+		_state[2] = 0x79622d32;
+		_state[3] = 0x6b206574;
+		for( int i = 0; i < 8; i++ ) {
+			_state[4 + i] = littleEndian(key, offset + i * 4);
+		}
+	}
+
+	/**
+	 * Sets the nonce to the specified SSH packet sequence number (encoded as
+	 * a 64-bit big endian value) and the block counter to the specified
+	 * value.
+	 *
+	 * @param sequence number of packet
+	 * @param counter of next block of key stream
+	 */
+	void setNonce(int sequence, long counter) {
+		_state[12] = (int) counter;
+		_state[13] = (int) (counter >>> 32);
+		_state[14] = 0;
+		_state[15] = Integer.reverseBytes(sequence);
+	}
+
+	/**
+	 * Encrypts or decrypts the specified source by XORing it with the key
+	 * stream and places the output in the destination.  Each call starts at
+	 * the beginning of the next block of key stream.  The source and
+	 * destination may be the same.
+	 *
+	 * @param src to encrypt/decrypt
+	 * @param srcOffset start position in source
+	 * @param dest destination to receive output
+	 * @param destOffset start position in destination
+	 * @param length of data
+	 */
+	void crypt(byte[] src, int srcOffset, byte[] dest, int destOffset, int length) {
+		while( length > 0 ) {
+			nextBlock();
+			int len = Math.min(length, BLOCK_SIZE);
+			for( int i = 0; i < len; i++ ) {
+				dest[destOffset + i] = (byte) (src[srcOffset + i] ^ _keyStream[i]);
+			}
+			srcOffset += len;
+			destOffset += len;
+			length -= len;
+		}
+	}
+
+	/**
+	 * Copies the specified length of key stream into the destination.  Each
+	 * call starts at the beginning of the next block of key stream.
+	 *
+	 * @param dest destination to receive key stream
+	 * @param offset start position in destination
+	 * @param length of key stream (at most one block)
+	 */
+	void keyStream(byte[] dest, int offset, int length) {
+		nextBlock();
+		System.arraycopy(_keyStream, 0, dest, offset, length);
+	}
+
+	/**
+	 * Generates the next block of key stream from the current state and
+	 * increments the block counter.
+	 */
+	private void nextBlock() {
+		final int[] s = _state;
+		int x0 = s[0], x1 = s[1], x2 = s[2], x3 = s[3], x4 = s[4], x5 = s[5], x6 = s[6], x7 = s[7];
+		int x8 = s[8], x9 = s[9], x10 = s[10], x11 = s[11], x12 = s[12], x13 = s[13], x14 = s[14], x15 = s[15];
+		for( int i = 0; i < 10; i++ ) {
+			// Column rounds
+			x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 16);
+			x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 12);
+			x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 8);
+			x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 7);
+			x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 16);
+			x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 12);
+			x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 8);
+			x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 7);
+			x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 16);
+			x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 12);
+			x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 8);
+			x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 7);
+			x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 16);
+			x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 12);
+			x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 8);
+			x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 7);
+			// Diagonal rounds
+			x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 16);
+			x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 12);
+			x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 8);
+			x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 7);
+			x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 16);
+			x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 12);
+			x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 8);
+			x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 7);
+			x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 16);
+			x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 12);
+			x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 8);
+			x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 7);
+			x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 16);
+			x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 12);
+			x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 8);
+			x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 7);
+		}
+		final byte[] k = _keyStream;
+		putLittleEndian(x0 + s[0], k, 0);
+		putLittleEndian(x1 + s[1], k, 4);
+		putLittleEndian(x2 + s[2], k, 8);
+		putLittleEndian(x3 + s[3], k, 12);
+		putLittleEndian(x4 + s[4], k, 16);
+		putLittleEndian(x5 + s[5], k, 20);
+		putLittleEndian(x6 + s[6], k, 24);
+		putLittleEndian(x7 + s[7], k, 28);
+		putLittleEndian(x8 + s[8], k, 32);
+		putLittleEndian(x9 + s[9], k, 36);
+		putLittleEndian(x10 + s[10], k, 40);
+		putLittleEndian(x11 + s[11], k, 44);
+		putLittleEndian(x12 + s[12], k, 48);
+		putLittleEndian(x13 + s[13], k, 52);
+		putLittleEndian(x14 + s[14], k, 56);
+		putLittleEndian(x15 + s[15], k, 60);
+		if( ++s[12] == 0 ) {
+			s[13]++;	// Carry into high word of block counter
+		}
+	}
+
+	/**
+	 * Returns the 32-bit little endian value at the specified offset.
+	 *
+	 * @param b buffer
+	 * @param offset of value
+	 * @return value
+	 */
+	static int littleEndian(byte[] b, int offset) {
+		return (b[offset] & 0xff) | ((b[offset+1] & 0xff) << 8) |
+				((b[offset+2] & 0xff) << 16) | ((b[offset+3] & 0xff) << 24);
+	}
+
+	/**
+	 * Writes the 32-bit value in little endian order at the specified offset.
+	 *
+	 * @param value to write
+	 * @param b buffer
+	 * @param offset to write at
+	 */
+	static void putLittleEndian(int value, byte[] b, int offset) {
+		b[offset] = (byte) value;
+		b[offset+1] = (byte) (value >>> 8);
+		b[offset+2] = (byte) (value >>> 16);
+		b[offset+3] = (byte) (value >>> 24);
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.cipher;
+
+/**
+ * <p>Implementation of {@code AEADCipher} for the chacha20-poly1305@openssh.com
+ * cipher, implemented in pure Java for hosts without AES hardware support.
+ * The 64 byte key is split into a main key used to encrypt the packet data
+ * and generate the Poly1305 key, and a header key used only to encrypt the
+ * packet length.  The packet sequence number is used as the nonce, so the
+ * cipher has no initialization vector.</p>
+ *
+ * <p>Since the packet length is encrypted with its own key, the length of an
+ * inbound packet is decrypted separately from the first 4 bytes before the
+ * rest of the packet is read.  The Poly1305 tag is computed over the entire
+ * encrypted packet including the encrypted length, allowing the packet to be
+ * authenticated before any of its data is decrypted.</p>
+ *
+ * <p><a href="http://cvsweb.openbsd.org/cgi-bin/cvsweb/src/usr.bin/ssh/PROTOCOL.chacha20poly1305">
+ * OpenSSH Protocol: chacha20-poly1305@openssh.com</a></p>
+ *
+ * @see org.vngx.jsch.cipher.AEADCipher
+ */
+public final class ChaCha20Poly1305 implements AEADCipher {
+
+	/** Constant IV size (sequence number is used as nonce). */
+	private static final int IV_SIZE = 0;
+	/** Constant key size (main key followed by header key). */
+	private static final int KEY_SIZE = 64;
+	/** Constant block size used for padding packets. */
+	private static final int PADDING_SIZE = 8;
+
+	/** ChaCha20 instance keyed with main key for packet data and Poly1305 key. */
+	private final ChaCha20 _main = new ChaCha20();
+	/** ChaCha20 instance keyed with header key for packet length. */
+	private final ChaCha20 _header = new ChaCha20();
+	/** Poly1305 instance for generating authentication tags. */
+	private final Poly1305 _poly1305 = new Poly1305();
+	/** Buffer for Poly1305 one-time key generated for each packet. */
+	private final byte[] _polyKey = new byte[32];
+	/** Buffer for authentication tag generated for inbound packets. */
+	private final byte[] _tag = new byte[Poly1305.TAG_SIZE];
+	/** Buffer for decrypting the length of inbound packets. */
+	private final byte[] _length = new byte[4];
+	/** True once the cipher has been initialized with a key. */
+	private boolean _initialized;
+
+
+	@Override
+	public int getIVSize() {
+		return IV_SIZE;
+	}
+
+	@Override
+	public int getBlockSize() {
+		return KEY_SIZE;
+	}
+
+	@Override
+	public boolean isCBC() {
+		return false;
+	}
+
+	@Override
+	public int getTagSize() {
+		return Poly1305.TAG_SIZE;
+	}
+
+	@Override
+	public int getPaddingSize() {
+		return PADDING_SIZE;
+	}
+
+	@Override
+	public void init(int mode, byte[] key, byte[] iv) throws CipherException {
+		if( key == null || key.length < KEY_SIZE ) {
+			throw new CipherException("Failed to initialize cipher: key must be " + KEY_SIZE + " bytes");
+		}
+		_main.setKey(key, 0);
+		_header.setKey(key, 32);
+		_initialized = true;
+	}
+
+	@Override
+	public int getPacketLength(int sequence, byte[] buffer, int offset) throws CipherException {
+		checkInitialized();
+		_header.setNonce(sequence, 0);
+		_header.crypt(buffer, offset, _length, 0, 4);
+		return ((_length[0] & 0xff) << 24) | ((_length[1] & 0xff) << 16) |
+				((_length[2] & 0xff) << 8) | (_length[3] & 0xff);
+	}
+
+	@Override
+	public void encrypt(int sequence, byte[] buffer, int offset, int length) throws CipherException {
+		checkInitialized();
+		_header.setNonce(sequence, 0);
+		_header.crypt(buffer, offset, buffer, offset, 4);
+		initPoly1305(sequence);
+		_main.crypt(buffer, offset + 4, buffer, offset + 4, length - 4);
+		_poly1305.update(buffer, offset, length);
+		_poly1305.doFinal(buffer, offset + length);
+	}
+
+	@Override
+	public boolean decrypt(int sequence, byte[] buffer, int offset, int length) throws CipherException {
+		checkInitialized();
+		initPoly1305(sequence);
+		_poly1305.update(buffer, offset, length);
+		_poly1305.doFinal(_tag, 0);
+
+		// Compare tags in constant time before decrypting any data
+		int diff = 0;
+		for( int i = 0; i < _tag.length; i++ ) {
+			diff |= _tag[i] ^ buffer[offset + length + i];
+		}
+		if( diff != 0 ) {
+			return false;
+		}
+		_header.setNonce(sequence, 0);
+		_header.crypt(buffer, offset, buffer, offset, 4);
+		_main.crypt(buffer, offset + 4, buffer, offset + 4, length - 4);
+		return true;
+	}
+
+	@Override
+	public void update(byte[] src, int srcOffset, int length, byte[] dest, int destOffset) throws CipherException {
+		throw new CipherException("Authenticated cipher must encrypt/decrypt entire packets");
+	}
+
+	/**
+	 * Initializes Poly1305 with the one-time key generated from the first
+	 * block of main key stream for the packet, leaving the main key stream
+	 * positioned at the second block for the packet data.
+	 *
+	 * @param sequence number of packet
+	 */
+	private void initPoly1305(int sequence) {
+		_main.setNonce(sequence, 0);
+		_main.keyStream(_polyKey, 0, _polyKey.length);
+		_poly1305.init(_polyKey, 0);
+	}
+
+	/**
+	 * Checks that the cipher has been initialized with a key.
+	 *
+	 * @throws CipherException if cipher has not been initialized
+	 */
+	private void checkInitialized() throws CipherException {
+		if( !_initialized ) {
+			throw new CipherException("Cipher has not been initialized");
+		}
+	}
+
+}
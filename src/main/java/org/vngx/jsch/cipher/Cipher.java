@@ -138,6 +138,21 @@ public interface Cipher extends Algorithm {
 	 * key in CTR mode.
 	 */
 	String CIPHER_AES256_CTR = "aes256-ctr";
+	/**
+	 * Algorithm name {@value} for {@code Cipher} providing AES with a 128-bit
+	 * key in GCM (Galois/Counter Mode) authenticated encryption mode.
+	 */
+	String CIPHER_AES128_GCM = "aes128-gcm@openssh.com";
+	/**
+	 * Algorithm name {@value} for {@code Cipher} providing AES with a 256-bit
+	 * key in GCM (Galois/Counter Mode) authenticated encryption mode.
+	 */
+	String CIPHER_AES256_GCM = "aes256-gcm@openssh.com";
+	/**
+	 * Algorithm name {@value} for {@code Cipher} providing the ChaCha20 stream
+	 * cipher with Poly1305 authentication.
+	 */
+	String CIPHER_CHACHA20_POLY1305 = "chacha20-poly1305@openssh.com";
 	/**
 	 * Algorithm name {@value} for {@code Cipher} providing ARCFOUR stream
 	 * cipher.
@@ -28,6 +28,11 @@
 
 package org.vngx.jsch.cipher;
 
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.BadPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.ShortBufferException;
@@ -36,7 +41,8 @@ import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.vngx.jsch.Util;
-import org.vngx.jsch.config.JSchConfig;
+import org.vngx.jsch.algorithm.EnginePool;
+import org.vngx.jsch.algorithm.Releasable;
 
 /**
  * <p>Implementation of {@code Cipher} which wraps a {@code javax.crypto.Cipher}
@@ -47,6 +53,10 @@ import org.vngx.jsch.config.JSchConfig;
  * provider has been registered, then the security provider name in the
  * configuration will be used when creating instances.</p>
  *
+ * <p>The JCE cipher instance is checked out of the {@code EnginePool} when
+ * the cipher is first initialized and can be released back to the pool for
+ * reuse once the cipher is no longer used.</p>
+ *
  * <p><a href="http://download.oracle.com/javase/6/docs/technotes/guides/security/crypto/CryptoSpec.html">
  * Java ™ Cryptography Architecture (JCA) Reference Guide</a></p>
  *
@@ -58,7 +68,7 @@ import org.vngx.jsch.config.JSchConfig;
  *
  * @author Michael Laudati
  */
-public class CipherImpl implements Cipher {
+public class CipherImpl implements ByteBufferCipher, Releasable {
 
 	/** Name of cipher to create. */
 	final String _cipherName;
@@ -113,12 +123,8 @@ public class CipherImpl implements Cipher {
 		iv = validateIVSize(iv);	// Update IV size if too large
 		key = validateKeySize(key);	// Update key size if too large
 		try {
-			// Retrieve cipher instance based on JCE provider specified in CipherManager
-			_cipher = JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER).length()==0 ?
-						javax.crypto.Cipher.getInstance(_cipherName) :
-						javax.crypto.Cipher.getInstance(_cipherName, 
-								JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER));
-			_cipher.init(mode, new SecretKeySpec(key, _keyName), new IvParameterSpec(iv));
+			// Check out cipher engine from pool unless already held from a previous init
+			getEngine().init(mode, new SecretKeySpec(key, _keyName), new IvParameterSpec(iv));
 		} catch(Exception e) {
 			_cipher = null;
 			throw new CipherException("Failed to initialize cipher", e);
@@ -134,6 +140,36 @@ public class CipherImpl implements Cipher {
 		}
 	}
 
+	@Override
+	public void update(ByteBuffer src, ByteBuffer dest) throws CipherException {
+		try {
+			_cipher.update(src, dest);
+		} catch(ShortBufferException e) {
+			throw new CipherException("Failed to update cipher", e);
+		}
+	}
+
+	@Override
+	public void release() {
+		javax.crypto.Cipher cipher = _cipher;
+		_cipher = null;
+		EnginePool.CIPHERS.release(_cipherName, cipher);
+	}
+
+	/**
+	 * Returns the wrapped JCE cipher instance, checking out a cipher engine
+	 * from the {@code EnginePool} if one is not already held.
+	 *
+	 * @return JCE cipher instance
+	 * @throws GeneralSecurityException if cipher engine cannot be created
+	 */
+	javax.crypto.Cipher getEngine() throws GeneralSecurityException {
+		if( _cipher == null ) {
+			_cipher = EnginePool.CIPHERS.checkout(_cipherName);
+		}
+		return _cipher;
+	}
+
 	/**
 	 * Validates the key size by truncating the key value to the block size if
 	 * and only if the key size is greater than the block size.
@@ -240,6 +276,167 @@ public class CipherImpl implements Cipher {
 		}
 	}
 
+	/**
+	 * <p>Implementation of {@code AEADCipher} for AES in GCM mode as defined
+	 * by OpenSSH for aes128-gcm@openssh.com and aes256-gcm@openssh.com.  The
+	 * packet length is sent unencrypted and authenticated as additional data,
+	 * and a 16 byte authentication tag follows each packet.</p>
+	 *
+	 * <p>The 12 byte nonce consists of a 4 byte fixed field followed by an 8
+	 * byte invocation counter taken from the initial IV, where the counter is
+	 * incremented after each packet.  Since the JCE does not allow a GCM cipher
+	 * to encrypt twice with the same nonce, the cipher is reinitialized with
+	 * the next nonce after each packet.</p>
+	 *
+	 * <p><strong>Note:</strong> The {@code GCMParameterSpec} is created
+	 * reflectively so the cipher is simply reported as unsupported on Java
+	 * runtimes prior to 1.7.</p>
+	 *
+	 * <p><a href="http://tools.ietf.org/html/rfc5647">RFC 5647 - AES Galois
+	 * Counter Mode for the Secure Shell Transport Layer Protocol</a></p>
+	 */
+	public static class AESGCM extends CipherImpl implements AEADCipher {
+		/** Length in bytes of the authentication tag. */
+		private static final int TAG_SIZE = 16;
+		/** Constructor for {@code javax.crypto.spec.GCMParameterSpec}. */
+		private static Constructor<?> $gcmParameterSpec;
+
+		/** Key for reinitializing cipher after each packet. */
+		private SecretKeySpec __key;
+		/** Current nonce (fixed field and invocation counter). */
+		private byte[] __nonce;
+		/** Mode the cipher is initialized in. */
+		private int __mode;
+
+		/**
+		 * Creates a new instance of {@code AESGCM} with the specified key size.
+		 *
+		 * @param keySize in bytes
+		 */
+		AESGCM(int keySize) {
+			super("AES/GCM/NoPadding", "AES", 12, keySize, false);
+		}
+
+		@Override
+		public void init(int mode, byte[] key, byte[] iv) throws CipherException {
+			__nonce = Util.copyOf(iv, _ivSize);	// Copy since nonce is incremented
+			__mode = mode;
+			try {
+				__key = new SecretKeySpec(validateKeySize(key), _keyName);
+				// Check out cipher engine from pool unless already held from a previous init
+				getEngine().init(__mode, __key, createParameterSpec(__nonce));
+			} catch(Exception e) {
+				_cipher = null;
+				throw new CipherException("Failed to initialize cipher", e);
+			}
+		}
+
+		@Override
+		public int getTagSize() {
+			return TAG_SIZE;
+		}
+
+		@Override
+		public int getPaddingSize() {
+			return 16;	// AES block size
+		}
+
+		@Override
+		public int getPacketLength(int sequence, byte[] buffer, int offset) {
+			return ((buffer[offset] & 0xff) << 24) | ((buffer[offset+1] & 0xff) << 16) |
+					((buffer[offset+2] & 0xff) << 8) | (buffer[offset+3] & 0xff);
+		}
+
+		@Override
+		public void encrypt(int sequence, byte[] buffer, int offset, int length) throws CipherException {
+			try {
+				_cipher.updateAAD(buffer, offset, 4);
+				_cipher.doFinal(buffer, offset + 4, length - 4, buffer, offset + 4);
+				nextNonce();
+			} catch(Exception e) {
+				throw new CipherException("Failed to encrypt packet", e);
+			}
+		}
+
+		@Override
+		public boolean decrypt(int sequence, byte[] buffer, int offset, int length) throws CipherException {
+			try {
+				_cipher.updateAAD(buffer, offset, 4);
+				_cipher.doFinal(buffer, offset + 4, length - 4 + TAG_SIZE, buffer, offset + 4);
+			} catch(BadPaddingException e) {
+				return false;	// AEADBadTagException if authentication fails
+			} catch(Exception e) {
+				throw new CipherException("Failed to decrypt packet", e);
+			}
+			try {
+				nextNonce();
+			} catch(Exception e) {
+				throw new CipherException("Failed to decrypt packet", e);
+			}
+			return true;
+		}
+
+		@Override
+		public void update(byte[] src, int srcOffset, int length, byte[] dest, int destOffset) throws CipherException {
+			throw new CipherException("Authenticated cipher must encrypt/decrypt entire packets");
+		}
+
+		@Override
+		public void update(ByteBuffer src, ByteBuffer dest) throws CipherException {
+			throw new CipherException("Authenticated cipher must encrypt/decrypt entire packets");
+		}
+
+		/**
+		 * Increments the 8 byte invocation counter of the nonce and
+		 * reinitializes the cipher with the new nonce.
+		 *
+		 * @throws Exception if cipher fails to initialize
+		 */
+		private void nextNonce() throws Exception {
+			for( int i = _ivSize - 1; i >= 4 && ++__nonce[i] == 0; i-- );
+			_cipher.init(__mode, __key, createParameterSpec(__nonce));
+		}
+
+		/**
+		 * Creates a new GCM parameter spec for the specified nonce with a 128
+		 * bit authentication tag.
+		 *
+		 * @param nonce
+		 * @return GCM parameter spec
+		 * @throws Exception if GCM is not supported by the runtime
+		 */
+		private static AlgorithmParameterSpec createParameterSpec(byte[] nonce) throws Exception {
+			if( $gcmParameterSpec == null ) {
+				$gcmParameterSpec = Class.forName("javax.crypto.spec.GCMParameterSpec").getConstructor(int.class, byte[].class);
+			}
+			return (AlgorithmParameterSpec) $gcmParameterSpec.newInstance(TAG_SIZE * 8, nonce);
+		}
+	}
+
+	/**
+	 * Implementation of {@code AEADCipher} for aes128-gcm@openssh.com cipher.
+	 */
+	public static class AES128GCM extends AESGCM {
+		/**
+		 * Creates a new instance of {@code AES128GCM}.
+		 */
+		public AES128GCM() {
+			super(16);
+		}
+	}
+
+	/**
+	 * Implementation of {@code AEADCipher} for aes256-gcm@openssh.com cipher.
+	 */
+	public static class AES256GCM extends AESGCM {
+		/**
+		 * Creates a new instance of {@code AES256GCM}.
+		 */
+		public AES256GCM() {
+			super(32);
+		}
+	}
+
 	/**
 	 * Implementation of {@code Cipher} for arcfour (RC4) cipher.
 	 *
@@ -261,12 +458,8 @@ public class CipherImpl implements Cipher {
 		public void init(int mode, byte[] key, byte[] iv) throws CipherException {
 			key = validateKeySize(key);
 			try {
-				// Retrieve cipher instance based on JCE provider specified in CipherManager
-				_cipher = JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER).length()==0 ?
-						javax.crypto.Cipher.getInstance(_cipherName) :
-						javax.crypto.Cipher.getInstance(_cipherName,
-								JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER));
-				_cipher.init(mode, new SecretKeySpec(key, _keyName));
+				// Check out cipher engine from pool unless already held from a previous init
+				getEngine().init(mode, new SecretKeySpec(key, _keyName));
 			} catch(Exception e) {
 				_cipher = null;
 				throw new CipherException("Failed to initialize cipher", e);
@@ -354,11 +547,8 @@ public class CipherImpl implements Cipher {
 			iv = validateIVSize(iv);
 			key = validateKeySize(key);
 			try {
-				// Retrieve cipher instance based on JCE provider specified in CipherManager
-				_cipher = JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER).length()==0 ?
-						javax.crypto.Cipher.getInstance(_cipherName) :
-						javax.crypto.Cipher.getInstance(_cipherName,
-								JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER));
+				// Check out cipher engine from pool unless already held from a previous init
+				getEngine();
 				/* The following code does not work on IBM's JDK 1.4.1
 				SecretKeySpec skeySpec = new SecretKeySpec(key, "DESede");
 				cipher.init(mode, skeySpec, new IvParameterSpec(iv));
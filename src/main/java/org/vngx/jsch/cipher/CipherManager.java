@@ -34,6 +34,7 @@ import java.util.List;
 import org.vngx.jsch.Session;
 import org.vngx.jsch.algorithm.AlgorithmFactory;
 import org.vngx.jsch.algorithm.DefaultAlgorithmFactory;
+import org.vngx.jsch.algorithm.EnginePool;
 import org.vngx.jsch.algorithm.UnsupportedAlgorithmException;
 
 /**
@@ -131,6 +132,22 @@ public final class CipherManager {
 		return checkedCiphers;
 	}
 
+	/**
+	 * Returns true if the specified cipher name is an authenticated cipher
+	 * implementing {@link AEADCipher}, in which case no MAC is used with the
+	 * cipher.  Returns false if the cipher is not supported.
+	 *
+	 * @param cipherName to check
+	 * @return true if cipher provides authenticated encryption
+	 */
+	public boolean isAEAD(String cipherName) {
+		try {
+			return isSupported(cipherName) && getCipherFactory().create(cipherName) instanceof AEADCipher;
+		} catch(UnsupportedAlgorithmException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Sets the {@code AlgorithmFactory} instance used by the manager to create
 	 * {@code Cipher} instances.
@@ -161,14 +178,17 @@ public final class CipherManager {
 					setAlgorithmImpl(Cipher.CIPHER_3DES_CTR,		CipherImpl.TripleDESCTR.class);
 					setAlgorithmImpl(Cipher.CIPHER_AES128_CBC,		CipherImpl.AES128CBC.class);
 					setAlgorithmImpl(Cipher.CIPHER_AES128_CTR,		CipherImpl.AES128CTR.class);
+					setAlgorithmImpl(Cipher.CIPHER_AES128_GCM,		CipherImpl.AES128GCM.class);
 					setAlgorithmImpl(Cipher.CIPHER_AES192_CBC,		CipherImpl.AES192CBC.class);
 					setAlgorithmImpl(Cipher.CIPHER_AES192_CTR,		CipherImpl.AES192CTR.class);
 					setAlgorithmImpl(Cipher.CIPHER_AES256_CBC,		CipherImpl.AES256CBC.class);
 					setAlgorithmImpl(Cipher.CIPHER_AES256_CTR,		CipherImpl.AES256CTR.class);
+					setAlgorithmImpl(Cipher.CIPHER_AES256_GCM,		CipherImpl.AES256GCM.class);
 					setAlgorithmImpl(Cipher.CIPHER_ARCFOUR,		CipherImpl.ARCFOUR.class);
 					setAlgorithmImpl(Cipher.CIPHER_ARCFOUR128,		CipherImpl.ARCFOUR128.class);
 					setAlgorithmImpl(Cipher.CIPHER_ARCFOUR256,		CipherImpl.ARCFOUR256.class);
 					setAlgorithmImpl(Cipher.CIPHER_BLOWFISH_CBC,	CipherImpl.BlowfishCBC.class);
+					setAlgorithmImpl(Cipher.CIPHER_CHACHA20_POLY1305,	ChaCha20Poly1305.class);
 					setAlgorithmImpl(Cipher.CIPHER_NONE,			CipherNone.class);
 				}
 
@@ -176,6 +196,7 @@ public final class CipherManager {
 				protected boolean validateImpl(Cipher algorithmImpl) throws UnsupportedAlgorithmException {
 					try {
 						algorithmImpl.init(Cipher.ENCRYPT_MODE, new byte[algorithmImpl.getBlockSize()], new byte[algorithmImpl.getIVSize()]);
+						EnginePool.release(algorithmImpl);	// Keep engine for first session
 						return true;
 					} catch(Exception e) {
 						return false;
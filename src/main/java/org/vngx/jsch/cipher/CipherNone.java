@@ -28,6 +28,8 @@
 
 package org.vngx.jsch.cipher;
 
+import java.nio.ByteBuffer;
+
 /**
  * <p>Empty implementation of {@code Cipher} to be used when no cipher is
  * required.  This should *ONLY* be used for debugging purposes... the RFC spec
@@ -46,7 +48,7 @@ package org.vngx.jsch.cipher;
  *
  * @author Michael Laudati
  */
-public final class CipherNone implements Cipher {
+public final class CipherNone implements ByteBufferCipher {
 
 	/** Constant IV size for empty cipher. */
 	private static final int IV_SIZE = 8;
@@ -79,4 +81,9 @@ public final class CipherNone implements Cipher {
 		// Do nothing
 	}
 
+	@Override
+	public void update(ByteBuffer src, ByteBuffer dest) {
+		dest.put(src);	// Copy data unchanged
+	}
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.cipher;
+
+import static org.vngx.jsch.cipher.ChaCha20.littleEndian;
+import static org.vngx.jsch.cipher.ChaCha20.putLittleEndian;
+
+/**
+ * <p>Pure Java implementation of the Poly1305 one-time authenticator, as used
+ * by the chacha20-poly1305@openssh.com cipher.  The 130-bit accumulator is
+ * stored as five 26-bit limbs so products of limbs can be computed with long
+ * arithmetic without overflow.  No objects are allocated once the instance
+ * has been created.</p>
+ *
+ * <p><a href="http://cr.yp.to/mac.html">Poly1305-AES: a state-of-the-art
+ * message-authentication code</a></p>
+ *
+ * <p><strong>Note:</strong> Instances are not thread-safe.</p>
+ */
+final class Poly1305 {
+
+	/** Size in bytes of each block of message. */
+	private static final int BLOCK_SIZE = 16;
+	/** Size in bytes of the generated authenticator. */
+	static final int TAG_SIZE = 16;
+	/** Mask for 26-bit limbs. */
+	private static final int MASK = 0x3ffffff;
+
+	/** Clamped key r as 26-bit limbs. */
+	private int _r0, _r1, _r2, _r3, _r4;
+	/** Limbs of r multiplied by 5 used for reduction. */
+	private int _s1, _s2, _s3, _s4;
+	/** Accumulator h as 26-bit limbs. */
+	private int _h0, _h1, _h2, _h3, _h4;
+	/** Key s added to accumulator to produce authenticator. */
+	private int _pad0, _pad1, _pad2, _pad3;
+	/** Buffer for a partial block of message. */
+	private final byte[] _block = new byte[BLOCK_SIZE];
+	/** Number of bytes in partial block buffer. */
+	private int _blockLength;
+
+
+	/**
+	 * Initializes the authenticator with the 32 byte one-time key starting at
+	 * the specified offset.
+	 *
+	 * @param key containing 32 byte key
+	 * @param offset of key
+	 */
+	void init(byte[] key, int offset) {
+		_r0 = littleEndian(key, offset) & 0x3ffffff;
+		_r1 = (littleEndian(key, offset + 3) >>> 2) & 0x3ffff03;
+		_r2 = (littleEndian(key, offset + 6) >>> 4) & 0x3ffc0ff;
+		_r3 = (littleEndian(key, offset + 9) >>> 6) & 0x3f03fff;
+		_r4 = (littleEndian(key, offset + 12) >>> 8) & 0x00fffff;
+		_s1 = _r1 * 5;
+		_s2 = _r2 * 5;
+		_s3 = _r3 * 5;
+		_s4 = _r4 * 5;
+		_h0 = _h1 = _h2 = _h3 = _h4 = 0;
+		_pad0 = littleEndian(key, offset + 16);
+		_pad1 = littleEndian(key, offset + 20);
+		_pad2 = littleEndian(key, offset + 24);
+		_pad3 = littleEndian(key, offset + 28);
+		_blockLength = 0;
+	}
+
+	/**
+	 * Updates the authenticator with the specified message data.
+	 *
+	 * @param m message data
+	 * @param offset start position in message
+	 * @param length of message data
+	 */
+	void update(byte[] m, int offset, int length) {
+		if( _blockLength > 0 ) {
+			int len = Math.min(length, BLOCK_SIZE - _blockLength);
+			System.arraycopy(m, offset, _block, _blockLength, len);
+			offset += len;
+			length -= len;
+			if( (_blockLength += len) < BLOCK_SIZE ) {
+				return;
+			}
+			processBlock(_block, 0, 1 << 24);
+			_blockLength = 0;
+		}
+		while( length >= BLOCK_SIZE ) {
+			processBlock(m, offset, 1 << 24);
+			offset += BLOCK_SIZE;
+			length -= BLOCK_SIZE;
+		}
+		if( length > 0 ) {
+			System.arraycopy(m, offset, _block, 0, length);
+			_blockLength = length;
+		}
+	}
+
+	/**
+	 * Completes the authenticator and writes the 16 byte result to the
+	 * destination at the specified offset.
+	 *
+	 * @param dest destination to receive authenticator
+	 * @param offset start position in destination
+	 */
+	void doFinal(byte[] dest, int offset) {
+		// Process final partial block padded with a single 1 bit
+		if( _blockLength > 0 ) {
+			_block[_blockLength] = 1;
+			for( int i = _blockLength + 1; i < BLOCK_SIZE; i++ ) {
+				_block[i] = 0;
+			}
+			processBlock(_block, 0, 0);
+			_blockLength = 0;
+		}
+
+		// Fully carry the accumulator
+		int h0 = _h0, h1 = _h1, h2 = _h2, h3 = _h3, h4 = _h4, c;
+		c = h1 >>> 26; h1 &= MASK; h2 += c;
+		c = h2 >>> 26; h2 &= MASK; h3 += c;
+		c = h3 >>> 26; h3 &= MASK; h4 += c;
+		c = h4 >>> 26; h4 &= MASK; h0 += c * 5;
+		c = h0 >>> 26; h0 &= MASK; h1 += c;
+
+		// Compute h + -p and select h if h < p, otherwise h - p
+		int g0 = h0 + 5; c = g0 >>> 26; g0 &= MASK;
+		int g1 = h1 + c; c = g1 >>> 26; g1 &= MASK;
+		int g2 = h2 + c; c = g2 >>> 26; g2 &= MASK;
+		int g3 = h3 + c; c = g3 >>> 26; g3 &= MASK;
+		int g4 = h4 + c - (1 << 26);
+		int mask = (g4 >>> 31) - 1;
+		h0 = (h0 & ~mask) | (g0 & mask);
+		h1 = (h1 & ~mask) | (g1 & mask);
+		h2 = (h2 & ~mask) | (g2 & mask);
+		h3 = (h3 & ~mask) | (g3 & mask);
+		h4 = (h4 & ~mask) | (g4 & mask);
+
+		// Convert h to 32-bit words and add key s (mod 2^128)
+		long f;
+		f = ((h0 | (h1 << 26)) & 0xffffffffL) + (_pad0 & 0xffffffffL);
+		putLittleEndian((int) f, dest, offset);
+		f = (((h1 >>> 6) | (h2 << 20)) & 0xffffffffL) + (_pad1 & 0xffffffffL) + (f >>> 32);
+		putLittleEndian((int) f, dest, offset + 4);
+		f = (((h2 >>> 12) | (h3 << 14)) & 0xffffffffL) + (_pad2 & 0xffffffffL) + (f >>> 32);
+		putLittleEndian((int) f, dest, offset + 8);
+		f = (((h3 >>> 18) | (h4 << 8)) & 0xffffffffL) + (_pad3 & 0xffffffffL) + (f >>> 32);
+		putLittleEndian((int) f, dest, offset + 12);
+	}
+
+	/**
+	 * Adds the 16 byte block of message to the accumulator and multiplies it
+	 * by r modulo 2^130 - 5.
+	 *
+	 * @param m message data
+	 * @param offset of block
+	 * @param hibit bit added above the block (2^128, or 0 for final block)
+	 */
+	private void processBlock(byte[] m, int offset, int hibit) {
+		final long r0 = _r0, r1 = _r1, r2 = _r2, r3 = _r3, r4 = _r4;
+		final long s1 = _s1, s2 = _s2, s3 = _s3, s4 = _s4;
+		final long h0 = _h0 + (littleEndian(m, offset) & MASK);
+		final long h1 = _h1 + ((littleEndian(m, offset + 3) >>> 2) & MASK);
+		final long h2 = _h2 + ((littleEndian(m, offset + 6) >>> 4) & MASK);
+		final long h3 = _h3 + ((littleEndian(m, offset + 9) >>> 6) & MASK);
+		final long h4 = _h4 + ((littleEndian(m, offset + 12) >>> 8) | hibit);
+
+		long d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+		long d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+		long d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+		long d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+		long d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+		// Partially reduce, carrying the top limb back into h0 multiplied by 5
+		long c;
+		c = d0 >>> 26; d0 &= MASK;
+		d1 += c; c = d1 >>> 26; _h1 = (int) d1 & MASK;
+		d2 += c; c = d2 >>> 26; _h2 = (int) d2 & MASK;
+		d3 += c; c = d3 >>> 26; _h3 = (int) d3 & MASK;
+		d4 += c; c = d4 >>> 26; _h4 = (int) d4 & MASK;
+		d0 += c * 5;
+		_h0 = (int) d0 & MASK;
+		_h1 += (int) (d0 >>> 26);
+	}
+
+}
@@ -92,14 +92,29 @@ public class JSchConfig implements SSHConfigConstants {
 		VALIDATORS.put(STRICT_HOST_KEY_CHECKING, new StringSetPropertyValidator("ask", "ask", "yes", "no"));
 		VALIDATORS.put(HASH_KNOWN_HOSTS, BooleanPropertyValidator.DEFAULT_FALSE_VALIDATOR);
 		VALIDATORS.put(COMPRESSION_LEVEL, NumberPropertyValidator.createValidator(0, 9, 6));
+		VALIDATORS.put(SFTP_BULK_REQUESTS, NumberPropertyValidator.createMinValidator(1, 16));
+		VALIDATORS.put(SFTP_METADATA_REQUESTS, NumberPropertyValidator.createMinValidator(1, 64));
+		VALIDATORS.put(SFTP_WRITE_REQUESTS, NumberPropertyValidator.createMinValidator(1, 16));
+		VALIDATORS.put(NIO_TRANSPORT, BooleanPropertyValidator.DEFAULT_FALSE_VALIDATOR);
+		VALIDATORS.put(NIO_SELECTOR_THREADS, NumberPropertyValidator.createMinValidator(1, 2));
+		VALIDATORS.put(ENGINE_POOL_SIZE, NumberPropertyValidator.createMinValidator(0, 16));
+		VALIDATORS.put(WRITE_BATCH_SIZE, NumberPropertyValidator.createMinValidator(0, 32768));
+		VALIDATORS.put(WRITE_MAX_LATENCY, NumberPropertyValidator.createMinValidator(0, 5));
+		VALIDATORS.put(READ_PIPELINE_DEPTH, NumberPropertyValidator.createMinValidator(0, 0));	// Off: 2 threads per session
+		VALIDATORS.put(CHANNEL_WINDOW_MAX, NumberPropertyValidator.createValidator(0, 1 << 30, 16 * 1024 * 1024));
+		VALIDATORS.put(CHANNEL_MAX, NumberPropertyValidator.createMinValidator(0, 0));
+		VALIDATORS.put(CHANNEL_MAX_WAIT, NumberPropertyValidator.createMinValidator(0, 0));
 
-		// Set the defaults for key exchange proposals
+		// Set the defaults for key exchange proposals; AES-GCM leads since its
+		// packet throughput measured several times that of aes128-ctr with
+		// hmac-sha256 in the benchmarks module, while the slower pure Java
+		// chacha20-poly1305 and hmac-sha2-512 follow aes128-ctr and hmac-sha1
 		DEFAULTS.put(KEX_ALGORITHMS, "diffie-hellman-group-exchange-sha256,diffie-hellman-group-exchange-sha1,diffie-hellman-group1-sha1");
 		DEFAULTS.put(KEX_SERVER_HOST_KEY, "ssh-rsa,ssh-dss");
-		DEFAULTS.put(KEX_CIPHER_S2C, "aes128-ctr,3des-ctr,blowfish-cbc,aes192-cbc,aes256-cbc,aes128-cbc,3des-cbc");
-		DEFAULTS.put(KEX_CIPHER_C2S, "aes128-ctr,3des-ctr,blowfish-cbc,aes192-cbc,aes256-cbc,aes128-cbc,3des-cbc");
-		DEFAULTS.put(KEX_MAC_S2C, "hmac-sha256,hmac-sha1,hmac-md5,hmac-sha1-96,hmac-md5-96");
-		DEFAULTS.put(KEX_MAC_C2S, "hmac-sha256,hmac-sha1,hmac-md5,hmac-sha1-96,hmac-md5-96");
+		DEFAULTS.put(KEX_CIPHER_S2C, "aes128-gcm@openssh.com,aes256-gcm@openssh.com,aes128-ctr,chacha20-poly1305@openssh.com,3des-ctr,blowfish-cbc,aes192-cbc,aes256-cbc,aes128-cbc,3des-cbc");
+		DEFAULTS.put(KEX_CIPHER_C2S, "aes128-gcm@openssh.com,aes256-gcm@openssh.com,aes128-ctr,chacha20-poly1305@openssh.com,3des-ctr,blowfish-cbc,aes192-cbc,aes256-cbc,aes128-cbc,3des-cbc");
+		DEFAULTS.put(KEX_MAC_S2C, "hmac-sha2-256-etm@openssh.com,hmac-sha1-etm@openssh.com,hmac-sha2-512-etm@openssh.com,hmac-sha256,hmac-sha1,hmac-md5,hmac-sha1-96,hmac-md5-96");
+		DEFAULTS.put(KEX_MAC_C2S, "hmac-sha2-256-etm@openssh.com,hmac-sha1-etm@openssh.com,hmac-sha2-512-etm@openssh.com,hmac-sha256,hmac-sha1,hmac-md5,hmac-sha1-96,hmac-md5-96");
 		DEFAULTS.put(KEX_COMPRESSION_S2C, Compression.COMPRESSION_NONE);
 		DEFAULTS.put(KEX_COMPRESSION_C2S, Compression.COMPRESSION_NONE);
 		DEFAULTS.put(KEX_LANG_S2C, EMPTY);
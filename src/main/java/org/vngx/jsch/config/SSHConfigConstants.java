@@ -148,6 +148,21 @@ public interface SSHConfigConstants {
 	 */
 	String DEFAULT_SECURITY_PROVIDER = "DefaultSecurityProvider";
 
+	/**
+	 * <p>Property name for the maximum number of idle JCE engine instances
+	 * ({@code Cipher}, {@code Mac} and {@code MessageDigest}) kept for each
+	 * algorithm by the {@link org.vngx.jsch.algorithm.EnginePool} to be
+	 * reused by other sessions and key exchanges.  The value is read from the
+	 * global configuration.  A value of 0 disables pooling.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 16)
+	 * </p>
+	 */
+	String ENGINE_POOL_SIZE = "engine.pool_size";
+
 	/**
 	 * <p>Property to specify the client's proposal for key exchange algorithms.
 	 * The value should be a comma-delimited name-list of kex algorithms in
@@ -316,4 +331,178 @@ public interface SSHConfigConstants {
 	 */
 	String KEX_LANG_C2S = "kex.lang.c2s";
 
+	/**
+	 * <p>Property name for the maximum number of SFTP read requests which may
+	 * be outstanding for a single file handle when downloading a file.  Rather
+	 * than waiting for the reply to each read before sending the next one, the
+	 * SFTP channel keeps this many requests in flight to hide the round trip
+	 * time of the network.  Higher values improve throughput on high latency
+	 * links at the cost of buffering more data in memory.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 1 or greater (1 disables read-ahead)
+	 * </p>
+	 */
+	String SFTP_BULK_REQUESTS = "sftp.bulk_requests";
+
+	/**
+	 * <p>Property name for the maximum number of SFTP metadata requests (stat,
+	 * lstat, remove, setstat) which may be outstanding at once when a bulk
+	 * operation is performed on many paths, such as
+	 * {@code ChannelSftp.stat(List)}.  The requests are pipelined on the
+	 * channel so the operation costs a round trip for every batch of requests
+	 * instead of one for every path.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 1 or greater (1 disables pipelining)
+	 * </p>
+	 */
+	String SFTP_METADATA_REQUESTS = "sftp.metadata_requests";
+
+	/**
+	 * <p>Property name for the maximum number of SFTP write requests which may
+	 * be outstanding for a single file handle when uploading a file.  Once
+	 * the limit is reached, the upload waits for the server to acknowledge
+	 * the oldest write before sending the next one, bounding the amount of
+	 * unacknowledged data in flight.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 1 or greater (1 waits for every write)
+	 * </p>
+	 */
+	String SFTP_WRITE_REQUESTS = "sftp.write_requests";
+
+	/**
+	 * <p>Property name to enable the non-blocking transport for a session.  When
+	 * enabled, the session's socket is created from a {@code SocketChannel}
+	 * and once connected is driven by a shared pool of selector threads
+	 * instead of a dedicated thread per session.  The non-blocking transport
+	 * is only used when no proxy is set and the socket has a channel (custom
+	 * socket factories must return sockets created from a
+	 * {@code SocketChannel}); otherwise a thread per session is used.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code boolean}<br>
+	 * <strong>Values:</strong> true, false (default false)
+	 * </p>
+	 */
+	String NIO_TRANSPORT = "nio.transport";
+
+	/**
+	 * <p>Property name for the number of selector threads shared by all
+	 * sessions using the non-blocking transport.  The value is read from the
+	 * global configuration when the first non-blocking session connects.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 1 or greater (default 2)
+	 * </p>
+	 */
+	String NIO_SELECTOR_THREADS = "nio.selector_threads";
+
+	/**
+	 * <p>Property name for the maximum number of bytes of encoded packets which
+	 * are coalesced into a single write to the session's socket.  When several
+	 * threads are writing to a session at the same time, packets are buffered
+	 * and written together by the last writer instead of issuing a socket
+	 * write per packet.  A value of 0 disables batching.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 32768)
+	 * </p>
+	 */
+	String WRITE_BATCH_SIZE = "transport.write_batch_size";
+
+	/**
+	 * <p>Property name for the maximum time in milliseconds an encoded packet
+	 * may be held in the write batch while other threads are waiting to write
+	 * to the session.  A value of 0 writes every packet immediately.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 5)
+	 * </p>
+	 */
+	String WRITE_MAX_LATENCY = "transport.write_max_latency";
+
+	/**
+	 * <p>Property name for the number of inbound packets read ahead and
+	 * decrypted on a separate thread while the session's thread verifies the
+	 * MACs and dispatches earlier packets.  The keystream of counter mode and
+	 * arcfour ciphers is also precomputed on a helper thread.  The pipeline
+	 * is only used with the blocking transport, a stream mode cipher with a
+	 * MAC and no compression from server to client; otherwise packets are
+	 * read by the session's thread.  A value of 0 disables the pipeline.</p>
+	 *
+	 * <p>Each session using the pipeline runs two extra threads (the read
+	 * pipeline and keystream threads, created by the session's thread
+	 * factory), which only pay off when spare cores are available to them.
+	 * The pipeline is off by default since {@code ReadPipelineBenchmark} in
+	 * the benchmarks module measured lower throughput with it on a single
+	 * core, where the threads compete with the session's thread.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 0)
+	 * </p>
+	 */
+	String READ_PIPELINE_DEPTH = "transport.read_pipeline_depth";
+
+	/**
+	 * <p>Property name for the maximum size in bytes a channel's local window
+	 * may grow to when auto-tuning.  When half of a channel's window is used
+	 * within two round trips to the server, the window is limiting throughput
+	 * and is doubled (up to this maximum) with the next window adjust message.
+	 * The round trip time is measured from channel open requests.  A value
+	 * less than a channel's initial window size disables auto-tuning.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 16777216)
+	 * </p>
+	 */
+	String CHANNEL_WINDOW_MAX = "channel.window_max";
+
+	/**
+	 * <p>Property name for the maximum number of channels which may be open
+	 * concurrently on a session through {@code Session.openChannel()}.  Once
+	 * the maximum is reached, opening another channel waits for an open
+	 * channel to be disconnected for up to {@link #CHANNEL_MAX_WAIT}
+	 * milliseconds.  A value of 0 allows an unlimited number of channels.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 0)
+	 * </p>
+	 */
+	String CHANNEL_MAX = "channel.max";
+
+	/**
+	 * <p>Property name for the time in milliseconds to wait for a channel to be
+	 * disconnected when opening a channel on a session which has the maximum
+	 * number of channels open.  A value of 0 rejects the channel immediately
+	 * by throwing an exception.</p>
+	 *
+	 * <p>
+	 * <strong>Name:</strong> {@value}<br>
+	 * <strong>Type:</strong> {@code int}<br>
+	 * <strong>Values:</strong> 0 or greater (default 0)
+	 * </p>
+	 */
+	String CHANNEL_MAX_WAIT = "channel.max_wait";
+
 }
@@ -67,6 +67,16 @@ public class SftpException extends Exception {
 		_id = id;
 	}
 
+	/**
+	 * Returns the ID of the specific error which occurred, which is the SFTP
+	 * status code returned by the server for status errors.
+	 *
+	 * @return error ID
+	 */
+	public int getId() {
+		return _id;
+	}
+
 	@Override
 	public String toString() {
 		return _id + ": " + super.toString();
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.hash;
+
+/**
+ * <p>Marker interface for a {@code MAC} algorithm using the encrypt-then-MAC
+ * (ETM) mode defined by OpenSSH for the "*-etm@openssh.com" MACs.  The MAC
+ * algorithm itself is unchanged; only the packet framing differs.</p>
+ *
+ * <p>When an ETM MAC is in effect, the packet length is sent unencrypted and
+ * only the data following the length is encrypted.  The MAC is computed over
+ * the encrypted packet rather than the plain text:
+ * <pre>
+ *		mac = MAC(key, sequence_number || packet_length || encrypted_packet)
+ * </pre>
+ * which allows an inbound packet to be verified, and corrupt or forged
+ * packets rejected, before any of it is decrypted.</p>
+ *
+ * <p>The framing alone does not make decryption and verification run in
+ * parallel; by default a packet is verified and then decrypted by the same
+ * thread.  They only overlap when the read pipeline is enabled with
+ * {@link org.vngx.jsch.config.SessionConfig#READ_PIPELINE_DEPTH}, where each
+ * packet is decrypted by the pipeline's thread while the session's thread
+ * verifies the MACs of earlier packets.</p>
+ *
+ * <p><a href="http://cvsweb.openbsd.org/cgi-bin/cvsweb/src/usr.bin/ssh/PROTOCOL">
+ * OpenSSH Protocol: encrypt-then-mac MAC algorithms</a></p>
+ *
+ * @see org.vngx.jsch.hash.MAC
+ */
+public interface EncryptThenMAC extends MAC {
+
+}
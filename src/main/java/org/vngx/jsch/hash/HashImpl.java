@@ -28,10 +28,12 @@
 
 package org.vngx.jsch.hash;
 
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
-import org.vngx.jsch.config.JSchConfig;
+import org.vngx.jsch.algorithm.EnginePool;
+import org.vngx.jsch.algorithm.Releasable;
 
 /**
  * Implementation of {@code Hash} providing a wrapper for Java's built in
@@ -40,7 +42,9 @@ import org.vngx.jsch.config.JSchConfig;
  * {@link org.vngx.jsch.config.JSchConfig#DEFAULT_SECURITY_PROVIDER}; by
  * default the default security provider will be used. If another security
  * provider has been registered, then the security provider name in the
- * configuration will be used when creating instances.
+ * configuration will be used when creating instances.  The message digest is
+ * checked out of the {@code EnginePool} when created and can be released back
+ * to the pool for reuse once the hash is no longer used.
  *
  * @see java.security.MessageDigest
  * @see org.vngx.jsch.hash.Hash
@@ -49,10 +53,12 @@ import org.vngx.jsch.config.JSchConfig;
  *
  * @author Michael Laudati
  */
-public class HashImpl implements Hash {
+public class HashImpl implements Hash, Releasable {
 
+	/** Message digest algorithm name. */
+	private final String _messageDigest;
 	/** Message digest provided through Java for hashing. */
-	private final MessageDigest _md;
+	private MessageDigest _md;
 	/** Block size of message digest. */
 	private final int _blockSize;
 
@@ -65,12 +71,26 @@ public class HashImpl implements Hash {
 	 * @throws NoSuchProviderException
 	 */
 	public HashImpl(String messageDigest, int blockSize) throws NoSuchAlgorithmException, NoSuchProviderException {
-		String provider = JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER);
-		_md = provider.length()==0 ? MessageDigest.getInstance(messageDigest) :
-									 MessageDigest.getInstance(messageDigest, provider);
+		try {
+			_md = EnginePool.DIGESTS.checkout(messageDigest);
+		} catch(NoSuchAlgorithmException e) {
+			throw e;
+		} catch(NoSuchProviderException e) {
+			throw e;
+		} catch(GeneralSecurityException e) {
+			throw new NoSuchAlgorithmException("Failed to create message digest: " + messageDigest, e);
+		}
+		_messageDigest = messageDigest;
 		_blockSize = blockSize;
 	}
 
+	@Override
+	public void release() {
+		MessageDigest md = _md;
+		_md = null;
+		EnginePool.DIGESTS.release(_messageDigest, md);
+	}
+
 	@Override
 	public int getBlockSize() {
 		return _blockSize;
@@ -181,6 +181,9 @@ public final class HashManager {
 					setAlgorithmImpl(MAC.HMAC_SHA1,		MACImpl.HMAC_SHA1.class);
 					setAlgorithmImpl(MAC.HMAC_SHA1_96,	MACImpl.HMAC_SHA1_96.class);
 					setAlgorithmImpl(MAC.HMAC_SHA_256,	MACImpl.HMAC_SHA_256.class);
+					setAlgorithmImpl(MAC.HMAC_SHA1_ETM,		MACImpl.HMAC_SHA1_ETM.class);
+					setAlgorithmImpl(MAC.HMAC_SHA_256_ETM,	MACImpl.HMAC_SHA_256_ETM.class);
+					setAlgorithmImpl(MAC.HMAC_SHA_512_ETM,	MACImpl.HMAC_SHA_512_ETM.class);
 				}
 			};
 		}
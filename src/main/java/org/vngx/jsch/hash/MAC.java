@@ -121,6 +121,21 @@ public interface MAC extends Algorithm {
 	 * MD5 hash. (digest length = 12, key length = 16)
 	 */
 	String HMAC_MD5_96 = "hmac-md5-96";
+	/**
+	 * Algorithm name {@value} for {@code MAC} algorithm using SHA-1 for hash
+	 * in encrypt-then-MAC mode. (digest length = key length = 20)
+	 */
+	String HMAC_SHA1_ETM = "hmac-sha1-etm@openssh.com";
+	/**
+	 * Algorithm name {@value} for {@code MAC} algorithm using SHA-256 for hash
+	 * in encrypt-then-MAC mode. (digest length = key length = 32)
+	 */
+	String HMAC_SHA_256_ETM = "hmac-sha2-256-etm@openssh.com";
+	/**
+	 * Algorithm name {@value} for {@code MAC} algorithm using SHA-512 for hash
+	 * in encrypt-then-MAC mode. (digest length = key length = 64)
+	 */
+	String HMAC_SHA_512_ETM = "hmac-sha2-512-etm@openssh.com";
 
 	/**
 	 * Returns the message digest block size.
@@ -28,6 +28,7 @@
 
 package org.vngx.jsch.hash;
 
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -37,7 +38,8 @@ import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.vngx.jsch.Util;
-import org.vngx.jsch.config.JSchConfig;
+import org.vngx.jsch.algorithm.EnginePool;
+import org.vngx.jsch.algorithm.Releasable;
 
 /**
  * <p>Implementation of {@code MAC} (Message Authentication Code) using the
@@ -48,6 +50,10 @@ import org.vngx.jsch.config.JSchConfig;
  * provider has been registered, then the security provider name in the
  * configuration will be used when creating instances.</p>
  *
+ * <p>The JCE MAC instance is checked out of the {@code EnginePool} when
+ * created and can be released back to the pool for reuse once the MAC is no
+ * longer used.</p>
+ *
  * @see javax.crypto.Mac
  * @see org.vngx.jsch.hash.MAC
  * @see org.vngx.jsch.config.JSchConfig
@@ -55,12 +61,14 @@ import org.vngx.jsch.config.JSchConfig;
  *
  * @author Michael Laudati
  */
-public class MACImpl implements MAC {
+public class MACImpl implements MAC, Releasable {
 
 	/** Block size of MAC. */
 	private final int _blockSize;
+	/** JCE MAC algorithm name. */
+	private final String _macName;
 	/** Message authentication code instance from JCE library. */
-	private final Mac _mac;
+	private Mac _mac;
 
 	
 	/**
@@ -74,11 +82,26 @@ public class MACImpl implements MAC {
 	 * @throws NoSuchProviderException 
 	 */
 	protected MACImpl(String macName, int blockSize) throws NoSuchAlgorithmException, NoSuchProviderException {
-		String provider = JSchConfig.getConfig().getString(JSchConfig.DEFAULT_SECURITY_PROVIDER);
-		_mac = provider.length()==0 ? Mac.getInstance(macName) : Mac.getInstance(macName, provider);
+		try {
+			_mac = EnginePool.MACS.checkout(macName);
+		} catch(NoSuchAlgorithmException e) {
+			throw e;
+		} catch(NoSuchProviderException e) {
+			throw e;
+		} catch(GeneralSecurityException e) {
+			throw new NoSuchAlgorithmException("Failed to create MAC: " + macName, e);
+		}
+		_macName = macName;
 		_blockSize = blockSize;
 	}
 
+	@Override
+	public void release() {
+		Mac mac = _mac;
+		_mac = null;
+		EnginePool.MACS.release(_macName, mac);
+	}
+
 	@Override
 	public void init(byte[] key) throws MACException {
 		if( key.length > _blockSize ) {
@@ -231,4 +254,52 @@ public class MACImpl implements MAC {
 		}
 	}
 
+	/**
+	 * Implementation of {@code MAC} using SHA-1 for the hash in
+	 * encrypt-then-MAC mode.
+	 */
+	public static class HMAC_SHA1_ETM extends HMAC_SHA1 implements EncryptThenMAC {
+		/**
+		 * Creates a new instance of {@code HMAC_SHA1_ETM}.
+		 *
+		 * @throws NoSuchAlgorithmException
+		 * @throws NoSuchProviderException
+		 */
+		public HMAC_SHA1_ETM() throws NoSuchAlgorithmException, NoSuchProviderException {
+			super();
+		}
+	}
+
+	/**
+	 * Implementation of {@code MAC} using the SHA-256 hash in
+	 * encrypt-then-MAC mode.
+	 */
+	public static class HMAC_SHA_256_ETM extends HMAC_SHA_256 implements EncryptThenMAC {
+		/**
+		 * Creates a new instance of {@code HMAC_SHA_256_ETM}.
+		 *
+		 * @throws NoSuchAlgorithmException
+		 * @throws NoSuchProviderException
+		 */
+		public HMAC_SHA_256_ETM() throws NoSuchAlgorithmException, NoSuchProviderException {
+			super();
+		}
+	}
+
+	/**
+	 * Implementation of {@code MAC} using the SHA-512 hash in
+	 * encrypt-then-MAC mode.
+	 */
+	public static class HMAC_SHA_512_ETM extends MACImpl implements EncryptThenMAC {
+		/**
+		 * Creates a new instance of {@code HMAC_SHA_512_ETM}.
+		 *
+		 * @throws NoSuchAlgorithmException
+		 * @throws NoSuchProviderException
+		 */
+		public HMAC_SHA_512_ETM() throws NoSuchAlgorithmException, NoSuchProviderException {
+			super("HmacSHA512", 64);
+		}
+	}
+
 }
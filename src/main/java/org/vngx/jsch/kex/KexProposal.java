@@ -35,6 +35,7 @@ import java.util.Map;
 import org.vngx.jsch.Buffer;
 import org.vngx.jsch.JSch;
 import org.vngx.jsch.Util;
+import org.vngx.jsch.cipher.CipherManager;
 import org.vngx.jsch.util.Logger.Level;
 
 /**
@@ -100,6 +101,12 @@ public final class KexProposal {
 		LANG_STOC;
 	}
 
+	/**
+	 * MAC algorithm {@value} agreed for a direction using an authenticated
+	 * cipher, where the MAC is implied by the cipher and not negotiated.
+	 */
+	public static final String MAC_IMPLICIT = "<implicit>";
+
 	/** Map to store the agreed upon proposals. */
 	private final Map<Proposal,String> _agreed = new EnumMap<Proposal,String>(Proposal.class);
 	
@@ -159,6 +166,14 @@ public final class KexProposal {
 				JSch.getLogger().log(Level.DEBUG, "Kex: C proposes "+p+" -> "+clientProposals);
 			}
 
+			// Authenticated ciphers provide their own integrity, so the MAC is
+			// not negotiated for a direction using an authenticated cipher
+			if( (p == Proposal.MAC_ALGS_CTOS && CipherManager.getManager().isAEAD(proposal.getCipherAlgCtoS())) ||
+					(p == Proposal.MAC_ALGS_STOC && CipherManager.getManager().isAEAD(proposal.getCipherAlgStoC())) ) {
+				proposal.set(p, MAC_IMPLICIT);
+				continue;
+			}
+
 			// Client preference is used for each proposal; check if server
 			// supports each client proposal in preference order until match
 			for( String clientProposal : clientProposals ) {
@@ -242,6 +257,8 @@ public final class KexProposal {
 
 	/**
 	 * Returns the agreed proposal for MAC algorithm from client-to-server.
+	 * If an authenticated cipher was agreed for the direction, then the MAC
+	 * is {@link #MAC_IMPLICIT}.
 	 *
 	 * @return MAC algorithm for client-to-server
 	 */
@@ -251,6 +268,8 @@ public final class KexProposal {
 
 	/**
 	 * Returns the agreed proposal for MAC algorithm from server-to-client.
+	 * If an authenticated cipher was agreed for the direction, then the MAC
+	 * is {@link #MAC_IMPLICIT}.
 	 *
 	 * @return MAC algorithm for server-to-client
 	 */
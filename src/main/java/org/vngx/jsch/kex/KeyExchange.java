@@ -31,7 +31,10 @@ package org.vngx.jsch.kex;
 import static org.vngx.jsch.constants.TransportLayerProtocol.SSH_MSG_KEXINIT;
 import static org.vngx.jsch.constants.TransportLayerProtocol.SSH_MSG_NEWKEYS;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.vngx.jsch.Buffer;
 import org.vngx.jsch.JSch;
@@ -52,6 +55,7 @@ import org.vngx.jsch.util.HostKeyRepository;
 import org.vngx.jsch.util.HostKeyRepository.Check;
 import org.vngx.jsch.util.Logger;
 import org.vngx.jsch.util.Logger.Level;
+import org.vngx.jsch.util.Metrics;
 
 /**
  * <p>Key Exchange is any method in cryptography by which cryptographic keys are
@@ -90,6 +94,12 @@ public final class KeyExchange {
 	final Buffer _buffer = new Buffer();
 	/** True if session is currently in process of a key exchange. */
 	final AtomicBoolean _inKeyExchange = new AtomicBoolean(false);
+	/** Lock used to signal threads waiting for the key exchange to complete. */
+	private final ReentrantLock _kexLock = new ReentrantLock();
+	/** Condition signaled when the key exchange completes. */
+	private final Condition _kexDone = _kexLock.newCondition();
+	/** Time in nanoseconds the current key exchange started. */
+	private volatile long _kexStartTime;
 
 	/** Guessed algorithms during key exchange. */
 	KexProposal _proposal;
@@ -157,8 +167,61 @@ public final class KeyExchange {
 		return _inKeyExchange.get();
 	}
 
+	/**
+	 * Marks the current key exchange as completed and wakes up any threads
+	 * waiting for the key exchange to complete.
+	 */
 	public void kexCompleted() {
-		_inKeyExchange.set(false);
+		_kexLock.lock();
+		try {
+			_inKeyExchange.set(false);
+			_kexDone.signalAll();
+		} finally {
+			_kexLock.unlock();
+		}
+	}
+
+	/**
+	 * Marks the current key exchange as successfully completed once the new
+	 * keys are in place, reporting the time taken by the key exchange to the
+	 * session's metrics, and wakes up any threads waiting for the key exchange
+	 * to complete.
+	 */
+	public void newKeysInstalled() {
+		Metrics metrics = _session.getMetrics();
+		if( metrics.isEnabled() ) {
+			metrics.time(Metrics.Timer.KEX, _session.getMetricsTag(), System.nanoTime() - _kexStartTime);
+		}
+		kexCompleted();
+	}
+
+	/**
+	 * Blocks the calling thread until the current key exchange (if any) has
+	 * completed or the specified timeout has elapsed.  The waiting thread is
+	 * signaled by {@link #kexCompleted()} once the new keys are in place.
+	 *
+	 * @param timeout in milliseconds to wait (0 or less to wait indefinitely)
+	 * @return true if still in the process of a key exchange
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean waitForKex(long timeout) throws InterruptedException {
+		_kexLock.lock();
+		try {
+			long start = System.currentTimeMillis(), remaining = timeout;
+			while( _inKeyExchange.get() ) {
+				if( timeout <= 0L ) {
+					_kexDone.await();
+				} else if( remaining > 0L ) {
+					_kexDone.await(remaining, TimeUnit.MILLISECONDS);
+					remaining = timeout - (System.currentTimeMillis() - start);
+				} else {
+					break;
+				}
+			}
+			return _inKeyExchange.get();
+		} finally {
+			_kexLock.unlock();
+		}
 	}
 	
 	/**
@@ -175,6 +238,7 @@ public final class KeyExchange {
 		if( _inKeyExchange.getAndSet(true) ) {	// Flip state flag entering kex
 			return;	// Return if already in process of kex
 		}
+		_kexStartTime = System.nanoTime();
 		Buffer kexBuffer = new Buffer();			// Use a separate packet and buffer since
 		Packet kexPacket = new Packet(kexBuffer);	// kex may be invoked by user thread
 		try {
@@ -43,6 +43,7 @@ import org.vngx.jsch.constants.SSHConstants;
 import org.vngx.jsch.constants.UserAuthProtocol;
 import org.vngx.jsch.exception.JSchException;
 import org.vngx.jsch.util.Logger.Level;
+import org.vngx.jsch.util.Metrics;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -286,6 +287,8 @@ public abstract class UserAuth implements UserAuthProtocol {
 			}
 
 			authCanceled = false;
+			final Metrics metrics = session.getMetrics();
+			final long start = metrics.isEnabled() ? System.nanoTime() : 0;
 			try {
 				// Attempt to authenticate user with method
 				if( userAuth.authUser(session, password) ) {
@@ -297,6 +300,10 @@ public abstract class UserAuth implements UserAuthProtocol {
 			} catch(PartialAuthException pe) {
 				authCanceled = false;
 				serverMethods = pe.getUserAuthMethods();	// Update server list of user auth methods
+			} finally {
+				if( start != 0 ) {
+					metrics.time(Metrics.Timer.AUTH, userAuthMethod, System.nanoTime() - start);
+				}
 			}
 		}
 
@@ -34,6 +34,7 @@ import org.vngx.jsch.algorithm.Random;
 import org.vngx.jsch.Util;
 import org.vngx.jsch.algorithm.AlgorithmManager;
 import org.vngx.jsch.algorithm.Algorithms;
+import org.vngx.jsch.algorithm.EnginePool;
 import org.vngx.jsch.exception.JSchException;
 import org.vngx.jsch.hash.HashManager;
 import org.vngx.jsch.hash.MAC;
@@ -53,11 +54,11 @@ class HashedHostKey extends HostKey {
 	static final String HASH_MAGIC = "|1|";
 	/** Constant for delimiter in host when HASH_MAGIC is present. */
 	static final String HASH_DELIM = "|";
+	/** Size of salt and hashed host (SHA-1 block size). */
+	private static final int HASH_SIZE = 20;
 	
 	/** Instance of random for creating hashed keys. */
 	private static Random $random;
-	/** Message authentication code instance for creating hashes. */
-	private static MAC $hmacsha1;
 
 	/** Salt value used to hash the host value. */
 	private byte[] _salt;
@@ -103,7 +104,7 @@ class HashedHostKey extends HostKey {
 			_hashedHost = Util.fromBase64(Util.str2byte(hash), 0, hash.length());
 
 			// If invalid salt/hash, then generate hash and salt for session
-			if( _salt.length != 20 || _hashedHost.length != 20 ) {	// SHA-1 block size must be 20!
+			if( _salt.length != HASH_SIZE || _hashedHost.length != HASH_SIZE ) {	// SHA-1 block size must be 20!
 				throw new JSchException("Invalid format, salt/hashed host lengths are wrong size: "+_host);
 			}
 		} else {
@@ -120,18 +121,11 @@ class HashedHostKey extends HostKey {
 	 */
 	private void generateHash() throws JSchException {
 		// Create random salt for session
-		MAC macsha1 = getMAC();
-		_salt = new byte[macsha1.getBlockSize()];
+		_salt = new byte[HASH_SIZE];
 		getRandom().fill(_salt, 0, _salt.length);
 
 		try {	// Create the hashed host using salt and MAC-SHA1
-			synchronized( macsha1 ) {	// MAC is not thread-safe
-				macsha1.init(_salt);
-				byte[] hostBytes = Util.str2byte(_host);
-				macsha1.update(hostBytes, 0, hostBytes.length);
-				_hashedHost = new byte[macsha1.getBlockSize()];
-				macsha1.doFinal(_hashedHost, 0);
-			}
+			_hashedHost = hashHost(_salt, _host);
 		} catch(Exception e) {
 			throw new JSchException("Failed to create HashedHostKey: " + e, e);
 		}
@@ -154,15 +148,7 @@ class HashedHostKey extends HostKey {
 	@Override
 	public boolean isMatched(String host) {
 		try {
-			MAC macsha1 = getMAC();
-			synchronized( macsha1 ) {	// MAC is not thread-safe
-				macsha1.init(_salt);
-				byte[] hostBytes = Util.str2byte(host);
-				macsha1.update(hostBytes, 0, hostBytes.length);
-				byte[] hashValue = new byte[macsha1.getBlockSize()];
-				macsha1.doFinal(hashValue, 0);
-				return Arrays.equals(_hashedHost, hashValue);
-			}
+			return Arrays.equals(_hashedHost, hashHost(_salt, host));
 		} catch(Exception e) {
 			throw new IllegalStateException("Failed to check HashedHostKey isMatched(): "+e, e);
 		}
@@ -174,15 +160,28 @@ class HashedHostKey extends HostKey {
 	}
 
 	/**
-	 * Returns the <code>MAC</code> instance for creating hashes for host keys.
+	 * Hashes the specified host with the salt using HMAC-SHA1.  A MAC is
+	 * checked out for each hash (MAC is not thread-safe) and released back to
+	 * the engine pool, so concurrent host key checks do not contend on a
+	 * shared instance.
 	 *
-	 * @return HMAC-SHA1 MAC instance
+	 * @param salt to hash with
+	 * @param host to hash
+	 * @return hashed host
+	 * @throws JSchException if any errors occur
 	 */
-	private synchronized static MAC getMAC() throws JSchException {
-		if( $hmacsha1 == null ) {
-			$hmacsha1 = HashManager.getManager().createMAC(MAC.HMAC_SHA1);
+	private static byte[] hashHost(byte[] salt, String host) throws JSchException {
+		MAC macsha1 = HashManager.getManager().createMAC(MAC.HMAC_SHA1);
+		try {
+			macsha1.init(salt);
+			byte[] hostBytes = Util.str2byte(host);
+			macsha1.update(hostBytes, 0, hostBytes.length);
+			byte[] hashValue = new byte[macsha1.getBlockSize()];
+			macsha1.doFinal(hashValue, 0);
+			return hashValue;
+		} finally {
+			EnginePool.release(macsha1);
 		}
-		return $hmacsha1;
 	}
 
 	/**
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Reference implementation of {@link Metrics} which aggregates all counters
+ * and timers in memory by tag.  Values can be read at any time while sessions
+ * are running, for example to periodically publish them to a monitoring
+ * system.</p>
+ *
+ * <p>Tags are kept until {@link #reset()} is called, so long running
+ * applications creating many sessions should reset the metrics after
+ * publishing them.</p>
+ */
+public class InMemoryMetrics implements Metrics {
+
+	/** Counter values by counter and tag. */
+	private final Map<Counter,ConcurrentMap<String,AtomicLong>> _counters = new EnumMap<Counter,ConcurrentMap<String,AtomicLong>>(Counter.class);
+	/** Timer statistics by timer and tag. */
+	private final Map<Timer,ConcurrentMap<String,TimerStats>> _timers = new EnumMap<Timer,ConcurrentMap<String,TimerStats>>(Timer.class);
+
+
+	/**
+	 * Creates a new instance of <code>InMemoryMetrics</code>.
+	 */
+	public InMemoryMetrics() {
+		for( Counter counter : Counter.values() ) {
+			_counters.put(counter, new ConcurrentHashMap<String,AtomicLong>());
+		}
+		for( Timer timer : Timer.values() ) {
+			_timers.put(timer, new ConcurrentHashMap<String,TimerStats>());
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void count(Counter counter, String tag, long amount) {
+		ConcurrentMap<String,AtomicLong> counters = _counters.get(counter);
+		AtomicLong value = counters.get(tag);
+		if( value == null ) {
+			AtomicLong existing = counters.putIfAbsent(tag, value = new AtomicLong());
+			if( existing != null ) {
+				value = existing;
+			}
+		}
+		value.addAndGet(amount);
+	}
+
+	@Override
+	public void time(Timer timer, String tag, long nanos) {
+		ConcurrentMap<String,TimerStats> timers = _timers.get(timer);
+		TimerStats stats = timers.get(tag);
+		if( stats == null ) {
+			TimerStats existing = timers.putIfAbsent(tag, stats = new TimerStats());
+			if( existing != null ) {
+				stats = existing;
+			}
+		}
+		stats.record(nanos);
+	}
+
+	/**
+	 * Returns the value of the counter for the specified tag.
+	 *
+	 * @param counter to return
+	 * @param tag of counter
+	 * @return counter value (0 if nothing has been counted for tag)
+	 */
+	public long getCount(Counter counter, String tag) {
+		AtomicLong value = _counters.get(counter).get(tag);
+		return value != null ? value.get() : 0;
+	}
+
+	/**
+	 * Returns the total value of the counter across all tags.
+	 *
+	 * @param counter to return
+	 * @return total counter value
+	 */
+	public long getCount(Counter counter) {
+		long total = 0;
+		for( AtomicLong value : _counters.get(counter).values() ) {
+			total += value.get();
+		}
+		return total;
+	}
+
+	/**
+	 * Returns a snapshot of the counter values by tag.
+	 *
+	 * @param counter to return
+	 * @return unmodifiable map of counter values by tag
+	 */
+	public Map<String,Long> getCounts(Counter counter) {
+		Map<String,Long> counts = new HashMap<String,Long>();
+		for( Map.Entry<String,AtomicLong> entry : _counters.get(counter).entrySet() ) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return Collections.unmodifiableMap(counts);
+	}
+
+	/**
+	 * Returns the statistics of the timer for the specified tag.
+	 *
+	 * @param timer to return
+	 * @param tag of timer
+	 * @return timer statistics (empty statistics if nothing timed for tag)
+	 */
+	public TimerStats getTimer(Timer timer, String tag) {
+		TimerStats stats = _timers.get(timer).get(tag);
+		return stats != null ? stats : new TimerStats();
+	}
+
+	/**
+	 * Returns the statistics of the timer by tag.
+	 *
+	 * @param timer to return
+	 * @return unmodifiable map of timer statistics by tag
+	 */
+	public Map<String,TimerStats> getTimers(Timer timer) {
+		return Collections.unmodifiableMap(new HashMap<String,TimerStats>(_timers.get(timer)));
+	}
+
+	/**
+	 * Clears all counters and timers.
+	 */
+	public void reset() {
+		for( ConcurrentMap<String,AtomicLong> counters : _counters.values() ) {
+			counters.clear();
+		}
+		for( ConcurrentMap<String,TimerStats> timers : _timers.values() ) {
+			timers.clear();
+		}
+	}
+
+	/**
+	 * Statistics for the times recorded by a timer for a single tag.
+	 */
+	public static final class TimerStats {
+
+		/** Number of times recorded. */
+		private final AtomicLong __count = new AtomicLong();
+		/** Total of times recorded in nanoseconds. */
+		private final AtomicLong __total = new AtomicLong();
+		/** Maximum time recorded in nanoseconds. */
+		private final AtomicLong __max = new AtomicLong();
+
+		/**
+		 * Records the specified elapsed time.
+		 *
+		 * @param nanos elapsed time in nanoseconds
+		 */
+		void record(long nanos) {
+			__count.incrementAndGet();
+			__total.addAndGet(nanos);
+			long max;
+			while( nanos > (max = __max.get()) && !__max.compareAndSet(max, nanos) ) {
+				// Retry until max is updated or a larger time is recorded
+			}
+		}
+
+		/**
+		 * Returns the number of times recorded.
+		 *
+		 * @return number of times recorded
+		 */
+		public long getCount() {
+			return __count.get();
+		}
+
+		/**
+		 * Returns the total of all times recorded in the specified unit.
+		 *
+		 * @param unit of time to return
+		 * @return total time
+		 */
+		public long getTotalTime(TimeUnit unit) {
+			return unit.convert(__total.get(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Returns the maximum time recorded in the specified unit.
+		 *
+		 * @param unit of time to return
+		 * @return maximum time
+		 */
+		public long getMaxTime(TimeUnit unit) {
+			return unit.convert(__max.get(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Returns the mean time recorded in the specified unit.
+		 *
+		 * @param unit of time to return
+		 * @return mean time (0 if no times recorded)
+		 */
+		public long getMeanTime(TimeUnit unit) {
+			long count = __count.get();
+			return count > 0 ? unit.convert(__total.get() / count, TimeUnit.NANOSECONDS) : 0;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + getCount() + ", total=" + getTotalTime(TimeUnit.MICROSECONDS)
+					+ "us, mean=" + getMeanTime(TimeUnit.MICROSECONDS)
+					+ "us, max=" + getMaxTime(TimeUnit.MICROSECONDS) + "us";
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.util;
+
+/**
+ * <p>Interface for collecting metrics from the SSH library's sessions and
+ * channels.  Implementations of <code>Metrics</code> can be used to wrap an
+ * external metrics library to allow for monitoring integration without adding
+ * a dependency to the library.</p>
+ *
+ * <p>Each measurement is reported with a tag identifying what was measured:
+ * <ul>
+ *	<li>Session measurements use the session's tag in the form
+ *		<code>username@host:port#n</code> where <code>n</code> is a number
+ *		unique to the session</li>
+ *	<li>Channel measurements use the session's tag followed by
+ *		<code>/channelId</code></li>
+ *	<li>User authentication times use the authentication method name</li>
+ *	<li>SFTP request times use the request type name (i.e.
+ *		<code>SSH_FXP_READ</code>)</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Two default implementations are provided:
+ * <ul>
+ *	<li><code>NULL_METRICS</code> - Empty metrics to ignore all measurements</li>
+ *	<li>{@link InMemoryMetrics} - Aggregates measurements in memory</li>
+ * </ul>
+ * Measurements are only taken if {@link #isEnabled()} returns true, so the
+ * default <code>NULL_METRICS</code> adds no overhead to the library.</p>
+ *
+ * <p>The <code>Metrics</code> instance is set globally by calling
+ * {@link org.vngx.jsch.JSch#setMetrics(org.vngx.jsch.util.Metrics)} or for
+ * a single session by calling
+ * {@link org.vngx.jsch.Session#setMetrics(org.vngx.jsch.util.Metrics)}</p>
+ *
+ * @see org.vngx.jsch.JSch
+ * @see org.vngx.jsch.Session
+ */
+public interface Metrics {
+
+	/** Enum constants for counted measurements. */
+	enum Counter {
+		/** Bytes read from the session's socket (session tag). */
+		BYTES_IN,
+		/** Bytes written to the session's socket (session tag). */
+		BYTES_OUT,
+		/** Packets read from the session (session tag). */
+		PACKETS_IN,
+		/** Packets written to the session (session tag). */
+		PACKETS_OUT,
+		/** Channel data bytes received from the server (channel tag). */
+		CHANNEL_BYTES_IN,
+		/** Channel data bytes sent to the server (channel tag). */
+		CHANNEL_BYTES_OUT
+	}
+
+	/** Enum constants for timed measurements. */
+	enum Timer {
+		/** Time encrypting outbound packets (session tag). */
+		ENCRYPT,
+		/** Time decrypting inbound packets (session tag). */
+		DECRYPT,
+		/** Time generating and verifying packet MACs (session tag). */
+		MAC,
+		/** Time to complete a key exchange (session tag). */
+		KEX,
+		/** Time to attempt user authentication (auth method tag). */
+		AUTH,
+		/** Time blocked waiting for the remote window to open (channel tag). */
+		WINDOW_WAIT,
+		/** Time from sending an SFTP request to reading its reply (request type tag). */
+		SFTP_REQUEST
+	}
+
+	/**
+	 * Returns true if measurements should be taken and reported.
+	 *
+	 * @return true if metrics are enabled
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Adds the specified amount to the counter for the tag.
+	 *
+	 * @param counter to add to
+	 * @param tag identifying what was counted
+	 * @param amount to add
+	 */
+	void count(Counter counter, String tag, long amount);
+
+	/**
+	 * Records the specified elapsed time for the timer and tag.
+	 *
+	 * @param timer to record
+	 * @param tag identifying what was timed
+	 * @param nanos elapsed time in nanoseconds
+	 */
+	void time(Timer timer, String tag, long nanos);
+
+	/**
+	 * Null implementation of <code>Metrics</code> which ignores all
+	 * measurements.
+	 */
+	Metrics NULL_METRICS = new Metrics() {
+
+		@Override public boolean isEnabled() { return false; }
+
+		@Override public void count(Counter counter, String tag, long amount) { }
+
+		@Override public void time(Timer timer, String tag, long nanos) { }
+
+	};
+
+}
@@ -32,7 +32,9 @@ package org.vngx.jsch.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 
 /**
@@ -96,46 +98,32 @@ public interface SocketFactory {
 				return new Socket(host, port);
 			}
 
-			// If timeout, create another thread to open socket and wait for
-			// specified timeout in milliseconds
-			final Socket[] sockp = new Socket[1];		// Socket created in separate thread
-			final Exception[] ee = new Exception[1];	// Exception from thread (if error)
-			Thread connectThread = new Thread("Opening socket " + host) {
-				@Override public void run() {
-					try {
-						sockp[0] = new Socket(host, port);
-					} catch(Exception e) {
-						ee[0] = e;
-						if( sockp[0] != null && sockp[0].isConnected() ) {
-							try {
-								sockp[0].close();
-							} catch(Exception eee) { /* Ignore error. */ }
-						}
-						sockp[0] = null;
-					}
-				}
-			};
-			connectThread.start();	// Start thread to open socket
-			try {					// Wait up to timeout amount for connection
-				connectThread.join(timeout);
-			} catch(InterruptedException iex) { /* Ignore error. */ }
-
-			// If socket is not null and connected, return
-			if( sockp[0] != null && sockp[0].isConnected() ) {
-				return sockp[0];
-			} else {
-				connectThread.interrupt();
-				connectThread = null;
-				if( ee[0] != null ) {
-					if( ee[0] instanceof IOException ) {
-						throw (IOException) ee[0];
-					}
-					throw (UnknownHostException) ee[0];
-				}
+			// If timeout, connect an unconnected socket with the timeout rather
+			// than opening the socket in a separate thread
+			Socket socket = new Socket();
+			try {
+				socket.connect(new InetSocketAddress(host, port), timeout);
+				return socket;
+			} catch(SocketTimeoutException e) {
+				closeQuietly(socket);
 				throw new IOException("Failed to create socket for host: "+host+", Timeout after "+timeout+" ms");
+			} catch(IOException e) {
+				closeQuietly(socket);
+				throw e;
 			}
 		}
 
+		/**
+		 * Closes the specified socket, ignoring any errors.
+		 *
+		 * @param socket to close
+		 */
+		private static void closeQuietly(Socket socket) {
+			try {
+				socket.close();
+			} catch(IOException e) { /* Ignore error. */ }
+		}
+
 		@Override
 		public InputStream getInputStream(Socket socket) throws IOException {
 			return socket.getInputStream();
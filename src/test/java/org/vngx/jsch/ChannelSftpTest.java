@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import static org.junit.Assert.*;
+import static org.vngx.jsch.constants.SftpProtocol.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vngx.jsch.exception.SftpException;
+
+/**
+ * Tests for {@link ChannelSftp} against the in-process {@link LoopbackServer}.
+ */
+public class ChannelSftpTest {
+
+	/** Size of test file, large enough to keep read-ahead requests outstanding. */
+	private static final int FILE_SIZE = 1024 * 1024 + 123;
+
+	private LoopbackServer _server;
+	private Session _session;
+	private ChannelSftp _sftp;
+	private byte[] _data;
+
+	@Before
+	public void setUp() throws Exception {
+		_server = new LoopbackServer();
+		_data = new byte[FILE_SIZE];
+		new Random(1).nextBytes(_data);
+		_server._files.put("/big", _data);
+		_session = _server.connect(null);
+		_sftp = (ChannelSftp) _session.openChannel(ChannelType.SFTP);
+		_sftp.connect();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		_session.disconnect();
+		_server.close();
+	}
+
+	/**
+	 * Another request issued while a get stream has reads outstanding must
+	 * not consume the outstanding read replies.
+	 */
+	@Test
+	public void testRequestDuringGetInputStream() throws Exception {
+		InputStream in = _sftp.get("/big");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int read = in.read(buffer);
+		out.write(buffer, 0, read);
+		assertEquals(FILE_SIZE, _sftp.stat("/big").getSize());
+		while( (read = in.read(buffer)) != -1 ) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		assertArrayEquals(_data, out.toByteArray());
+		assertEquals(FILE_SIZE, _sftp.stat("/big").getSize());
+	}
+
+	/**
+	 * A get which fails mid-transfer must leave the channel usable and close
+	 * the remote file handle.
+	 */
+	@Test
+	public void testGetFailureLeavesChannelUsable() throws Exception {
+		OutputStream failing = new OutputStream() {
+			int __count;
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if( (__count += len) > 100000 ) {
+					throw new IOException("Disk full");
+				}
+			}
+		};
+		try {
+			_sftp.get("/big", failing);
+			fail("Get should fail when output stream fails");
+		} catch(SftpException e) {
+			/* Expected */
+		}
+		assertEquals(_server.requestCount("OPEN"), _server.requestCount("CLOSE"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		_sftp.get("/big", out);
+		assertArrayEquals(_data, out.toByteArray());
+	}
+
+	/**
+	 * A parallel get of a file shorter than its reported size must fail
+	 * instead of reopening channels to retry the missing range forever.
+	 */
+	@Test(timeout = 30000)
+	public void testParallelGetShortFile() throws Exception {
+		_server._reportedSizes.put("/big", 4L * FILE_SIZE);
+		File dst = File.createTempFile("parallel", ".tmp");
+		try {
+			_sftp.getParallel("/big", dst.getPath(), 4, null);
+			fail("Get should fail when file is shorter than its size");
+		} catch(SftpException e) {
+			assertEquals(SSH_FX_EOF, e.getId());
+		} finally {
+			dst.delete();
+		}
+		assertTrue(_server._opens.get() <= 5);
+	}
+
+	/**
+	 * A synchronous request made once the channel is in asynchronous mode
+	 * must fail without being sent to the server.
+	 */
+	@Test(timeout = 30000)
+	public void testSyncRequestNotSentInAsyncMode() throws Exception {
+		AsyncSftp async = _sftp.async();
+		try {
+			_sftp.rm("/big");
+			fail("Synchronous request should fail in asynchronous mode");
+		} catch(SftpException e) {
+			/* Expected */
+		}
+		assertEquals(0, _server.requestCount("REMOVE"));
+		assertTrue(_server._files.containsKey("/big"));
+		assertEquals(FILE_SIZE, async.stat("/big").get().getSize());
+	}
+
+	/**
+	 * An asynchronous download writing to a stream which blocks must not
+	 * hold up the replies to other asynchronous requests.
+	 */
+	@Test(timeout = 30000)
+	public void testSlowDownloadStreamDoesNotBlockAsync() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		OutputStream blocking = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					throw new IOException(e);
+				}
+				data.write(b, off, len);
+			}
+		};
+		AsyncSftp async = _sftp.async();
+		try {
+			SftpFuture<Long> get = async.get("/big", blocking);
+			assertEquals(FILE_SIZE, async.stat("/big").get(5, TimeUnit.SECONDS).getSize());
+			release.countDown();
+			assertEquals(FILE_SIZE, get.get().longValue());
+			assertArrayEquals(_data, data.toByteArray());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/**
+	 * An asynchronous upload reading from a stream which blocks must not
+	 * hold up the replies to other asynchronous requests.
+	 */
+	@Test(timeout = 30000)
+	public void testSlowUploadStreamDoesNotBlockAsync() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		InputStream blocking = new ByteArrayInputStream(_data) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				if( pos > 0 ) {
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						return -1;
+					}
+				}
+				return super.read(b, off, len);
+			}
+		};
+		AsyncSftp async = _sftp.async();
+		try {
+			SftpFuture<Long> put = async.put(blocking, "/copy");
+			while( _server.requestCount("WRITE") == 0 ) {
+				Thread.sleep(10);
+			}
+			assertEquals(FILE_SIZE, async.stat("/big").get(5, TimeUnit.SECONDS).getSize());
+			release.countDown();
+			assertEquals(FILE_SIZE, put.get().longValue());
+			assertArrayEquals(_data, _server._files.get("/copy"));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/**
+	 * The paths of a bulk result must be kept in the order they were passed
+	 * to the operation even when the server replies out of order.
+	 */
+	@Test(timeout = 30000)
+	public void testBulkResultKeepsPathOrder() throws Exception {
+		_server._files.put("/a", new byte[1]);
+		_server._files.put("/b", new byte[2]);
+		_server._deferredStat = "/a";
+		SftpBulkResult<SftpATTRS> result = _sftp.stat(Arrays.asList("/a", "/b", "/missing", "/big", "/gone"));
+		assertEquals(Arrays.asList("/a", "/b", "/big"), new ArrayList<String>(result.getResults().keySet()));
+		assertEquals(Arrays.asList("/missing", "/gone"), new ArrayList<String>(result.getFailures().keySet()));
+		assertEquals(1, result.get("/a").getSize());
+	}
+
+	/**
+	 * A path passed more than once to a bulk operation must only be sent
+	 * once and reported once.
+	 */
+	@Test(timeout = 30000)
+	public void testBulkResultDuplicatePath() throws Exception {
+		SftpBulkResult<Void> result = _sftp.mkdir(Arrays.asList("/dir", "/dir"));
+		assertEquals(1, _server.requestCount("MKDIR"));
+		assertTrue(result.isSuccess());
+		assertEquals(Arrays.asList("/dir"), new ArrayList<String>(result.getResults().keySet()));
+		assertTrue(result.getFailures().isEmpty());
+	}
+
+	/**
+	 * A selector which throws must not leave the pipelined READDIR reply
+	 * unread or the directory handle open.
+	 */
+	@Test(timeout = 30000)
+	public void testLsSelectorFailureClosesHandle() throws Exception {
+		_server._dirs.add("/dir");
+		_server._files.put("/dir/a", new byte[1]);
+		_server._files.put("/dir/b", new byte[1]);
+		_server._readdirBatch = 1;
+		try {
+			_sftp.ls("/dir", new ChannelSftp.LsEntrySelector() {
+				@Override public int select(ChannelSftp.LsEntry entry) {
+					throw new IllegalStateException("Selector failed");
+				}
+			});
+			fail("ls should fail when selector fails");
+		} catch(SftpException e) {
+			/* Expected */
+		}
+		assertEquals(1, _server.requestCount("CLOSE"));
+		assertEquals(FILE_SIZE, _sftp.stat("/big").getSize());
+		assertEquals(2, _sftp.ls("/dir").size());
+	}
+
+	/**
+	 * Putting a local file which fits in a single write request must not
+	 * start a read-ahead thread, while a larger file is still read ahead.
+	 */
+	@Test(timeout = 30000)
+	public void testSmallFilePutStartsNoThread() throws Exception {
+		final AtomicInteger threads = new AtomicInteger();
+		_session.setThreadFactory(new ThreadFactory() {
+			@Override public Thread newThread(Runnable runnable) {
+				threads.incrementAndGet();
+				return Executors.defaultThreadFactory().newThread(runnable);
+			}
+		});
+		File src = File.createTempFile("put", ".tmp");
+		try {
+			byte[] small = Arrays.copyOf(_data, 1000);
+			FileOutputStream out = new FileOutputStream(src);
+			out.write(small);
+			out.close();
+			_sftp.put(src.getPath(), "/small");
+			assertArrayEquals(small, _server._files.get("/small"));
+			assertEquals(0, threads.get());
+
+			out = new FileOutputStream(src);
+			out.write(_data);
+			out.close();
+			_sftp.put(src.getPath(), "/large");
+			assertArrayEquals(_data, _server._files.get("/large"));
+			assertEquals(1, threads.get());
+		} finally {
+			src.delete();
+		}
+	}
+
+}
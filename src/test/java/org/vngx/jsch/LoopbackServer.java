@@ -0,0 +1,865 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.vngx.jsch.config.SessionConfig;
+import org.vngx.jsch.kex.KeyExchange;
+
+/**
+ * In-process SSH server used by the tests which speaks the connection
+ * protocol (RFC 4254) and SFTP version 3 over a loopback socket.  Sessions are
+ * attached with {@link #connect(SessionConfig)}, which skips the version
+ * exchange, key exchange and user authentication so packets are sent in the
+ * clear without a MAC.  Files are kept in memory and the server can be told
+ * to delay or fail channel opens and to misreport file sizes in order to
+ * exercise the client's error paths.
+ */
+final class LoopbackServer implements Closeable {
+
+	/** SFTP request types handled by the server. */
+	static final int SSH_FXP_INIT = 1, SSH_FXP_VERSION = 2, SSH_FXP_OPEN = 3, SSH_FXP_CLOSE = 4,
+			SSH_FXP_READ = 5, SSH_FXP_WRITE = 6, SSH_FXP_LSTAT = 7, SSH_FXP_FSTAT = 8,
+			SSH_FXP_SETSTAT = 9, SSH_FXP_FSETSTAT = 10, SSH_FXP_OPENDIR = 11, SSH_FXP_READDIR = 12,
+			SSH_FXP_REMOVE = 13, SSH_FXP_MKDIR = 14, SSH_FXP_RMDIR = 15, SSH_FXP_REALPATH = 16,
+			SSH_FXP_STAT = 17, SSH_FXP_RENAME = 18, SSH_FXP_STATUS = 101, SSH_FXP_HANDLE = 102,
+			SSH_FXP_DATA = 103, SSH_FXP_NAME = 104, SSH_FXP_ATTRS = 105;
+
+	/** Server socket accepting client connections. */
+	private final ServerSocket _serverSocket;
+	/** Connections accepted by the server. */
+	final List<Connection> _connections = new CopyOnWriteArrayList<Connection>();
+	/** File contents by absolute path. */
+	final Map<String,byte[]> _files = new ConcurrentHashMap<String,byte[]>();
+	/** Directory paths. */
+	final Set<String> _dirs = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+	/** File sizes reported by STAT instead of the actual size. */
+	final Map<String,Long> _reportedSizes = new ConcurrentHashMap<String,Long>();
+	/** Channels on which an exec request was received, in arrival order. */
+	final List<ServerChannel> _execChannels = new CopyOnWriteArrayList<ServerChannel>();
+	/** SFTP requests and channel closes received, as "TYPE arg" strings, in arrival order. */
+	final List<String> _requests = new CopyOnWriteArrayList<String>();
+	/** Number of channel opens to leave unanswered until told otherwise. */
+	final AtomicInteger _holdOpens = new AtomicInteger();
+	/** Number of channel opens to refuse with an open failure. */
+	final AtomicInteger _failOpens = new AtomicInteger();
+	/** Total channel opens received. */
+	final AtomicInteger _opens = new AtomicInteger();
+	/** Total ignore messages received. */
+	final AtomicInteger _ignores = new AtomicInteger();
+	/** Path whose STAT reply is sent after the reply to the next request. */
+	volatile String _deferredStat;
+	/** Number of entries returned per READDIR reply. */
+	volatile int _readdirBatch = 100;
+	/** Window advertised to clients for each channel. */
+	volatile int _serverWindow = 0x200000;
+	/** True to acknowledge writes without storing the data written. */
+	volatile boolean _discardWrites;
+	/** Factory for threads serving connections (daemon platform threads if null). */
+	volatile ThreadFactory _threadFactory;
+
+	/**
+	 * Creates a new server listening on an ephemeral loopback port.
+	 *
+	 * @throws IOException if the server socket cannot be created
+	 */
+	LoopbackServer() throws IOException {
+		_serverSocket = new ServerSocket(0, 1000, InetAddress.getByName("127.0.0.1"));
+		_dirs.add("/");
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while( true ) {
+						Socket socket = _serverSocket.accept();
+						socket.setTcpNoDelay(true);
+						Connection connection = new Connection(socket);
+						_connections.add(connection);
+						Thread thread;
+						if( _threadFactory != null ) {
+							thread = _threadFactory.newThread(connection);
+						} else {
+							thread = new Thread(connection, "Loopback connection");
+							thread.setDaemon(true);
+						}
+						thread.start();
+					}
+				} catch(IOException e) {
+					/* Server socket closed. */
+				}
+			}
+		}, "Loopback acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Creates a session attached to the server as if the transport and user
+	 * authentication had completed without encryption.
+	 *
+	 * @param config for session (may be null)
+	 * @return connected session
+	 * @throws Exception if any errors occur
+	 */
+	Session connect(SessionConfig config) throws Exception {
+		return connect(config, null);
+	}
+
+	/**
+	 * Creates a session attached to the server as if the transport and user
+	 * authentication had completed without encryption, which creates its
+	 * threads with the specified factory.
+	 *
+	 * @param config for session (may be null)
+	 * @param threadFactory for session threads (may be null for default)
+	 * @return connected session
+	 * @throws Exception if any errors occur
+	 */
+	Session connect(SessionConfig config, ThreadFactory threadFactory) throws Exception {
+		Session session = JSch.getInstance().createSession("test", "127.0.0.1", _serverSocket.getLocalPort(), config);
+		session.setThreadFactory(threadFactory);
+		boolean nio = session.getConfig().getBoolean(SessionConfig.NIO_TRANSPORT);
+		Socket socket = nio ? SessionSelector.createSocket("127.0.0.1", _serverSocket.getLocalPort(), 0)
+							: new Socket("127.0.0.1", _serverSocket.getLocalPort());
+		socket.setTcpNoDelay(true);
+		IO io = new IO();
+		io.setInputStream(socket.getInputStream());
+		io.setOutputStream(socket.getOutputStream());
+		int channelMax = session.getConfig().getInteger(SessionConfig.CHANNEL_MAX);
+		set(session, "_channelPermits", channelMax > 0 ? new Semaphore(channelMax, true) : null);
+		set(session, "_io", io);
+		set(session, "_socket", socket);
+		set(session, "_connected", true);
+		SessionIO sessionIO = SessionIO.createIO(session, io.in, io._out);
+		set(session, "_sessionIO", sessionIO);
+		set(session, "_keyExchange", new KeyExchange(session));
+		set(session, "_authenticated", true);
+		SocketChannel socketChannel = socket.getChannel();
+		if( nio && socketChannel != null ) {
+			SessionSelector.Transport transport = SessionSelector.getSelector().createTransport(session, socketChannel);
+			set(session, "_transport", transport);
+			sessionIO.setStreams(transport.getInputStream(), transport.getOutputStream());
+			transport.start();
+		} else {
+			Thread thread = session.newThread(session, "Connect thread loopback session");
+			set(session, "_connectThread", thread);
+			thread.start();
+		}
+		return session;
+	}
+
+	/**
+	 * Answers every channel open currently held by the server with either a
+	 * confirmation or an open failure.
+	 *
+	 * @param confirm true to confirm the opens, false to refuse them
+	 * @throws IOException if any errors occur
+	 */
+	void releaseHeldOpens(boolean confirm) throws IOException {
+		for( Connection connection : _connections ) {
+			connection.releaseHeldOpens(confirm);
+		}
+	}
+
+	/**
+	 * Returns the number of channel opens held by the server.
+	 *
+	 * @return number of held opens
+	 */
+	int heldOpens() {
+		int count = 0;
+		for( Connection connection : _connections ) {
+			synchronized( connection ) {
+				count += connection.__heldOpens.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of SFTP requests received of the specified type.
+	 *
+	 * @param type name of request (e.g. "REMOVE")
+	 * @return number of requests received
+	 */
+	int requestCount(String type) {
+		int count = 0;
+		for( String request : _requests ) {
+			if( request.startsWith(type + " ") ) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_serverSocket.close();
+		for( Connection connection : _connections ) {
+			connection.__socket.close();
+		}
+	}
+
+	static void set(Object target, String name, Object value) throws Exception {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	static Object get(Object target, String name) throws Exception {
+		Class<?> type = target.getClass();
+		while( type != null ) {
+			try {
+				Field field = type.getDeclaredField(name);
+				field.setAccessible(true);
+				return field.get(target);
+			} catch(NoSuchFieldException e) {
+				type = type.getSuperclass();
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+
+	/**
+	 * Returns the normalized absolute form of the specified path.
+	 *
+	 * @param path to normalize
+	 * @return absolute path
+	 */
+	static String normalize(String path) {
+		List<String> parts = new ArrayList<String>();
+		for( String part : path.split("/") ) {
+			if( part.isEmpty() || ".".equals(part) ) {
+				continue;
+			} else if( "..".equals(part) ) {
+				if( !parts.isEmpty() ) {
+					parts.remove(parts.size() - 1);
+				}
+			} else {
+				parts.add(part);
+			}
+		}
+		StringBuilder buffer = new StringBuilder();
+		for( String part : parts ) {
+			buffer.append('/').append(part);
+		}
+		return buffer.length() == 0 ? "/" : buffer.toString();
+	}
+
+	/** Channel opened by a client. */
+	static final class ServerChannel {
+		/** Connection channel was opened on. */
+		final Connection __connection;
+		/** Server side channel id. */
+		final int __id;
+		/** Client side channel id. */
+		final int __recipient;
+		/** Maximum packet size accepted by client. */
+		final int __maxPacket;
+		/** Remaining client window for data sent by the server. */
+		long __clientWindow;
+		/** Total window adjust bytes received from client. */
+		final AtomicLong __adjusted = new AtomicLong();
+		/** Total data bytes received from client. */
+		final AtomicLong __received = new AtomicLong();
+		/** Data waiting for client window. */
+		final ByteArrayOutputStream __pending = new ByteArrayOutputStream();
+		/** Partial SFTP request data received from client. */
+		byte[] __sftpIn = new byte[0];
+		/** SFTP reply held back until the reply to the next request. */
+		Writer __deferred;
+		/** True if the SFTP subsystem was started. */
+		boolean __sftp;
+		/** True if the server sent a close. */
+		boolean __closeSent;
+		/** True to send EOF and close once all pending data has been sent. */
+		boolean __closeWhenSent;
+		/** Open file and directory handles. */
+		final Map<String,String[]> __handles = new HashMap<String,String[]>();
+		/** Next handle number. */
+		int __nextHandle;
+
+		ServerChannel(Connection connection, int id, int recipient, int window, int maxPacket) {
+			__connection = connection;
+			__id = id;
+			__recipient = recipient;
+			__clientWindow = window & 0xffffffffL;
+			__maxPacket = maxPacket;
+		}
+
+		/**
+		 * Sends the specified data to the client as channel data once the
+		 * client's window allows.
+		 *
+		 * @param data to send
+		 * @throws IOException if any errors occur
+		 */
+		void send(byte[] data) throws IOException {
+			__connection.sendData(this, data);
+		}
+
+		/**
+		 * Returns the amount of data waiting for the client's window.
+		 *
+		 * @return bytes waiting to be sent
+		 */
+		int pending() {
+			synchronized( __connection ) {
+				return __pending.size();
+			}
+		}
+	}
+
+	/** Connection from a single client session. */
+	final class Connection implements Runnable {
+		/** Connection socket. */
+		final Socket __socket;
+		/** Socket output. */
+		private final DataOutputStream __out;
+		/** Open channels by server channel id. */
+		final Map<Integer,ServerChannel> __channels = new ConcurrentHashMap<Integer,ServerChannel>();
+		/** Channel opens held without a reply as {recipient, window, maxPacket}. */
+		final List<int[]> __heldOpens = new ArrayList<int[]>();
+		/** Next server channel id. */
+		private int __nextChannel;
+
+		Connection(Socket socket) throws IOException {
+			__socket = socket;
+			__out = new DataOutputStream(socket.getOutputStream());
+		}
+
+		@Override
+		public void run() {
+			try {
+				DataInputStream in = new DataInputStream(__socket.getInputStream());
+				while( true ) {
+					int length = in.readInt();
+					byte[] packet = new byte[length];
+					in.readFully(packet);
+					byte[] payload = Arrays.copyOfRange(packet, 1, length - (packet[0] & 0xff));
+					handle(new Reader(payload));
+				}
+			} catch(IOException e) {
+				/* Connection closed. */
+			}
+		}
+
+		private void handle(Reader msg) throws IOException {
+			int type = msg.getByte();
+			switch( type ) {
+				case 2:		// SSH_MSG_IGNORE
+					_ignores.incrementAndGet();
+					break;
+				case 80:	// SSH_MSG_GLOBAL_REQUEST
+					msg.getString();
+					if( msg.getByte() != 0 ) {
+						send(new Writer().putByte(82));
+					}
+					break;
+				case 90:	// SSH_MSG_CHANNEL_OPEN
+					msg.getString();
+					int recipient = msg.getInt(), window = msg.getInt(), maxPacket = msg.getInt();
+					_opens.incrementAndGet();
+					if( _holdOpens.get() > 0 && _holdOpens.getAndDecrement() > 0 ) {
+						synchronized( this ) {
+							__heldOpens.add(new int[] { recipient, window, maxPacket });
+						}
+					} else if( _failOpens.get() > 0 && _failOpens.getAndDecrement() > 0 ) {
+						send(new Writer().putByte(92).putInt(recipient).putInt(2).putString("refused").putString(""));
+					} else {
+						confirm(recipient, window, maxPacket);
+					}
+					break;
+				case 93:	// SSH_MSG_CHANNEL_WINDOW_ADJUST
+					ServerChannel channel = __channels.get(msg.getInt());
+					int adjust = msg.getInt();
+					if( channel != null ) {
+						synchronized( this ) {
+							channel.__adjusted.addAndGet(adjust);
+							channel.__clientWindow += adjust & 0xffffffffL;
+							flush(channel);
+						}
+					}
+					break;
+				case 94:	// SSH_MSG_CHANNEL_DATA
+					channel = __channels.get(msg.getInt());
+					byte[] data = msg.getBytes();
+					if( channel != null ) {
+						channel.__received.addAndGet(data.length);
+						send(new Writer().putByte(93).putInt(channel.__recipient).putInt(data.length));
+						if( channel.__sftp ) {
+							sftp(channel, data);
+						}
+					}
+					break;
+				case 97:	// SSH_MSG_CHANNEL_CLOSE
+					int closeId = msg.getInt();
+					_requests.add("CHANNEL_CLOSE " + closeId);
+					channel = __channels.remove(closeId);
+					if( channel != null ) {
+						synchronized( this ) {
+							if( !channel.__closeSent ) {
+								channel.__closeSent = true;
+								send(new Writer().putByte(97).putInt(channel.__recipient));
+							}
+						}
+					}
+					break;
+				case 98:	// SSH_MSG_CHANNEL_REQUEST
+					channel = __channels.get(msg.getInt());
+					String request = msg.getString();
+					boolean wantReply = msg.getByte() != 0;
+					boolean success = false;
+					if( channel != null && "subsystem".equals(request) && "sftp".equals(msg.getString()) ) {
+						channel.__sftp = success = true;
+					} else if( channel != null && "exec".equals(request) ) {
+						String command = msg.getString();
+						_execChannels.add(channel);
+						success = true;
+						if( command.startsWith("echo ") ) {
+							// Reply with the text then close the channel
+							if( wantReply ) {
+								send(new Writer().putByte(99).putInt(channel.__recipient));
+								wantReply = false;
+							}
+							synchronized( this ) {
+								channel.__closeWhenSent = true;
+								sendData(channel, Util.str2byte(command.substring(5)));
+							}
+						}
+					}
+					if( wantReply && channel != null ) {
+						send(new Writer().putByte(success ? 99 : 100).putInt(channel.__recipient));
+					}
+					break;
+				default:
+					break;
+			}
+		}
+
+		private synchronized void confirm(int recipient, int window, int maxPacket) throws IOException {
+			ServerChannel channel = new ServerChannel(this, __nextChannel++, recipient, window, maxPacket);
+			__channels.put(channel.__id, channel);
+			send(new Writer().putByte(91).putInt(recipient).putInt(channel.__id).putInt(_serverWindow).putInt(0x8000));
+		}
+
+		synchronized void releaseHeldOpens(boolean confirm) throws IOException {
+			for( int[] open : __heldOpens ) {
+				if( confirm ) {
+					confirm(open[0], open[1], open[2]);
+				} else {
+					send(new Writer().putByte(92).putInt(open[0]).putInt(2).putString("refused").putString(""));
+				}
+			}
+			__heldOpens.clear();
+		}
+
+		/**
+		 * Sends the specified data to the client on the channel, respecting
+		 * the client's window and maximum packet size.
+		 *
+		 * @param channel to send data on
+		 * @param data to send
+		 * @throws IOException if any errors occur
+		 */
+		synchronized void sendData(ServerChannel channel, byte[] data) throws IOException {
+			channel.__pending.write(data);
+			flush(channel);
+		}
+
+		private void flush(ServerChannel channel) throws IOException {
+			byte[] pending = channel.__pending.toByteArray();
+			int offset = 0;
+			while( offset < pending.length && channel.__clientWindow > 0 ) {
+				int length = (int) Math.min(Math.min(pending.length - offset, channel.__maxPacket), channel.__clientWindow);
+				send(new Writer().putByte(94).putInt(channel.__recipient).putBytes(pending, offset, length));
+				channel.__clientWindow -= length;
+				offset += length;
+			}
+			channel.__pending.reset();
+			channel.__pending.write(pending, offset, pending.length - offset);
+			if( offset == pending.length && channel.__closeWhenSent && !channel.__closeSent ) {
+				channel.__closeSent = true;
+				send(new Writer().putByte(96).putInt(channel.__recipient));
+				send(new Writer().putByte(97).putInt(channel.__recipient));
+			}
+		}
+
+		private synchronized void send(Writer payload) throws IOException {
+			byte[] data = payload.toByteArray();
+			int padding = 8 - ((5 + data.length) % 8);
+			if( padding < 4 ) {
+				padding += 8;
+			}
+			__out.writeInt(1 + data.length + padding);
+			__out.writeByte(padding);
+			__out.write(data);
+			__out.write(new byte[padding]);
+			__out.flush();
+		}
+
+		private void sftp(ServerChannel channel, byte[] data) throws IOException {
+			byte[] buffer = new byte[channel.__sftpIn.length + data.length];
+			System.arraycopy(channel.__sftpIn, 0, buffer, 0, channel.__sftpIn.length);
+			System.arraycopy(data, 0, buffer, channel.__sftpIn.length, data.length);
+			int offset = 0;
+			while( buffer.length - offset >= 4 ) {
+				int length = new Reader(buffer, offset).getInt();
+				if( buffer.length - offset - 4 < length ) {
+					break;
+				}
+				Reader request = new Reader(Arrays.copyOfRange(buffer, offset + 4, offset + 4 + length));
+				offset += 4 + length;
+				Writer deferred = channel.__deferred;
+				Writer reply = sftpRequest(channel, request);
+				if( reply != null ) {
+					sendReply(channel, reply);
+					if( deferred != null ) {
+						channel.__deferred = null;
+						sendReply(channel, deferred);
+					}
+				}
+			}
+			channel.__sftpIn = Arrays.copyOfRange(buffer, offset, buffer.length);
+		}
+
+		private void sendReply(ServerChannel channel, Writer reply) throws IOException {
+			byte[] body = reply.toByteArray();
+			sendData(channel, new Writer().putBytes(body, 0, body.length).toByteArray());
+		}
+
+		private Writer sftpRequest(ServerChannel channel, Reader request) {
+			int type = request.getByte();
+			if( type == SSH_FXP_INIT ) {
+				_requests.add("INIT -");
+				return new Writer().putByte(SSH_FXP_VERSION).putInt(3);
+			}
+			int id = request.getInt();
+			switch( type ) {
+				case SSH_FXP_REALPATH: {
+					String path = request.getString();
+					_requests.add("REALPATH " + path);
+					return name(id, Collections.singletonList(normalize(path)), false);
+				}
+				case SSH_FXP_STAT:
+				case SSH_FXP_LSTAT: {
+					String path = normalize(request.getString());
+					_requests.add((type == SSH_FXP_STAT ? "STAT " : "LSTAT ") + path);
+					Writer attrs = attrs(path);
+					Writer reply = attrs != null ? new Writer().putByte(SSH_FXP_ATTRS).putInt(id).put(attrs) : status(id, 2, "No such file");
+					if( type == SSH_FXP_STAT && path.equals(_deferredStat) ) {
+						channel.__deferred = reply;
+						return null;
+					}
+					return reply;
+				}
+				case SSH_FXP_FSTAT: {
+					String[] handle = channel.__handles.get(request.getString());
+					_requests.add("FSTAT " + (handle != null ? handle[0] : "-"));
+					Writer attrs = handle != null ? attrs(handle[0]) : null;
+					return attrs != null ? new Writer().putByte(SSH_FXP_ATTRS).putInt(id).put(attrs) : status(id, 4, "Bad handle");
+				}
+				case SSH_FXP_OPEN: {
+					String path = normalize(request.getString());
+					int flags = request.getInt();
+					_requests.add("OPEN " + path);
+					if( (flags & 0x08) != 0 && (!_files.containsKey(path) || (flags & 0x10) != 0) ) {
+						_files.put(path, new byte[0]);
+					} else if( !_files.containsKey(path) ) {
+						return status(id, 2, "No such file");
+					}
+					return handle(channel, id, path, "file");
+				}
+				case SSH_FXP_OPENDIR: {
+					String path = normalize(request.getString());
+					_requests.add("OPENDIR " + path);
+					return _dirs.contains(path) ? handle(channel, id, path, "dir") : status(id, 2, "No such file");
+				}
+				case SSH_FXP_CLOSE: {
+					String[] handle = channel.__handles.remove(request.getString());
+					_requests.add("CLOSE " + (handle != null ? handle[0] : "-"));
+					return handle != null ? status(id, 0, "") : status(id, 4, "Bad handle");
+				}
+				case SSH_FXP_READ: {
+					String[] handle = channel.__handles.get(request.getString());
+					long offset = request.getLong();
+					int length = request.getInt();
+					_requests.add("READ " + (handle != null ? handle[0] : "-"));
+					byte[] file = handle != null ? _files.get(handle[0]) : null;
+					if( file == null ) {
+						return status(id, 4, "Bad handle");
+					} else if( offset >= file.length ) {
+						return status(id, 1, "EOF");
+					}
+					int count = (int) Math.min(length, file.length - offset);
+					return new Writer().putByte(SSH_FXP_DATA).putInt(id).putBytes(file, (int) offset, count);
+				}
+				case SSH_FXP_WRITE: {
+					String[] handle = channel.__handles.get(request.getString());
+					long offset = request.getLong();
+					byte[] data = request.getBytes();
+					_requests.add("WRITE " + (handle != null ? handle[0] : "-"));
+					byte[] file = handle != null ? _files.get(handle[0]) : null;
+					if( file == null ) {
+						return status(id, 4, "Bad handle");
+					} else if( _discardWrites ) {
+						return status(id, 0, "");
+					}
+					if( offset + data.length > file.length ) {
+						file = Arrays.copyOf(file, (int) offset + data.length);
+					}
+					System.arraycopy(data, 0, file, (int) offset, data.length);
+					_files.put(handle[0], file);
+					return status(id, 0, "");
+				}
+				case SSH_FXP_READDIR: {
+					String[] handle = channel.__handles.get(request.getString());
+					_requests.add("READDIR " + (handle != null ? handle[0] : "-"));
+					if( handle == null ) {
+						return status(id, 4, "Bad handle");
+					}
+					List<String> entries = list(handle[0]);
+					int start = Integer.parseInt(handle[2]);
+					if( start >= entries.size() ) {
+						return status(id, 1, "EOF");
+					}
+					int end = Math.min(entries.size(), start + _readdirBatch);
+					handle[2] = String.valueOf(end);
+					return name(id, entries.subList(start, end), true);
+				}
+				case SSH_FXP_REMOVE: {
+					String path = normalize(request.getString());
+					_requests.add("REMOVE " + path);
+					return _files.remove(path) != null ? status(id, 0, "") : status(id, 2, "No such file");
+				}
+				case SSH_FXP_MKDIR: {
+					String path = normalize(request.getString());
+					_requests.add("MKDIR " + path);
+					return _dirs.add(path) ? status(id, 0, "") : status(id, 4, "Exists");
+				}
+				case SSH_FXP_RMDIR: {
+					String path = normalize(request.getString());
+					_requests.add("RMDIR " + path);
+					return _dirs.remove(path) ? status(id, 0, "") : status(id, 2, "No such file");
+				}
+				case SSH_FXP_SETSTAT:
+				case SSH_FXP_FSETSTAT: {
+					_requests.add("SETSTAT -");
+					return status(id, 0, "");
+				}
+				case SSH_FXP_RENAME: {
+					String from = normalize(request.getString()), to = normalize(request.getString());
+					_requests.add("RENAME " + from);
+					byte[] file = _files.remove(from);
+					if( file == null ) {
+						return status(id, 2, "No such file");
+					}
+					_files.put(to, file);
+					return status(id, 0, "");
+				}
+				default:
+					_requests.add("UNSUPPORTED " + type);
+					return status(id, 8, "Unsupported");
+			}
+		}
+
+		private Writer handle(ServerChannel channel, int id, String path, String kind) {
+			String handle = "h" + (channel.__nextHandle++);
+			channel.__handles.put(handle, new String[] { path, kind, "0" });
+			return new Writer().putByte(SSH_FXP_HANDLE).putInt(id).putString(handle);
+		}
+
+		private List<String> list(String dir) {
+			String prefix = "/".equals(dir) ? "/" : dir + "/";
+			Set<String> names = new TreeSet<String>();
+			for( String path : _files.keySet() ) {
+				if( path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0 ) {
+					names.add(path);
+				}
+			}
+			for( String path : _dirs ) {
+				if( path.startsWith(prefix) && path.length() > prefix.length() && path.indexOf('/', prefix.length()) < 0 ) {
+					names.add(path);
+				}
+			}
+			return new ArrayList<String>(names);
+		}
+
+		private Writer name(int id, List<String> paths, boolean shortNames) {
+			Writer writer = new Writer().putByte(SSH_FXP_NAME).putInt(id).putInt(paths.size());
+			for( String path : paths ) {
+				String name = shortNames ? path.substring(path.lastIndexOf('/') + 1) : path;
+				Writer attrs = attrs(path);
+				writer.putString(name).putString(name).put(attrs != null ? attrs : attrs("/"));
+			}
+			return writer;
+		}
+
+		private Writer attrs(String path) {
+			if( _dirs.contains(path) ) {
+				return new Writer().putInt(0x0d).putLong(0).putInt(040755).putInt(0).putInt(0);
+			}
+			byte[] file = _files.get(path);
+			if( file == null ) {
+				return null;
+			}
+			Long size = _reportedSizes.get(path);
+			return new Writer().putInt(0x0d).putLong(size != null ? size : file.length).putInt(0100644).putInt(0).putInt(0);
+		}
+
+		private Writer status(int id, int code, String message) {
+			return new Writer().putByte(SSH_FXP_STATUS).putInt(id).putInt(code).putString(message).putString("");
+		}
+	}
+
+	/** Reads SSH encoded values from a byte array. */
+	static final class Reader {
+		private final DataInputStream __in;
+
+		Reader(byte[] data) {
+			this(data, 0);
+		}
+
+		Reader(byte[] data, int offset) {
+			__in = new DataInputStream(new java.io.ByteArrayInputStream(data, offset, data.length - offset));
+		}
+
+		int getByte() {
+			try {
+				return __in.readUnsignedByte();
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		int getInt() {
+			try {
+				return __in.readInt();
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		long getLong() {
+			try {
+				return __in.readLong();
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		byte[] getBytes() {
+			byte[] data = new byte[getInt()];
+			try {
+				__in.readFully(data);
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return data;
+		}
+
+		String getString() {
+			return Util.byte2str(getBytes());
+		}
+	}
+
+	/** Writes SSH encoded values to a byte array. */
+	static final class Writer {
+		private final ByteArrayOutputStream __buffer = new ByteArrayOutputStream();
+		private final DataOutputStream __out = new DataOutputStream(__buffer);
+
+		Writer putByte(int value) {
+			__buffer.write(value);
+			return this;
+		}
+
+		Writer putInt(int value) {
+			try {
+				__out.writeInt(value);
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return this;
+		}
+
+		Writer putLong(long value) {
+			try {
+				__out.writeLong(value);
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return this;
+		}
+
+		Writer putBytes(byte[] data, int offset, int length) {
+			putInt(length);
+			__buffer.write(data, offset, length);
+			return this;
+		}
+
+		Writer putString(String value) {
+			byte[] data = Util.str2byte(value);
+			return putBytes(data, 0, data.length);
+		}
+
+		Writer put(Writer other) {
+			byte[] data = other.toByteArray();
+			__buffer.write(data, 0, data.length);
+			return this;
+		}
+
+		byte[] toByteArray() {
+			return __buffer.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Before;
+import org.junit.Test;
+import org.vngx.jsch.algorithm.Compression;
+import org.vngx.jsch.algorithm.EnginePool;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherException;
+import org.vngx.jsch.cipher.CipherManager;
+import org.vngx.jsch.config.SessionConfig;
+import org.vngx.jsch.constants.TransportLayerProtocol;
+import org.vngx.jsch.exception.JSchException;
+import org.vngx.jsch.hash.Hash;
+import org.vngx.jsch.hash.HashManager;
+import org.vngx.jsch.hash.MAC;
+import org.vngx.jsch.kex.KexProposal;
+
+/**
+ * Tests for {@link SessionIO} encoding packets with one instance and decoding
+ * them with another over a pipe.
+ */
+public class SessionIOTest {
+
+	/** Message code of the test packets (SSH_MSG_CHANNEL_DATA). */
+	private static final byte COMMAND = 94;
+	/** Number of test packets sent by each round trip. */
+	private static final int PACKETS = 200;
+
+	private Session _session;
+	private PipedInputStream _in;
+	private PipedOutputStream _out;
+	private SessionIO _writer;
+	private SessionIO _reader;
+	private final byte[] _key = new byte[64];
+	private final byte[] _iv = new byte[64];
+	private final byte[] _macKey = new byte[64];
+
+	@Before
+	public void setUp() throws Exception {
+		_session = JSch.getInstance().createSession("test", "localhost");
+		_in = new PipedInputStream(1 << 20);
+		_out = new PipedOutputStream(_in);
+		_writer = SessionIO.createIO(_session, _in, _out);
+		_reader = SessionIO.createIO(_session, _in, _out);
+		new Random(1).nextBytes(_key);
+		new Random(2).nextBytes(_iv);
+		new Random(3).nextBytes(_macKey);
+	}
+
+	/**
+	 * Creates the cipher with the specified name initialized with the test
+	 * key and IV.
+	 */
+	private Cipher createCipher(String name, int mode) throws Exception {
+		Cipher cipher = CipherManager.getManager().createCipher(name);
+		cipher.init(mode, _key, _iv);
+		return cipher;
+	}
+
+	/**
+	 * Creates the MAC with the specified name initialized with the test key.
+	 */
+	private MAC createMAC(String name) throws Exception {
+		MAC mac = HashManager.getManager().createMAC(name);
+		mac.init(_macKey);
+		return mac;
+	}
+
+	/**
+	 * Creates a test packet whose data depends on its number.
+	 */
+	private static Packet createPacket(int n) {
+		Packet packet = new Packet(new Buffer(70000));
+		packet.reset();
+		packet.buffer.putByte(COMMAND);
+		packet.buffer.putInt(n);
+		packet.buffer.putString(data(n));
+		return packet;
+	}
+
+	/**
+	 * Returns the data of test packet n; every 50th packet is too large to
+	 * fit in the write batch.
+	 */
+	private static byte[] data(int n) {
+		byte[] data = new byte[n % 50 == 49 ? 65000 : n * 97 % 5000];
+		Arrays.fill(data, (byte) n);
+		return data;
+	}
+
+	/**
+	 * Checks the decoded packet in the buffer is test packet n.
+	 */
+	private static void checkPacket(Buffer buffer, int n) {
+		buffer.getInt();
+		buffer.getByte();
+		assertEquals(COMMAND, buffer.getByte());
+		assertEquals(n, buffer.getInt());
+		assertArrayEquals(data(n), buffer.getString());
+	}
+
+	/**
+	 * Writes the test packets in batches of varying sizes and checks each is
+	 * read back intact.
+	 */
+	private void roundTrip() throws Exception {
+		roundTrip(false);
+	}
+
+	/**
+	 * Writes the test packets in batches of varying sizes and checks each is
+	 * read back intact, either with blocking reads or by passing the encoded
+	 * data to the non-blocking decoder one byte at a time.
+	 */
+	private void roundTrip(boolean decode) throws Exception {
+		Buffer buffer = new Buffer(70000);
+		for( int n = 0; n < PACKETS; ) {
+			int batch = n % 5 + 1;
+			for( int i = n; i < n + batch && i < PACKETS; i++ ) {
+				_writer.write(createPacket(i));
+			}
+			_writer.flush();
+			int end = Math.min(n + batch, PACKETS);
+			if( decode ) {
+				byte[] encoded = new byte[_in.available()];
+				assertEquals(encoded.length, _in.read(encoded));
+				for( int i = 0; i < encoded.length; i++ ) {
+					if( _reader.decode(ByteBuffer.wrap(encoded, i, 1), buffer) ) {
+						checkPacket(buffer, n++);
+					}
+				}
+				assertEquals(end, n);
+			} else {
+				for( ; n < end; n++ ) {
+					_reader.read(buffer);
+					checkPacket(buffer, n);
+				}
+			}
+		}
+		assertEquals(0, _in.available());
+	}
+
+	/**
+	 * A cipher which does not support byte buffers must be encrypted in
+	 * place and copied into the write batch.
+	 */
+	@Test(timeout = 30000)
+	public void testPlainCipherRoundTrip() throws Exception {
+		_writer.setWriteAlgorithms(new PlainCipher(createCipher(Cipher.CIPHER_AES128_CTR, Cipher.ENCRYPT_MODE)), createMAC(MAC.HMAC_SHA1));
+		_reader.setReadAlgorithms(new PlainCipher(createCipher(Cipher.CIPHER_AES128_CTR, Cipher.DECRYPT_MODE)), createMAC(MAC.HMAC_SHA1));
+		roundTrip();
+	}
+
+	/**
+	 * Packets encrypted with AES-GCM must be read back intact with no MAC.
+	 */
+	@Test(timeout = 30000)
+	public void testAESGCMRoundTrip() throws Exception {
+		for( String name : new String[] { Cipher.CIPHER_AES128_GCM, Cipher.CIPHER_AES256_GCM } ) {
+			setUp();
+			_writer.setWriteAlgorithms(createCipher(name, Cipher.ENCRYPT_MODE), null);
+			_reader.setReadAlgorithms(createCipher(name, Cipher.DECRYPT_MODE), null);
+			roundTrip();
+		}
+	}
+
+	/**
+	 * Packets encrypted with chacha20-poly1305@openssh.com must be read back
+	 * intact with no MAC, both with blocking reads and through the
+	 * non-blocking decoder.
+	 */
+	@Test(timeout = 30000)
+	public void testChaCha20Poly1305RoundTrip() throws Exception {
+		for( boolean decode : new boolean[] { false, true } ) {
+			setUp();
+			_writer.setWriteAlgorithms(createCipher(Cipher.CIPHER_CHACHA20_POLY1305, Cipher.ENCRYPT_MODE), null);
+			_reader.setReadAlgorithms(createCipher(Cipher.CIPHER_CHACHA20_POLY1305, Cipher.DECRYPT_MODE), null);
+			roundTrip(decode);
+		}
+	}
+
+	/**
+	 * A corrupt packet decoded by the non-blocking decoder with a CBC cipher
+	 * must have the following data discarded from the data passed to the
+	 * decoder, never reading from the socket stream, before failing with the
+	 * disconnect reason for the corrupt packet.
+	 */
+	@Test(timeout = 30000)
+	public void testCorruptCBCPacketDiscardedByDecode() throws Exception {
+		InputStream nonBlocking = new InputStream() {
+			@Override public int read() {
+				throw new IllegalBlockingModeException();
+			}
+		};
+		_reader = SessionIO.createIO(_session, nonBlocking, _out);
+		_writer.setWriteAlgorithms(createCipher(Cipher.CIPHER_AES128_CBC, Cipher.ENCRYPT_MODE), createMAC(MAC.HMAC_SHA1));
+		_reader.setReadAlgorithms(createCipher(Cipher.CIPHER_AES128_CBC, Cipher.DECRYPT_MODE), createMAC(MAC.HMAC_SHA1));
+		_writer.write(createPacket(1));
+		_writer.flush();
+		byte[] raw = new byte[_in.available()];
+		assertEquals(raw.length, _in.read(raw));
+		raw[20] ^= 1;	// Corrupt second cipher block
+
+		Buffer buffer = new Buffer(70000);
+		assertFalse(_reader.decode(ByteBuffer.wrap(raw), buffer));
+		int packetLength = raw.length - 20;	// Excluding MAC
+		int discard = Packet.MAX_SIZE - (packetLength - 16) - packetLength;
+		ByteBuffer src = ByteBuffer.allocateDirect(8192);
+		int discarded = 0;
+		try {
+			while( true ) {
+				src.clear();
+				assertFalse(_reader.decode(src, buffer));
+				discarded += src.position();
+			}
+		} catch(JSchException e) {
+			assertEquals(TransportLayerProtocol.SSH_DISCONNECT_MAC_ERROR, e.getDisconnectReason());
+			discarded += src.position();
+		}
+		assertEquals(discard, discarded);
+	}
+
+	/**
+	 * An encrypt-then-MAC packet must send the packet length in the clear,
+	 * the rest of the packet encrypted and a MAC computed over the sequence
+	 * number and the packet as sent.
+	 */
+	@Test(timeout = 30000)
+	public void testEncryptThenMACFraming() throws Exception {
+		_writer.setWriteAlgorithms(createCipher(Cipher.CIPHER_AES128_CTR, Cipher.ENCRYPT_MODE), createMAC(MAC.HMAC_SHA_256_ETM));
+		_reader.setReadAlgorithms(createCipher(Cipher.CIPHER_AES128_CTR, Cipher.DECRYPT_MODE), createMAC(MAC.HMAC_SHA_256_ETM));
+		for( int n = 0; n < 3; n++ ) {
+			_writer.write(createPacket(n));
+			_writer.flush();
+			byte[] raw = new byte[_in.available()];
+			assertEquals(raw.length, _in.read(raw));
+			int length = ((raw[0] & 0xff) << 24) | ((raw[1] & 0xff) << 16) | ((raw[2] & 0xff) << 8) | (raw[3] & 0xff);
+			assertEquals(0, length % 16);
+			assertEquals(4 + length + 32, raw.length);
+			assertFalse(raw[5] == COMMAND && raw[6] == 0);	// Payload is encrypted
+
+			MAC mac = createMAC(MAC.HMAC_SHA_256_ETM);
+			mac.update(n);
+			mac.update(raw, 0, 4 + length);
+			byte[] digest = new byte[mac.getBlockSize()];
+			mac.doFinal(digest, 0);
+			assertArrayEquals(digest, Arrays.copyOfRange(raw, 4 + length, raw.length));
+
+			_out.write(raw);
+			Buffer buffer = new Buffer(70000);
+			_reader.read(buffer);
+			checkPacket(buffer, n);
+		}
+	}
+
+	/**
+	 * Packets sent with each encrypt-then-MAC algorithm must be read back
+	 * intact with both stream and CBC ciphers, both with blocking reads and
+	 * through the non-blocking decoder.
+	 */
+	@Test(timeout = 30000)
+	public void testEncryptThenMACRoundTrip() throws Exception {
+		String[][] algorithms = {
+			{ Cipher.CIPHER_AES128_CTR, MAC.HMAC_SHA1_ETM },
+			{ Cipher.CIPHER_AES256_CTR, MAC.HMAC_SHA_256_ETM },
+			{ Cipher.CIPHER_AES128_CBC, MAC.HMAC_SHA_512_ETM }
+		};
+		for( String[] algorithm : algorithms ) {
+			for( boolean decode : new boolean[] { false, true } ) {
+				setUp();
+				_writer.setWriteAlgorithms(createCipher(algorithm[0], Cipher.ENCRYPT_MODE), createMAC(algorithm[1]));
+				_reader.setReadAlgorithms(createCipher(algorithm[0], Cipher.DECRYPT_MODE), createMAC(algorithm[1]));
+				roundTrip(decode);
+			}
+		}
+	}
+
+	/**
+	 * A MAC key shorter than the MAC block size, such as an integrity key
+	 * from a SHA-1 key exchange used with hmac-sha2-512-etm, must be expanded
+	 * as RFC 4253 section 7.2 specifies so the MAC interoperates with servers.
+	 */
+	@Test
+	public void testExpandKeyForMAC() throws Exception {
+		byte[] K = new byte[129], H = new byte[20], sessionId = new byte[20];
+		new Random(4).nextBytes(K);
+		new Random(5).nextBytes(H);
+		new Random(6).nextBytes(sessionId);
+		Buffer buffer = new Buffer();
+		buffer.putMPInt(K);
+		buffer.putBytes(H);
+		int length = buffer.index;
+		buffer.putByte((byte) 'F');
+		buffer.putBytes(sessionId);
+		Hash hash = HashManager.getManager().createHash(Hash.HASH_SHA1);
+		hash.update(buffer.buffer, 0, buffer.index);
+		byte[] key = hash.digest();
+
+		// Expected key K1 || K2 || K3 || K4 computed directly with SHA-1
+		Buffer kh = new Buffer();
+		kh.putMPInt(K);
+		kh.putBytes(H);
+		byte[] prefix = Arrays.copyOf(kh.buffer, kh.index);
+		MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(key);
+		while( expected.size() < 64 ) {
+			sha1.update(prefix);
+			sha1.update(expected.toByteArray());
+			expected.write(sha1.digest());
+		}
+
+		MAC mac = createMAC(MAC.HMAC_SHA_512_ETM);
+		Method expandKey = SessionIO.class.getDeclaredMethod("expandKey",
+				Hash.class, Buffer.class, int.class, byte[].class, int.class);
+		expandKey.setAccessible(true);
+		byte[] expanded = (byte[]) expandKey.invoke(null, hash, buffer, length, key, mac.getBlockSize());
+		assertArrayEquals(expected.toByteArray(), expanded);
+
+		// MAC uses the first 64 bytes of the expanded key as the HMAC key
+		Mac hmac = Mac.getInstance("HmacSHA512");
+		hmac.init(new SecretKeySpec(Arrays.copyOf(expanded, 64), "HmacSHA512"));
+		mac.init(expanded);
+		byte[] digest = new byte[mac.getBlockSize()];
+		mac.update(sessionId, 0, sessionId.length);
+		mac.doFinal(digest, 0);
+		assertArrayEquals(hmac.doFinal(sessionId), digest);
+	}
+
+	/**
+	 * Packets must be read back intact after the algorithms are replaced by
+	 * ones using the engines released from the previous algorithms, as
+	 * happens on a key exchange.
+	 */
+	@Test(timeout = 30000)
+	public void testRoundTripWithPooledEngines() throws Exception {
+		Cipher writeCipher = createCipher(Cipher.CIPHER_AES128_CTR, Cipher.ENCRYPT_MODE);
+		Cipher readCipher = createCipher(Cipher.CIPHER_AES128_CTR, Cipher.DECRYPT_MODE);
+		MAC writeMac = createMAC(MAC.HMAC_SHA1), readMac = createMAC(MAC.HMAC_SHA1);
+		for( int i = 0; i < 3; i++ ) {
+			_writer.setWriteAlgorithms(writeCipher, writeMac);
+			_reader.setReadAlgorithms(readCipher, readMac);
+			roundTrip();
+			EnginePool.release(writeCipher);
+			EnginePool.release(readCipher);
+			EnginePool.release(writeMac);
+			EnginePool.release(readMac);
+			assertTrue(EnginePool.CIPHERS.getIdleCount("AES/CTR/NoPadding") >= 2);
+			assertTrue(EnginePool.MACS.getIdleCount("HmacSHA1") >= 2);
+
+			new Random(10 + i).nextBytes(_key);	// New keys for next exchange
+			new Random(20 + i).nextBytes(_iv);
+			new Random(30 + i).nextBytes(_macKey);
+			writeCipher = createCipher(Cipher.CIPHER_AES128_CTR, Cipher.ENCRYPT_MODE);
+			readCipher = createCipher(Cipher.CIPHER_AES128_CTR, Cipher.DECRYPT_MODE);
+			writeMac = createMAC(MAC.HMAC_SHA1);
+			readMac = createMAC(MAC.HMAC_SHA1);
+		}
+	}
+
+	/**
+	 * Replaces the reader with one for a session with the read pipeline
+	 * enabled, sets its algorithms and starts the pipeline as a key exchange
+	 * agreeing on no compression would.
+	 */
+	@SuppressWarnings("unchecked")
+	private void startReadPipeline(String cipher, String mac) throws Exception {
+		SessionConfig config = new SessionConfig();
+		config.setProperty(SessionConfig.READ_PIPELINE_DEPTH, 4);
+		_reader = SessionIO.createIO(JSch.getInstance().createSession("test", "localhost", 22, config), _in, _out);
+		_reader.setReadAlgorithms(createCipher(cipher, Cipher.DECRYPT_MODE), createMAC(mac));
+
+		Constructor<KexProposal> constructor = KexProposal.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		KexProposal proposal = constructor.newInstance();
+		((Map<KexProposal.Proposal,String>) LoopbackServer.get(proposal, "_agreed"))
+				.put(KexProposal.Proposal.COMP_ALGS_STOC, Compression.COMPRESSION_NONE);
+		Method start = SessionIO.class.getDeclaredMethod("startReadPipeline", KexProposal.class);
+		start.setAccessible(true);
+		start.invoke(_reader, proposal);
+		assertNotNull(LoopbackServer.get(_reader, "_readPipeline"));
+	}
+
+	/**
+	 * Packets decrypted and verified ahead by the read pipeline must be read
+	 * back intact and in order.
+	 */
+	@Test(timeout = 30000)
+	public void testReadPipelineRoundTrip() throws Exception {
+		String[][] algorithms = {
+			{ Cipher.CIPHER_AES128_CTR, MAC.HMAC_SHA1 },
+			{ Cipher.CIPHER_AES256_CTR, MAC.HMAC_SHA_256_ETM }
+		};
+		for( String[] algorithm : algorithms ) {
+			setUp();
+			_writer.setWriteAlgorithms(createCipher(algorithm[0], Cipher.ENCRYPT_MODE), createMAC(algorithm[1]));
+			startReadPipeline(algorithm[0], algorithm[1]);
+			try {
+				roundTrip();
+			} finally {
+				_reader.close();
+			}
+		}
+	}
+
+	/**
+	 * The read pipeline must stop reading once it has read the new keys
+	 * message, leaving the packets encrypted with the new keys unread.
+	 */
+	@Test(timeout = 30000)
+	public void testReadPipelineStopsAtNewKeys() throws Exception {
+		startReadPipeline(Cipher.CIPHER_AES128_CTR, MAC.HMAC_SHA1);
+		try {
+			// Encode packets first and send with a single write, since the
+			// pipe fails writes once the pipeline thread reading it has ended
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+			SessionIO writer = SessionIO.createIO(_session, _in, encoded);
+			writer.setWriteAlgorithms(createCipher(Cipher.CIPHER_AES128_CTR, Cipher.ENCRYPT_MODE), createMAC(MAC.HMAC_SHA1));
+			writer.write(createPacket(0));
+			Packet newKeys = new Packet(new Buffer(100));
+			newKeys.reset();
+			newKeys.buffer.putByte(TransportLayerProtocol.SSH_MSG_NEWKEYS);
+			writer.write(newKeys);
+			writer.flush();
+			int sent = encoded.size();
+			writer.write(createPacket(1));
+			writer.flush();
+			_out.write(encoded.toByteArray());
+
+			Buffer buffer = new Buffer(70000);
+			_reader.read(buffer);
+			checkPacket(buffer, 0);
+			_reader.read(buffer);
+			assertEquals(TransportLayerProtocol.SSH_MSG_NEWKEYS, buffer.getCommand());
+			Thread.sleep(200);
+			assertEquals(encoded.size() - sent, _in.available());
+		} finally {
+			_reader.close();
+		}
+	}
+
+	/**
+	 * Cipher implementing only the {@link Cipher} interface by delegating to
+	 * another cipher.
+	 */
+	static final class PlainCipher implements Cipher {
+
+		private final Cipher __cipher;
+
+		PlainCipher(Cipher cipher) {
+			__cipher = cipher;
+		}
+
+		@Override
+		public int getIVSize() {
+			return __cipher.getIVSize();
+		}
+
+		@Override
+		public int getBlockSize() {
+			return __cipher.getBlockSize();
+		}
+
+		@Override
+		public boolean isCBC() {
+			return __cipher.isCBC();
+		}
+
+		@Override
+		public void init(int mode, byte[] key, byte[] iv) throws CipherException {
+			__cipher.init(mode, key, iv);
+		}
+
+		@Override
+		public void update(byte[] buffer, int srcOffset, int length, byte[] dest, int destOffset) throws CipherException {
+			__cipher.update(buffer, srcOffset, length, dest, destOffset);
+		}
+
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import static org.junit.Assert.*;
+
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Test;
+import org.vngx.jsch.SessionPool.Key;
+import org.vngx.jsch.exception.JSchException;
+
+/**
+ * Tests for {@link SessionPool}.
+ */
+public class SessionPoolTest {
+
+	/**
+	 * Keys must only be equal if they authenticate with the same credentials.
+	 */
+	@Test
+	public void testKeyIncludesCredentials() {
+		UserInfo userInfo = new TestUserInfo();
+		byte[] password = Util.str2byte("secret");
+		Key key = new Key("user", "host", 22, null, password, userInfo);
+		Key same = new Key("user", "host", 22, null, Util.str2byte("secret"), userInfo);
+		assertEquals(key, same);
+		assertEquals(key.hashCode(), same.hashCode());
+
+		assertFalse(key.equals(new Key("user", "host", 22, null, Util.str2byte("other"), userInfo)));
+		assertFalse(key.equals(new Key("user", "host", 22, null, null, userInfo)));
+		assertFalse(key.equals(new Key("user", "host", 22, null, password, new TestUserInfo())));
+		assertFalse(key.equals(new Key("user", "host", 22, null, password, null)));
+
+		password[0] = 0;	// Key must not change with caller's array
+		assertEquals(key, same);
+	}
+
+	/**
+	 * A session being connected must not hold the lock for its key, and other
+	 * threads needing a session for the key must wait for it rather than
+	 * connecting their own.
+	 */
+	@Test(timeout = 30000)
+	public void testConnectDoesNotHoldLock() throws Exception {
+		ServerSocket silent = new ServerSocket(0);	// Never sends version
+		final SessionPool pool = new SessionPool(10, 1000, 0);
+		final Key key = new Key("user", "127.0.0.1", silent.getLocalPort(), null, null, null);
+		final List<Exception> errors = new CopyOnWriteArrayList<Exception>();
+		Thread[] threads = new Thread[2];
+		try {
+			for( int i = 0; i < threads.length; i++ ) {
+				threads[i] = new Thread() {
+					@Override public void run() {
+						try {
+							pool.getSession(key);
+						} catch(JSchException e) {
+							errors.add(e);
+						}
+					}
+				};
+				threads[i].start();
+				while( pool.getSessionCount() == 0 ) {
+					Thread.sleep(10);
+				}
+			}
+			Thread.sleep(200);
+			assertEquals(1, pool.getSessionCount());
+			pool.close();
+			for( Thread thread : threads ) {
+				thread.join();
+			}
+			assertEquals(threads.length, errors.size());
+		} finally {
+			pool.close();
+			silent.close();
+		}
+	}
+
+	/** User info which never prompts. */
+	static final class TestUserInfo implements UserInfo {
+		@Override public String getPassphrase() { return null; }
+		@Override public String getPassword() { return null; }
+		@Override public boolean promptPassword(String message) { return false; }
+		@Override public boolean promptPassphrase(String message) { return false; }
+		@Override public boolean promptYesNo(String message) { return false; }
+		@Override public void showMessage(String message) { }
+	}
+
+}
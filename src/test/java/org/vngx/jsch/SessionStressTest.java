@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vngx.jsch.config.SessionConfig;
+
+/**
+ * Stress tests running many concurrent sessions in a single JVM, both with
+ * session threads created by a virtual thread factory (when the runtime
+ * supports virtual threads) and with sessions driven by the shared selector
+ * threads of the non-blocking transport.
+ *
+ * The number of sessions defaults to {@value #DEFAULT_SESSIONS} so the tests
+ * run quickly as part of the build.  Set the system property
+ * {@code vngx.stress.sessions} to 10000 for the full scale run, which the
+ * {@code stress} profile does ({@code mvn test -Pstress}); since both ends of
+ * every connection live in the same JVM, the open file limit must be more
+ * than twice the number of sessions.
+ */
+public class SessionStressTest {
+
+	/** Default number of concurrent sessions. */
+	static final int DEFAULT_SESSIONS = 500;
+	/**
+	 * Maximum number of platform threads the sessions may add when session
+	 * threads are virtual threads (the carrier threads are not counted).
+	 */
+	private static final int MAX_PLATFORM_THREADS = 16;
+	/** Maximum time in minutes to wait for all sessions. */
+	private static final int TIMEOUT_MINUTES = 10;
+
+	private LoopbackServer _server;
+	private final List<Session> _sessions = new CopyOnWriteArrayList<Session>();
+	private final int _count = Integer.getInteger("vngx.stress.sessions", DEFAULT_SESSIONS);
+
+	@Before
+	public void setUp() throws Exception {
+		_server = new LoopbackServer();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for( Session session : _sessions ) {
+			session.disconnect();
+		}
+		_server.close();
+	}
+
+	/**
+	 * Returns a factory creating virtual threads if supported by the runtime.
+	 *
+	 * @return virtual thread factory or null if not supported
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch(Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Connects the sessions concurrently, each running an exec channel before
+	 * and after all sessions are connected, and returns once every session
+	 * has finished.
+	 *
+	 * @param config for sessions (may be null)
+	 * @param threadFactory for session and worker threads (null for default)
+	 * @param connected action run once all sessions are connected (may be null)
+	 * @throws Exception if any errors occur
+	 */
+	private void runSessions(final SessionConfig config, final ThreadFactory threadFactory, Runnable connected) throws Exception {
+		final CountDownLatch allConnected = new CountDownLatch(_count);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(_count);
+		final AtomicInteger succeeded = new AtomicInteger();
+		final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+		ThreadFactory workers = threadFactory != null ? threadFactory : Executors.defaultThreadFactory();
+		for( int i = 0; i < _count; i++ ) {
+			final int id = i;
+			workers.newThread(new Runnable() {
+				public void run() {
+					try {
+						Session session = _server.connect(config, threadFactory);
+						_sessions.add(session);
+						assertEquals("first " + id, echo(session, "first " + id));
+						allConnected.countDown();
+						release.await();
+						assertEquals("second " + id, echo(session, "second " + id));
+						succeeded.incrementAndGet();
+					} catch(Throwable e) {
+						errors.add(e);
+						allConnected.countDown();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		assertTrue("Sessions did not connect", allConnected.await(TIMEOUT_MINUTES, TimeUnit.MINUTES));
+		if( connected != null ) {
+			connected.run();
+		}
+		release.countDown();
+		assertTrue("Sessions did not finish", done.await(TIMEOUT_MINUTES, TimeUnit.MINUTES));
+		if( !errors.isEmpty() ) {
+			throw new AssertionError(errors.size() + " sessions failed, first error: " + errors.get(0));
+		}
+		assertEquals(_count, succeeded.get());
+	}
+
+	/**
+	 * Runs an exec channel on the session which echoes the specified text.
+	 *
+	 * @param session to open channel on
+	 * @param text to echo
+	 * @return text read from channel
+	 * @throws Exception if any errors occur
+	 */
+	private static String echo(Session session, String text) throws Exception {
+		ChannelExec exec = (ChannelExec) session.openChannel(ChannelType.EXEC);
+		exec.setCommand("echo " + text);
+		InputStream in = exec.getInputStream();
+		exec.connect();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+		while( (read = in.read(buffer)) != -1 ) {
+			out.write(buffer, 0, read);
+		}
+		exec.disconnect();
+		return Util.byte2str(out.toByteArray());
+	}
+
+	/**
+	 * Runs the sessions with all session threads created from the session's
+	 * thread factory, using virtual threads if the runtime supports them.
+	 */
+	@Test
+	public void testThreadFactorySessions() throws Exception {
+		final ThreadFactory virtual = virtualThreadFactory();
+		final int platformThreads = Thread.activeCount();
+		if( virtual != null ) {
+			_server._threadFactory = virtual;
+		}
+		runSessions(null, virtual, new Runnable() {
+			public void run() {
+				if( virtual != null ) {	// Session threads must not be platform threads
+					assertTrue(Thread.activeCount() <= platformThreads + MAX_PLATFORM_THREADS);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs the sessions on the non-blocking transport, which must not start a
+	 * connect thread for any of the sessions.
+	 */
+	@Test
+	public void testSelectorSessions() throws Exception {
+		SessionConfig config = new SessionConfig();
+		config.setProperty(SessionConfig.NIO_TRANSPORT, true);
+		_server._threadFactory = virtualThreadFactory();
+		runSessions(config, _server._threadFactory, new Runnable() {
+			public void run() {
+				for( Thread thread : Thread.getAllStackTraces().keySet() ) {
+					assertFalse(thread.getName(), thread.getName().startsWith("Connect thread"));
+				}
+			}
+		});
+	}
+
+}
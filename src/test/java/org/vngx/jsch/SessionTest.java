@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vngx.jsch.LoopbackServer.ServerChannel;
+import org.vngx.jsch.config.SessionConfig;
+import org.vngx.jsch.exception.JSchException;
+
+/**
+ * Tests for {@link Session} against the in-process {@link LoopbackServer}.
+ */
+public class SessionTest {
+
+	private LoopbackServer _server;
+	private final List<Session> _sessions = new ArrayList<Session>();
+
+	@Before
+	public void setUp() throws Exception {
+		_server = new LoopbackServer();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for( Session session : _sessions ) {
+			session.disconnect();
+		}
+		_server.close();
+	}
+
+	private Session connect(SessionConfig config) throws Exception {
+		Session session = _server.connect(config);
+		_sessions.add(session);
+		return session;
+	}
+
+	private ServerChannel awaitExec(int index) throws InterruptedException {
+		while( _server._execChannels.size() <= index ) {
+			Thread.sleep(10);
+		}
+		return _server._execChannels.get(index);
+	}
+
+	private static void awaitPending(ServerChannel channel, int pending) throws InterruptedException {
+		while( channel.pending() > pending ) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static void readFully(InputStream in, int length) throws IOException {
+		byte[] buffer = new byte[8192];
+		while( length > 0 ) {
+			int read = in.read(buffer, 0, Math.min(buffer.length, length));
+			if( read < 0 ) {
+				throw new IOException("Unexpected EOF");
+			}
+			length -= read;
+		}
+	}
+
+	/**
+	 * The local window must only be adjusted as the channel's reader consumes
+	 * data, so the server cannot send more than the reader has room for.
+	 */
+	@Test(timeout = 30000)
+	public void testWindowAdjustedOnConsumption() throws Exception {
+		Session session = connect(null);
+		ChannelExec exec = (ChannelExec) session.openChannel(ChannelType.EXEC);
+		exec.setCommand("cat");
+		InputStream in = exec.getInputStream();
+		exec.connect();
+		ServerChannel channel = awaitExec(0);
+		int window = exec.getLocalWindowMaxSize();
+
+		channel.send(new byte[2 * window]);
+		awaitPending(channel, window);
+		Thread.sleep(200);
+		assertEquals(0, channel.__adjusted.get());
+		assertEquals(window, channel.pending());
+
+		readFully(in, window);
+		awaitPending(channel, 0);
+		assertTrue(channel.__adjusted.get() >= window / 2);
+		readFully(in, window);
+	}
+
+	/**
+	 * A channel whose reader does not keep up must not block the selector
+	 * thread shared with other sessions.
+	 */
+	@Test(timeout = 30000)
+	public void testSlowReaderDoesNotBlockSelector() throws Exception {
+		SessionConfig config = new SessionConfig();
+		config.setProperty(SessionConfig.NIO_TRANSPORT, true);
+		int loops = ((Object[]) LoopbackServer.get(SessionSelector.getSelector(), "_loops")).length;
+		for( int i = 0; i <= loops; i++ ) {
+			connect(config);
+		}
+		// Sessions are assigned to selector loops in round-robin order
+		Session slow = _sessions.get(0), other = _sessions.get(loops);
+
+		ChannelExec exec = (ChannelExec) slow.openChannel(ChannelType.EXEC);
+		exec.setCommand("cat");
+		exec.getInputStream();	// Never read
+		exec.connect();
+		ServerChannel channel = awaitExec(0);
+		int window = exec.getLocalWindowMaxSize();
+		channel.send(new byte[8 * window]);
+		awaitPending(channel, 7 * window);
+		Thread.sleep(200);
+
+		ChannelSftp sftp = (ChannelSftp) other.openChannel(ChannelType.SFTP);
+		sftp.connect();
+		assertTrue(sftp.stat("/").isDir());
+		sftp.disconnect();
+	}
+
+	/**
+	 * A packet left in the write batch for a thread waiting for the write
+	 * lock must be flushed even if that thread does not write a packet.
+	 */
+	@Test(timeout = 30000)
+	public void testBatchFlushedByWaitingDisconnect() throws Exception {
+		final Session session = connect(null);
+		ReentrantLock writeLock = (ReentrantLock) LoopbackServer.get(session, "_writeLock");
+		writeLock.lock();
+		Thread writer = new Thread() {
+			@Override public void run() {
+				try {
+					session.sendIgnore();
+				} catch(Exception e) { /* Fails test below. */ }
+			}
+		};
+		writer.start();
+		while( writeLock.getQueueLength() < 1 ) {
+			Thread.sleep(10);
+		}
+		Thread disconnect = new Thread() {
+			@Override public void run() {
+				session.disconnect();
+			}
+		};
+		disconnect.start();
+		while( writeLock.getQueueLength() < 2 ) {
+			Thread.sleep(10);
+		}
+		writeLock.unlock();
+		writer.join();
+		disconnect.join();
+		long deadline = System.currentTimeMillis() + 2000;
+		while( _server._ignores.get() == 0 && System.currentTimeMillis() < deadline ) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, _server._ignores.get());
+	}
+
+	/**
+	 * Once the local window has grown past the size of the channel's pipe,
+	 * the server sending a full window to a reader which is not reading must
+	 * not block the session's other channels, and no data may be lost as the
+	 * pipe grows.
+	 */
+	@Test(timeout = 30000)
+	public void testWindowGrowthDoesNotBlockSession() throws Exception {
+		Session session = connect(null);
+		LoopbackServer.set(session, "_roundTripTime", TimeUnit.SECONDS.toNanos(10));
+		ChannelExec exec = (ChannelExec) session.openChannel(ChannelType.EXEC);
+		exec.setCommand("cat");
+		InputStream in = exec.getInputStream();
+		exec.connect();
+		ServerChannel channel = awaitExec(0);
+		int window = exec.getLocalWindowMaxSize();
+
+		byte[] data = new byte[16 * window];
+		new Random(1).nextBytes(data);
+		channel.send(data);
+		byte[] received = new byte[data.length];
+		int offset = readFully(in, received, 0, 4 * window);
+		assertTrue(exec.getLocalWindowMaxSize() > window);
+
+		Thread.sleep(200);	// Let server fill grown window without reading
+		ChannelSftp sftp = (ChannelSftp) session.openChannel(ChannelType.SFTP);
+		sftp.connect();
+		assertTrue(sftp.stat("/").isDir());
+		sftp.disconnect();
+
+		readFully(in, received, offset, data.length - offset);
+		assertArrayEquals(data, received);
+	}
+
+	private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+		int end = offset + length;
+		while( offset < end ) {
+			int read = in.read(buffer, offset, Math.min(8192, end - offset));
+			if( read < 0 ) {
+				throw new IOException("Unexpected EOF");
+			}
+			offset += read;
+		}
+		return offset;
+	}
+
+	/**
+	 * The ID of a channel whose open timed out must not be reused until the
+	 * server replies to the open, and a late confirmation must close the
+	 * channel on the server without affecting the session.
+	 */
+	@Test(timeout = 30000)
+	public void testTimedOutOpenIdNotReused() throws Exception {
+		Session session = connect(null);
+		_server._holdOpens.set(1);
+		Channel timedOut = session.openChannel(ChannelType.EXEC);
+		try {
+			timedOut.connect(200);
+			fail("Open should time out");
+		} catch(JSchException e) {
+			/* Expected */
+		}
+		Channel next = session.openChannel(ChannelType.EXEC);
+		assertTrue(next.getId() != timedOut.getId());
+		next.disconnect();
+
+		_server.releaseHeldOpens(true);	// Late open confirmation
+		Collection<?> freeIds = (Collection<?>) LoopbackServer.get(session, "_freeChannelIds");
+		while( !freeIds.contains(timedOut.getId()) ) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, _server.requestCount("CHANNEL_CLOSE"));
+		ChannelSftp sftp = (ChannelSftp) session.openChannel(ChannelType.SFTP);
+		sftp.connect();
+		assertTrue(sftp.stat("/").isDir());
+		sftp.disconnect();
+	}
+
+	/**
+	 * The ID of a channel the server refused to open must be reused.
+	 */
+	@Test(timeout = 30000)
+	public void testFailedOpenIdReused() throws Exception {
+		Session session = connect(null);
+		_server._failOpens.set(1);
+		Channel failed = session.openChannel(ChannelType.EXEC);
+		try {
+			failed.connect();
+			fail("Open should fail");
+		} catch(JSchException e) {
+			/* Expected */
+		}
+		assertEquals(failed.getId(), session.openChannel(ChannelType.EXEC).getId());
+		assertEquals(0, _server.requestCount("CHANNEL_CLOSE"));
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SftpMirror} against the in-process {@link LoopbackServer}.
+ */
+public class SftpMirrorTest {
+
+	private LoopbackServer _server;
+	private Session _session;
+	private File _local;
+
+	@Before
+	public void setUp() throws Exception {
+		_server = new LoopbackServer();
+		_session = _server.connect(null);
+		_local = File.createTempFile("mirror", "");
+		_local.delete();
+		_local.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		_session.disconnect();
+		_server.close();
+		delete(_local);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if( children != null ) {
+			for( File child : children ) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * A worker must replace its channel after a failed task instead of
+	 * performing the remaining tasks on a channel the failure may have left
+	 * in an unknown state.
+	 */
+	@Test(timeout = 30000)
+	public void testChannelReplacedAfterFailedTask() throws Exception {
+		_server._dirs.add("/m");
+		_server._files.put("/m/a", new byte[10]);
+		_server._files.put("/m/b", new byte[20]);
+		new File(_local, "a").mkdir();	// Local directory in the way of file
+
+		SftpMirror.Result result = new SftpMirror(_session, 1).download("/m", _local.getPath());
+		assertEquals(1, result.getFailures().size());
+		assertTrue(result.getFailures().containsKey("/m/a"));
+		assertEquals(20, new File(_local, "b").length());
+		assertEquals(2, _server._opens.get());
+		assertEquals(_server.requestCount("OPEN") + _server.requestCount("OPENDIR"), _server.requestCount("CLOSE"));
+	}
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.After;
+import org.junit.Test;
+import org.vngx.jsch.cipher.Cipher;
+import org.vngx.jsch.cipher.CipherManager;
+import org.vngx.jsch.config.JSchConfig;
+import org.vngx.jsch.hash.Hash;
+import org.vngx.jsch.hash.HashManager;
+import org.vngx.jsch.hash.MAC;
+
+/**
+ * Tests for {@link EnginePool} checking that engines reused from the pool
+ * produce the same output as newly created JCE engines.
+ */
+public class EnginePoolTest {
+
+	private final int _poolSize = JSchConfig.getConfig().getInteger(JSchConfig.ENGINE_POOL_SIZE);
+
+	@After
+	public void tearDown() {
+		JSchConfig.getConfig().setProperty(JSchConfig.ENGINE_POOL_SIZE, _poolSize);
+	}
+
+	private static byte[] random(int length, int seed) {
+		byte[] bytes = new byte[length];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * A cipher engine released part way through a block of key stream must
+	 * produce the same output as a new engine once reinitialized.
+	 */
+	@Test
+	public void testCipherReusedWithCleanState() throws Exception {
+		byte[] key = random(16, 1), iv = random(16, 2), data = random(100, 3);
+		Cipher released = CipherManager.getManager().createCipher(Cipher.CIPHER_AES128_CTR);
+		released.init(Cipher.ENCRYPT_MODE, random(16, 4), random(16, 5));
+		released.update(data, 0, 17, new byte[17], 0);
+		int idle = EnginePool.CIPHERS.getIdleCount("AES/CTR/NoPadding");
+		EnginePool.release(released);
+		assertEquals(idle + 1, EnginePool.CIPHERS.getIdleCount("AES/CTR/NoPadding"));
+
+		Cipher reused = CipherManager.getManager().createCipher(Cipher.CIPHER_AES128_CTR);
+		reused.init(Cipher.ENCRYPT_MODE, key, iv);
+		assertEquals(idle, EnginePool.CIPHERS.getIdleCount("AES/CTR/NoPadding"));
+		byte[] actual = new byte[data.length];
+		reused.update(data, 0, data.length, actual, 0);
+
+		javax.crypto.Cipher jce = javax.crypto.Cipher.getInstance("AES/CTR/NoPadding");
+		jce.init(javax.crypto.Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+		assertArrayEquals(jce.doFinal(data), actual);
+		EnginePool.release(reused);
+	}
+
+	/**
+	 * A MAC engine released with data pending must produce the same digest
+	 * as a new engine once reinitialized with a different key.
+	 */
+	@Test
+	public void testMACReusedWithCleanState() throws Exception {
+		byte[] key = random(20, 1), data = random(100, 2);
+		MAC released = HashManager.getManager().createMAC(MAC.HMAC_SHA1);
+		released.init(random(20, 3));
+		released.update(data, 0, 5);
+		EnginePool.release(released);
+
+		MAC reused = HashManager.getManager().createMAC(MAC.HMAC_SHA1);
+		reused.init(key);
+		reused.update(data, 0, data.length);
+		byte[] actual = new byte[reused.getBlockSize()];
+		reused.doFinal(actual, 0);
+
+		Mac jce = Mac.getInstance("HmacSHA1");
+		jce.init(new SecretKeySpec(key, "HmacSHA1"));
+		assertArrayEquals(jce.doFinal(data), actual);
+		EnginePool.release(reused);
+	}
+
+	/**
+	 * A digest engine released with data pending must be reset before it is
+	 * reused.
+	 */
+	@Test
+	public void testDigestReusedWithCleanState() throws Exception {
+		byte[] data = random(100, 1);
+		Hash released = HashManager.getManager().createHash(Hash.HASH_SHA1);
+		released.update(data, 0, 5);
+		EnginePool.release(released);
+
+		Hash reused = HashManager.getManager().createHash(Hash.HASH_SHA1);
+		reused.update(data, 0, data.length);
+		assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(data), reused.digest());
+		EnginePool.release(reused);
+	}
+
+	/**
+	 * Releasing an algorithm more than once must only return its engine to
+	 * the pool once.
+	 */
+	@Test
+	public void testReleaseTwiceAddsEngineOnce() throws Exception {
+		Cipher cipher = CipherManager.getManager().createCipher(Cipher.CIPHER_AES256_CTR);
+		cipher.init(Cipher.ENCRYPT_MODE, random(32, 1), random(16, 2));
+		int idle = EnginePool.CIPHERS.getIdleCount("AES/CTR/NoPadding");
+		EnginePool.release(cipher);
+		EnginePool.release(cipher);
+		assertEquals(idle + 1, EnginePool.CIPHERS.getIdleCount("AES/CTR/NoPadding"));
+	}
+
+	/**
+	 * No more than the configured number of idle engines may be kept for an
+	 * algorithm, and none if pooling is disabled.
+	 */
+	@Test
+	public void testIdleEnginesLimited() throws Exception {
+		JSchConfig.getConfig().setProperty(JSchConfig.ENGINE_POOL_SIZE, 2);
+		for( int i = 0; i < 3; i++ ) {
+			EnginePool.MACS.release("HmacSHA384", Mac.getInstance("HmacSHA384"));
+		}
+		assertEquals(2, EnginePool.MACS.getIdleCount("HmacSHA384"));
+
+		EnginePool.MACS.checkout("HmacSHA384");
+		EnginePool.MACS.checkout("HmacSHA384");
+		JSchConfig.getConfig().setProperty(JSchConfig.ENGINE_POOL_SIZE, 0);
+		EnginePool.MACS.release("HmacSHA384", Mac.getInstance("HmacSHA384"));
+		assertEquals(0, EnginePool.MACS.getIdleCount("HmacSHA384"));
+	}
+
+}
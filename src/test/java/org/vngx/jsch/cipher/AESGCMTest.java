@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.cipher;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+
+/**
+ * Tests for the AES-GCM {@link AEADCipher} implementations.
+ *
+ * RFC 5647 does not publish test vectors and the NIST vectors do not use a 4
+ * byte AAD, so packets are checked against the JCE AES/GCM cipher using the
+ * nonce and AAD layout of RFC 5647: the packet length is sent in the clear as
+ * the AAD and the 8 byte invocation counter of the nonce is incremented after
+ * each packet.
+ */
+public class AESGCMTest {
+
+	/** Invocation counter which wraps after the second packet. */
+	private static final long COUNTER = 0xfffffffffffffffeL;
+
+	private final byte[] _key = new byte[32];
+	private final byte[] _iv = new byte[12];
+
+	public AESGCMTest() {
+		new Random(1).nextBytes(_key);
+		new Random(2).nextBytes(_iv);
+		for( int i = 4; i < 12; i++ ) {
+			_iv[i] = (byte) (COUNTER >>> (88 - 8 * i));
+		}
+	}
+
+	/**
+	 * Creates a packet with the specified data length (a multiple of 16)
+	 * following the packet length field, leaving room for the tag.
+	 */
+	private static byte[] createPacket(int length, int seed) {
+		byte[] packet = new byte[4 + length + 16];
+		new Random(seed).nextBytes(packet);
+		packet[0] = (byte) (length >>> 24);
+		packet[1] = (byte) (length >>> 16);
+		packet[2] = (byte) (length >>> 8);
+		packet[3] = (byte) length;
+		Arrays.fill(packet, 4 + length, packet.length, (byte) 0);
+		return packet;
+	}
+
+	/**
+	 * Encrypts the packet with the JCE cipher using the nonce for the
+	 * specified packet number, returning the ciphertext followed by the tag.
+	 */
+	private byte[] encryptJCE(int keySize, byte[] packet, int length, int n) throws Exception {
+		byte[] nonce = _iv.clone();
+		long counter = COUNTER + n;
+		for( int i = 4; i < 12; i++ ) {
+			nonce[i] = (byte) (counter >>> (88 - 8 * i));
+		}
+		javax.crypto.Cipher jce = javax.crypto.Cipher.getInstance("AES/GCM/NoPadding");
+		jce.init(javax.crypto.Cipher.ENCRYPT_MODE, new SecretKeySpec(_key, 0, keySize, "AES"), new GCMParameterSpec(128, nonce));
+		jce.updateAAD(packet, 0, 4);
+		return jce.doFinal(packet, 4, length);
+	}
+
+	private void checkAgainstJCE(AEADCipher encrypt, AEADCipher decrypt, int keySize) throws Exception {
+		encrypt.init(Cipher.ENCRYPT_MODE, _key, _iv);
+		decrypt.init(Cipher.DECRYPT_MODE, _key, _iv);
+		assertEquals(16, encrypt.getTagSize());
+		assertEquals(16, encrypt.getPaddingSize());
+		for( int n = 0; n < 4; n++ ) {
+			int length = 16 * (n + 1);
+			byte[] packet = createPacket(length, n);
+			byte[] plain = packet.clone();
+			byte[] expected = encryptJCE(keySize, packet, length, n);
+
+			encrypt.encrypt(n, packet, 0, 4 + length);
+			assertArrayEquals(Arrays.copyOf(plain, 4), Arrays.copyOf(packet, 4));
+			assertArrayEquals(expected, Arrays.copyOfRange(packet, 4, packet.length));
+
+			assertEquals(length, decrypt.getPacketLength(n, packet, 0));
+			assertTrue(decrypt.decrypt(n, packet, 0, 4 + length));
+			assertArrayEquals(Arrays.copyOf(plain, 4 + length), Arrays.copyOf(packet, 4 + length));
+		}
+	}
+
+	/**
+	 * aes128-gcm@openssh.com must match the JCE cipher, with the invocation
+	 * counter wrapping without changing the fixed field of the nonce.
+	 */
+	@Test
+	public void testAES128MatchesJCE() throws Exception {
+		checkAgainstJCE(new CipherImpl.AES128GCM(), new CipherImpl.AES128GCM(), 16);
+	}
+
+	/**
+	 * aes256-gcm@openssh.com must match the JCE cipher, with the invocation
+	 * counter wrapping without changing the fixed field of the nonce.
+	 */
+	@Test
+	public void testAES256MatchesJCE() throws Exception {
+		checkAgainstJCE(new CipherImpl.AES256GCM(), new CipherImpl.AES256GCM(), 32);
+	}
+
+	/**
+	 * A packet whose length, ciphertext or tag was modified must fail
+	 * authentication.
+	 */
+	@Test
+	public void testTamperedPacketRejected() throws Exception {
+		int length = 64;
+		for( int offset : new int[] { 3, 4, 4 + length - 1, 4 + length, 4 + length + 15 } ) {
+			AEADCipher encrypt = new CipherImpl.AES128GCM(), decrypt = new CipherImpl.AES128GCM();
+			encrypt.init(Cipher.ENCRYPT_MODE, _key, _iv);
+			decrypt.init(Cipher.DECRYPT_MODE, _key, _iv);
+			byte[] packet = createPacket(length, offset);
+			encrypt.encrypt(0, packet, 0, 4 + length);
+			packet[offset] ^= 1;
+			assertFalse("Offset " + offset, decrypt.decrypt(0, packet, 0, 4 + length));
+		}
+	}
+
+}
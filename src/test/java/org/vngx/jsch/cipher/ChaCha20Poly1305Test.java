@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.cipher;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ChaCha20Poly1305} and the {@link ChaCha20} and
+ * {@link Poly1305} primitives it is built from.
+ *
+ * <p><a href="http://tools.ietf.org/html/rfc8439">RFC 8439 - ChaCha20 and
+ * Poly1305 for IETF Protocols</a></p>
+ */
+public class ChaCha20Poly1305Test {
+
+	private static byte[] hex(String hex) {
+		byte[] bytes = new byte[hex.length() / 2];
+		for( int i = 0; i < bytes.length; i++ ) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		return bytes;
+	}
+
+	private static byte[] repeat(int value, int length) {
+		byte[] bytes = new byte[length];
+		Arrays.fill(bytes, (byte) value);
+		return bytes;
+	}
+
+	private static byte[] join(byte[]... parts) {
+		int length = 0;
+		for( byte[] part : parts ) {
+			length += part.length;
+		}
+		byte[] joined = new byte[length];
+		int offset = 0;
+		for( byte[] part : parts ) {
+			System.arraycopy(part, 0, joined, offset, part.length);
+			offset += part.length;
+		}
+		return joined;
+	}
+
+	private static void checkBlock(byte[] key, int sequence, long counter, String expected) {
+		ChaCha20 chacha = new ChaCha20();
+		chacha.setKey(key, 0);
+		chacha.setNonce(sequence, counter);
+		byte[] block = new byte[ChaCha20.BLOCK_SIZE];
+		chacha.keyStream(block, 0, block.length);
+		assertArrayEquals(hex(expected), block);
+	}
+
+	private static void checkPoly1305(byte[] key, byte[] message, String expected) {
+		Poly1305 poly1305 = new Poly1305();
+		poly1305.init(key, 0);
+		poly1305.update(message, 0, message.length);
+		byte[] tag = new byte[Poly1305.TAG_SIZE];
+		poly1305.doFinal(tag, 0);
+		assertArrayEquals(hex(expected), tag);
+	}
+
+	/**
+	 * RFC 8439 appendix A.1 ChaCha20 block function test vectors; the
+	 * sequence number is the last 4 bytes of the 96-bit IETF nonce.
+	 */
+	@Test
+	public void testChaCha20Block() {
+		byte[] key = new byte[32];
+		checkBlock(key, 0, 0, "76b8e0ada0f13d90405d6ae55386bd28bdd219b8a08ded1aa836efcc8b770dc7"
+				+ "da41597c5157488d7724e03fb8d84a376a43b8f41518a11cc387b669b2ee6586");
+		checkBlock(key, 0, 1, "9f07e7be5551387a98ba977c732d080dcb0f29a048e3656912c6533e32ee7aed"
+				+ "29b721769ce64e43d57133b074d839d531ed1f28510afb45ace10a1f4b794d6f");
+		checkBlock(key, 2, 0, "c2c64d378cd536374ae204b9ef933fcd1a8b2288b3dfa49672ab765b54ee27c7"
+				+ "8a970e0e955c14f3a88e741b97c286f75f8fc299e8148362fa198a39531bed6d");
+		key[31] = 1;
+		checkBlock(key, 0, 1, "3aeb5224ecf849929b9d828db1ced4dd832025e8018b8160b82284f3c949aa5a"
+				+ "8eca00bbb4a73bdad192b5c42f73f2fd4e273644c8b36125a64addeb006c13a0");
+		key[31] = 0;
+		key[1] = (byte) 0xff;
+		checkBlock(key, 0, 2, "72d54dfbf12ec44b362692df94137f328fea8da73990265ec1bbbea1ae9af0ca"
+				+ "13b25aa26cb4a648cb9b9d1be65b2c0924a66c54d545ec1b7374f4872e99f096");
+	}
+
+	/**
+	 * RFC 8439 section 2.5.2 Poly1305 test vector.
+	 */
+	@Test
+	public void testPoly1305() {
+		checkPoly1305(hex("85d6be7857556d337f4452fe42d506a80103808afb0db2fd4abff6af4149f51b"),
+				"Cryptographic Forum Research Group".getBytes(), "a8061dc1305136c6c22b8baf0c0127a9");
+	}
+
+	/**
+	 * RFC 8439 appendix A.3 Poly1305 test vectors 5 to 9, which exercise the
+	 * carry and final reduction edge cases.
+	 */
+	@Test
+	public void testPoly1305EdgeCases() {
+		byte[] r1 = join(hex("01"), new byte[31]), r2 = join(hex("02"), new byte[31]);
+		String zero = "00000000000000000000000000000000";
+		checkPoly1305(r2, repeat(0xff, 16), "03" + zero.substring(2));
+		checkPoly1305(join(hex("02"), new byte[15], repeat(0xff, 16)), join(hex("02"), new byte[15]), "03" + zero.substring(2));
+		checkPoly1305(r1, join(repeat(0xff, 16), hex("f0"), repeat(0xff, 15), hex("11"), new byte[15]), "05" + zero.substring(2));
+		checkPoly1305(r1, join(repeat(0xff, 16), hex("fb"), repeat(0xfe, 15), repeat(0x01, 16)), zero);
+		checkPoly1305(r2, join(hex("fd"), repeat(0xff, 15)), "fa" + "ffffffffffffffffffffffffffffff");
+	}
+
+	/**
+	 * Known answer test for chacha20-poly1305@openssh.com computed
+	 * independently from the ChaCha20 and Poly1305 definitions: the length is
+	 * encrypted with the header key (second 32 bytes of key), the payload
+	 * with the main key from block counter 1 and the tag is the Poly1305 of
+	 * the whole encrypted packet keyed by block 0 of the main key stream.
+	 */
+	@Test
+	public void testOpenSSHPacket() throws Exception {
+		byte[] key = new byte[64];
+		for( int i = 0; i < key.length; i++ ) {
+			key[i] = (byte) i;
+		}
+		byte[] packet = new byte[32 + 16];
+		packet[3] = 0x1c;
+		for( int i = 0; i < 28; i++ ) {
+			packet[4 + i] = (byte) i;
+		}
+		byte[] plain = Arrays.copyOf(packet, 32);
+		byte[] expected = hex("a39afcb6284717404a862c596464b1fbdb82dd2324a322256af62b94587301c4"
+				+ "a77b63f0dcdc32668440e80ca9beec17");
+
+		ChaCha20Poly1305 encrypt = new ChaCha20Poly1305();
+		encrypt.init(Cipher.ENCRYPT_MODE, key, null);
+		encrypt.encrypt(7, packet, 0, 32);
+		assertArrayEquals(expected, packet);
+
+		ChaCha20Poly1305 decrypt = new ChaCha20Poly1305();
+		decrypt.init(Cipher.DECRYPT_MODE, key, null);
+		assertEquals(28, decrypt.getPacketLength(7, packet, 0));
+		assertArrayEquals(expected, packet);
+		assertTrue(decrypt.decrypt(7, packet, 0, 32));
+		assertArrayEquals(plain, Arrays.copyOf(packet, 32));
+	}
+
+	/**
+	 * A packet whose length, payload or tag was modified, or which is
+	 * decrypted with the wrong sequence number, must fail authentication and
+	 * be left unmodified.
+	 */
+	@Test
+	public void testTamperedPacketRejected() throws Exception {
+		byte[] key = new byte[64];
+		Arrays.fill(key, (byte) 0x42);
+		ChaCha20Poly1305 encrypt = new ChaCha20Poly1305(), decrypt = new ChaCha20Poly1305();
+		encrypt.init(Cipher.ENCRYPT_MODE, key, null);
+		decrypt.init(Cipher.DECRYPT_MODE, key, null);
+		byte[] packet = new byte[4 + 200 + 16];
+		packet[3] = (byte) 200;
+		encrypt.encrypt(3, packet, 0, 204);
+		for( int offset : new int[] { 0, 4, 203, 204, 219 } ) {
+			byte[] tampered = packet.clone();
+			tampered[offset] ^= 1;
+			byte[] copy = tampered.clone();
+			assertFalse("Offset " + offset, decrypt.decrypt(3, tampered, 0, 204));
+			assertArrayEquals(copy, tampered);
+		}
+		assertFalse(decrypt.decrypt(4, packet.clone(), 0, 204));
+		assertTrue(decrypt.decrypt(3, packet, 0, 204));
+		assertArrayEquals(new byte[200], Arrays.copyOfRange(packet, 4, 204));
+	}
+
+	/**
+	 * The cipher must not be used before it is initialized with a full key.
+	 */
+	@Test
+	public void testRequiresKey() throws Exception {
+		ChaCha20Poly1305 cipher = new ChaCha20Poly1305();
+		try {
+			cipher.encrypt(0, new byte[64], 0, 32);
+			fail("Uninitialized cipher should fail");
+		} catch(CipherException e) {
+			/* Expected */
+		}
+		try {
+			cipher.init(Cipher.ENCRYPT_MODE, new byte[32], null);
+			fail("Short key should fail");
+		} catch(CipherException e) {
+			/* Expected */
+		}
+	}
+
+}
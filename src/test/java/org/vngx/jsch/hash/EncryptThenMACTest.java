@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 vngx-jsch contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ *
+ * 3. The names of the authors may not be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL N1
+ * CONCEPTS LLC OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.vngx.jsch.hash;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the encrypt-then-MAC {@link MAC} implementations, which use the
+ * same HMAC algorithms as the standard MACs and differ only in the packet
+ * data they are computed over.
+ *
+ * <p><a href="http://tools.ietf.org/html/rfc2202">RFC 2202 - Test Cases for
+ * HMAC-MD5 and HMAC-SHA-1</a></p>
+ * <p><a href="http://tools.ietf.org/html/rfc4231">RFC 4231 - Identifiers and
+ * Test Vectors for HMAC-SHA-224, HMAC-SHA-256, HMAC-SHA-384, and
+ * HMAC-SHA-512</a></p>
+ */
+public class EncryptThenMACTest {
+
+	/** Key of RFC 2202 test case 2 and RFC 4231 test case 2. */
+	private static final byte[] KEY = "Jefe".getBytes();
+	/** Data of RFC 2202 test case 2 and RFC 4231 test case 2. */
+	private static final byte[] DATA = "what do ya want for nothing?".getBytes();
+
+	private static byte[] hex(String hex) {
+		byte[] bytes = new byte[hex.length() / 2];
+		for( int i = 0; i < bytes.length; i++ ) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Checks the named MAC is an encrypt-then-MAC producing the expected
+	 * digest, including when the MAC is reused for a second digest and when
+	 * the data is passed in pieces.
+	 */
+	private static void checkMAC(String name, String expected) throws Exception {
+		MAC mac = HashManager.getManager().createMAC(name);
+		assertTrue(mac instanceof EncryptThenMAC);
+		assertEquals(expected.length() / 2, mac.getBlockSize());
+		mac.init(KEY);
+		byte[] digest = new byte[mac.getBlockSize()];
+		mac.update(DATA, 0, DATA.length);
+		mac.doFinal(digest, 0);
+		assertArrayEquals(hex(expected), digest);
+
+		digest = new byte[mac.getBlockSize()];
+		mac.update(DATA, 0, 5);
+		mac.update(DATA, 5, DATA.length - 5);
+		mac.doFinal(digest, 0);
+		assertArrayEquals(hex(expected), digest);
+	}
+
+	/**
+	 * hmac-sha1-etm@openssh.com against RFC 2202 test case 2.
+	 */
+	@Test
+	public void testHMACSHA1() throws Exception {
+		checkMAC(MAC.HMAC_SHA1_ETM, "effcdf6ae5eb2fa2d27416d5f184df9c259a7c79");
+	}
+
+	/**
+	 * hmac-sha2-256-etm@openssh.com against RFC 4231 test case 2.
+	 */
+	@Test
+	public void testHMACSHA256() throws Exception {
+		checkMAC(MAC.HMAC_SHA_256_ETM, "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+	}
+
+	/**
+	 * hmac-sha2-512-etm@openssh.com against RFC 4231 test case 2.
+	 */
+	@Test
+	public void testHMACSHA512() throws Exception {
+		checkMAC(MAC.HMAC_SHA_512_ETM, "164b7a7bfcf819e2e395fbe73b56e0a387bd64222e831fd610270cd7ea250554"
+				+ "9758bf75c05a994a6d034f65f8f0e6fdcaeab1a34d4a6b4b636e070a38bce737");
+	}
+
+}